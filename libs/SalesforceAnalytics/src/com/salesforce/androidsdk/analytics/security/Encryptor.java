@@ -31,9 +31,15 @@ import android.app.admin.DevicePolicyManager;
 import android.content.Context;
 import android.text.TextUtils;
 import android.util.Base64;
+import android.util.Base64InputStream;
+import android.util.Base64OutputStream;
 
 import com.salesforce.androidsdk.analytics.util.SalesforceAnalyticsLogger;
 
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
@@ -42,6 +48,8 @@ import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.Mac;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -208,6 +216,59 @@ public class Encryptor {
         return null;
     }
 
+    /**
+     * Wraps a stream of Base64, AES-256 encrypted data (as produced by encryptBytes or getEncryptingOutputStream)
+     * into a stream of decrypted data. Data is decrypted as it is read, it is never fully buffered in memory.
+     *
+     * @param in Stream of encrypted data.
+     * @param key Base64 encoded 256 bit key or null (to leave data unchanged).
+     * @return Stream of decrypted data.
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    public static InputStream getDecryptingInputStream(InputStream in, String key) throws GeneralSecurityException, IOException {
+        if (TextUtils.isEmpty(key)) {
+            return in;
+        }
+        final InputStream base64In = new Base64InputStream(in, Base64.DEFAULT);
+
+        // Grabs the init vector prefix (first 16 bytes / 128 bits).
+        byte[] initVector = new byte[16];
+        new DataInputStream(base64In).readFully(initVector);
+        final Cipher cipher = getBestCipher();
+        final SecretKeySpec skeySpec = new SecretKeySpec(Base64.decode(key, Base64.DEFAULT), cipher.getAlgorithm());
+        cipher.init(Cipher.DECRYPT_MODE, skeySpec, new IvParameterSpec(initVector));
+        return new CipherInputStream(base64In, cipher);
+    }
+
+    /**
+     * Wraps a stream into a stream that encrypts data with key using AES-256 and Base64 encodes it,
+     * producing the same format as encryptBytes. Data is encrypted as it is written, it is never fully buffered in memory.
+     * Closing the returned stream finishes the encryption and closes the underlying stream.
+     *
+     * @param out Stream receiving encrypted data.
+     * @param key Base64 encoded 256 bit key or null (to leave data unchanged).
+     * @return Stream to write data to.
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    public static OutputStream getEncryptingOutputStream(OutputStream out, String key) throws GeneralSecurityException, IOException {
+        if (TextUtils.isEmpty(key)) {
+            return out;
+        }
+        final Cipher cipher = getBestCipher();
+        final SecretKeySpec skeySpec = new SecretKeySpec(Base64.decode(key, Base64.DEFAULT), cipher.getAlgorithm());
+
+        // Generates a unique IV per encryption.
+        byte[] initVector = generateInitVector();
+        cipher.init(Cipher.ENCRYPT_MODE, skeySpec, new IvParameterSpec(initVector));
+
+        // Prepends the IV to the encoded data (first 16 bytes / 128 bits).
+        final OutputStream base64Out = new Base64OutputStream(out, Base64.DEFAULT);
+        base64Out.write(initVector);
+        return new CipherOutputStream(base64Out, cipher);
+    }
+
     /**
      * Checks if the string is Base64 encoded.
      *
@@ -66,4 +66,6 @@ public final class PluginConstants {
 
     static final String STORE_NAME = "storeName";
 
+    static final String LAZY_COUNT = "lazyCount";
+
 }
@@ -63,6 +63,7 @@ import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.EXTERNAL
 import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.INDEX;
 import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.INDEXES;
 import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.IS_GLOBAL_STORE;
+import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.LAZY_COUNT;
 import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.PATH;
 import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.PATHS;
 import static com.salesforce.androidsdk.phonegap.plugin.PluginConstants.QUERY_SPEC;
@@ -195,7 +196,7 @@ public class SmartStorePlugin extends ForcePlugin {
 		JSONObject querySpecJson = arg0.optJSONObject(QUERY_SPEC);
 
 		if (jsonSoupEntryIds != null) {
-			Long[] soupEntryIds = new Long[jsonSoupEntryIds.length()];
+			long[] soupEntryIds = new long[jsonSoupEntryIds.length()];
 			for (int i = 0; i < jsonSoupEntryIds.length(); i++) {
 				soupEntryIds[i] = jsonSoupEntryIds.getLong(i);
 			}
@@ -227,7 +228,7 @@ public class SmartStorePlugin extends ForcePlugin {
         final SmartStore smartStore = getSmartStore(arg0);
 
 		JSONArray jsonSoupEntryIds = arg0.getJSONArray(ENTRY_IDS);
-		Long[] soupEntryIds = new Long[jsonSoupEntryIds.length()];
+		long[] soupEntryIds = new long[jsonSoupEntryIds.length()];
 		for (int i = 0; i < jsonSoupEntryIds.length(); i++) {
 			soupEntryIds[i] = jsonSoupEntryIds.getLong(i);
 		}
@@ -482,7 +483,7 @@ public class SmartStorePlugin extends ForcePlugin {
 		}
 
 		// Run query
-		runQuery(smartStore, querySpec, callbackContext);
+		runQuery(smartStore, querySpec, arg0.optBoolean(LAZY_COUNT, false), callbackContext);
 	}
 
 	/**
@@ -502,20 +503,21 @@ public class SmartStorePlugin extends ForcePlugin {
 		}
 
 		// Run query
-		runQuery(smartStore, querySpec, callbackContext);
+		runQuery(smartStore, querySpec, arg0.optBoolean(LAZY_COUNT, false), callbackContext);
 	}
 
 	/**
 	 * Helper for querySoup and runSmartSql
 	 * @param querySpec
+	 * @param lazyCount true to return the first page without counting results first
 	 * @param callbackContext CallbackContext for plugin
 	 * @throws JSONException
 	 */
-	private void runQuery(SmartStore smartStore, QuerySpec querySpec,
+	private void runQuery(SmartStore smartStore, QuerySpec querySpec, boolean lazyCount,
 			CallbackContext callbackContext) throws JSONException {
 
 		// Build store cursor
-		final StoreCursor storeCursor = new StoreCursor(smartStore, querySpec);
+		final StoreCursor storeCursor = new StoreCursor(smartStore, querySpec, lazyCount);
 		getSmartStoreCursors(smartStore).put(storeCursor.cursorId, storeCursor);
 
 		// Build json result
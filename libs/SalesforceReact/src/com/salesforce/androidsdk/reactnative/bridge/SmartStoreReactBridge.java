@@ -79,6 +79,7 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
 	static final String INDEXES = "indexes";
 	static final String IS_GLOBAL_STORE = "isGlobalStore";
 	static final String STORE_NAME = "storeName";
+	static final String LAZY_COUNT = "lazyCount";
 
 	// Map of cursor id to StoreCursor, per database.
 	private static Map<SQLiteDatabase, SparseArray<StoreCursor>> STORE_CURSORS = new HashMap<SQLiteDatabase, SparseArray<StoreCursor>>();
@@ -120,7 +121,7 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
             ReadableMap mapQuerySpec = (args.isNull(QUERY_SPEC) ? null : args.getMap(QUERY_SPEC));
             if (arraySoupEntryIds != null) {
                 List ids = ReactBridgeHelper.toJavaList(arraySoupEntryIds);
-                Long[] soupEntryIds = new Long[ids.size()];
+                long[] soupEntryIds = new long[ids.size()];
                 for (int i = 0; i < ids.size(); i++) {
                     soupEntryIds[i] = ((Double) ids.get(i)).longValue();
                 }
@@ -154,7 +155,11 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
 		// Run retrieve
 		try {
             final SmartStore smartStore = getSmartStore(args);
-            Long[] soupEntryIds = ReactBridgeHelper.toJavaList(args.getArray(ENTRY_IDS)).toArray(new Long[0]);
+            List ids = ReactBridgeHelper.toJavaList(args.getArray(ENTRY_IDS));
+            long[] soupEntryIds = new long[ids.size()];
+            for (int i = 0; i < ids.size(); i++) {
+                soupEntryIds[i] = ((Number) ids.get(i)).longValue();
+            }
 			JSONArray result = smartStore.retrieve(soupName, soupEntryIds);
 			ReactBridgeHelper.invokeSuccess(successCallback, result);
 		} catch (Exception e) {
@@ -348,7 +353,7 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
 			}
 
 			// Run query
-			runQuery(smartStore, querySpec, successCallback);
+			runQuery(smartStore, querySpec, isLazyCount(args), successCallback);
 		} catch (Exception e) {
             SalesforceReactLogger.e(TAG, "querySoup call failed", e);
 			errorCallback.invoke(e.toString());
@@ -375,7 +380,7 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
 			}
 
 			// Run query
-			runQuery(smartStore, querySpec, successCallback);
+			runQuery(smartStore, querySpec, isLazyCount(args), successCallback);
 		} catch (Exception e) {
             SalesforceReactLogger.e(TAG, "runSmartQuery call failed", e);
 			errorCallback.invoke(e.toString());
@@ -385,14 +390,15 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
 	/**
 	 * Helper for querySoup and runSmartSql
 	 * @param querySpec
+	 * @param lazyCount true to return the first page without counting results first
 	 * @param successCallback
 	 * @throws JSONException
 	 */
-	private void runQuery(SmartStore smartStore, QuerySpec querySpec,
+	private void runQuery(SmartStore smartStore, QuerySpec querySpec, boolean lazyCount,
                          final Callback successCallback) throws JSONException {
 
 		// Build store cursor
-		final StoreCursor storeCursor = new StoreCursor(smartStore, querySpec);
+		final StoreCursor storeCursor = new StoreCursor(smartStore, querySpec, lazyCount);
 		getSmartStoreCursors(smartStore).put(storeCursor.cursorId, storeCursor);
 
 		// Build json result
@@ -703,6 +709,15 @@ public class SmartStoreReactBridge extends ReactContextBaseJavaModule {
 		return args != null ? args.getBoolean(IS_GLOBAL_STORE) : false;
 	}
 
+	/**
+	 * Return the value of the optional lazyCount argument
+	 * @param args
+	 * @return
+	 */
+	private static boolean isLazyCount(ReadableMap args) {
+		return args != null && args.hasKey(LAZY_COUNT) && args.getBoolean(LAZY_COUNT);
+	}
+
 	/**
 	 * Return smartstore to use
 	 * @param args arguments passed in bridge call
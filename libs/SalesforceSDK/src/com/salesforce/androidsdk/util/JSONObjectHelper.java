@@ -31,6 +31,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -156,6 +157,22 @@ public class JSONObjectHelper {
 		return arr;
 	}
 
+	/**
+	 * Return a copy of obj sharing its values (nested JSONObject's and JSONArray's are not copied)
+	 * @param obj
+	 * @return
+	 * @throws JSONException
+	 */
+	public static JSONObject shallowCopy(JSONObject obj) throws JSONException {
+		JSONObject result = new JSONObject();
+		Iterator<String> keys = obj.keys();
+		while (keys.hasNext()) {
+			String key = keys.next();
+			result.put(key, obj.get(key));
+		}
+		return result;
+	}
+
 	/**
 	 *
 	 * @param key
@@ -38,6 +38,7 @@ import net.sqlcipher.database.SQLiteDatabase;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -49,6 +50,7 @@ import java.util.Set;
  * Two entry points:
  * - new AlterSoupLongOperation(...) + run() => when asked to alterSoup in SmartStore
  * - LongOperation.getOperation(...) + run() => when completing interrupted long operations when opening the database
+ * Copy and re-index steps run in chunks (see SmartStore#setLongOperationChunking), each chunk checkpointed in long_operations_status
  * 
  */
 public class AlterSoupLongOperation extends LongOperation {
@@ -61,8 +63,18 @@ public class AlterSoupLongOperation extends LongOperation {
 	private static final String OLD_INDEX_SPECS = "oldIndexSpecs";
 	private static final String NEW_INDEX_SPECS = "newIndexSpecs";
 	private static final String RE_INDEX_DATA = "reIndexData";
+	private static final String CHECKPOINT_ID = "checkpointId";
 	public static final String TAG = "AlterSoup:Status";
 
+	// Default chunking (see SmartStore#setLongOperationChunking)
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+	public static final long DEFAULT_PAUSE_MS = 0;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Predicate for a chunk of rows
+	private static final String CHUNK_PREDICATE = SmartStore.ID_COL + " > ? AND " + SmartStore.ID_COL + " <= ?";
+
 	/**
      * Enum for alter steps
      */
@@ -78,6 +90,39 @@ public class AlterSoupLongOperation extends LongOperation {
         public static final AlterSoupStep LAST = DROP_OLD_TABLE;
     }
 
+	/**
+	 * Listener notified after every chunk of soup elements copied or re-indexed
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * @param soupName soup being altered
+		 * @param step step in progress (COPY_TABLE or RE_INDEX_SOUP)
+		 * @param processed number of soup elements processed so far by that step
+		 * @param total number of soup elements to be processed by that step
+		 */
+		void onProgress(String soupName, AlterSoupStep step, int processed, int total);
+	}
+
+	/**
+	 * Work done for each chunk of a chunked step
+	 */
+	private interface ChunkProcessor {
+
+		/**
+		 * Process rows with ids in ]afterId, ids[ids.length - 1]] - called within the chunk's transaction
+		 * @param afterId
+		 * @param ids ids of rows in chunk in ascending order
+		 */
+		void process(long afterId, long[] ids);
+
+		/**
+		 * Called once the chunk's transaction is committed
+		 * @param ids ids of rows in chunk in ascending order
+		 */
+		void afterCommit(long[] ids);
+	}
+
     // Soup being altered
 	protected String soupName;
 
@@ -110,6 +155,9 @@ public class AlterSoupLongOperation extends LongOperation {
 	
 	// Row id for long_operations_status
 	private long rowId;
+
+	// Id of last soup element processed by the step in progress (null if it has not processed any)
+	private Long checkpointId;
 	
 	/**
 	 * Default constructor when reading back from long operations status table
@@ -147,7 +195,8 @@ public class AlterSoupLongOperation extends LongOperation {
 
     		// Get old soup spec
     		List<String> features = DBHelper.getInstance(db).getFeatures(db, soupName);
-    		this.oldSoupSpec = new SoupSpec(soupName, features.size() == 0 ? null : features.toArray(new String[features.size()]));
+    		CompoundIndexSpec[] compoundIndexSpecs = DBHelper.getInstance(db).getCompoundIndexSpecs(db, soupName);
+    		this.oldSoupSpec = new SoupSpec(soupName, compoundIndexSpecs, features.size() == 0 ? null : features.toArray(new String[features.size()]));
 
 			// Get backing table for soup
 	        this.soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
@@ -155,6 +204,10 @@ public class AlterSoupLongOperation extends LongOperation {
 	        
 	        // Setting newIndexSpecs field
 	        this.newIndexSpecs = newIndexSpecs;
+	        if (IndexSpec.hasJSON1(newIndexSpecs) && newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_BINARY_ENCODING))
+	        	throw new SmartStoreException("Can't have JSON1 index specs in binary encoded soup:" + soupName);
+	        if (IndexSpec.hasJSON1(newIndexSpecs) && newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_COMPRESSION))
+	        	throw new SmartStoreException("Can't have JSON1 index specs in compressed soup:" + soupName);
 	        
 	        // Setting reIndexData field
 	        this.reIndexData = reIndexData;
@@ -209,6 +262,7 @@ public class AlterSoupLongOperation extends LongOperation {
 		this.oldIndexSpecs = IndexSpec.fromJSON(details.getJSONArray(OLD_INDEX_SPECS));
 		this.reIndexData = details.getBoolean(RE_INDEX_DATA);
 		this.soupTableName = details.getString(SOUP_TABLE_NAME);
+		this.checkpointId = details.has(CHECKPOINT_ID) ? details.getLong(CHECKPOINT_ID) : null;
 	}
 
 
@@ -251,7 +305,7 @@ public class AlterSoupLongOperation extends LongOperation {
 	 */
 	protected void renameOldSoupTable() {
         try {
-            db.beginTransaction();
+            SmartStore.beginTransaction(db);
 
             // Rename backing table for soup
             db.execSQL("ALTER TABLE " + soupTableName + " RENAME TO " + getOldSoupTableName());
@@ -267,7 +321,7 @@ public class AlterSoupLongOperation extends LongOperation {
             db.setTransactionSuccessful();
         }
         finally {
-            db.endTransaction();
+            SmartStore.endTransaction(db);
         }
 
 	}
@@ -277,7 +331,7 @@ public class AlterSoupLongOperation extends LongOperation {
 	 */
 	protected void dropOldIndexes() {
 		try {
-			db.beginTransaction();
+			SmartStore.beginTransaction(db);
 
 			String dropIndexFormat = "DROP INDEX IF EXISTS %s_%s_idx";
 			// Removing db indexes on table (otherwise registerSoup will fail to create indexes with the same name)
@@ -287,9 +341,13 @@ public class AlterSoupLongOperation extends LongOperation {
 			for (int i=0; i<oldIndexSpecs.length; i++) {
 				db.execSQL(String.format(dropIndexFormat, soupTableName, "" + i));
 			}
+			for (int k=0; k<oldSoupSpec.getCompoundIndexSpecs().length; k++) {
+				db.execSQL(String.format(dropIndexFormat, soupTableName, "c" + k));
+			}
 
-			// Cleaning up soup index map table and cache
+			// Cleaning up soup index map tables and cache
 			DBHelper.getInstance(db).delete(db, SmartStore.SOUP_INDEX_MAP_TABLE, SmartStore.SOUP_NAME_PREDICATE, soupName);
+			DBHelper.getInstance(db).delete(db, SmartStore.SOUP_COMPOUND_INDEX_MAP_TABLE, SmartStore.SOUP_NAME_PREDICATE, soupName);
 
 			// Remove from cache
 			DBHelper.getInstance(db).removeFromCache(soupName);
@@ -300,7 +358,7 @@ public class AlterSoupLongOperation extends LongOperation {
             db.setTransactionSuccessful();
         }
         finally {
-            db.endTransaction();
+            SmartStore.endTransaction(db);
         }
 	}
 
@@ -309,7 +367,7 @@ public class AlterSoupLongOperation extends LongOperation {
 	 */
 	protected void registerSoupUsingTableName() {
 		try {
-			db.beginTransaction();
+			SmartStore.beginTransaction(db);
 
 			// Update soup_attrs table for soup
 			ContentValues soupMapValues = new ContentValues();
@@ -327,36 +385,43 @@ public class AlterSoupLongOperation extends LongOperation {
 			db.setTransactionSuccessful();
 		}
 		finally {
-			db.endTransaction();
+			SmartStore.endTransaction(db);
 		}
 	}
 
 
 	/**
-	 * Step 4: copy data from old soup table to new soup table
+	 * Step 4: copy data from old soup table to new soup table (in chunks)
+	 * NB: other threads accessing the soup (reads and writes) wait until this step is done, since the new table is only complete then
+	 *     (queries not tied to a soup e.g. smart sql queries are not held back)
 	 */
 	protected void copyTable() {
-		db.beginTransaction();
+		synchronized(db) {
+			DBHelper.getInstance(db).startSoupCopy(soupName);
+		}
 		try {
-			// We need column names in the index specs
-			this.newIndexSpecs = store.getSoupIndexSpecs(soupName);
-		
-			// Move data (core columns + indexed paths that we are still indexing)
-			copyOldData();
-
-			// Update row in alter status table 
-			updateLongOperationDbRow(AlterSoupStep.COPY_TABLE);
+			synchronized(db) {
+				// We need column names in the index specs
+				this.newIndexSpecs = store.getSoupIndexSpecs(soupName);
+
+				// Entries created between chunks should not get the id of an entry not yet copied
+				db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT ?, 0 WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)",
+						new Object[] { soupTableName, soupTableName });
+				db.execSQL("UPDATE sqlite_sequence SET seq = max(seq, ifnull((SELECT seq FROM sqlite_sequence WHERE name = ?), 0)) WHERE name = ?",
+						new Object[] { getOldSoupTableName(), soupTableName });
+			}
 
-            db.setTransactionSuccessful();
+			// Move data (core columns + indexed paths that we are still indexing)
+			runInChunks(AlterSoupStep.COPY_TABLE, getOldSoupTableName(), getCopyProcessor());
 		}
 		finally {
-			db.endTransaction();
+			DBHelper.getInstance(db).endSoupCopy(db, soupName);
 		}
 	}
 
 
 	/**
-	 * Step 5: re-index soup for new indexes (optional step)
+	 * Step 5: re-index soup for new indexes (optional step, in chunks)
 	 */
 	protected void reIndexSoup() {
 		// Putting path--type of old index specs in a set
@@ -372,17 +437,37 @@ public class AlterSoupLongOperation extends LongOperation {
 				indexPaths.add(indexSpec.path);
 			}
 		}
-		
-		db.beginTransaction();
-        try {
-            store.reIndexSoup(soupName, indexPaths.toArray(new String[0]), false);
-            updateLongOperationDbRow(AlterSoupStep.RE_INDEX_SOUP);
 
-            db.setTransactionSuccessful();
-        }
-        finally {
-            db.endTransaction();
-        }
+		final IndexSpec[] indexSpecs;
+		synchronized(db) {
+			indexSpecs = store.getReIndexSpecs(soupName, indexPaths.toArray(new String[0]));
+			if (indexSpecs.length == 0) {
+				// Nothing to re-index
+				SmartStore.beginTransaction(db);
+				try {
+					updateLongOperationDbRowCheckpoint(null);
+					updateLongOperationDbRow(AlterSoupStep.RE_INDEX_SOUP);
+					db.setTransactionSuccessful();
+				}
+				finally {
+					SmartStore.endTransaction(db);
+				}
+				checkpointId = null;
+				return;
+			}
+		}
+
+		runInChunks(AlterSoupStep.RE_INDEX_SOUP, soupTableName, new ChunkProcessor() {
+			@Override
+			public void process(long afterId, long[] ids) {
+				store.reIndexSoupChunk(soupName, soupTableName, indexSpecs, afterId, ids.length);
+			}
+
+			@Override
+			public void afterCommit(long[] ids) {
+				// Nothing to do
+			}
+		});
 	}
 
 
@@ -390,7 +475,7 @@ public class AlterSoupLongOperation extends LongOperation {
 	 * Step 6: drop old soup table
 	 */
 	protected void dropOldTable() {
-        db.beginTransaction();
+        SmartStore.beginTransaction(db);
         try {
 
             // Drop old table
@@ -407,7 +492,7 @@ public class AlterSoupLongOperation extends LongOperation {
             db.setTransactionSuccessful();
         }
         finally {
-            db.endTransaction();
+            SmartStore.endTransaction(db);
         }
 	}
 
@@ -445,9 +530,32 @@ public class AlterSoupLongOperation extends LongOperation {
     	details.put(OLD_INDEX_SPECS, IndexSpec.toJSON(oldIndexSpecs));
     	details.put(NEW_INDEX_SPECS, IndexSpec.toJSON(newIndexSpecs));
     	details.put(RE_INDEX_DATA, reIndexData);
+    	if (checkpointId != null) {
+    		details.put(CHECKPOINT_ID, checkpointId.longValue());
+    	}
 		return details;
 	}
 	
+	/**
+	 * Record id of last soup element processed by the step in progress in long operations status table
+	 * @param newCheckpointId or null to clear it
+	 */
+	protected void updateLongOperationDbRowCheckpoint(Long newCheckpointId) {
+		try {
+			JSONObject details = getDetails();
+			details.remove(CHECKPOINT_ID);
+			if (newCheckpointId != null) {
+				details.put(CHECKPOINT_ID, newCheckpointId.longValue());
+			}
+			ContentValues contentValues = new ContentValues();
+			contentValues.put(SmartStore.DETAILS_COL, details.toString());
+			contentValues.put(SmartStore.LAST_MODIFIED_COL, System.currentTimeMillis());
+			DBHelper.getInstance(db).update(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, contentValues, SmartStore.ID_PREDICATE, rowId + "");
+		} catch (JSONException e) {
+			throw new SmartStoreException("Could not record checkpoint for " + soupName, e);
+		}
+	}
+
 	/**
 	 * Update row in long operations status table for on-going alter soup operation
 	 * Delete row if newStatus is AlterStatus.LAST
@@ -469,12 +577,91 @@ public class AlterSoupLongOperation extends LongOperation {
         SmartStoreLogger.i(TAG, soupName + " " + newStatus);
 	}
 	
+	/**
+	 * Run step over rows of table in chunks of store.getLongOperationChunkSize() rows
+	 * Each chunk runs in its own transaction holding the database lock and records its last id as checkpoint,
+	 * the step picks up after the checkpoint recorded (if any) and is marked completed once no rows are left
+	 *
+	 * @param step step being run
+	 * @param table table providing the ids of the rows to process
+	 * @param processor
+	 */
+	private void runInChunks(AlterSoupStep step, String table, ChunkProcessor processor) {
+		int total;
+		int processed;
+		synchronized(db) {
+			total = DBHelper.getInstance(db).countRawCountQuery(db, "SELECT count(*) FROM " + table);
+			processed = checkpointId == null ? 0
+					: DBHelper.getInstance(db).countRawCountQuery(db, "SELECT count(*) FROM " + table + " WHERE " + SmartStore.ID_COL + " <= ?", checkpointId + "");
+		}
+
+		while (true) {
+			long[] ids;
+			synchronized(db) {
+				long afterId = checkpointId == null ? Long.MIN_VALUE : checkpointId;
+				SmartStore.beginTransaction(db);
+				try {
+					ids = getIdsAfter(table, afterId, store.getLongOperationChunkSize());
+					if (ids.length > 0) {
+						processor.process(afterId, ids);
+						updateLongOperationDbRowCheckpoint(ids[ids.length - 1]);
+					}
+					else {
+						updateLongOperationDbRowCheckpoint(null);
+						updateLongOperationDbRow(step);
+					}
+					db.setTransactionSuccessful();
+				}
+				finally {
+					SmartStore.endTransaction(db);
+				}
+				checkpointId = ids.length > 0 ? ids[ids.length - 1] : null;
+			}
+			if (ids.length == 0) {
+				break;
+			}
+			processor.afterCommit(ids);
+			processed += ids.length;
+			ProgressListener listener = store.getLongOperationProgressListener();
+			if (listener != null) {
+				listener.onProgress(soupName, step, processed, Math.max(processed, total));
+			}
+			store.pauseBetweenChunks();
+		}
+	}
+
 	/**
 	 * Helper method
 	 *
-	 * @return insert statement to copy data from soup old backing table to soup new backing table
+	 * @param table
+	 * @param afterId
+	 * @param limit
+	 * @return ids (at most limit of them) greater than afterId in ascending order
 	 */
-	private void copyOldData() {
+	private long[] getIdsAfter(String table, long afterId, int limit) {
+		Cursor c = null;
+		try {
+			c = DBHelper.getInstance(db).query(db, table, new String[] { SmartStore.ID_COL }, SmartStore.ID_COL + " ASC", limit + "",
+					SmartStore.ID_COL + " > ?", afterId + "");
+			long[] ids = new long[c.getCount()];
+			int counter = 0;
+			while (c.moveToNext()) {
+				ids[counter++] = c.getLong(0);
+			}
+			return ids;
+		} finally {
+			if (c != null) {
+				c.close();
+			}
+		}
+	}
+
+	/**
+	 * Helper method
+	 *
+	 * @return processor copying chunks of data from soup old backing table to soup new backing table
+	 */
+	private ChunkProcessor getCopyProcessor() {
 		Map<String, IndexSpec> mapOldSpecs = IndexSpec.mapForIndexSpecs(oldIndexSpecs);
 		Map<String, IndexSpec> mapNewSpecs = IndexSpec.mapForIndexSpecs(newIndexSpecs);
 
@@ -488,9 +675,16 @@ public class AlterSoupLongOperation extends LongOperation {
 		List<String> newColumns = new ArrayList<String>();
 
 		// Adding core columns
+		final boolean oldExternal = oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE);
+		final boolean newExternal = newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE);
+		final boolean oldBinary = oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_BINARY_ENCODING);
+		final boolean newBinary = newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_BINARY_ENCODING);
+		final boolean oldCompressed = oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_COMPRESSION);
+		final boolean newCompressed = newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_COMPRESSION);
+		final boolean reEncode = oldBinary != newBinary || oldCompressed != newCompressed;
 		String[] columns;
-		if (newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE) || oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
-			// either the new or old soup spec contains external storage, so do not add soup column to directly copy
+		if (newExternal || oldExternal || reEncode) {
+			// either the new or old soup spec contains external storage or the encoding / compression is changing, so do not add soup column to directly copy
 			columns = new String[] {SmartStore.ID_COL, SmartStore.CREATED_COL, SmartStore.LAST_MODIFIED_COL};
 		} else {
 			columns = new String[] {SmartStore.ID_COL, SmartStore.SOUP_COL, SmartStore.CREATED_COL, SmartStore.LAST_MODIFIED_COL};
@@ -517,14 +711,12 @@ public class AlterSoupLongOperation extends LongOperation {
 		}
 
 		// Compute copy statement
-		String copyToSoupTable = String.format("INSERT INTO %s (%s) SELECT %s FROM %s",
+		final String copyToSoupTable = String.format("INSERT INTO %s (%s) SELECT %s FROM %s WHERE %s",
 							soupTableName, TextUtils.join(",", newColumns),
-							TextUtils.join(",", oldColumns), getOldSoupTableName());
-
-		// Execute copy
-		db.execSQL(copyToSoupTable);
+							TextUtils.join(",", oldColumns), getOldSoupTableName(), CHUNK_PREDICATE);
 
 		// Fts
+		String ftsStatement = null;
 		if (IndexSpec.hasFTS(newIndexSpecs)) {
 
 			// Compute list of columns to copy from / list of columns to copy into for the fts table
@@ -548,56 +740,125 @@ public class AlterSoupLongOperation extends LongOperation {
 			}
 
 			// Compute copy statement for fts table
-			String copyToFtsTable = String.format("INSERT INTO %s%s (%s) SELECT %s FROM %s",
+			ftsStatement = String.format("INSERT INTO %s%s (%s) SELECT %s FROM %s WHERE %s",
 					soupTableName, SmartStore.FTS_SUFFIX, TextUtils.join(",", newColumnsFts),
-					TextUtils.join(",", oldColumnsFts), getOldSoupTableName());
-
-			// Execute copy
-			db.execSQL(copyToFtsTable);
+					TextUtils.join(",", oldColumnsFts), getOldSoupTableName(), CHUNK_PREDICATE);
 		}
+		final String copyToFtsTable = ftsStatement;
 
-		if (oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE) && !newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
-			// External to internal storage
-			Cursor c = null;
-			try {
-				c = db.query(getOldSoupTableName(), new String[] { SmartStore.ID_COL }, null, null, null, null, null);
-				if (c.moveToFirst()) {
-					Long[] ids = new Long[c.getCount()];
-					int counter = 0;
-					do {
-						ids[counter++] = c.getLong(0);
-					} while (c.moveToNext());
+		return new ChunkProcessor() {
+			@Override
+			public void process(long afterId, long[] ids) {
+				Object[] chunkArgs = new Object[] { afterId, ids[ids.length - 1] };
+
+				// Execute copy
+				db.execSQL(copyToSoupTable, chunkArgs);
+				if (copyToFtsTable != null) {
+					db.execSQL(copyToFtsTable, chunkArgs);
+				}
 
+				if (oldExternal && !newExternal) {
+					// External to internal storage (blobs are removed once the chunk is committed)
 					for (long id : ids) {
-                        String entry = ((DBOpenHelper) store.dbOpenHelper).loadSoupBlobAsString(soupTableName, id, store.passcode);
-                        ContentValues contentValues = new ContentValues();
-                        contentValues.put(SmartStore.SOUP_COL, entry);
-                        DBHelper.getInstance(db).update(db, soupTableName, contentValues, SmartStore.ID_PREDICATE, id + "");
-						((DBOpenHelper) store.dbOpenHelper).removeSoupBlob(soupTableName, new Long[] {id});
+						String entry = ((DBOpenHelper) store.dbOpenHelper).loadSoupBlobAsString(soupTableName, id, store.passcode);
+						ContentValues contentValues = new ContentValues();
+						putEntry(contentValues, entry, newBinary, newCompressed);
+						DBHelper.getInstance(db).update(db, soupTableName, contentValues, SmartStore.ID_PREDICATE, id + "");
+					}
+				} else if (!oldExternal && newExternal) {
+					// Internal to external storage
+					Cursor c = null;
+					try {
+						c = queryOldChunk(afterId, ids);
+						while (c.moveToNext()) {
+							long id = c.getLong(0);
+							String entry = getEntry(c, 1);
+							((DBOpenHelper) store.dbOpenHelper).saveSoupBlobFromString(soupTableName, id, entry, store.passcode, newCompressed);
+						}
+					} finally {
+						if (c != null) {
+							c.close();
+						}
+					}
+				} else if (!oldExternal && reEncode) {
+					// Changing encoding (JSON text to binary or binary to JSON text) or compression
+					Cursor c = null;
+					try {
+						c = queryOldChunk(afterId, ids);
+						while (c.moveToNext()) {
+							long id = c.getLong(0);
+							ContentValues contentValues = new ContentValues();
+							putEntry(contentValues, getEntry(c, 1), newBinary, newCompressed);
+							DBHelper.getInstance(db).update(db, soupTableName, contentValues, SmartStore.ID_PREDICATE, id + "");
+						}
+					} finally {
+						if (c != null) {
+							c.close();
+						}
 					}
 				}
-			} finally {
-				if (c != null) {
-					c.close();
+			}
+
+			@Override
+			public void afterCommit(long[] ids) {
+				if (oldExternal && !newExternal) {
+					((DBOpenHelper) store.dbOpenHelper).removeSoupBlob(soupTableName, ids);
 				}
 			}
-		} else if (!oldSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE) && newSoupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
-			// Internal to external storage
-			Cursor c = null;
+		};
+	}
+
+	/**
+	 * Helper method
+	 *
+	 * @param afterId
+	 * @param ids ids of rows in chunk in ascending order
+	 * @return cursor on ids and soup elements of chunk in old soup table
+	 */
+	private Cursor queryOldChunk(long afterId, long[] ids) {
+		return DBHelper.getInstance(db).query(db, getOldSoupTableName(), new String[] { SmartStore.ID_COL, SmartStore.SOUP_COL },
+				null, null, CHUNK_PREDICATE, afterId + "", ids[ids.length - 1] + "");
+	}
+
+	/**
+	 * Helper method
+	 *
+	 * @param c cursor on old soup table
+	 * @param columnIndex index of soup column
+	 * @return soup element as JSON text
+	 */
+	private String getEntry(Cursor c, int columnIndex) {
+		if (c.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
 			try {
-				c = db.query(getOldSoupTableName(), new String[] { SmartStore.ID_COL, SmartStore.SOUP_COL }, null, null, null, null, null);
-				if (c.moveToFirst()) {
-					do {
-						long id = c.getLong(0);
-						String entry = c.getString(1);
-						((DBOpenHelper) store.dbOpenHelper).saveSoupBlobFromString(soupTableName, id, entry, store.passcode);
-					} while (c.moveToNext());
-				}
-			} finally {
-				if (c != null) {
-					c.close();
-				}
+				return SmartStore.decodeSoupElt(c.getBlob(columnIndex), null).toString();
+			} catch (JSONException e) {
+				throw new SmartStoreException("Could not decode soup element", e);
+			}
+		}
+		return c.getString(columnIndex);
+	}
+
+	/**
+	 * Helper method
+	 *
+	 * @param contentValues
+	 * @param entry soup element as JSON text
+	 * @param binary true to store entry with the binary encoding
+	 * @param compressed true to compress entry if it is large enough (see SoupCompressor)
+	 */
+	private void putEntry(ContentValues contentValues, String entry, boolean binary, boolean compressed) {
+		try {
+			byte[] bytes = binary ? BinarySoupCodec.encode(entry) : null;
+			byte[] compressedBytes = compressed ? SoupCompressor.compress(binary ? bytes : entry.getBytes(UTF8), binary) : null;
+			if (compressedBytes != null) {
+				contentValues.put(SmartStore.SOUP_COL, compressedBytes);
+			} else if (binary) {
+				contentValues.put(SmartStore.SOUP_COL, bytes);
+			} else {
+				contentValues.put(SmartStore.SOUP_COL, entry);
 			}
+		} catch (JSONException e) {
+			throw new SmartStoreException("Could not encode soup element", e);
 		}
 	}
 	
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Encoder / decoder for soup elements stored with the binary encoding feature (see SoupSpec#FEATURE_BINARY_ENCODING)
+ *
+ * Format: a version byte followed by the encoded soup element
+ * Every value starts with a one byte tag:
+ * - null / false / true: tag only
+ * - integer: zig-zag varint
+ * - floating: 8 bytes (IEEE 754, big endian)
+ * - string: varint byte length followed by utf-8 bytes
+ * - array / object: varint byte length of content, varint count of items, items (objects: key as utf-8 string followed by value)
+ * Since every value is length-prefixed, values that are not needed can be skipped without being decoded
+ */
+public class BinarySoupCodec {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Version
+	private static final byte VERSION = 1;
+
+	// Tags
+	private static final byte NULL = 0;
+	private static final byte FALSE = 1;
+	private static final byte TRUE = 2;
+	private static final byte INTEGER = 3;
+	private static final byte FLOATING = 4;
+	private static final byte STRING = 5;
+	private static final byte ARRAY = 6;
+	private static final byte OBJECT = 7;
+
+	/**
+	 * Encode soup element
+	 * @param soupElt
+	 * @return bytes
+	 * @throws JSONException
+	 */
+	public static byte[] encode(JSONObject soupElt) throws JSONException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(VERSION);
+		writeValue(out, soupElt);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode soup element
+	 * @param bytes
+	 * @return soup element
+	 * @throws JSONException
+	 */
+	public static JSONObject decode(byte[] bytes) throws JSONException {
+		return decode(bytes, null);
+	}
+
+	/**
+	 * Decode soup element, only materializing the given top level fields
+	 * The other fields are skipped without being decoded
+	 * @param bytes
+	 * @param fields top level fields to decode or null to decode all fields
+	 * @return soup element (with only the given fields if fields is not null)
+	 * @throws JSONException
+	 */
+	public static JSONObject decode(byte[] bytes, Collection<String> fields) throws JSONException {
+		Reader reader = new Reader(bytes);
+		if (reader.readByte() != VERSION) {
+			throw new SmartStoreException("Unsupported binary soup encoding version");
+		}
+		if (reader.readByte() != OBJECT) {
+			throw new SmartStoreException("Encoded soup element is not an object");
+		}
+		return reader.readObject(fields);
+	}
+
+	/**
+	 * Convert JSON text into binary encoding
+	 * @param soupEltStr
+	 * @return bytes
+	 * @throws JSONException
+	 */
+	public static byte[] encode(String soupEltStr) throws JSONException {
+		return encode(new JSONObject(soupEltStr));
+	}
+
+	/**
+	 * Convert binary encoding into JSON text
+	 * @param bytes
+	 * @return JSON text
+	 * @throws JSONException
+	 */
+	public static String decodeToString(byte[] bytes) throws JSONException {
+		return decode(bytes).toString();
+	}
+
+	private static void writeValue(ByteArrayOutputStream out, Object value) throws JSONException {
+		if (value == null || value == JSONObject.NULL) {
+			out.write(NULL);
+		} else if (value instanceof Boolean) {
+			out.write((Boolean) value ? TRUE : FALSE);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			out.write(INTEGER);
+			long l = ((Number) value).longValue();
+			writeVarint(out, (l << 1) ^ (l >> 63));
+		} else if (value instanceof Number) {
+			out.write(FLOATING);
+			long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				out.write((int) (bits >>> shift));
+			}
+		} else if (value instanceof JSONObject) {
+			JSONObject obj = (JSONObject) value;
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			writeVarint(content, obj.length());
+			Iterator<String> keys = obj.keys();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				writeString(content, key);
+				writeValue(content, obj.get(key));
+			}
+			out.write(OBJECT);
+			writeContent(out, content);
+		} else if (value instanceof JSONArray) {
+			JSONArray arr = (JSONArray) value;
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			writeVarint(content, arr.length());
+			for (int i = 0; i < arr.length(); i++) {
+				writeValue(content, arr.get(i));
+			}
+			out.write(ARRAY);
+			writeContent(out, content);
+		} else {
+			out.write(STRING);
+			writeString(out, value.toString());
+		}
+	}
+
+	private static void writeContent(ByteArrayOutputStream out, ByteArrayOutputStream content) {
+		writeVarint(out, content.size());
+		byte[] bytes = content.toByteArray();
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String str) {
+		byte[] bytes = str.getBytes(UTF8);
+		writeVarint(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * Reads values from encoded bytes
+	 */
+	private static class Reader {
+		private final byte[] bytes;
+		private int position;
+
+		Reader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		byte readByte() {
+			if (position >= bytes.length) {
+				throw new SmartStoreException("Truncated binary soup element");
+			}
+			return bytes[position++];
+		}
+
+		long readVarint() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new SmartStoreException("Malformed varint in binary soup element");
+		}
+
+		String readString() {
+			int length = (int) readVarint();
+			if (length < 0 || position + length > bytes.length) {
+				throw new SmartStoreException("Truncated binary soup element");
+			}
+			String str = new String(bytes, position, length, UTF8);
+			position += length;
+			return str;
+		}
+
+		Object readValue() throws JSONException {
+			byte tag = readByte();
+			switch (tag) {
+				case NULL: return JSONObject.NULL;
+				case FALSE: return Boolean.FALSE;
+				case TRUE: return Boolean.TRUE;
+				case INTEGER:
+					long zigzag = readVarint();
+					long l = (zigzag >>> 1) ^ -(zigzag & 1);
+					// Same types as JSON text parsing
+					return (l == (int) l ? (Object) (int) l : (Object) l);
+				case FLOATING:
+					long bits = 0;
+					for (int i = 0; i < 8; i++) {
+						bits = (bits << 8) | (readByte() & 0xFF);
+					}
+					return Double.longBitsToDouble(bits);
+				case STRING: return readString();
+				case ARRAY:
+					readVarint(); // content length
+					int count = (int) readVarint();
+					JSONArray arr = new JSONArray();
+					for (int i = 0; i < count; i++) {
+						arr.put(readValue());
+					}
+					return arr;
+				case OBJECT:
+					return readObject(null);
+				default:
+					throw new SmartStoreException("Unknown tag in binary soup element: " + tag);
+			}
+		}
+
+		/**
+		 * Read object (after its tag)
+		 * @param fields fields to decode or null to decode all fields
+		 */
+		JSONObject readObject(Collection<String> fields) throws JSONException {
+			readVarint(); // content length
+			int count = (int) readVarint();
+			JSONObject obj = new JSONObject();
+			for (int i = 0; i < count; i++) {
+				String key = readString();
+				if (fields == null || fields.contains(key)) {
+					obj.put(key, readValue());
+				} else {
+					skipValue();
+				}
+			}
+			return obj;
+		}
+
+		void skipValue() {
+			byte tag = readByte();
+			switch (tag) {
+				case NULL:
+				case FALSE:
+				case TRUE: break;
+				case INTEGER: readVarint(); break;
+				case FLOATING: position += 8; break;
+				case STRING:
+				case ARRAY:
+				case OBJECT:
+					int length = (int) readVarint();
+					position += length;
+					break;
+				default:
+					throw new SmartStoreException("Unknown tag in binary soup element: " + tag);
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simple class to represent a compound index spec: a database index on one or more indexed paths
+ * optionally restricted to the soup elements matching a predicate (partial index)
+ *
+ * The predicate is a sql expression where indexed paths are referenced as {path}
+ * e.g. to index Id only for locally modified records: new CompoundIndexSpec(new String[] {"Id"}, "{__local__} = 'true'")
+ * NB: queries only use a partial index if their where clause contains the predicate (with the same constant)
+ */
+public class CompoundIndexSpec {
+    public final String[] paths;
+    public final String predicate;
+
+    private static final String PATHS = "paths";
+    private static final String PREDICATE = "predicate";
+
+    /**
+     * @param paths indexed paths (in index order)
+     */
+    public CompoundIndexSpec(String... paths) {
+        this(paths, null);
+    }
+
+    /**
+     * @param paths indexed paths (in index order)
+     * @param predicate predicate referencing indexed paths as {path} or null for a full index
+     */
+    public CompoundIndexSpec(String[] paths, String predicate) {
+        this.paths = paths;
+        this.predicate = predicate;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+        result = 31 * result + Arrays.hashCode(paths);
+        if (predicate != null)
+            result = 31 * result + predicate.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null)
+            return false;
+        if (obj == this)
+            return true;
+        if (!(obj instanceof CompoundIndexSpec))
+            return false;
+
+        CompoundIndexSpec rhs = (CompoundIndexSpec) obj;
+        return Arrays.equals(paths, rhs.paths)
+                && (predicate == null ? rhs.predicate == null : predicate.equals(rhs.predicate));
+    }
+
+    /**
+     * @return JSONObject for this CompoundIndexSpec
+     * @throws JSONException
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(PATHS, new JSONArray(Arrays.asList(paths)));
+        json.put(PREDICATE, predicate);
+        return json;
+    }
+
+    /**
+     * @param compoundIndexSpecs
+     * @return JSONArray for the array of CompoundIndexSpec's
+     * @throws JSONException
+     */
+    public static JSONArray toJSON(CompoundIndexSpec[] compoundIndexSpecs) throws JSONException {
+        JSONArray json = new JSONArray();
+        for (CompoundIndexSpec compoundIndexSpec : compoundIndexSpecs) {
+            json.put(compoundIndexSpec.toJSON());
+        }
+        return json;
+    }
+
+    /**
+     * Return CompoundIndexSpec given JSONObject
+     * @param json
+     * @return
+     * @throws JSONException
+     */
+    public static CompoundIndexSpec fromJSON(JSONObject json) throws JSONException {
+        JSONArray pathsJson = json.getJSONArray(PATHS);
+        String[] paths = new String[pathsJson.length()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = pathsJson.getString(i);
+        }
+        String predicate = json.isNull(PREDICATE) ? null : json.getString(PREDICATE);
+        return new CompoundIndexSpec(paths, predicate);
+    }
+
+    /**
+     * @param jsonArray
+     * @return CompoundIndexSpec[] from a JSONArray
+     * @throws JSONException
+     */
+    public static CompoundIndexSpec[] fromJSON(JSONArray jsonArray) throws JSONException {
+        List<CompoundIndexSpec> list = new ArrayList<CompoundIndexSpec>();
+        for (int i = 0; i < jsonArray.length(); i++) {
+            list.add(CompoundIndexSpec.fromJSON(jsonArray.getJSONObject(i)));
+        }
+        return list.toArray(new CompoundIndexSpec[0]);
+    }
+}
@@ -47,10 +47,16 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * SmartStore Database Helper
@@ -80,28 +86,59 @@ public class DBHelper {
 		}
 		DBHelper instance = INSTANCES.get(db);
 		if (instance == null) {
-			instance = new DBHelper();
+			instance = new DBHelper(db);
 			INSTANCES.put(db, instance);
 		}
 		return instance;
 	}
 
+	/**
+	 * Releases the instance of this class associated with the database specified, closing its statements.
+	 * To be called right before the database is closed for good.
+	 *
+	 * @param db Database.
+	 */
+	static synchronized void releaseInstance(SQLiteDatabase db) {
+		DBHelper instance = (INSTANCES == null ? null : INSTANCES.remove(db));
+		if (instance != null) {
+			instance.clearMemoryCache();
+		}
+		SmartSqlHelper.releaseInstance(db);
+	}
+
+	// Database this helper is associated with
+	private final SQLiteDatabase db;
+
 	// Some queries
 	private static final String COUNT_SELECT = "SELECT count(*) FROM %s %s";
 	private static final String SEQ_SELECT = "SELECT seq FROM SQLITE_SEQUENCE WHERE name = ?";
 	private static final String LIMIT_SELECT = "SELECT * FROM (%s) LIMIT %s";
 
+	// NB: soup meta data caches are read without holding the database lock by queries running on read-only connections
+
 	// Cache of soup name to soup table names
-	private Map<String, String> soupNameToTableNamesMap = new HashMap<String, String>();
+	private Map<String, String> soupNameToTableNamesMap = new ConcurrentHashMap<String, String>();
 
 	// Cache of soup name to index specs
-	private Map<String, IndexSpec[]> soupNameToIndexSpecsMap = new HashMap<String, IndexSpec[]>();
+	private Map<String, IndexSpec[]> soupNameToIndexSpecsMap = new ConcurrentHashMap<String, IndexSpec[]>();
+
+	// Cache of soup name to projector for index paths (same order as cached index specs)
+	private Map<String, PathProjector.Batch> soupNameToIndexProjectorMap = new ConcurrentHashMap<String, PathProjector.Batch>();
 
 	// Cache of soup name to boolean indicating if soup uses FTS
-	private Map<String, Boolean> soupNameToHasFTS = new HashMap<String, Boolean>();
+	private Map<String, Boolean> soupNameToHasFTS = new ConcurrentHashMap<String, Boolean>();
 
 	// Cache of soup name to soup features
-	private Map<String, List<String>> soupNameToFeaturesMap = new HashMap<>();
+	private Map<String, List<String>> soupNameToFeaturesMap = new ConcurrentHashMap<>();
+
+	// Cache of soup name to compound index specs
+	private Map<String, CompoundIndexSpec[]> soupNameToCompoundIndexSpecsMap = new ConcurrentHashMap<>();
+
+	// Soup name to entry caches (soups using the entry cache feature only)
+	private ConcurrentHashMap<String, SoupEntryCache> soupNameToEntryCacheMap = new ConcurrentHashMap<>();
+
+	// Soup name to thread copying the soup's data for an alter soup (see AlterSoupLongOperation#copyTable)
+	private Map<String, Thread> soupNameToCopyingThreadMap = new ConcurrentHashMap<>();
 
 	// Cache of table name to get-next-id compiled statements
 	private Map<String, SQLiteStatement> tableNameToNextIdStatementsMap = new HashMap<String, SQLiteStatement>();
@@ -109,8 +146,14 @@ public class DBHelper {
 	// Cache of table name to insert helpers
 	private Map<String, InsertHelper> tableNameToInsertHelpersMap = new HashMap<String, InsertHelper>();
 
-	// Cache of raw count sql to compiled statements
-	private Map<String, SQLiteStatement> rawCountSqlToStatementsMap = new HashMap<String, SQLiteStatement>();
+	// Default maximum number of compiled statements kept in the statements cache
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+	// Largest number of ids bound to a single statement (power of two, well under sqlite's limit on variables)
+	static final int MAX_IDS_PER_STATEMENT = 128;
+
+	// Cache of sql (update, delete and count statements) to compiled statements
+	private final StatementCache statementCache = new StatementCache(DEFAULT_STATEMENT_CACHE_SIZE);
 
 	// Boolean to turn explain query plan capture on or off
 	private boolean captureExplainQueryPlan;
@@ -118,6 +161,10 @@ public class DBHelper {
 	// Last explain query plan
 	private JSONObject lastExplainQueryPlan;
 
+	protected DBHelper(SQLiteDatabase db) {
+		this.db = db;
+	}
+
 	/**
 	 * @param soupName
 	 * @param tableName
@@ -139,7 +186,9 @@ public class DBHelper {
 	 * @param indexSpecs
 	 */
 	public void cacheIndexSpecs(String soupName, IndexSpec[] indexSpecs) {
-		soupNameToIndexSpecsMap.put(soupName, indexSpecs.clone());
+		IndexSpec[] cachedIndexSpecs = indexSpecs.clone();
+		soupNameToIndexProjectorMap.put(soupName, IndexSpec.compileProjector(cachedIndexSpecs));
+		soupNameToIndexSpecsMap.put(soupName, cachedIndexSpecs);
 		soupNameToHasFTS.put(soupName, IndexSpec.hasFTS(indexSpecs));
 	}
 
@@ -158,7 +207,9 @@ public class DBHelper {
 	 * @param features
 	 */
 	public void cacheFeatures(String soupName, List<String> features) {
-		soupNameToFeaturesMap.put(soupName, features);
+		if (features != null) {
+			soupNameToFeaturesMap.put(soupName, features);
+		}
 	}
 
 	/**
@@ -169,6 +220,121 @@ public class DBHelper {
 		return soupNameToFeaturesMap.get(soupName);
 	}
 
+	/**
+	 * @param soupName
+	 * @param compoundIndexSpecs
+	 */
+	public void cacheCompoundIndexSpecs(String soupName, CompoundIndexSpec[] compoundIndexSpecs) {
+		soupNameToCompoundIndexSpecsMap.put(soupName, compoundIndexSpecs.clone());
+	}
+
+	/**
+	 * @param soupName
+	 * @return
+	 */
+	public CompoundIndexSpec[] getCachedCompoundIndexSpecs(String soupName) {
+		return soupNameToCompoundIndexSpecsMap.get(soupName);
+	}
+
+	/**
+	 * Return entry cache of soup (created on first use)
+	 * Only call for soups using the entry cache feature
+	 * @param soupName
+	 * @return
+	 */
+	public SoupEntryCache getEntryCache(String soupName) {
+		SoupEntryCache entryCache = soupNameToEntryCacheMap.get(soupName);
+		if (entryCache == null) {
+			entryCache = new SoupEntryCache(SoupEntryCache.DEFAULT_MAX_SIZE);
+			SoupEntryCache existingEntryCache = soupNameToEntryCacheMap.putIfAbsent(soupName, entryCache);
+			if (existingEntryCache != null) {
+				entryCache = existingEntryCache;
+			}
+		}
+		return entryCache;
+	}
+
+	/**
+	 * Remove soup elements from entry cache of soup (if any)
+	 * @param soupName
+	 * @param soupEntryIds
+	 */
+	public void removeFromEntryCache(String soupName, long... soupEntryIds) {
+		SoupEntryCache entryCache = soupNameToEntryCacheMap.get(soupName);
+		if (entryCache != null) {
+			entryCache.remove(soupEntryIds);
+		}
+	}
+
+	/**
+	 * Record that the current thread started copying the data of the soup for an alter soup
+	 * Until endSoupCopy is called, other threads accessing the soup wait (see waitForSoupCopy)
+	 * Must be called holding the database lock
+	 * @param soupName
+	 */
+	public void startSoupCopy(String soupName) {
+		soupNameToCopyingThreadMap.put(soupName, Thread.currentThread());
+	}
+
+	/**
+	 * Record that the data of the soup is done being copied and wake up threads waiting for it
+	 * @param db
+	 * @param soupName
+	 */
+	public void endSoupCopy(SQLiteDatabase db, String soupName) {
+		synchronized (db) {
+			soupNameToCopyingThreadMap.remove(soupName);
+			db.notifyAll();
+		}
+	}
+
+	/**
+	 * Wait until none of the soups have their data being copied by an alter soup running on another thread
+	 * The database lock is released while waiting
+	 * Throws an exception instead of waiting when called from a transaction (the copy could not make progress)
+	 * @param db
+	 * @param soupNames
+	 * @return true if it had to wait
+	 */
+	public boolean waitForSoupCopy(SQLiteDatabase db, Collection<String> soupNames) {
+		if (soupNameToCopyingThreadMap.isEmpty()) {
+			return false;
+		}
+		boolean waited = false;
+		synchronized (db) {
+			for (String soupName : soupNames) {
+				while (true) {
+					Thread copyingThread = soupNameToCopyingThreadMap.get(soupName);
+					if (copyingThread == null || copyingThread == Thread.currentThread()) {
+						break;
+					}
+					if (db.inTransaction()) {
+						throw new SmartStoreException("Soup: " + soupName + " is being altered and cannot be accessed from a transaction until its data is copied");
+					}
+					try {
+						db.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SmartStoreException("Interrupted while waiting for alter of soup: " + soupName, e);
+					}
+					waited = true;
+				}
+			}
+		}
+		return waited;
+	}
+
+	/**
+	 * Remove all soup elements from entry cache of soup (if any)
+	 * @param soupName
+	 */
+	public void clearEntryCache(String soupName) {
+		SoupEntryCache entryCache = soupNameToEntryCacheMap.get(soupName);
+		if (entryCache != null) {
+			entryCache.clear();
+		}
+	}
+
 	/**
 	 * @param soupName
 	 * @return
@@ -191,28 +357,21 @@ public class DBHelper {
 			if (prog != null) 
 				prog.close();
 			
-			cleanupRawCountSqlToStatementMaps(tableName);
+			synchronized (statementCache) {
+				statementCache.removeStatementsFor(tableName);
+				statementCache.removeStatementsFor(tableName + SmartStore.FTS_SUFFIX);
+			}
 		}
 		soupNameToTableNamesMap.remove(soupName);
 		soupNameToIndexSpecsMap.remove(soupName);
+		soupNameToIndexProjectorMap.remove(soupName);
 		soupNameToHasFTS.remove(soupName);
 		soupNameToFeaturesMap.remove(soupName);
-	}
+		soupNameToCompoundIndexSpecsMap.remove(soupName);
+		soupNameToEntryCacheMap.remove(soupName);
 
-	private void cleanupRawCountSqlToStatementMaps(String tableName) {
-		List<String> countSqlToRemove = new ArrayList<String>();
-		for (Entry<String, SQLiteStatement>  entry : rawCountSqlToStatementsMap.entrySet()) {
-			String countSql = entry.getKey();
-			if (countSql.contains(tableName)) {
-				SQLiteStatement countProg = entry.getValue();
-				if (countProg != null)
-					countProg.close();
-				countSqlToRemove.add(countSql);
-			}
-		}
-		for (String countSql : countSqlToRemove) {
-			rawCountSqlToStatementsMap.remove(countSql);
-		}
+		// Converted smart sql referencing the soup is no longer valid
+		SmartSqlHelper.getInstance(db).removeFromCache(soupName);
 	}
 
 	/**
@@ -273,7 +432,7 @@ public class DBHelper {
 	 * @param whereArgs
 	 * @return
 	 */
-	public Cursor limitRawQuery(SQLiteDatabase db, String sql, String limit, String... whereArgs) {
+	public Cursor limitRawQuery(SQLiteDatabase db, String sql, String limit, Object... whereArgs) {
 		String limitSql = String.format(LIMIT_SELECT, sql, limit);
 		if (captureExplainQueryPlan) {
 			runExplainQueryPlan(db, limitSql, whereArgs);
@@ -281,7 +440,21 @@ public class DBHelper {
 		return db.rawQuery(limitSql, whereArgs);
 	}
 
-	private void runExplainQueryPlan(SQLiteDatabase db, String sql, String... whereArgs) {
+	/**
+	 * Runs a raw query (without limit)
+	 * @param db
+	 * @param sql
+	 * @param whereArgs
+	 * @return
+	 */
+	public Cursor rawQuery(SQLiteDatabase db, String sql, Object... whereArgs) {
+		if (captureExplainQueryPlan) {
+			runExplainQueryPlan(db, sql, whereArgs);
+		}
+		return db.rawQuery(sql, whereArgs);
+	}
+
+	private void runExplainQueryPlan(SQLiteDatabase db, String sql, Object... whereArgs) {
 		JSONObject lastExplain = new JSONObject();
 		Cursor c = null;
 		try {
@@ -315,23 +488,37 @@ public class DBHelper {
 	 * @param whereArgs
 	 * @return
 	 */
-	public int countRawCountQuery(SQLiteDatabase db, String countSql, String... whereArgs) {
-		SQLiteStatement prog = rawCountSqlToStatementsMap.get(countSql);
-		if (prog == null) {
-			prog = db.compileStatement(countSql);
-			rawCountSqlToStatementsMap.put(countSql, prog);
-		}
-		if (whereArgs != null) {
-			for (int i=0; i<whereArgs.length; i++) {
-				prog.bindString(i+1, whereArgs[i]);
-			}
-		}
+	public int countRawCountQuery(SQLiteDatabase db, String countSql, Object... whereArgs) {
+		SQLiteStatement prog = acquireStatement(db, countSql);
 		try {
-			int count =  (int) prog.simpleQueryForLong();
-			prog.clearBindings();
-			return count;
+			if (whereArgs != null) {
+				for (int i = 0; i < whereArgs.length; i++) {
+					bindValue(prog, i + 1, whereArgs[i]);
+				}
+			}
+			return (int) prog.simpleQueryForLong();
 		} catch (SQLiteDoneException e) {
 			return -1;
+		} finally {
+			releaseStatement(countSql, prog);
+		}
+	}
+
+	/**
+	 * Does a count for a raw count query without going through the compiled statements cache
+	 * To be used against read-only connections (compiled statements belong to the connection they were compiled on)
+	 * @param db
+	 * @param countSql
+	 * @param whereArgs
+	 * @return
+	 */
+	public int countRawCountQueryUncached(SQLiteDatabase db, String countSql, Object... whereArgs) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery(countSql, whereArgs);
+			return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+		} finally {
+			safeClose(cursor);
 		}
 	}
 
@@ -342,7 +529,7 @@ public class DBHelper {
 	 * @param whereArgs
 	 * @return
 	 */
-	public int countRawQuery(SQLiteDatabase db, String sql, String... whereArgs) {
+	public int countRawQuery(SQLiteDatabase db, String sql, Object... whereArgs) {
 		String countSql = String.format(COUNT_SELECT, "", "(" + sql + ")");
 		return countRawCountQuery(db, countSql, whereArgs);
 	}
@@ -384,18 +571,225 @@ public class DBHelper {
 	 * @return number of rows affected
 	 */
 	public int update(SQLiteDatabase db, String table, ContentValues contentValues, String whereClause, String... whereArgs) {
-		return db.update(table, contentValues, whereClause, whereArgs);
+		// Sorting columns so that the same set of columns always produces the same sql
+		List<String> columns = new ArrayList<String>(contentValues.keySet());
+		Collections.sort(columns);
+		StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+		for (int i = 0; i < columns.size(); i++) {
+			sql.append(i > 0 ? ", " : "").append(columns.get(i)).append(" = ?");
+		}
+		if (whereClause != null) {
+			sql.append(" WHERE ").append(whereClause);
+		}
+		String updateSql = sql.toString();
+		SQLiteStatement prog = acquireStatement(db, updateSql);
+		try {
+			for (int i = 0; i < columns.size(); i++) {
+				bindValue(prog, i + 1, contentValues.get(columns.get(i)));
+			}
+			bindStrings(prog, columns.size() + 1, whereArgs);
+			return prog.executeUpdateDelete();
+		} finally {
+			releaseStatement(updateSql, prog);
+		}
 	}
 
 	/**
-	 * Does a delete (after first logging the delete statement)
+	 * Does a delete
 	 * @param db
 	 * @param table
 	 * @param whereClause
 	 * @param whereArgs
 	 */
 	public void delete(SQLiteDatabase db, String table, String whereClause, String... whereArgs) {
-		db.delete(table, whereClause, whereArgs);
+		deleteAndCount(db, table, whereClause, whereArgs);
+	}
+
+	/**
+	 * Does a delete
+	 * @param db
+	 * @param table
+	 * @param whereClause
+	 * @param whereArgs
+	 * @return number of rows affected
+	 */
+	public int deleteAndCount(SQLiteDatabase db, String table, String whereClause, String... whereArgs) {
+		String sql = "DELETE FROM " + table + (whereClause != null ? " WHERE " + whereClause : "");
+		SQLiteStatement prog = acquireStatement(db, sql);
+		try {
+			bindStrings(prog, 1, whereArgs);
+			return prog.executeUpdateDelete();
+		} finally {
+			releaseStatement(sql, prog);
+		}
+	}
+
+	/**
+	 * Deletes rows given by their ids
+	 * Ids are deleted in batches, each batch is padded (by repeating its last id) to a power of two
+	 * so that only a handful of distinct statements end up in the statements cache
+	 * @param db
+	 * @param table
+	 * @param idColumn
+	 * @param ids
+	 * @return number of rows affected
+	 */
+	public int deleteByIds(SQLiteDatabase db, String table, String idColumn, long... ids) {
+		int deleted = 0;
+		for (int start = 0; start < ids.length; start += MAX_IDS_PER_STATEMENT) {
+			int count = Math.min(MAX_IDS_PER_STATEMENT, ids.length - start);
+			int placeholders = getPaddedIdCount(count);
+			String sql = "DELETE FROM " + table + " WHERE " + getIdsInPredicate(idColumn, placeholders);
+			SQLiteStatement prog = acquireStatement(db, sql);
+			try {
+				for (int i = 0; i < placeholders; i++) {
+					prog.bindLong(i + 1, ids[start + Math.min(i, count - 1)]);
+				}
+				deleted += prog.executeUpdateDelete();
+			} finally {
+				releaseStatement(sql, prog);
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * @param count number of ids in a batch (at most MAX_IDS_PER_STATEMENT)
+	 * @return number of placeholders to use for the batch (next power of two)
+	 */
+	static int getPaddedIdCount(int count) {
+		return Integer.highestOneBit(count) == count ? count : Integer.highestOneBit(count) << 1;
+	}
+
+	/**
+	 * @param idColumn
+	 * @param placeholders
+	 * @return predicate matching idColumn against the given number of bound ids
+	 */
+	static String getIdsInPredicate(String idColumn, int placeholders) {
+		StringBuilder predicate = new StringBuilder(idColumn).append(" IN (");
+		for (int i = 0; i < placeholders; i++) {
+			predicate.append(i > 0 ? ",?" : "?");
+		}
+		return predicate.append(")").toString();
+	}
+
+	/**
+	 * Sets the maximum number of compiled statements kept in the statements cache
+	 * Least recently used statements beyond that number are closed (so it should be called before the store is used)
+	 * @param maxSize (0 to disable caching)
+	 */
+	public void setStatementCacheMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new SmartStoreException("Invalid statement cache size: " + maxSize);
+		}
+		synchronized (statementCache) {
+			statementCache.setMaxSize(maxSize);
+		}
+	}
+
+	/**
+	 * @return number of compiled statements currently in the statements cache
+	 */
+	public int getStatementCacheSize() {
+		synchronized (statementCache) {
+			return statementCache.size();
+		}
+	}
+
+	/**
+	 * @return number of statements found in the statements cache
+	 */
+	public long getStatementCacheHits() {
+		synchronized (statementCache) {
+			return statementCache.hits;
+		}
+	}
+
+	/**
+	 * @return number of statements that had to be compiled
+	 */
+	public long getStatementCacheMisses() {
+		synchronized (statementCache) {
+			return statementCache.misses;
+		}
+	}
+
+	/**
+	 * @return number of statements closed because the statements cache was full
+	 */
+	public long getStatementCacheEvictions() {
+		synchronized (statementCache) {
+			return statementCache.evictions;
+		}
+	}
+
+	/**
+	 * Returns compiled statement for sql from the statements cache (compiling and caching it if needed)
+	 * NB: statements are only used while holding the database lock, statement must be handed back with releaseStatement
+	 * @param db
+	 * @param sql
+	 * @return
+	 */
+	private SQLiteStatement acquireStatement(SQLiteDatabase db, String sql) {
+		synchronized (statementCache) {
+			SQLiteStatement prog = statementCache.get(sql);
+			if (prog != null) {
+				statementCache.hits++;
+				return prog;
+			}
+			statementCache.misses++;
+			prog = db.compileStatement(sql);
+			if (statementCache.maxSize > 0) {
+				statementCache.put(sql, prog);
+			}
+			return prog;
+		}
+	}
+
+	/**
+	 * Hands back statement obtained from acquireStatement
+	 * @param sql sql the statement was acquired for
+	 * @param prog
+	 */
+	private void releaseStatement(String sql, SQLiteStatement prog) {
+		synchronized (statementCache) {
+			if (statementCache.get(sql) == prog) {
+				prog.clearBindings();
+			} else {
+				prog.close();
+			}
+		}
+	}
+
+	private static void bindStrings(SQLiteStatement prog, int firstIndex, String... args) {
+		if (args != null) {
+			for (int i = 0; i < args.length; i++) {
+				prog.bindString(firstIndex + i, args[i]);
+			}
+		}
+	}
+
+	/**
+	 * Binds value the same way content values are bound by SQLiteDatabase
+	 * @param prog
+	 * @param index
+	 * @param value
+	 */
+	static void bindValue(SQLiteStatement prog, int index, Object value) {
+		if (value == null) {
+			prog.bindNull(index);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			prog.bindLong(index, ((Number) value).longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			prog.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof Boolean) {
+			prog.bindLong(index, (Boolean) value ? 1 : 0);
+		} else if (value instanceof byte[]) {
+			prog.bindBlob(index, (byte[]) value);
+		} else {
+			prog.bindString(index, value.toString());
+		}
 	}
 
 	/**
@@ -436,17 +830,20 @@ public class DBHelper {
 		for (final SQLiteStatement prog : tableNameToNextIdStatementsMap.values()) {
 			prog.close();
 		}
-		for (final SQLiteStatement rawCountSql : rawCountSqlToStatementsMap.values()) {
-			rawCountSql.close();
+		synchronized (statementCache) {
+			statementCache.closeAll();
 		}
 
 		// Clears all maps.
 		soupNameToTableNamesMap.clear();
 		soupNameToIndexSpecsMap.clear();
+		soupNameToIndexProjectorMap.clear();
 		soupNameToFeaturesMap.clear();
+		soupNameToCompoundIndexSpecsMap.clear();
+		soupNameToEntryCacheMap.clear();
 		tableNameToInsertHelpersMap.clear();
 		tableNameToNextIdStatementsMap.clear();
-		rawCountSqlToStatementsMap.clear();
+		SmartSqlHelper.getInstance(db).clearCache();
 	}
 
     /**
@@ -465,6 +862,24 @@ public class DBHelper {
         throw new SmartStoreException(String.format("%s does not have an index on %s", soupName, path));
     }
 
+    /**
+     * Return projector for the index paths of a soup
+     * @param db
+     * @param soupName
+     * @return projector whose values are in the same order as the index specs returned by getIndexSpecs
+     */
+    public PathProjector.Batch getIndexProjector(SQLiteDatabase db, String soupName) {
+        PathProjector.Batch projector = soupNameToIndexProjectorMap.get(soupName);
+        if (projector == null) {
+            IndexSpec[] indexSpecs = getIndexSpecs(db, soupName);
+            projector = soupNameToIndexProjectorMap.get(soupName);
+            if (projector == null) {
+                projector = IndexSpec.compileProjector(indexSpecs);
+            }
+        }
+        return projector;
+    }
+
     /**
      * Read index specs back from the soup index map table
      * @param db
@@ -529,6 +944,38 @@ public class DBHelper {
 		return features;
 	}
 
+	/**
+	 * Return compound index specs of soup
+	 * @param db
+	 * @param soupName
+	 * @return
+	 */
+	public CompoundIndexSpec[] getCompoundIndexSpecs(SQLiteDatabase db, String soupName) {
+		CompoundIndexSpec[] compoundIndexSpecs = getCachedCompoundIndexSpecs(soupName);
+		if (compoundIndexSpecs == null) {
+			compoundIndexSpecs = getCompoundIndexSpecsFromDb(db, soupName);
+			cacheCompoundIndexSpecs(soupName, compoundIndexSpecs);
+		}
+		return compoundIndexSpecs;
+	}
+
+	protected CompoundIndexSpec[] getCompoundIndexSpecsFromDb(SQLiteDatabase db, String soupName) {
+		Cursor cursor = null;
+		List<CompoundIndexSpec> compoundIndexSpecs = new ArrayList<CompoundIndexSpec>();
+		try {
+			cursor = query(db, SmartStore.SOUP_COMPOUND_INDEX_MAP_TABLE, new String[] {SmartStore.SPEC_COL}, "rowid ASC",
+					null, SmartStore.SOUP_NAME_PREDICATE, soupName);
+			while (cursor.moveToNext()) {
+				compoundIndexSpecs.add(CompoundIndexSpec.fromJSON(new JSONObject(cursor.getString(0))));
+			}
+		} catch (JSONException e) {
+			throw new SmartStoreException("Invalid compound index spec for soup: " + soupName, e);
+		} finally {
+			safeClose(cursor);
+		}
+		return compoundIndexSpecs.toArray(new CompoundIndexSpec[0]);
+	}
+
 	/**
 	 * Queries the database for features that belong to the given soup name.
 	 *
@@ -614,4 +1061,63 @@ public class DBHelper {
             cursor.close();
         }
     }
+
+	/**
+	 * LRU cache of sql to compiled statements, statements are closed when evicted
+	 */
+	private static class StatementCache extends LinkedHashMap<String, SQLiteStatement> {
+
+		private int maxSize;
+		private long hits;
+		private long misses;
+		private long evictions;
+
+		StatementCache(int maxSize) {
+			super(16, 0.75f, true /* access order */);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, SQLiteStatement> eldest) {
+			if (size() > maxSize) {
+				eldest.getValue().close();
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+
+		void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+			Iterator<SQLiteStatement> iterator = values().iterator();
+			while (size() > maxSize && iterator.hasNext()) {
+				iterator.next().close();
+				iterator.remove();
+				evictions++;
+			}
+		}
+
+		/**
+		 * Close and remove statements referencing the given table (as a whole identifier, e.g. not TABLE_1 for TABLE_10)
+		 * @param tableName
+		 */
+		void removeStatementsFor(String tableName) {
+			Pattern tablePattern = Pattern.compile("(?<![A-Za-z0-9_])" + Pattern.quote(tableName) + "(?![A-Za-z0-9_])");
+			Iterator<Entry<String, SQLiteStatement>> iterator = entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry<String, SQLiteStatement> entry = iterator.next();
+				if (tablePattern.matcher(entry.getKey()).find()) {
+					entry.getValue().close();
+					iterator.remove();
+				}
+			}
+		}
+
+		void closeAll() {
+			for (SQLiteStatement prog : values()) {
+				prog.close();
+			}
+			clear();
+		}
+	}
 }
@@ -27,7 +27,10 @@
 package com.salesforce.androidsdk.smartstore.store;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonWriter;
 
 import com.salesforce.androidsdk.accounts.UserAccount;
 import com.salesforce.androidsdk.analytics.EventBuilderHelper;
@@ -38,21 +41,36 @@ import net.sqlcipher.database.SQLiteDatabase;
 import net.sqlcipher.database.SQLiteDatabaseHook;
 import net.sqlcipher.database.SQLiteOpenHelper;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Helper class to manage SmartStore's database creation and version management.
@@ -62,17 +80,65 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	// 1 --> up until 2.3
 	// 2 --> starting at 2.3 (new meta data table long_operations_status)
 	// 3 --> starting at 4.3 (soup_names table changes to soup_attr)
-	public static final int DB_VERSION = 3;
+	// 4 --> binary encoding feature column in soup_attrs
+	// 5 --> new meta data table soup_compound_index_map
+	// 6 --> entry cache feature column in soup_attrs
+	// 7 --> compression feature column in soup_attrs
+	public static final int DB_VERSION = 7;
 	public static final String DEFAULT_DB_NAME = "smartstore";
 	public static final String SOUP_ELEMENT_PREFIX = "soupelt_";
 	private static final String TAG = "DBOpenHelper";
 	private static final String DB_NAME_SUFFIX = ".db";
+	private static final String SOUP_SHARD_INFIX = "_shard_";
 	private static final String ORG_KEY_PREFIX = "00D";
 	private static final String EXTERNAL_BLOBS_SUFFIX = "_external_soup_blobs/";
 	private static final String UTF8 = "UTF-8";
+	private static final String REENCRYPTED_BLOB_SUFFIX = ".rekeyed";
+	private static final int STREAM_BUFFER_SIZE = 8192;
+	private static final int PADDING_MAX = 16;
+	private static final String BLOBS_MANIFEST = "blobs_manifest";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final String ADOPTED_SUFFIX = ".adopted";
+	private static final int MANIFEST_FLUSH_INTERVAL = 64;
+	private static final String[] SHARD_NAMES = new String[256];
+	static {
+		for (int i = 0; i < SHARD_NAMES.length; i++) {
+			SHARD_NAMES[i] = String.format("%02x", i);
+		}
+	}
+	public static final int DEFAULT_MAX_READ_CONNECTIONS = 2;
+	public static final long READ_CONNECTION_WAIT_MS = 1000;
 	private static String dataDir;
 	private String dbName;
 
+	/*
+	 * Read-only connections used to run queries concurrently with the (single) writable connection
+	 * They are only handed out once write-ahead logging has been turned on for the database
+	 */
+	private final Set<SQLiteDatabase> readConnections = new HashSet<>();
+	private final Deque<SQLiteDatabase> idleReadConnections = new ArrayDeque<>();
+	private int maxReadConnections = DEFAULT_MAX_READ_CONNECTIONS;
+	private String readConnectionsPasscode;
+	private boolean writeAheadLoggingEnabled;
+	private final ThreadLocal<Integer> heldReadConnections = new ThreadLocal<Integer>() {
+		@Override
+		protected Integer initialValue() {
+			return 0;
+		}
+	};
+
+	/*
+	 * Manifests of the external soup blobs directories (by soup table name)
+	 */
+	private final Map<String, BlobsManifest> blobsManifests = new HashMap<>();
+
+	/*
+	 * Reads of external soup blobs in flight (see beginSoupBlobReads) and blobs whose removal waits for them
+	 * Guarded by deferredBlobRemovals
+	 */
+	private final List<File> deferredBlobRemovals = new ArrayList<>();
+	private int blobReadsInFlight;
+
 	/*
 	 * Cache for the helper instances
 	 */
@@ -105,8 +171,8 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		String[] fileNames = dir.list(userFileFilter);
 		if (fileNames != null && fileNames.length > 0) {
 			for (String fileName : fileNames) {
-				int dbFileIndx = fileName.indexOf(".db");
-				if (dbFileIndx >- 1) {
+				// Skipping write-ahead log and shared memory files (e.g. smartstore.db-wal) and soup shards
+				if (fileName.endsWith(DB_NAME_SUFFIX) && !fileName.contains(SOUP_SHARD_INFIX)) {
 					result.add(fileName.substring(0, fileName.indexOf(accountSuffix)));
 				}
 			}
@@ -135,9 +201,9 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		String[] fileNames = dir.list(globalFileFilter);
 		if (fileNames != null && fileNames.length > 0) {
 			for (String fileName : fileNames) {
-				int dbFileIndx = fileName.indexOf(".db");
-				if (dbFileIndx > -1)
-					result.add(fileName.substring(0, dbFileIndx));
+				// Skipping write-ahead log and shared memory files (e.g. smartstore.db-wal) and soup shards
+				if (fileName.endsWith(DB_NAME_SUFFIX) && !fileName.contains(SOUP_SHARD_INFIX))
+					result.add(fileName.substring(0, fileName.length() - DB_NAME_SUFFIX.length()));
 			}
 		}
 		return result;
@@ -220,6 +286,31 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		return helper;
 	}
 
+	/**
+	 * Returns the DBOpenHelper instance for a soup shard of this database.
+	 * A soup shard is a separate database file (with its own writable connection and lock)
+	 * that lives next to this database and gets deleted along with it (see ShardedSmartStore).
+	 *
+	 * @param ctx Context.
+	 * @param shardName Shard name. This must be a valid file name without a filename extension.
+	 * @return DBOpenHelper instance.
+	 */
+	public DBOpenHelper getSoupShardOpenHelper(Context ctx, String shardName) {
+		final String shardDBName = getSoupShardPrefix(dbName) + shardName + DB_NAME_SUFFIX;
+		synchronized (DBOpenHelper.class) {
+			DBOpenHelper helper = openHelpers.get(shardDBName);
+			if (helper == null) {
+				helper = new DBOpenHelper(ctx, shardDBName);
+				openHelpers.put(shardDBName, helper);
+			}
+			return helper;
+		}
+	}
+
+	private static String getSoupShardPrefix(String fullDBName) {
+		return fullDBName.substring(0, fullDBName.length() - DB_NAME_SUFFIX.length()) + SOUP_SHARD_INFIX;
+	}
+
 	protected DBOpenHelper(Context context, String dbName) {
 		super(context, dbName, null, DB_VERSION, new DBHook());
 		this.loadLibs(context);
@@ -243,6 +334,9 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		 * manage locking at our level anyway.
 		 */
 		db.setLockingEnabled(false);
+
+		// Must be set before the first table is created - lets StoreCompactor reclaim pages freed by deletes
+		db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
 		SmartStore.createMetaTables(db);
 	}
 
@@ -267,14 +361,284 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_NAMES_TABLE,
 													SmartStore.SOUP_ATTRS_TABLE, new String[] { SoupSpec.FEATURE_EXTERNAL_STORAGE });
 		}
+
+		if (oldVersion < 4) {
+			// DB version 4 added the binary encoding feature
+			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_ATTRS_TABLE, null, new String[] { SoupSpec.FEATURE_BINARY_ENCODING });
+		}
+
+		if (oldVersion < 5) {
+			// DB version 5 added compound indexes
+			SmartStore.createCompoundIndexMapTable(db);
+		}
+
+		if (oldVersion < 6) {
+			// DB version 6 added the entry cache feature
+			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_ATTRS_TABLE, null, new String[] { SoupSpec.FEATURE_ENTRY_CACHE });
+		}
+
+		if (oldVersion < 7) {
+			// DB version 7 added the compression feature
+			SmartStore.updateTableNameAndAddColumns(db, SmartStore.SOUP_ATTRS_TABLE, null, new String[] { SoupSpec.FEATURE_COMPRESSION });
+		}
 	}
 
 	@Override
 	@SuppressWarnings("deprecation")
 	public void onOpen(SQLiteDatabase db) {
+		writeAheadLoggingEnabled = enableWriteAheadLogging(db);
 		(new SmartStore(db)).resumeLongOperations();
 	}
 
+	@Override
+	public synchronized void close() {
+		closeReadConnections();
+		flushBlobsManifests();
+		super.close();
+	}
+
+	/**
+	 * Switches the database to write-ahead logging, which lets read-only connections
+	 * see the last committed state of the database while a write transaction is in flight.
+	 *
+	 * @param db Writable database.
+	 * @return True if the database is now in WAL mode, false otherwise.
+	 */
+	private static boolean enableWriteAheadLogging(SQLiteDatabase db) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA journal_mode = WAL", null);
+			return cursor.moveToFirst() && "wal".equalsIgnoreCase(cursor.getString(0));
+		} catch (Exception e) {
+			SmartStoreLogger.w(TAG, "Could not enable write-ahead logging", e);
+			return false;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * Switches a database created without auto_vacuum to auto_vacuum=INCREMENTAL, so that it can be compacted
+	 * (see StoreCompactor). This requires rebuilding the whole database file with VACUUM, which also reclaims
+	 * all free pages - it can take a while on large databases and needs as much free disk space as the database.
+	 * Does nothing if the database already uses auto_vacuum=INCREMENTAL.
+	 *
+	 * @param passcode Key with which to open the database.
+	 * @return True if the database was migrated, false if it did not need to be.
+	 */
+	public synchronized boolean migrateToIncrementalVacuum(String passcode) {
+		final SQLiteDatabase db = getWritableDatabase(passcode);
+		synchronized (db) {
+			if (StoreCompactor.getAutoVacuum(db) == StoreCompactor.AutoVacuum.INCREMENTAL) {
+				return false;
+			}
+			db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+			db.execSQL("VACUUM");
+			boolean migrated = StoreCompactor.getAutoVacuum(db) == StoreCompactor.AutoVacuum.INCREMENTAL;
+			SmartStoreLogger.i(TAG, "Migration of " + dbName + " to incremental vacuum " + (migrated ? "succeeded" : "failed"));
+			return migrated;
+		}
+	}
+
+	/**
+	 * Makes a database file produced offline (shipped with the app or downloaded once) the database of this helper.
+	 * The prebuilt file is copied next to the database, checked (schema version must be DB_VERSION and no soup can use
+	 * external storage since blobs are not part of the file) and rekeyed to passcode before it replaces the database.
+	 * Soup meta data of the adopted database is then cached.
+	 * NB: must be called before any store is used on this database (e.g. on first launch), the current database is deleted.
+	 *
+	 * @param ctx Context.
+	 * @param prebuilt Stream of the prebuilt database file - closed on return.
+	 * @param prebuiltKey Key the prebuilt database was encrypted with.
+	 * @param passcode Passcode of this database.
+	 */
+	public synchronized void adoptPrebuiltDatabase(Context ctx, InputStream prebuilt, String prebuiltKey, String passcode) {
+		final File dbFile = ctx.getDatabasePath(dbName);
+		final File adoptedFile = new File(dbFile.getPath() + ADOPTED_SUFFIX);
+		dbFile.getParentFile().mkdirs();
+		try (InputStream in = prebuilt; OutputStream out = new BufferedOutputStream(new FileOutputStream(adoptedFile, false))) {
+			byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			adoptedFile.delete();
+			throw new SmartStore.SmartStoreException("Could not copy prebuilt database", e);
+		}
+		try {
+			prepareAdoptedDatabase(adoptedFile, prebuiltKey, passcode);
+		} catch (RuntimeException e) {
+			ctx.deleteDatabase(adoptedFile.getName());
+			throw e;
+		}
+
+		// Replacing the current database
+		if (dbFile.exists()) {
+			final SQLiteDatabase currentDb = getWritableDatabase(passcode);
+			synchronized (currentDb) {
+				// Helpers of the closed database would otherwise never be released
+				DBHelper.releaseInstance(currentDb);
+				close();
+			}
+		}
+		ctx.deleteDatabase(dbName);
+		removeAllFiles(new File(dataDir + "/databases/" + dbName + EXTERNAL_BLOBS_SUFFIX));
+		if (!adoptedFile.renameTo(dbFile)) {
+			throw new SmartStore.SmartStoreException("Could not move prebuilt database to " + dbFile.getPath());
+		}
+
+		// Caching soup meta data
+		final SQLiteDatabase db = getWritableDatabase(passcode);
+		synchronized (db) {
+			for (String soupName : new SmartStore(db).getAllSoupNames()) {
+				DBHelper.getInstance(db).getSoupTableName(db, soupName);
+				DBHelper.getInstance(db).getFeatures(db, soupName);
+				DBHelper.getInstance(db).getIndexSpecs(db, soupName);
+			}
+		}
+		SmartStoreLogger.i(TAG, "Adopted prebuilt database as " + dbName);
+	}
+
+	/**
+	 * Check prebuilt database and rekey it to passcode
+	 *
+	 * @param file Copy of prebuilt database.
+	 * @param prebuiltKey Key the prebuilt database was encrypted with.
+	 * @param passcode Passcode of this database.
+	 */
+	private static void prepareAdoptedDatabase(File file, String prebuiltKey, String passcode) {
+		SQLiteDatabase db = null;
+		Cursor cursor = null;
+		try {
+			db = SQLiteDatabase.openDatabase(file.getPath(), prebuiltKey, null, SQLiteDatabase.OPEN_READWRITE, new DBHook());
+			if (db.getVersion() != DB_VERSION) {
+				throw new SmartStore.SmartStoreException("Prebuilt database has version " + db.getVersion() + " instead of " + DB_VERSION);
+			}
+			cursor = db.rawQuery("SELECT " + SmartStore.SOUP_NAME_COL + " FROM " + SmartStore.SOUP_ATTRS_TABLE
+					+ " WHERE " + SoupSpec.FEATURE_EXTERNAL_STORAGE + " = 1", null);
+			if (cursor.moveToFirst()) {
+				throw new SmartStore.SmartStoreException("Prebuilt database has soup using external storage: " + cursor.getString(0));
+			}
+			if (TextUtils.isEmpty(passcode) != TextUtils.isEmpty(prebuiltKey)) {
+				throw new SmartStore.SmartStoreException("Prebuilt database must be " + (TextUtils.isEmpty(passcode) ? "unencrypted" : "encrypted"));
+			}
+			SmartStore.changeKey(db, prebuiltKey, passcode);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+			if (db != null) {
+				db.close();
+			}
+		}
+	}
+
+	/**
+	 * Sets the maximum number of read-only connections that can be opened against this database.
+	 * Use 0 to have all queries run against the writable connection.
+	 *
+	 * @param maxReadConnections Maximum number of read-only connections.
+	 */
+	public synchronized void setMaxReadConnections(int maxReadConnections) {
+		this.maxReadConnections = maxReadConnections;
+		closeReadConnections();
+	}
+
+	/**
+	 * @return Maximum number of read-only connections that can be opened against this database.
+	 */
+	public synchronized int getMaxReadConnections() {
+		return maxReadConnections;
+	}
+
+	/**
+	 * Returns a read-only connection to the database, opening one if needed. If all read-only
+	 * connections are in use, waits up to READ_CONNECTION_WAIT_MS for one to be released, unless the
+	 * calling thread already holds one (it could be waiting on itself). The connection must be handed back through
+	 * {@link #releaseReadConnection(SQLiteDatabase)}.
+	 *
+	 * NB: a read-only connection only sees committed data.
+	 *
+	 * @param passcode Key with which to open the database.
+	 * @return Read-only connection or null if read-only connections are not available (caller should use the writable database).
+	 */
+	public synchronized SQLiteDatabase acquireReadConnection(String passcode) {
+		if (maxReadConnections <= 0) {
+			return null;
+		}
+
+		// Makes sure the database is created / upgraded and in WAL mode
+		final SQLiteDatabase writableDb = getWritableDatabase(passcode);
+		if (!writeAheadLoggingEnabled) {
+			return null;
+		}
+
+		// Key changed - connections opened with the old key are no longer usable
+		if (!TextUtils.equals(passcode, readConnectionsPasscode)) {
+			closeReadConnections();
+			readConnectionsPasscode = passcode;
+		}
+		try {
+			final long deadline = System.currentTimeMillis() + READ_CONNECTION_WAIT_MS;
+			while (idleReadConnections.isEmpty() && readConnections.size() >= maxReadConnections) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (heldReadConnections.get() > 0 || remaining <= 0) {
+					// Pool exhausted - caller falls back to the writable connection
+					return null;
+				}
+				wait(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		if (!idleReadConnections.isEmpty()) {
+			heldReadConnections.set(heldReadConnections.get() + 1);
+			return idleReadConnections.pop();
+		}
+		try {
+			final SQLiteDatabase readDb = SQLiteDatabase.openDatabase(writableDb.getPath(),
+					passcode == null ? "" : passcode, null, SQLiteDatabase.OPEN_READONLY, new DBHook());
+			readConnections.add(readDb);
+			heldReadConnections.set(heldReadConnections.get() + 1);
+			return readDb;
+		} catch (Exception e) {
+			SmartStoreLogger.w(TAG, "Could not open read-only connection", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Hands back a connection obtained through {@link #acquireReadConnection(String)}.
+	 *
+	 * @param readDb Read-only connection.
+	 */
+	public synchronized void releaseReadConnection(SQLiteDatabase readDb) {
+		heldReadConnections.set(Math.max(0, heldReadConnections.get() - 1));
+		if (readConnections.contains(readDb)) {
+			idleReadConnections.push(readDb);
+		} else {
+			// Pool was closed (or re-keyed) while the connection was in use
+			readDb.close();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Closes idle read-only connections. Connections currently in use get closed when released.
+	 */
+	private synchronized void closeReadConnections() {
+		for (SQLiteDatabase readDb : idleReadConnections) {
+			readDb.close();
+		}
+		idleReadConnections.clear();
+		readConnections.clear();
+		notifyAll();
+	}
+
 	/**
 	 * Deletes the underlying database for the specified user account.
 	 *
@@ -330,6 +694,7 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 
 			// Physically delete the database from disk.
 			ctx.deleteDatabase(fullDBName);
+			deleteSoupShards(ctx, fullDBName);
 
 			// If community id was not passed in, then we remove ALL databases for the account.
 			if (account != null && TextUtils.isEmpty(communityId)) {
@@ -406,6 +771,23 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		}
 	};
 
+	private static void deleteSoupShards(Context ctx, String fullDBName) {
+		final String shardPrefix = getSoupShardPrefix(fullDBName);
+		final String[] fileNames = new File(ctx.getApplicationInfo().dataDir + "/databases").list();
+		if (fileNames != null) {
+			for (final String fileName : fileNames) {
+				if (fileName.startsWith(shardPrefix) && fileName.endsWith(DB_NAME_SUFFIX)) {
+					final DBOpenHelper helper = openHelpers.remove(fileName);
+					if (helper != null) {
+						helper.close();
+					}
+					ctx.deleteDatabase(fileName);
+					removeAllFiles(new File(ctx.getApplicationInfo().dataDir + "/databases/" + fileName + EXTERNAL_BLOBS_SUFFIX));
+				}
+			}
+		}
+	}
+
 	private static void deleteFiles(Context ctx, String prefix) {
 		final String dbPath = ctx.getApplicationInfo().dataDir + "/databases";
 		final File dir = new File(dbPath);
@@ -493,13 +875,32 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 *
 	 * @param subDir Subdirectory to determine size of. Use null for top-level directory.
 	 *
-	 * @return Size of all files in all subdirectories.
+	 * @return Size of all files in all subdirectories (Integer.MAX_VALUE if larger, see getSizeOfDirAsLong).
 	 */
 	public int getSizeOfDir(File subDir) {
-		int size = 0;
+		return (int) Math.min(Integer.MAX_VALUE, getSizeOfDirAsLong(subDir));
+	}
+
+	/**
+	 * Recursively determines size of all files in the given subdirectory of the soup storage.
+	 *
+	 * @param subDir Subdirectory to determine size of. Use null for top-level directory.
+	 *
+	 * @return Size of all files in all subdirectories.
+	 */
+	public long getSizeOfDirAsLong(File subDir) {
+		long size = 0;
 		if (subDir == null) {
-			// Top level directory
-			subDir = new File(getExternalSoupBlobsPath(null));
+			// Top level directory: using soups manifests
+			File[] soupDirs = new File(getExternalSoupBlobsPath(null)).listFiles();
+			if (soupDirs != null) {
+				for (File soupDir : soupDirs) {
+					if (soupDir.isDirectory()) {
+						size += getBlobsManifest(soupDir.getName()).size;
+					}
+				}
+			}
+			return size;
 		}
 		if (subDir.exists()) {
 			File[] files = subDir.listFiles();
@@ -508,7 +909,7 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 					if (file.isFile()) {
 						size += file.length();
 					} else {
-						size += getSizeOfDir(file);
+						size += getSizeOfDirAsLong(file);
 					}
 				}
 			}
@@ -551,6 +952,9 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 */
 	public boolean createExternalBlobsDirectory(String soupTableName) {
 		File blobsDirectory = new File(getExternalSoupBlobsPath(soupTableName));
+		synchronized (blobsManifests) {
+			blobsManifests.remove(soupTableName);
+		}
 		return blobsDirectory.mkdirs();
 	}
 
@@ -563,6 +967,13 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 */
 	public boolean removeExternalBlobsDirectory(String soupTableName) {
 		if (dataDir != null) {
+			synchronized (blobsManifests) {
+				if (soupTableName == null) {
+					blobsManifests.clear();
+				} else {
+					blobsManifests.remove(soupTableName);
+				}
+			}
 			return removeAllFiles(new File(getExternalSoupBlobsPath(soupTableName)));
 		} else {
 			return false;
@@ -583,25 +994,22 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 			File[] tables = dir.listFiles();
 			if (tables != null) {
 				for (File table : tables) {
-					File[] blobs = table.listFiles();
-					if (blobs != null) {
-						for (File blob : blobs) {
-							StringBuilder json = new StringBuilder();
-							String result = null;
-							try {
-								BufferedReader br = new BufferedReader(new FileReader(blob));
-								String line;
-								while ((line = br.readLine()) != null) {
-									json.append(line).append('\n');
+					File[] entries = table.listFiles();
+					if (entries != null) {
+						for (File entry : entries) {
+							if (entry.isDirectory()) {
+								// Shard
+								File[] blobs = entry.listFiles();
+								if (blobs != null) {
+									for (File blob : blobs) {
+										if (isSoupBlobFile(blob)) {
+											reEncryptFile(blob, oldKey, newKey);
+										}
+									}
 								}
-								br.close();
-								result = Encryptor.decrypt(json.toString(), oldKey);
-								blob.delete();
-								FileOutputStream outputStream = new FileOutputStream(blob, false);
-								outputStream.write(Encryptor.encrypt(result, newKey).getBytes());
-								outputStream.close();
-							} catch (IOException ex) {
-                                SmartStoreLogger.e(TAG, "Exception occurred while rekeying external files", ex);
+							} else if (isSoupBlobFile(entry)) {
+								// Blob from before sharding
+								reEncryptFile(entry, oldKey, newKey);
 							}
 						}
 					}
@@ -610,6 +1018,41 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 		}
 	}
 
+	/**
+	 * Re-encrypts the given file with the new key.
+	 *
+	 * @param blob File to re-encrypt.
+	 * @param oldKey Old key with which to decrypt the existing data.
+	 * @param newKey New key with which to encrypt the existing data.
+	 */
+	private static void reEncryptFile(File blob, String oldKey, String newKey) {
+		File reEncryptedBlob = new File(blob.getPath() + REENCRYPTED_BLOB_SUFFIX);
+		try (InputStream in = Encryptor.getDecryptingInputStream(new BufferedInputStream(new FileInputStream(blob)), oldKey);
+			 OutputStream out = Encryptor.getEncryptingOutputStream(new BufferedOutputStream(new FileOutputStream(reEncryptedBlob, false)), newKey)) {
+			byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} catch (IOException | GeneralSecurityException ex) {
+            SmartStoreLogger.e(TAG, "Exception occurred while rekeying external files", ex);
+			reEncryptedBlob.delete();
+			return;
+		}
+		if (!reEncryptedBlob.renameTo(blob)) {
+			SmartStoreLogger.e(TAG, "Could not replace external file with rekeyed one: " + blob.getName());
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return True if the given file holds a soup element (as opposed to a manifest or a temporary file).
+	 */
+	private static boolean isSoupBlobFile(File file) {
+		String name = file.getName();
+		return name.startsWith(SOUP_ELEMENT_PREFIX) && !name.endsWith(REENCRYPTED_BLOB_SUFFIX) && !name.endsWith(TMP_SUFFIX);
+	}
+
 	/**
 	 * Places the soup blob on file storage. The name and folder are determined by the soup and soup entry id.
 	 *
@@ -621,7 +1064,35 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 * @return True if operation was successful, false otherwise.
 	 */
 	public boolean saveSoupBlob(String soupTableName, long soupEntryId, JSONObject soupElt, String passcode) {
-		return saveSoupBlobFromString(soupTableName, soupEntryId, soupElt.toString(), passcode);
+		return saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode, false);
+	}
+
+	/**
+	 * Places the soup blob on file storage. The name and folder are determined by the soup and soup entry id.
+	 *
+	 * @param soupTableName Name of the soup that the blob belongs to.
+	 * @param soupEntryId Entry id for the soup blob.
+	 * @param soupElt Blob to store on file storage in JSON format.
+	 * @param passcode Key with which to encrypt the data.
+	 * @param compress True to compress the blob if it is large enough (see SoupCompressor).
+	 *
+	 * @return True if operation was successful, false otherwise.
+	 */
+	public boolean saveSoupBlob(String soupTableName, long soupEntryId, JSONObject soupElt, String passcode, boolean compress) {
+		if (compress) {
+			return saveSoupBlobFromString(soupTableName, soupEntryId, soupElt.toString(), passcode, true);
+		}
+		File file = getSoupBlobFileForWriting(soupTableName, soupEntryId);
+		File tmpFile = new File(file.getPath() + TMP_SUFFIX);
+		try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(tmpFile, false));
+			 JsonWriter writer = new JsonWriter(new OutputStreamWriter(Encryptor.getEncryptingOutputStream(fileOut, passcode), UTF8))) {
+			writeJSON(writer, soupElt);
+		} catch (IOException | GeneralSecurityException | JSONException ex) {
+            SmartStoreLogger.e(TAG, "Exception occurred while attempting to write external soup blob", ex);
+			tmpFile.delete();
+			return false;
+		}
+		return replaceSoupBlobFile(soupTableName, tmpFile, file);
 	}
 
 	/**
@@ -635,17 +1106,58 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 * @return True if operation was successful, false otherwise.
 	 */
 	public boolean saveSoupBlobFromString(String soupTableName, long soupEntryId, String soupEltStr, String passcode) {
-		File file = getSoupBlobFile(soupTableName, soupEntryId);
-		try (FileOutputStream outputStream = new FileOutputStream(file, false)) {
-			byte[] data = Encryptor.encryptBytes(soupEltStr, passcode);
-			if (data != null) {
-				outputStream.write(data);
-				return true;
-			}
-		} catch (IOException ex) {
+		return saveSoupBlobFromString(soupTableName, soupEntryId, soupEltStr, passcode, false);
+	}
+
+	/**
+	 * Places the soup blob on file storage. The name and folder are determined by the soup and soup entry id.
+	 *
+	 * @param soupTableName Name of the soup that the blob belongs to.
+	 * @param soupEntryId Entry id for the soup blob.
+	 * @param soupEltStr Blob to store on file storage as a String.
+	 * @param passcode Key with which to encrypt the data.
+	 * @param compress True to compress the blob if it is large enough (see SoupCompressor).
+	 *
+	 * @return True if operation was successful, false otherwise.
+	 */
+	public boolean saveSoupBlobFromString(String soupTableName, long soupEntryId, String soupEltStr, String passcode, boolean compress) {
+		File file = getSoupBlobFileForWriting(soupTableName, soupEntryId);
+		File tmpFile = new File(file.getPath() + TMP_SUFFIX);
+		try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(tmpFile, false));
+			 OutputStream out = Encryptor.getEncryptingOutputStream(fileOut, passcode)) {
+			byte[] bytes = soupEltStr.getBytes(UTF8);
+			byte[] compressed = compress ? SoupCompressor.compress(bytes, false) : null;
+			out.write(compressed != null ? compressed : bytes);
+		} catch (IOException | GeneralSecurityException ex) {
             SmartStoreLogger.e(TAG, "Exception occurred while attempting to write external soup blob", ex);
+			tmpFile.delete();
+			return false;
 		}
-		return false;
+		return replaceSoupBlobFile(soupTableName, tmpFile, file);
+	}
+
+	/**
+	 * Moves a freshly written soup blob in place of the current one (if any) in one step,
+	 * so that concurrent reads see either the old or the new blob, never a partially written one.
+	 *
+	 * @param soupTableName Name of the soup that the blob belongs to.
+	 * @param tmpFile File the blob was written to.
+	 * @param file File of the soup blob.
+	 *
+	 * @return True if operation was successful, false otherwise.
+	 */
+	private boolean replaceSoupBlobFile(String soupTableName, File tmpFile, File file) {
+		long previousSize = file.length();
+		synchronized (deferredBlobRemovals) {
+			deferredBlobRemovals.remove(file);
+		}
+		if (!tmpFile.renameTo(file)) {
+			SmartStoreLogger.e(TAG, "Could not move external soup blob in place: " + file.getName());
+			tmpFile.delete();
+			return false;
+		}
+		onSoupBlobWritten(soupTableName, file, previousSize);
+		return true;
 	}
 
 	/**
@@ -658,16 +1170,14 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 * @return The blob from file storage represented as JSON. Returns null if there was an error.
 	 */
 	public JSONObject loadSoupBlob(String soupTableName, long soupEntryId, String passcode) {
-		JSONObject result = null;
-		try {
-			final String soupBlobString = loadSoupBlobAsString(soupTableName, soupEntryId, passcode);
-			if (soupBlobString != null) {
-				result = new JSONObject(soupBlobString);
-			}
-		} catch (JSONException ex) {
+		File file = getSoupBlobFile(soupTableName, soupEntryId);
+		try (InputStream fileIn = new BufferedInputStream(new FileInputStream(file));
+			 JsonReader reader = new JsonReader(new InputStreamReader(getSoupBlobContent(fileIn, passcode), UTF8))) {
+			return (JSONObject) readJSON(reader);
+		} catch (IOException | GeneralSecurityException | JSONException | ClassCastException | IllegalStateException | SmartStore.SmartStoreException ex) {
             SmartStoreLogger.e(TAG, "Exception occurred while attempting to read external soup blob", ex);
 		}
-		return result;
+		return null;
 	}
 
 	/**
@@ -681,17 +1191,53 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 */
 	public String loadSoupBlobAsString(String soupTableName, long soupEntryId, String passcode) {
 		File file = getSoupBlobFile(soupTableName, soupEntryId);
-		try (FileInputStream f = new FileInputStream(file)) {
-			DataInputStream data = new DataInputStream(f);
-			byte[] bytes = new byte[(int) file.length()];
-			data.readFully(bytes);
-			return Encryptor.decrypt(bytes, passcode);
-		} catch (IOException ex) {
+		try (InputStream fileIn = new BufferedInputStream(new FileInputStream(file));
+			 Reader reader = new InputStreamReader(getSoupBlobContent(fileIn, passcode), UTF8)) {
+			StringBuilder sb = new StringBuilder();
+			char[] buffer = new char[STREAM_BUFFER_SIZE];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				sb.append(buffer, 0, read);
+			}
+
+			// Drops any padding left behind by older encryption (JSON never ends with control characters)
+			int length = sb.length();
+			while (length > 0 && sb.charAt(length - 1) < PADDING_MAX) {
+				length--;
+			}
+			sb.setLength(length);
+			return sb.toString();
+		} catch (IOException | GeneralSecurityException | SmartStore.SmartStoreException ex) {
             SmartStoreLogger.e(TAG, "Exception occurred while attempting to read external soup blob", ex);
 		}
 		return null;
 	}
 
+	/**
+	 * Decrypts a soup blob, decompressing it if it was stored compressed (see SoupCompressor).
+	 *
+	 * @param fileIn Stream on the soup blob file.
+	 * @param passcode Key with which to decrypt the data.
+	 *
+	 * @return Stream on the JSON text of the soup blob.
+	 */
+	private InputStream getSoupBlobContent(InputStream fileIn, String passcode) throws IOException, GeneralSecurityException {
+		InputStream in = new BufferedInputStream(Encryptor.getDecryptingInputStream(fileIn, passcode), STREAM_BUFFER_SIZE);
+		in.mark(1);
+		int first = in.read();
+		in.reset();
+		if (first != (SoupCompressor.MARKER & 0xff)) {
+			return in;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new ByteArrayInputStream(SoupCompressor.decompress(out.toByteArray()));
+	}
+
 	/**
 	 * Removes the blobs represented by the given list of soup entry ids from external storage.
 	 *
@@ -701,15 +1247,84 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 * @return True if all soup entry ids were deleted, false if blob could not be found or had an error.
 	 */
 	public boolean removeSoupBlob(String soupTableName, Long[] soupEntryIds) {
+		long[] ids = new long[soupEntryIds.length];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = soupEntryIds[i];
+		}
+		return removeSoupBlob(soupTableName, ids);
+	}
+
+	/**
+	 * Removes the blobs represented by the given list of soup entry ids from external storage.
+	 *
+	 * @param soupTableName Soup name to which the blobs belong.
+	 * @param soupEntryIds List of soup entry ids to delete.
+	 *
+	 * @return True if all soup entry ids were deleted, false if blob could not be found or had an error.
+	 */
+	public boolean removeSoupBlob(String soupTableName, long[] soupEntryIds) {
 		File file;
 		boolean success = true;
 		for (long soupEntryId : soupEntryIds) {
 			file = getSoupBlobFile(soupTableName, soupEntryId);
-			success &= file.delete();
+			long size = file.length();
+			if (deleteSoupBlobFile(file)) {
+				updateBlobsManifest(soupTableName, -size, -1);
+			} else {
+				success = false;
+			}
 		}
 		return success;
 	}
 
+	/**
+	 * Deletes a soup blob file, or defers its deletion until no read of external soup blobs is in flight.
+	 *
+	 * @param file File of the soup blob.
+	 *
+	 * @return True if the file was (or will be) deleted, false if it could not be found or deleted.
+	 */
+	private boolean deleteSoupBlobFile(File file) {
+		synchronized (deferredBlobRemovals) {
+			if (blobReadsInFlight > 0) {
+				if (!file.exists()) {
+					return false;
+				}
+				deferredBlobRemovals.add(file);
+				return true;
+			}
+			return file.delete();
+		}
+	}
+
+	/**
+	 * Records that external soup blobs are about to be read without holding the database lock.
+	 * Blobs removed until the matching endSoupBlobReads are only deleted then.
+	 */
+	void beginSoupBlobReads() {
+		synchronized (deferredBlobRemovals) {
+			blobReadsInFlight++;
+		}
+	}
+
+	/**
+	 * Records the end of reads started with beginSoupBlobReads, deleting the blobs removed in the meantime
+	 * once no read is left in flight.
+	 */
+	void endSoupBlobReads() {
+		synchronized (deferredBlobRemovals) {
+			blobReadsInFlight--;
+			if (blobReadsInFlight == 0) {
+				for (File file : deferredBlobRemovals) {
+					if (!file.delete()) {
+						SmartStoreLogger.w(TAG, "Could not delete removed external soup blob: " + file.getName());
+					}
+				}
+				deferredBlobRemovals.clear();
+			}
+		}
+	}
+
 	/**
 	 * Returns a file that the soup data is stored in for the given soup name and entry id.
 	 *
@@ -719,6 +1334,271 @@ public class DBOpenHelper extends SQLiteOpenHelper {
 	 * @return A File representing the soup blob in external storage.
 	 */
 	public File getSoupBlobFile(String soupTableName, long soupEntryId) {
-		return new File(getExternalSoupBlobsPath(soupTableName), SOUP_ELEMENT_PREFIX + soupEntryId);
+		// Makes sure blobs stored before sharding have been moved to their shard
+		getBlobsManifest(soupTableName);
+		return new File(getExternalSoupBlobsPath(soupTableName) + getShardName(soupEntryId), SOUP_ELEMENT_PREFIX + soupEntryId);
+	}
+
+	/**
+	 * Returns the name of the shard (subdirectory of the soup blobs directory) holding the blob for the given soup entry id.
+	 * Ids are hashed so that consecutive ids end up in different shards.
+	 *
+	 * @param soupEntryId Entry id for the soup blob.
+	 *
+	 * @return Shard name (two hex digits).
+	 */
+	public static String getShardName(long soupEntryId) {
+		return SHARD_NAMES[(int) ((soupEntryId * 0x9E3779B97F4A7C15L) >>> 56)];
+	}
+
+	/**
+	 * Returns the file for the given soup entry id, creating its shard if needed.
+	 */
+	private File getSoupBlobFileForWriting(String soupTableName, long soupEntryId) {
+		File file = getSoupBlobFile(soupTableName, soupEntryId);
+		File shard = file.getParentFile();
+		if (!shard.isDirectory()) {
+			// Not using mkdirs: writing should fail if the soup blobs directory is gone
+			shard.mkdir();
+		}
+		return file;
+	}
+
+	private void onSoupBlobWritten(String soupTableName, File file, long previousSize) {
+		updateBlobsManifest(soupTableName, file.length() - previousSize, previousSize > 0 ? 0 : 1);
+	}
+
+	/**
+	 * Size and count of the blobs of a soup, persisted in the soup blobs directory so that they don't have to be
+	 * computed by going through all the files. In memory changes are written back every MANIFEST_FLUSH_INTERVAL changes
+	 * and when the helper is closed. The manifest file is removed while there are changes not written back, so that
+	 * it gets rebuilt if the process dies before they are.
+	 */
+	private static class BlobsManifest {
+		long size;
+		int count;
+		int unflushedChanges;
+	}
+
+	/**
+	 * Returns manifest of the given soup. The first time a soup is accessed without a manifest, its blobs are counted
+	 * and the ones stored before sharding are moved to their shard.
+	 */
+	private BlobsManifest getBlobsManifest(String soupTableName) {
+		synchronized (blobsManifests) {
+			BlobsManifest manifest = blobsManifests.get(soupTableName);
+			if (manifest == null) {
+				File soupDir = new File(getExternalSoupBlobsPath(soupTableName));
+				if (!soupDir.isDirectory()) {
+					// Nothing stored (yet)
+					return new BlobsManifest();
+				}
+				manifest = readBlobsManifest(soupDir);
+				if (manifest == null) {
+					manifest = buildBlobsManifest(soupDir);
+					writeBlobsManifest(soupDir, manifest);
+				}
+				blobsManifests.put(soupTableName, manifest);
+			}
+			return manifest;
+		}
+	}
+
+	private void updateBlobsManifest(String soupTableName, long sizeDelta, int countDelta) {
+		synchronized (blobsManifests) {
+			BlobsManifest manifest = getBlobsManifest(soupTableName);
+			File soupDir = new File(getExternalSoupBlobsPath(soupTableName));
+			if (manifest.unflushedChanges == 0) {
+				// Manifest on file is stale from now on
+				new File(soupDir, BLOBS_MANIFEST).delete();
+			}
+			manifest.size += sizeDelta;
+			manifest.count += countDelta;
+			manifest.unflushedChanges++;
+			if (manifest.unflushedChanges >= MANIFEST_FLUSH_INTERVAL) {
+				writeBlobsManifest(soupDir, manifest);
+			}
+		}
+	}
+
+	/**
+	 * Writes back manifests with in memory changes.
+	 */
+	private void flushBlobsManifests() {
+		synchronized (blobsManifests) {
+			for (Map.Entry<String, BlobsManifest> entry : blobsManifests.entrySet()) {
+				File soupDir = new File(getExternalSoupBlobsPath(entry.getKey()));
+				if (entry.getValue().unflushedChanges > 0 && soupDir.isDirectory()) {
+					writeBlobsManifest(soupDir, entry.getValue());
+				}
+			}
+		}
+	}
+
+	private static BlobsManifest readBlobsManifest(File soupDir) {
+		File file = new File(soupDir, BLOBS_MANIFEST);
+		if (!file.exists()) {
+			return null;
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8))) {
+			String[] parts = reader.readLine().split(" ");
+			BlobsManifest manifest = new BlobsManifest();
+			manifest.size = Long.parseLong(parts[0]);
+			manifest.count = Integer.parseInt(parts[1]);
+			return manifest;
+		} catch (IOException | RuntimeException ex) {
+            SmartStoreLogger.w(TAG, "Could not read external soup blobs manifest", ex);
+		}
+		return null;
+	}
+
+	private static void writeBlobsManifest(File soupDir, BlobsManifest manifest) {
+		File tmpFile = new File(soupDir, BLOBS_MANIFEST + TMP_SUFFIX);
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile, false), UTF8)) {
+			writer.write(manifest.size + " " + manifest.count);
+		} catch (IOException ex) {
+            SmartStoreLogger.w(TAG, "Could not write external soup blobs manifest", ex);
+			return;
+		}
+		if (tmpFile.renameTo(new File(soupDir, BLOBS_MANIFEST))) {
+			manifest.unflushedChanges = 0;
+		}
+	}
+
+	/**
+	 * Counts the blobs of a soup, moving the ones stored before sharding (directly in the soup blobs directory) to their shard.
+	 */
+	private static BlobsManifest buildBlobsManifest(File soupDir) {
+		BlobsManifest manifest = new BlobsManifest();
+		File[] entries = soupDir.listFiles();
+		if (entries != null) {
+			for (File entry : entries) {
+				if (entry.isDirectory()) {
+					// Shard
+					File[] blobs = entry.listFiles();
+					if (blobs != null) {
+						for (File blob : blobs) {
+							if (isSoupBlobFile(blob)) {
+								manifest.size += blob.length();
+								manifest.count++;
+							}
+						}
+					}
+				} else if (isSoupBlobFile(entry)) {
+					// Blob from before sharding
+					try {
+						long soupEntryId = Long.parseLong(entry.getName().substring(SOUP_ELEMENT_PREFIX.length()));
+						File shard = new File(soupDir, getShardName(soupEntryId));
+						shard.mkdir();
+						// Reading length first: entry no longer exists once renamed
+						long length = entry.length();
+						if (!entry.renameTo(new File(shard, entry.getName()))) {
+							SmartStoreLogger.e(TAG, "Could not move external soup blob to its shard: " + entry.getName());
+						}
+						manifest.size += length;
+						manifest.count++;
+					} catch (NumberFormatException ex) {
+						SmartStoreLogger.w(TAG, "Unexpected file in external soup blobs directory: " + entry.getName());
+					}
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Reads the next JSON value from the given reader
+	 * Numbers are returned with the same types as org.json would use (Integer, Long or Double)
+	 *
+	 * @param reader
+	 * @return JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static Object readJSON(JsonReader reader) throws IOException, JSONException {
+		switch (reader.peek()) {
+			case BEGIN_OBJECT:
+				JSONObject obj = new JSONObject();
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					obj.put(name, readJSON(reader));
+				}
+				reader.endObject();
+				return obj;
+			case BEGIN_ARRAY:
+				JSONArray arr = new JSONArray();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					arr.put(readJSON(reader));
+				}
+				reader.endArray();
+				return arr;
+			case STRING:
+				return reader.nextString();
+			case NUMBER:
+				String literal = reader.nextString();
+				if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1) {
+					try {
+						long l = Long.parseLong(literal);
+						return (l == (int) l ? (Object) (int) l : (Object) l);
+					} catch (NumberFormatException e) {
+						// Too big for a long - falling back to double
+					}
+				}
+				return Double.valueOf(literal);
+			case BOOLEAN:
+				return reader.nextBoolean();
+			case NULL:
+				reader.nextNull();
+				return JSONObject.NULL;
+			default:
+				throw new JSONException("Unexpected token in external soup blob: " + reader.peek());
+		}
+	}
+
+	/**
+	 * Writes the given JSON value to the given writer
+	 *
+	 * @param writer
+	 * @param value JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static void writeJSON(JsonWriter writer, Object value) throws IOException, JSONException {
+		if (value == null || value == JSONObject.NULL) {
+			writer.nullValue();
+		} else if (value instanceof JSONObject) {
+			JSONObject obj = (JSONObject) value;
+			writer.beginObject();
+			Iterator<String> keys = obj.keys();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				writer.name(key);
+				writeJSON(writer, obj.get(key));
+			}
+			writer.endObject();
+		} else if (value instanceof JSONArray) {
+			JSONArray arr = (JSONArray) value;
+			writer.beginArray();
+			for (int i = 0; i < arr.length(); i++) {
+				writeJSON(writer, arr.get(i));
+			}
+			writer.endArray();
+		} else if (value instanceof Boolean) {
+			writer.value((Boolean) value);
+		} else if (value instanceof Double || value instanceof Float) {
+			// Same text as org.json (whole numbers written without decimal part)
+			double d = ((Number) value).doubleValue();
+			if (d == (long) d) {
+				writer.value((long) d);
+			} else {
+				writer.value(d);
+			}
+		} else if (value instanceof Number) {
+			writer.value((Number) value);
+		} else {
+			writer.value(value.toString());
+		}
 	}
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads soup elements of soups using external storage (see SoupSpec#FEATURE_EXTERNAL_STORAGE) in parallel
+ *
+ * While reading query results, rows get placeholders (see defer) instead of the soup elements.
+ * Once the cursor is closed and the database lock released, resolve decrypts and parses the blobs on a bounded executor
+ * and swaps them in, so results keep their original order.
+ * Blobs removed while reads are in flight are only deleted once they are done (see DBOpenHelper#beginSoupBlobReads),
+ * blobs that still can't be loaded are loaded again holding the database lock and their rows dropped if that fails too
+ * (the soup element was deleted since the query ran).
+ * Callers must call done once finished with the loader.
+ */
+class ExternalBlobLoader {
+
+	// Number of threads loading blobs (shared by all stores)
+	static final int MAX_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	// Below that number of blobs per thread, it's not worth going parallel
+	static final int MIN_BLOBS_PER_THREAD = 4;
+
+	private static ExecutorService executor;
+
+	private final SQLiteDatabase db;
+	private final DBOpenHelper dbOpenHelper;
+	private final String passcode;
+	private int pendingCount;
+	private boolean readsStarted;
+
+	/**
+	 * Placeholder for a soup element that has not been loaded yet
+	 */
+	private static class PendingBlob {
+		final String soupTableName;
+		final long soupEntryId;
+
+		PendingBlob(String soupTableName, long soupEntryId) {
+			this.soupTableName = soupTableName;
+			this.soupEntryId = soupEntryId;
+		}
+	}
+
+	/**
+	 * @param db writable database (locked to load blobs again when they can't be loaded without the lock)
+	 * @param dbOpenHelper
+	 * @param passcode
+	 */
+	ExternalBlobLoader(SQLiteDatabase db, DBOpenHelper dbOpenHelper, String passcode) {
+		this.db = db;
+		this.dbOpenHelper = dbOpenHelper;
+		this.passcode = passcode;
+	}
+
+	/**
+	 * Return placeholder for soup element to be loaded by resolve
+	 * @param soupTableName
+	 * @param soupEntryId
+	 * @return placeholder to put in results (as a row or as a value in a row)
+	 */
+	Object defer(String soupTableName, long soupEntryId) {
+		if (!readsStarted) {
+			// Called while the query runs: blobs deleted from now on stay around until done is called
+			dbOpenHelper.beginSoupBlobReads();
+			readsStarted = true;
+		}
+		pendingCount++;
+		return new PendingBlob(soupTableName, soupEntryId);
+	}
+
+	/**
+	 * Load soup elements for all placeholders found in results (as rows or values in rows) and swap them in
+	 * Rows with soup elements that could not be loaded are left out
+	 * @param results
+	 * @return results with the soup elements swapped in
+	 * @throws JSONException
+	 */
+	JSONArray resolve(JSONArray results) throws JSONException {
+		if (pendingCount == 0) {
+			return results;
+		}
+		List<JSONArray> containers = new ArrayList<>(pendingCount);
+		List<Integer> indices = new ArrayList<>(pendingCount);
+		List<Integer> rowIndices = new ArrayList<>(pendingCount);
+		List<PendingBlob> pendingBlobs = new ArrayList<>(pendingCount);
+		for (int i = 0; i < results.length(); i++) {
+			Object result = results.opt(i);
+			if (result instanceof PendingBlob) {
+				containers.add(results);
+				indices.add(i);
+				rowIndices.add(i);
+				pendingBlobs.add((PendingBlob) result);
+			} else if (result instanceof JSONArray) {
+				JSONArray row = (JSONArray) result;
+				for (int j = 0; j < row.length(); j++) {
+					Object value = row.opt(j);
+					if (value instanceof PendingBlob) {
+						containers.add(row);
+						indices.add(j);
+						rowIndices.add(i);
+						pendingBlobs.add((PendingBlob) value);
+					}
+				}
+			}
+		}
+		JSONObject[] soupElts = load(pendingBlobs);
+		pendingCount = 0;
+		Set<Integer> droppedRows = new HashSet<>();
+		for (int k = 0; k < soupElts.length; k++) {
+			if (soupElts[k] != null) {
+				containers.get(k).put(indices.get(k), soupElts[k]);
+			} else {
+				droppedRows.add(rowIndices.get(k));
+			}
+		}
+		if (droppedRows.isEmpty()) {
+			return results;
+		}
+		JSONArray resolved = new JSONArray();
+		for (int i = 0; i < results.length(); i++) {
+			if (!droppedRows.contains(i)) {
+				resolved.put(results.get(i));
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Must be called once finished with the loader (whether resolve was called or not)
+	 */
+	void done() {
+		if (readsStarted) {
+			readsStarted = false;
+			dbOpenHelper.endSoupBlobReads();
+		}
+	}
+
+	/**
+	 * Load soup elements of the given soup
+	 * @param soupTableName
+	 * @param soupEntryIds
+	 * @return soup elements in the order of soupEntryIds (null for the ones that could not be loaded)
+	 */
+	JSONObject[] load(String soupTableName, long... soupEntryIds) {
+		List<PendingBlob> pendingBlobs = new ArrayList<>(soupEntryIds.length);
+		for (long soupEntryId : soupEntryIds) {
+			pendingBlobs.add(new PendingBlob(soupTableName, soupEntryId));
+		}
+		return load(pendingBlobs);
+	}
+
+	private JSONObject[] load(final List<PendingBlob> pendingBlobs) {
+		dbOpenHelper.beginSoupBlobReads();
+		try {
+			JSONObject[] soupElts = loadInParallel(pendingBlobs);
+
+			// Blobs that could not be loaded: load them again holding the lock (no write in progress)
+			for (int i = 0; i < soupElts.length; i++) {
+				if (soupElts[i] == null) {
+					PendingBlob pendingBlob = pendingBlobs.get(i);
+					synchronized (db) {
+						soupElts[i] = dbOpenHelper.loadSoupBlob(pendingBlob.soupTableName, pendingBlob.soupEntryId, passcode);
+					}
+				}
+			}
+			return soupElts;
+		} finally {
+			dbOpenHelper.endSoupBlobReads();
+		}
+	}
+
+	private JSONObject[] loadInParallel(final List<PendingBlob> pendingBlobs) {
+		final JSONObject[] soupElts = new JSONObject[pendingBlobs.size()];
+		int threads = Math.min(MAX_THREADS, pendingBlobs.size() / MIN_BLOBS_PER_THREAD);
+		if (threads <= 1) {
+			loadRange(pendingBlobs, soupElts, 0, soupElts.length);
+			return soupElts;
+		}
+
+		// Contiguous ranges, the last one is loaded by the calling thread
+		List<Future<Void>> futures = new ArrayList<>(threads - 1);
+		for (int t = 0; t < threads - 1; t++) {
+			final int start = t * soupElts.length / threads;
+			final int end = (t + 1) * soupElts.length / threads;
+			futures.add(getExecutor().submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					loadRange(pendingBlobs, soupElts, start, end);
+					return null;
+				}
+			}));
+		}
+		loadRange(pendingBlobs, soupElts, (threads - 1) * soupElts.length / threads, soupElts.length);
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SmartStoreException("Interrupted while loading external soup blobs", e);
+			} catch (ExecutionException e) {
+				throw new SmartStoreException("Failed to load external soup blobs", e.getCause());
+			}
+		}
+		return soupElts;
+	}
+
+	private void loadRange(List<PendingBlob> pendingBlobs, JSONObject[] soupElts, int start, int end) {
+		for (int i = start; i < end; i++) {
+			PendingBlob pendingBlob = pendingBlobs.get(i);
+			soupElts[i] = dbOpenHelper.loadSoupBlob(pendingBlob.soupTableName, pendingBlob.soupEntryId, passcode);
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(MAX_THREADS);
+		}
+		return executor;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.TypeGroup;
+import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class taking care of the indexes of a soup being imported (see SmartStore#importSoup)
+ * Soup table indexes are dropped before soup elements are loaded, then re-created in one go and the full-text
+ * search table is filled for the soup elements loaded
+ * Two entry points:
+ * - new ImportSoupLongOperation(...) + start() + run() => when asked to importSoup in SmartStore
+ * - LongOperation.getOperation(...) + run() => when completing an interrupted import when opening the database
+ */
+public class ImportSoupLongOperation extends LongOperation {
+
+	// Fields of details for import soup long operation row in long_operations_status table
+	private static final String SOUP_NAME = "soupName";
+	private static final String SOUP_TABLE_NAME = "soupTableName";
+	private static final String INDEX_NAMES = "indexNames";
+	private static final String INDEX_STATEMENTS = "indexStatements";
+	private static final String AFTER_ID = "afterId";
+	private static final String LOADING = "LOADING";
+	public static final String TAG = "ImportSoup:Status";
+
+	// Soup being imported
+	private String soupName;
+
+	// Backing table for soup being imported
+	private String soupTableName;
+
+	// Names and create statements of the indexes of the soup table
+	private List<String> indexNames = new ArrayList<>();
+	private List<String> indexStatements = new ArrayList<>();
+
+	// Id of last soup element present before the import
+	private long afterId;
+
+	// Underlying database
+	private SQLiteDatabase db;
+
+	// Row id for long_operations_status
+	private long rowId;
+
+	/**
+	 * Default constructor when reading back from long operations status table
+	 * Should be followed by a call to: initFromDbRow
+	 */
+	public ImportSoupLongOperation() {
+
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param store
+	 * @param soupName
+	 * @param soupTableName
+	 * @param afterId id of last soup element present before the import
+	 */
+	ImportSoupLongOperation(SmartStore store, String soupName, String soupTableName, long afterId) {
+		this.db = store.getDatabase();
+		this.soupName = soupName;
+		this.soupTableName = soupTableName;
+		this.afterId = afterId;
+	}
+
+	/**
+	 * Record operation in long operations status table then drop indexes of soup table
+	 * NB: should be called within a transaction
+	 * @throws JSONException
+	 */
+	void start() throws JSONException {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL", new String[] {soupTableName});
+			while (cursor.moveToNext()) {
+				indexNames.add(cursor.getString(0));
+				indexStatements.add(cursor.getString(1));
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		rowId = createLongOperationDbRow();
+		for (String indexName : indexNames) {
+			db.execSQL("DROP INDEX IF EXISTS " + indexName);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.salesforce.androidsdk.smartstore.store.LongOperation#run()
+	 */
+	@Override
+	public void run() {
+		synchronized (db) {
+			SmartStore.beginTransaction(db);
+			try {
+				// Soup dropped or altered since - nothing to restore
+				if (soupTableName.equals(DBHelper.getInstance(db).getSoupTableName(db, soupName))) {
+					restoreIndexes();
+					fillFullTextSearchTable();
+				}
+				DBHelper.getInstance(db).delete(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, SmartStore.ID_PREDICATE, rowId + "");
+				db.setTransactionSuccessful();
+			} finally {
+				SmartStore.endTransaction(db);
+			}
+		}
+		SmartStoreLogger.i(TAG, soupName + " DONE");
+	}
+
+	/**
+	 * Re-create indexes dropped by start
+	 */
+	private void restoreIndexes() {
+		for (int i = 0; i < indexNames.size(); i++) {
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = ?", new String[] {indexNames.get(i)});
+				if (cursor.getCount() == 0) {
+					db.execSQL(indexStatements.get(i));
+				}
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Insert full-text search rows for soup elements loaded since start
+	 */
+	private void fillFullTextSearchTable() {
+		if (!DBHelper.getInstance(db).hasFTS(db, soupName)) {
+			return;
+		}
+		List<String> ftsColumns = new ArrayList<>();
+		for (IndexSpec indexSpec : DBHelper.getInstance(db).getIndexSpecs(db, soupName)) {
+			if (TypeGroup.value_extracted_to_fts_column.isMember(indexSpec.type)) {
+				ftsColumns.add(indexSpec.columnName);
+			}
+		}
+		String columns = TextUtils.join(", ", ftsColumns);
+		db.execSQL("INSERT INTO " + soupTableName + SmartStore.FTS_SUFFIX + " (" + SmartStore.ROWID_COL + ", " + columns + ")"
+				+ " SELECT " + SmartStore.ID_COL + ", " + columns + " FROM " + soupTableName + " WHERE " + SmartStore.ID_COL + " > ?", new Object[] {afterId});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.salesforce.androidsdk.smartstore.store.LongOperation#initFromDbRow(com.salesforce.androidsdk.smartstore.store.SmartStore, long, org.json.JSONObject, java.lang.String)
+	 */
+	@Override
+	protected void initFromDbRow(SmartStore store, long rowId, JSONObject details, String statusStr) throws JSONException {
+		this.db = store.getDatabase();
+		this.rowId = rowId;
+		this.soupName = details.getString(SOUP_NAME);
+		this.soupTableName = details.getString(SOUP_TABLE_NAME);
+		this.afterId = details.getLong(AFTER_ID);
+		JSONArray names = details.getJSONArray(INDEX_NAMES);
+		JSONArray statements = details.getJSONArray(INDEX_STATEMENTS);
+		for (int i = 0; i < names.length(); i++) {
+			indexNames.add(names.getString(i));
+			indexStatements.add(statements.getString(i));
+		}
+	}
+
+	/**
+	 * Create row in long operations status table for a new import soup operation
+	 * @return
+	 * @throws JSONException
+	 */
+	private long createLongOperationDbRow() throws JSONException {
+		Long now = System.currentTimeMillis();
+		ContentValues contentValues = new ContentValues();
+		contentValues.put(SmartStore.TYPE_COL, LongOperationType.importSoup.toString());
+		contentValues.put(SmartStore.STATUS_COL, LOADING);
+		contentValues.put(SmartStore.DETAILS_COL, getDetails().toString());
+		contentValues.put(SmartStore.CREATED_COL, now);
+		contentValues.put(SmartStore.LAST_MODIFIED_COL, now);
+		SmartStoreLogger.i(TAG, soupName + " " + LOADING);
+		return DBHelper.getInstance(db).insert(db, SmartStore.LONG_OPERATIONS_STATUS_TABLE, contentValues);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.salesforce.androidsdk.smartstore.store.LongOperation#getDetails()
+	 */
+	@Override
+	public JSONObject getDetails() throws JSONException {
+		JSONObject details = new JSONObject();
+		details.put(SOUP_NAME, soupName);
+		details.put(SOUP_TABLE_NAME, soupTableName);
+		details.put(INDEX_NAMES, new JSONArray(indexNames));
+		details.put(INDEX_STATEMENTS, new JSONArray(indexStatements));
+		details.put(AFTER_ID, afterId);
+		return details;
+	}
+}
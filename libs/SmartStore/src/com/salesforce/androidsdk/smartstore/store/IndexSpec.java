@@ -156,6 +156,18 @@ public class IndexSpec {
 		return map;
 	}
 
+	/**
+	 * @param indexSpecs
+	 * @return projector for the paths of indexSpecs (json1 index specs, which have no column to populate, are not projected)
+	 */
+	public static PathProjector.Batch compileProjector(IndexSpec[] indexSpecs) {
+		String[] paths = new String[indexSpecs.length];
+		for (int i = 0; i < indexSpecs.length; i++) {
+			paths[i] = indexSpecs[i].type.getColumnType() == null ? null : indexSpecs[i].path;
+		}
+		return PathProjector.compile(paths);
+	}
+
 	/**
 	 * @param indexSpecs
 	 * @return true if at least one of the indexSpec is of type full_text
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.util.JSONObjectHelper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled path for SmartStore#project: the path is split once and reused for every projection
+ * Arrays met along the path are fanned out (see SmartStore#project)
+ *
+ * Several paths can be compiled together (see #compile(String[])) to get all their values in a single walk of the JSON tree
+ */
+public class PathProjector {
+
+	// Paths compiled through compile(String) are cached (up to MAX_CACHED_PATHS of them)
+	private static final int MAX_CACHED_PATHS = 1000;
+	private static final Map<String, PathProjector> CACHE = new ConcurrentHashMap<>();
+
+	private final String[] pathElements;
+
+	private PathProjector(String[] pathElements) {
+		this.pathElements = pathElements;
+	}
+
+	/**
+	 * @param path (null or empty path projects the whole soup)
+	 * @return projector for path
+	 */
+	public static PathProjector compile(String path) {
+		String key = path == null ? "" : path;
+		PathProjector projector = CACHE.get(key);
+		if (projector == null) {
+			projector = new PathProjector(key.isEmpty() ? new String[0] : split(key));
+			if (CACHE.size() < MAX_CACHED_PATHS) {
+				CACHE.put(key, projector);
+			}
+		}
+		return projector;
+	}
+
+	/**
+	 * @param paths (null paths are not projected)
+	 * @return projector for all paths
+	 */
+	public static Batch compile(String[] paths) {
+		return new Batch(paths);
+	}
+
+	/**
+	 * @param soup
+	 * @return object at path in soup
+	 */
+	public Object project(JSONObject soup) {
+		if (soup == null) {
+			return null;
+		}
+		return project(soup, 0);
+	}
+
+	private Object project(Object jsonObj, int index) {
+		Object result = null;
+		if (index == pathElements.length) {
+			return jsonObj;
+		}
+
+		if (null != jsonObj) {
+			String pathElement = pathElements[index];
+
+			if (jsonObj instanceof JSONObject) {
+				JSONObject jsonDict = (JSONObject) jsonObj;
+				Object dictVal = JSONObjectHelper.opt(jsonDict, pathElement);
+				result = project(dictVal, index+1);
+			}
+			else if (jsonObj instanceof JSONArray) {
+				JSONArray jsonArr = (JSONArray) jsonObj;
+				result = new JSONArray();
+				for (int i=0; i<jsonArr.length(); i++) {
+					Object arrayElt = JSONObjectHelper.opt(jsonArr, i);
+					Object resultPart = project(arrayElt, index);
+					if (resultPart != null) {
+						((JSONArray) result).put(resultPart);
+					}
+				}
+				if (((JSONArray) result).length() == 0) {
+					result = null;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Split path on dots (same result as path.split("[.]") without going through a regex)
+	 * @param path
+	 * @return path elements
+	 */
+	static String[] split(String path) {
+		if (path.indexOf('.') == -1) {
+			return new String[] { path };
+		}
+		List<String> elements = new ArrayList<>();
+		int start = 0;
+		int dot;
+		while ((dot = path.indexOf('.', start)) != -1) {
+			elements.add(path.substring(start, dot));
+			start = dot + 1;
+		}
+		elements.add(path.substring(start));
+
+		// Trailing empty elements are dropped (like String#split)
+		int length = elements.size();
+		while (length > 0 && elements.get(length - 1).isEmpty()) {
+			length--;
+		}
+		return elements.subList(0, length).toArray(new String[length]);
+	}
+
+	/**
+	 * Projector for several paths: paths are merged into a tree of path elements so that
+	 * shared prefixes are only walked once
+	 */
+	public static class Batch {
+
+		private final Node root = new Node();
+		private final int size;
+
+		private Batch(String[] paths) {
+			this.size = paths.length;
+			for (int i = 0; i < paths.length; i++) {
+				if (paths[i] == null) {
+					continue;
+				}
+				Node node = root;
+				for (String pathElement : PathProjector.compile(paths[i]).pathElements) {
+					Node child = node.children.get(pathElement);
+					if (child == null) {
+						child = new Node();
+						node.children.put(pathElement, child);
+					}
+					node = child;
+				}
+				node.outputs.add(i);
+			}
+			root.collectDescendantOutputs();
+		}
+
+		/**
+		 * @param soup
+		 * @return objects at paths in soup (in the order the paths were passed to compile)
+		 */
+		public Object[] project(JSONObject soup) {
+			Object[] results = new Object[size];
+			if (soup != null) {
+				walk(soup, root, results);
+			}
+			return results;
+		}
+
+		/**
+		 * Set results of node's outputs and of all outputs below node
+		 */
+		private void walk(Object jsonObj, Node node, Object[] results) {
+			for (int output : node.outputs) {
+				results[output] = jsonObj;
+			}
+			walkChildren(jsonObj, node, results);
+		}
+
+		/**
+		 * Set results of all outputs below node
+		 */
+		private void walkChildren(Object jsonObj, Node node, Object[] results) {
+			if (node.children.isEmpty() || jsonObj == null) {
+				return;
+			}
+			if (jsonObj instanceof JSONObject) {
+				JSONObject jsonDict = (JSONObject) jsonObj;
+				for (Map.Entry<String, Node> entry : node.children.entrySet()) {
+					walk(JSONObjectHelper.opt(jsonDict, entry.getKey()), entry.getValue(), results);
+				}
+			}
+			else if (jsonObj instanceof JSONArray) {
+				// Fan out: each output below node gets the array of the (non null) results for the array elements
+				JSONArray jsonArr = (JSONArray) jsonObj;
+				int[] outputs = node.descendantOutputs;
+				JSONArray[] parts = new JSONArray[outputs.length];
+				for (int i=0; i<jsonArr.length(); i++) {
+					for (int output : outputs) {
+						results[output] = null;
+					}
+					walkChildren(JSONObjectHelper.opt(jsonArr, i), node, results);
+					for (int k = 0; k < outputs.length; k++) {
+						Object resultPart = results[outputs[k]];
+						if (resultPart != null) {
+							if (parts[k] == null) {
+								parts[k] = new JSONArray();
+							}
+							parts[k].put(resultPart);
+						}
+					}
+				}
+				for (int k = 0; k < outputs.length; k++) {
+					results[outputs[k]] = parts[k];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Node of Batch tree
+	 */
+	private static class Node {
+		final Map<String, Node> children = new LinkedHashMap<>();
+		final List<Integer> outputs = new ArrayList<>();
+		int[] descendantOutputs;
+
+		/**
+		 * Compute descendantOutputs of this node and of all nodes below it
+		 * @return outputs of this node and of all nodes below it
+		 */
+		List<Integer> collectDescendantOutputs() {
+			List<Integer> descendants = new ArrayList<>();
+			for (Node child : children.values()) {
+				descendants.addAll(child.collectDescendantOutputs());
+			}
+			descendantOutputs = new int[descendants.size()];
+			for (int i = 0; i < descendantOutputs.length; i++) {
+				descendantOutputs[i] = descendants.get(i);
+			}
+			List<Integer> all = new ArrayList<>(outputs);
+			all.addAll(descendants);
+			return all;
+		}
+	}
+}
@@ -89,8 +89,20 @@ public class QuerySpec {
     // Like
     public final String likeKey;
 
+    // Keyset paging (exact/range/like/match only)
+    public final boolean keyset;
+    // Position to resume from: order path value (String, Long, Double or null) and soup entry id of the last row read
+    public final Object afterOrderKey;
+    public final Long afterSoupEntryId;
+
     // Private constructor for soup query spec
     private QuerySpec(String soupName, String[] selectPaths, QueryType queryType, String matchKey, String beginKey, String endKey, String likeKey, String orderPath, Order order, int pageSize, String path) {
+        this(soupName, selectPaths, queryType, matchKey, beginKey, endKey, likeKey, orderPath, order, pageSize, path, false, null, null);
+    }
+
+    // Private constructor for soup query spec with keyset paging
+    private QuerySpec(String soupName, String[] selectPaths, QueryType queryType, String matchKey, String beginKey, String endKey, String likeKey, String orderPath, Order order, int pageSize, String path,
+                      boolean keyset, Object afterOrderKey, Long afterSoupEntryId) {
     	this.soupName = soupName;
         this.selectPaths = selectPaths;
         this.path = path;
@@ -102,6 +114,9 @@ public class QuerySpec {
         this.orderPath = orderPath;
         this.order = order;
         this.pageSize = pageSize;
+        this.keyset = keyset;
+        this.afterOrderKey = afterOrderKey;
+        this.afterSoupEntryId = afterSoupEntryId;
         this.smartSql = computeSmartSql();
         this.countSmartSql = computeCountSmartSql();
         this.idsSmartSql = computeIdsSmartSql();
@@ -124,7 +139,10 @@ public class QuerySpec {
         this.endKey = null;
         this.likeKey = null;
         this.orderPath = null;
-        this.order = null;    	
+        this.order = null;
+        this.keyset = false;
+        this.afterOrderKey = null;
+        this.afterSoupEntryId = null;
     }
 
     /**
@@ -280,6 +298,42 @@ public class QuerySpec {
     	return new QuerySpec(smartSql, pageSize);
     }
 
+    /**
+     * Return a query spec that pages by seeking instead of skipping rows
+     * Results are ordered by order path then soup entry id, and each row ends with the order path value (if any) and soup entry id,
+     * so that SmartStore can hand back a query spec positioned after the last row read (see SmartStore#queryEach)
+     * Reading page N that way costs O(pageSize) instead of O(N x pageSize)
+     * NB: not supported for smart queries
+     * @return
+     */
+    public QuerySpec withKeysetPaging() {
+        return after(null, null);
+    }
+
+    /**
+     * Return a keyset query spec positioned after the given row
+     * @param orderKey value of the order path for the last row read (String, Long, Double or null)
+     * @param soupEntryId soup entry id of the last row read or null to start from the first row
+     * @return
+     */
+    public QuerySpec after(Object orderKey, Long soupEntryId) {
+        if (queryType == QueryType.smart) {
+            throw new SmartStoreException("Keyset paging not supported for smart queries");
+        }
+        if (orderKey instanceof Double && ((Double) orderKey).isNaN()) {
+            throw new SmartStoreException("NaN can't be used as keyset position");
+        }
+        return new QuerySpec(soupName, selectPaths, queryType, matchKey, beginKey, endKey, likeKey, orderPath, order, pageSize, path,
+                true, orderKey, soupEntryId);
+    }
+
+    /**
+     * @return number of columns added at the end of each row for keyset paging
+     */
+    int getKeysetColumnCount() {
+        return keyset ? (isOrdered() ? 2 : 1) : 0;
+    }
+
     /**
      * Compute smartSql for exact/like/range/match queries
      */
@@ -332,6 +386,12 @@ public class QuerySpec {
         for (String selectPath : (selectPaths != null ? selectPaths : new String[] {SmartSqlHelper.SOUP})) {
             fieldReferences.add(computeFieldReference(selectPath));
         }
+        if (keyset) {
+            if (isOrdered()) {
+                fieldReferences.add(computeFieldReference(orderPath));
+            }
+            fieldReferences.add(computeFieldReference(SmartStore.SOUP_ENTRY_ID));
+        }
         return SELECT + TextUtils.join(", ", fieldReferences) + " ";
     }
 
@@ -346,6 +406,47 @@ public class QuerySpec {
      * @return where clause for exact/like/range/match queries
      */
     private String computeWhereClause() {
+        String pred = computeKeyPredicate();
+        String keysetPred = computeKeysetPredicate();
+        if (!keysetPred.equals("")) {
+            pred = (pred.equals("") ? keysetPred : pred + "AND " + keysetPred);
+        }
+        return (pred.equals("") ? "" : WHERE + pred);
+    }
+
+    /**
+     * @return predicate selecting rows after afterOrderKey / afterSoupEntryId for keyset queries
+     * NB: the position is bound (see getBindArgs), numbers are cast so that they compare as numbers even when bound as text
+     * against expressions without column affinity
+     */
+    private String computeKeysetPredicate() {
+        if (!keyset || afterSoupEntryId == null) return "";
+
+        String id = computeFieldReference(SmartStore.SOUP_ENTRY_ID);
+        String idPred = id + " > ?";
+        if (!isOrdered()) {
+            return idPred + " ";
+        }
+
+        // Nulls come first in ascending order and last in descending order
+        String field = computeFieldReference(orderPath);
+        String key = (afterOrderKey instanceof Number ? "CAST(? AS NUMERIC)" : "?");
+        if (order == Order.ascending) {
+            return afterOrderKey == null
+                    ? "(" + field + " IS NOT NULL OR " + idPred + ") "
+                    : "(" + field + " > " + key + " OR (" + field + " = " + key + " AND " + idPred + ")) ";
+        }
+        else {
+            return afterOrderKey == null
+                    ? "(" + field + " IS NULL AND " + idPred + ") "
+                    : "(" + field + " < " + key + " OR (" + field + " = " + key + " AND " + idPred + ") OR " + field + " IS NULL) ";
+        }
+    }
+
+    /**
+     * @return predicate for exact/like/range/match queries
+     */
+    private String computeKeyPredicate() {
         if (path == null && queryType != QueryType.match /* null path allowed for fts match query */) return "";
 
         String field = null;
@@ -388,7 +489,7 @@ public class QuerySpec {
             default:
                 throw new SmartStoreException("Fell through switch: " + queryType);
         }
-        return (pred.equals("") ? "" : WHERE + pred);
+        return pred;
     }
 
     /**
@@ -430,10 +531,23 @@ public class QuerySpec {
      * @return order clause for exact/like/range/match queries
      */
     private String computeOrderClause() {
-    	if (orderPath == null || order == null) return "";
+        if (keyset) {
+            // Soup entry id breaks ties so that every row has a unique position
+            String idOrder = computeFieldReference(SmartStore.SOUP_ENTRY_ID) + " " + Order.ascending.sql + " ";
+            return ORDER_BY + (isOrdered() ? computeFieldReference(orderPath) + " " + order.sql + ", " : "") + idOrder;
+        }
+
+    	if (!isOrdered()) return "";
 
     	return ORDER_BY + computeFieldReference(orderPath) + " " + order.sql + " ";
     }
+
+    /**
+     * @return true if results are sorted by an order path
+     */
+    private boolean isOrdered() {
+        return orderPath != null && order != null;
+    }
     
 	/**
 	 * @return soup reference for smart sql query
@@ -458,9 +572,52 @@ public class QuerySpec {
 	}
 
     /**
-     * @return args going with the sql predicate returned by getKeyPredicate
+     * @return args going with the sql predicate returned by getKeyPredicate (keyset position values as text, see getBindArgs)
      */
     public String[] getArgs() {
+        Object[] bindArgs = getBindArgs();
+        if (bindArgs == null) {
+            return null;
+        }
+        String[] args = new String[bindArgs.length];
+        for (int i = 0; i < bindArgs.length; i++) {
+            args[i] = bindArgs[i].toString();
+        }
+        return args;
+    }
+
+    /**
+     * @return args going with the sql predicate returned by getKeyPredicate, with keyset position values kept as
+     * Long / Double so that they are bound exactly (infinities included)
+     */
+    Object[] getBindArgs() {
+        String[] args = getKeyArgs();
+        List<Object> keysetArgs = new ArrayList<>();
+        if (keyset && afterSoupEntryId != null) {
+            if (isOrdered() && afterOrderKey != null) {
+                keysetArgs.add(afterOrderKey);
+                keysetArgs.add(afterOrderKey);
+            }
+            keysetArgs.add(afterSoupEntryId);
+        }
+        if (keysetArgs.isEmpty()) {
+            return args;
+        }
+        int keyArgsCount = (args == null ? 0 : args.length);
+        Object[] allArgs = new Object[keyArgsCount + keysetArgs.size()];
+        if (args != null) {
+            System.arraycopy(args, 0, allArgs, 0, keyArgsCount);
+        }
+        for (int i = 0; i < keysetArgs.size(); i++) {
+            allArgs[keyArgsCount + i] = keysetArgs.get(i);
+        }
+        return allArgs;
+    }
+
+    /**
+     * @return args going with the key predicate
+     */
+    private String[] getKeyArgs() {
         switch(queryType) {
         case exact:
             return new String[] {matchKey};
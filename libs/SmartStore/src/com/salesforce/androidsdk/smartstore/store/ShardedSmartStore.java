@@ -0,0 +1,566 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SmartStore that keeps selected soups in separate database files (shards)
+ *
+ * Each shard has its own writable connection and lock, so writes to soups of different shards
+ * (or of a shard and of the main database) run in parallel
+ * Operations on a sharded soup are handed to the shard's store, smart sql queries referencing soups of a single
+ * shard run against that shard, queries mixing soups of several databases run on the main database's writable
+ * connection to which the shards are attached
+ * Compaction, long operations and their settings cover the main database and every shard
+ * (compression stats are kept for the whole process, so they already include the shards)
+ *
+ * NB: soups must be added to a shard before they are registered and every shard should be added at start up
+ *     transactions started with beginTransaction and write-behind batches only cover soups of the main database
+ *     queries mixing databases can't select {soupName:_soup} of sharded soups using external storage
+ */
+public class ShardedSmartStore extends SmartStore {
+
+	// Soup table names must be unique across the main database and its shards (TABLE_<soupId>)
+	// Each shard gets its own range of soup ids
+	static final long SOUP_ID_RANGE = 1000000;
+
+	private static final Pattern SHARD_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+	private static final String SHARD_SCHEMA_PREFIX = "shard_";
+	private static final String SEQUENCE_TABLE = "sqlite_sequence";
+
+	private final Context context;
+	private final Map<String, SmartStore> shards = new ConcurrentHashMap<>();
+	private final Map<String, String> soupNameToShardName = new ConcurrentHashMap<>();
+
+	// Writable connection shards are currently attached to, along with the names of the attached shards
+	private SQLiteDatabase attachedDb;
+	private final Set<String> attachedShardNames = new HashSet<>();
+
+	/**
+	 * @param context
+	 * @param dbOpenHelper open helper of the main database
+	 * @param passcode passcode of the main database, also used for the shards
+	 */
+	public ShardedSmartStore(Context context, DBOpenHelper dbOpenHelper, String passcode) {
+		super(dbOpenHelper, passcode);
+		this.context = context.getApplicationContext();
+	}
+
+	/**
+	 * Place the given soups in the given shard, creating the shard's database file if needed
+	 * @param shardName letters, digits and underscores only
+	 * @param soupNames
+	 * @return store of the shard
+	 */
+	public SmartStore addShard(String shardName, String... soupNames) {
+		if (shardName == null || !SHARD_NAME_PATTERN.matcher(shardName).matches()) {
+			throw new SmartStoreException("Bogus shard name:" + shardName);
+		}
+		// Same lock as attachShards, which reads the shards and the attached shard names
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			SmartStore shard = shards.get(shardName);
+			if (shard == null) {
+				shard = new SmartStore(((DBOpenHelper) dbOpenHelper).getSoupShardOpenHelper(context, shardName), passcode);
+				shard.setLongOperationChunking(getLongOperationChunkSize(), getLongOperationPauseMs());
+				shard.setLongOperationProgressListener(getLongOperationProgressListener());
+				seedSoupIds(shard.getDatabase());
+				shards.put(shardName, shard);
+			}
+			final SQLiteDatabase shardDb = shard.getDatabase();
+			for (String soupName : soupNames) {
+				String otherShardName = soupNameToShardName.get(soupName);
+				if (otherShardName != null && !otherShardName.equals(shardName)) {
+					throw new SmartStoreException("Soup: " + soupName + " already belongs to shard " + otherShardName);
+				}
+				soupNameToShardName.put(soupName, shardName);
+				SmartSqlHelper.getInstance(db).setSoupShardDatabase(soupName, shardDb);
+			}
+			return shard;
+		}
+	}
+
+	/**
+	 * @param soupName
+	 * @return store of the shard holding the given soup or null if the soup lives in the main database
+	 */
+	public SmartStore getShardStore(String soupName) {
+		String shardName = (soupName == null ? null : soupNameToShardName.get(soupName));
+		return shardName == null ? null : shards.get(shardName);
+	}
+
+	/**
+	 * Start the soup ids of a new shard past the soup ids of the main database and of the other shards
+	 * @param shardDb
+	 */
+	private void seedSoupIds(SQLiteDatabase shardDb) {
+		if (getSoupIdSequence(shardDb) >= 0) {
+			return;
+		}
+		long maxSoupId = getSoupIdSequence(getDatabase());
+		for (SmartStore shard : shards.values()) {
+			maxSoupId = Math.max(maxSoupId, getSoupIdSequence(shard.getDatabase()));
+		}
+		synchronized (shardDb) {
+			if (getSoupIdSequence(shardDb) >= 0) {
+				return;
+			}
+			long firstSoupId = (Math.max(maxSoupId, 0) / SOUP_ID_RANGE + 1) * SOUP_ID_RANGE;
+			shardDb.execSQL("INSERT INTO " + SEQUENCE_TABLE + " (name, seq) VALUES (?, ?)", new Object[] {SOUP_ATTRS_TABLE, firstSoupId});
+		}
+	}
+
+	/**
+	 * @param db
+	 * @return last soup id handed out in the given database or -1 if it never handed one out
+	 */
+	private static long getSoupIdSequence(SQLiteDatabase db) {
+		synchronized (db) {
+			Cursor cursor = null;
+			try {
+				cursor = db.rawQuery("SELECT seq FROM " + SEQUENCE_TABLE + " WHERE name = ?", new String[] {SOUP_ATTRS_TABLE});
+				return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Attach the shards to the main database's writable connection (if not already attached)
+	 * NB: attaching can't happen within a transaction
+	 */
+	private void attachShards() {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			if (attachedDb != db) {
+				attachedDb = db;
+				attachedShardNames.clear();
+				for (Map.Entry<String, String> entry : soupNameToShardName.entrySet()) {
+					SmartSqlHelper.getInstance(db).setSoupShardDatabase(entry.getKey(), shards.get(entry.getValue()).getDatabase());
+				}
+			}
+			for (Map.Entry<String, SmartStore> entry : shards.entrySet()) {
+				String shardName = entry.getKey();
+				if (!attachedShardNames.contains(shardName)) {
+					if (db.inTransaction()) {
+						throw new SmartStoreException("Can't attach shard " + shardName + " within a transaction");
+					}
+					String path = entry.getValue().getDatabase().getPath();
+					db.execSQL("ATTACH DATABASE ? AS " + SHARD_SCHEMA_PREFIX + shardName + " KEY ?", new Object[] {path, passcode == null ? "" : passcode});
+					attachedShardNames.add(shardName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param querySpec
+	 * @return store of the shard holding all the soups referenced by the query
+	 *         or null if the query should run against the main database (with the shards attached if needed)
+	 */
+	private SmartStore getQueryStore(QuerySpec querySpec) {
+		Set<String> shardNames = new HashSet<>();
+		boolean mainDb = false;
+		Matcher matcher = SmartSqlHelper.SOUP_PATH_PATTERN.matcher(querySpec.smartSql);
+		while (matcher.find()) {
+			String shardName = soupNameToShardName.get(matcher.group(1).split(":")[0]);
+			if (shardName == null) {
+				mainDb = true;
+			} else {
+				shardNames.add(shardName);
+			}
+		}
+		if (shardNames.isEmpty()) {
+			return null;
+		}
+		if (!mainDb && shardNames.size() == 1) {
+			return shards.get(shardNames.iterator().next());
+		}
+		attachShards();
+		return null;
+	}
+
+	@Override
+	public void registerSoupWithSpec(SoupSpec soupSpec, IndexSpec[] indexSpecs) {
+		SmartStore shard = getShardStore(soupSpec.getSoupName());
+		if (shard != null) {
+			shard.registerSoupWithSpec(soupSpec, indexSpecs);
+		} else {
+			super.registerSoupWithSpec(soupSpec, indexSpecs);
+		}
+	}
+
+	@Override
+	public void alterSoup(String soupName, SoupSpec soupSpec, IndexSpec[] indexSpecs, boolean reIndexData) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.alterSoup(soupName, soupSpec, indexSpecs, reIndexData);
+		} else {
+			super.alterSoup(soupName, soupSpec, indexSpecs, reIndexData);
+		}
+	}
+
+	@Override
+	public void reIndexSoup(String soupName, String[] indexPaths, boolean handleTx) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.reIndexSoup(soupName, indexPaths, handleTx);
+		} else {
+			super.reIndexSoup(soupName, indexPaths, handleTx);
+		}
+	}
+
+	@Override
+	public IndexSpec[] getSoupIndexSpecs(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.getSoupIndexSpecs(soupName) : super.getSoupIndexSpecs(soupName);
+	}
+
+	@Override
+	public void clearSoup(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.clearSoup(soupName);
+		} else {
+			super.clearSoup(soupName);
+		}
+	}
+
+	@Override
+	public boolean hasSoup(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.hasSoup(soupName) : super.hasSoup(soupName);
+	}
+
+	@Override
+	public void dropSoup(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.dropSoup(soupName);
+		} else {
+			super.dropSoup(soupName);
+		}
+	}
+
+	@Override
+	public List<String> getAllSoupNames() {
+		List<String> soupNames = new ArrayList<>(super.getAllSoupNames());
+		for (SmartStore shard : shards.values()) {
+			soupNames.addAll(shard.getAllSoupNames());
+		}
+		return soupNames;
+	}
+
+	@Override
+	public int getDatabaseSize() {
+		// Main database plus every shard's database file and external blobs
+		long size = super.getDatabaseSize();
+		for (SmartStore shard : shards.values()) {
+			size += shard.getDatabaseSize();
+		}
+		return (int) Math.min(Integer.MAX_VALUE, size);
+	}
+
+	@Override
+	public StoreCompactor.Stats getCompactionStats() {
+		// Page counts of all databases, in pages of the main database
+		StoreCompactor.Stats stats = super.getCompactionStats();
+		long pageCount = stats.pageCount;
+		long freelistCount = stats.freelistCount;
+		StoreCompactor.AutoVacuum autoVacuum = stats.autoVacuum;
+		for (SmartStore shard : shards.values()) {
+			StoreCompactor.Stats shardStats = shard.getCompactionStats();
+			pageCount += shardStats.pageCount * shardStats.pageSize / stats.pageSize;
+			freelistCount += shardStats.freelistCount * shardStats.pageSize / stats.pageSize;
+			// Least capable mode wins: free pages of a database that is not incremental can't be reclaimed by compact
+			if (shardStats.autoVacuum.ordinal() < autoVacuum.ordinal()) {
+				autoVacuum = shardStats.autoVacuum;
+			}
+		}
+		return new StoreCompactor.Stats(stats.pageSize, pageCount, freelistCount, autoVacuum);
+	}
+
+	@Override
+	public long compact() {
+		long pagesReclaimed = super.compact();
+		for (SmartStore shard : shards.values()) {
+			pagesReclaimed += shard.compact();
+		}
+		return pagesReclaimed;
+	}
+
+	@Override
+	public void setLongOperationChunking(int chunkSize, long pauseMs) {
+		super.setLongOperationChunking(chunkSize, pauseMs);
+		for (SmartStore shard : shards.values()) {
+			shard.setLongOperationChunking(chunkSize, pauseMs);
+		}
+	}
+
+	@Override
+	public void setLongOperationProgressListener(AlterSoupLongOperation.ProgressListener listener) {
+		super.setLongOperationProgressListener(listener);
+		for (SmartStore shard : shards.values()) {
+			shard.setLongOperationProgressListener(listener);
+		}
+	}
+
+	@Override
+	public LongOperation[] getLongOperations() {
+		// Long operations of the shards are tied to the shard's store (resumeLongOperations runs them all)
+		List<LongOperation> longOperations = new ArrayList<>(Arrays.asList(super.getLongOperations()));
+		for (SmartStore shard : shards.values()) {
+			longOperations.addAll(Arrays.asList(shard.getLongOperations()));
+		}
+		return longOperations.toArray(new LongOperation[0]);
+	}
+
+	@Override
+	public SoupSpec getSoupSpec(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.getSoupSpec(soupName) : super.getSoupSpec(soupName);
+	}
+
+	@Override
+	public JSONArray query(QuerySpec querySpec, int pageIndex) throws JSONException {
+		SmartStore shard = getQueryStore(querySpec);
+		return shard != null ? shard.query(querySpec, pageIndex) : super.query(querySpec, pageIndex);
+	}
+
+	@Override
+	QuerySpec queryPage(QuerySpec querySpec, int pageIndex, int lookAheadRows, JSONArray results) throws JSONException {
+		SmartStore shard = getQueryStore(querySpec);
+		return shard != null
+				? shard.queryPage(querySpec, pageIndex, lookAheadRows, results)
+				: super.queryPage(querySpec, pageIndex, lookAheadRows, results);
+	}
+
+	@Override
+	public void queryEach(QuerySpec querySpec, QueryRowHandler handler) throws JSONException {
+		SmartStore shard = getQueryStore(querySpec);
+		if (shard != null) {
+			shard.queryEach(querySpec, handler);
+		} else {
+			super.queryEach(querySpec, handler);
+		}
+	}
+
+	@Override
+	public QuerySpec queryEach(QuerySpec querySpec, int pageIndex, int lookAheadRows, QueryRowHandler handler) throws JSONException {
+		SmartStore shard = getQueryStore(querySpec);
+		return shard != null
+				? shard.queryEach(querySpec, pageIndex, lookAheadRows, handler)
+				: super.queryEach(querySpec, pageIndex, lookAheadRows, handler);
+	}
+
+	@Override
+	public int countQuery(QuerySpec querySpec) {
+		SmartStore shard = getQueryStore(querySpec);
+		return shard != null ? shard.countQuery(querySpec) : super.countQuery(querySpec);
+	}
+
+	@Override
+	public JSONObject create(String soupName, JSONObject soupElt) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.create(soupName, soupElt) : super.create(soupName, soupElt);
+	}
+
+	@Override
+	public JSONObject create(String soupName, JSONObject soupElt, boolean handleTx) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.create(soupName, soupElt, handleTx) : super.create(soupName, soupElt, handleTx);
+	}
+
+	@Override
+	public JSONArray retrieve(String soupName, long[] soupEntryIds) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.retrieve(soupName, soupEntryIds) : super.retrieve(soupName, soupEntryIds);
+	}
+
+	@Override
+	public JSONObject update(String soupName, JSONObject soupElt, long soupEntryId) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.update(soupName, soupElt, soupEntryId) : super.update(soupName, soupElt, soupEntryId);
+	}
+
+	@Override
+	public JSONObject update(String soupName, JSONObject soupElt, long soupEntryId, boolean handleTx) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.update(soupName, soupElt, soupEntryId, handleTx) : super.update(soupName, soupElt, soupEntryId, handleTx);
+	}
+
+	@Override
+	public JSONObject upsert(String soupName, JSONObject soupElt) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.upsert(soupName, soupElt) : super.upsert(soupName, soupElt);
+	}
+
+	@Override
+	public JSONObject upsert(String soupName, JSONObject soupElt, String externalIdPath) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.upsert(soupName, soupElt, externalIdPath) : super.upsert(soupName, soupElt, externalIdPath);
+	}
+
+	@Override
+	public JSONObject upsert(String soupName, JSONObject soupElt, String externalIdPath, boolean handleTx) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.upsert(soupName, soupElt, externalIdPath, handleTx) : super.upsert(soupName, soupElt, externalIdPath, handleTx);
+	}
+
+	@Override
+	public JSONArray upsertAll(String soupName, JSONArray soupElts, String externalIdPath) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.upsertAll(soupName, soupElts, externalIdPath) : super.upsertAll(soupName, soupElts, externalIdPath);
+	}
+
+	@Override
+	public JSONArray upsertAll(String soupName, JSONArray soupElts, String externalIdPath, boolean handleTx) throws JSONException {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.upsertAll(soupName, soupElts, externalIdPath, handleTx) : super.upsertAll(soupName, soupElts, externalIdPath, handleTx);
+	}
+
+	@Override
+	public long lookupSoupEntryId(String soupName, String fieldPath, String fieldValue) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.lookupSoupEntryId(soupName, fieldPath, fieldValue) : super.lookupSoupEntryId(soupName, fieldPath, fieldValue);
+	}
+
+	@Override
+	public void delete(String soupName, long[] soupEntryIds) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.delete(soupName, soupEntryIds);
+		} else {
+			super.delete(soupName, soupEntryIds);
+		}
+	}
+
+	@Override
+	public void delete(String soupName, long[] soupEntryIds, boolean handleTx) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.delete(soupName, soupEntryIds, handleTx);
+		} else {
+			super.delete(soupName, soupEntryIds, handleTx);
+		}
+	}
+
+	@Override
+	public void deleteByQuery(String soupName, QuerySpec querySpec) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.deleteByQuery(soupName, querySpec);
+		} else {
+			super.deleteByQuery(soupName, querySpec);
+		}
+	}
+
+	@Override
+	public void deleteByQuery(String soupName, QuerySpec querySpec, boolean handleTx) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.deleteByQuery(soupName, querySpec, handleTx);
+		} else {
+			super.deleteByQuery(soupName, querySpec, handleTx);
+		}
+	}
+
+	@Override
+	int importSoup(SoupSpec soupSpec, IndexSpec[] indexSpecs, BufferedReader reader, int entriesPerTransaction) throws JSONException, IOException {
+		SmartStore shard = getShardStore(soupSpec.getSoupName());
+		return shard != null
+				? shard.importSoup(soupSpec, indexSpecs, reader, entriesPerTransaction)
+				: super.importSoup(soupSpec, indexSpecs, reader, entriesPerTransaction);
+	}
+
+	@Override
+	public boolean usesExternalStorage(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.usesExternalStorage(soupName) : super.usesExternalStorage(soupName);
+	}
+
+	@Override
+	public boolean usesBinaryEncoding(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.usesBinaryEncoding(soupName) : super.usesBinaryEncoding(soupName);
+	}
+
+	@Override
+	public boolean usesCompression(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.usesCompression(soupName) : super.usesCompression(soupName);
+	}
+
+	@Override
+	public SoupEntryCache getEntryCache(String soupName) {
+		SmartStore shard = getShardStore(soupName);
+		return shard != null ? shard.getEntryCache(soupName) : super.getEntryCache(soupName);
+	}
+
+	@Override
+	public void registerSoupChangeListener(String soupName, SoupChangeListener listener) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.registerSoupChangeListener(soupName, listener);
+		} else {
+			super.registerSoupChangeListener(soupName, listener);
+		}
+	}
+
+	@Override
+	public void unregisterSoupChangeListener(String soupName, SoupChangeListener listener) {
+		SmartStore shard = getShardStore(soupName);
+		if (shard != null) {
+			shard.unregisterSoupChangeListener(soupName, listener);
+		} else {
+			super.unregisterSoupChangeListener(soupName, listener);
+		}
+	}
+}
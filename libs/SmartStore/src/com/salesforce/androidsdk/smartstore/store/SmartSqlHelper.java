@@ -27,8 +27,14 @@
 package com.salesforce.androidsdk.smartstore.store;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +50,7 @@ import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException
 public class SmartSqlHelper  {
 
 	public static final Pattern SOUP_PATH_PATTERN = Pattern.compile("\\{([^}]+)\\}");
+	private static final Pattern QUALIFIED_JSON_EXTRACT_PATTERN = Pattern.compile("([A-Za-z_][A-Za-z0-9_]*)\\.json_extract\\(soup");
 	private static Map<SQLiteDatabase, SmartSqlHelper> INSTANCES;
 
 	/**
@@ -64,8 +71,117 @@ public class SmartSqlHelper  {
 		return instance;
 	}
 
+	/**
+	 * Releases the instance of this class associated with the database specified.
+	 *
+	 * @param db Database.
+	 */
+	static synchronized void releaseInstance(SQLiteDatabase db) {
+		if (INSTANCES != null) {
+			INSTANCES.remove(db);
+		}
+	}
+
     public static final String SOUP = "_soup";
-	
+
+	// Default maximum number of converted queries kept in cache
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	// Cache of smart sql to converted sql (access ordered so that least recently used queries get evicted first)
+	private final LinkedHashMap<String, ConvertedSql> smartSqlToSqlMap = new LinkedHashMap<String, ConvertedSql>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ConvertedSql> eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	// Databases of soups living in attached shards (see ShardedSmartStore) by soup name
+	private final Map<String, SQLiteDatabase> soupShardDbs = new ConcurrentHashMap<>();
+
+	private int cacheSize = DEFAULT_CACHE_SIZE;
+	private long cacheHitCount;
+	private long cacheMissCount;
+
+	// Bumped whenever converted queries are evicted because soups changed: a conversion started before can't be cached
+	private long cacheGeneration;
+
+	/**
+	 * Sets the maximum number of converted queries kept in cache
+	 * @param cacheSize 0 to turn caching off
+	 */
+	public void setCacheSize(int cacheSize) {
+		synchronized (smartSqlToSqlMap) {
+			this.cacheSize = cacheSize;
+			while (smartSqlToSqlMap.size() > cacheSize) {
+				Iterator<String> iterator = smartSqlToSqlMap.keySet().iterator();
+				iterator.next();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return number of conversions served from cache
+	 */
+	public long getCacheHitCount() {
+		synchronized (smartSqlToSqlMap) {
+			return cacheHitCount;
+		}
+	}
+
+	/**
+	 * @return number of conversions that had to parse the smart sql
+	 */
+	public long getCacheMissCount() {
+		synchronized (smartSqlToSqlMap) {
+			return cacheMissCount;
+		}
+	}
+
+	/**
+	 * Remove converted queries referencing the given soup from the cache
+	 * Should be called whenever the soup's table or columns change (register / alter / drop)
+	 * @param soupName
+	 */
+	public void removeFromCache(String soupName) {
+		synchronized (smartSqlToSqlMap) {
+			cacheGeneration++;
+			Iterator<ConvertedSql> iterator = smartSqlToSqlMap.values().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().soupNames.contains(soupName)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Look up meta data of the given soup in the database of its shard
+	 * Queries referencing such soups are converted for the connection the shard is attached to and are never cached
+	 * @param soupName
+	 * @param shardDb writable database of the shard
+	 */
+	void setSoupShardDatabase(String soupName, SQLiteDatabase shardDb) {
+		soupShardDbs.put(soupName, shardDb);
+		removeFromCache(soupName);
+	}
+
+	private SQLiteDatabase getSoupShardDatabase(String soupName) {
+		return soupShardDbs.get(soupName);
+	}
+
+	/**
+	 * Empty cache of converted queries and reset hit/miss counters
+	 */
+	public void clearCache() {
+		synchronized (smartSqlToSqlMap) {
+			cacheGeneration++;
+			smartSqlToSqlMap.clear();
+			cacheHitCount = 0;
+			cacheMissCount = 0;
+		}
+	}
+
 	/**
 	 * Convert "smart" sql query to actual sql
 	 * A "smart" sql query is a query where columns are of the form {soupName:path} and tables are of the form {soupName}
@@ -79,6 +195,58 @@ public class SmartSqlHelper  {
 	 * @return actual sql     
 	 */
 	public String convertSmartSql(SQLiteDatabase db, String smartSql) {
+		return convertSmartSql(db, smartSql, false);
+	}
+
+	/**
+	 * Convert "smart" sql query to actual sql using only soup meta data already cached in DBHelper
+	 * Does not access the database, so it can be called without holding the database lock
+	 *
+	 * @param db
+	 * @param smartSql
+	 * @return actual sql or null if meta data for one of the soups referenced is not cached
+	 */
+	public String convertSmartSqlFromCache(SQLiteDatabase db, String smartSql) {
+		try {
+			return convertSmartSql(db, smartSql, true);
+		} catch (NotCachedException e) {
+			return null;
+		}
+	}
+
+	private String convertSmartSql(SQLiteDatabase db, String smartSql, boolean cacheOnly) {
+		final long generation;
+		synchronized (smartSqlToSqlMap) {
+			ConvertedSql convertedSql = smartSqlToSqlMap.get(smartSql);
+			if (convertedSql != null) {
+				cacheHitCount++;
+				return convertedSql.sql;
+			}
+			cacheMissCount++;
+			generation = cacheGeneration;
+		}
+		Set<String> soupNames = new HashSet<>();
+		String sql = parseSmartSql(db, smartSql, cacheOnly, soupNames);
+		boolean cacheable = !referencesShard(soupNames);
+		synchronized (smartSqlToSqlMap) {
+			// Soups changed while parsing - conversion might be based on the old soup meta data
+			if (cacheSize > 0 && cacheable && generation == cacheGeneration) {
+				smartSqlToSqlMap.put(smartSql, new ConvertedSql(sql, soupNames));
+			}
+		}
+		return sql;
+	}
+
+	private boolean referencesShard(Set<String> soupNames) {
+		for (String soupName : soupNames) {
+			if (soupShardDbs.containsKey(soupName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String parseSmartSql(SQLiteDatabase db, String smartSql, boolean cacheOnly, Set<String> soupNames) {
 
 		// Select's only
 		String smartSqlLowerCase = smartSql.toLowerCase(Locale.getDefault()).trim();
@@ -95,10 +263,11 @@ public class SmartSqlHelper  {
 			int position = matcher.start();
 			String[] parts = match.split(":");
 			String soupName = parts[0];
-			String soupTableName = getSoupTableNameForSmartSql(db, soupName, position);
+			soupNames.add(soupName);
+			String soupTableName = getSoupTableNameForSmartSql(db, soupName, position, cacheOnly);
 			boolean tableQualified = smartSql.charAt(position-1) == '.';
 			String tableQualifier = tableQualified ? "" : soupTableName + ".";
-			boolean useExternalStorage = DBHelper.getInstance(db).getFeatures(db, soupName).contains(SoupSpec.FEATURE_EXTERNAL_STORAGE);
+			boolean useExternalStorage = getFeaturesForSmartSql(db, soupName, cacheOnly).contains(SoupSpec.FEATURE_EXTERNAL_STORAGE);
 
 			// {soupName}
 			if (parts.length == 1) {
@@ -130,7 +299,7 @@ public class SmartSqlHelper  {
 				}
 				// {soupName:path}
 				else {
-					String columnName = getColumnNameForPathForSmartSql(db, soupName, path, position);
+					String columnName = getColumnNameForPathForSmartSql(db, soupName, path, position, cacheOnly);
 					matcher.appendReplacement(sql, columnName.replace("$", "\\$") /* treat any $ as litteral */);
 				}
 			} else if (parts.length > 2) {
@@ -144,13 +313,31 @@ public class SmartSqlHelper  {
 
 		// With json1 support, the column name could be an expression of the form json_extract(soup, '$.x.y.z')
 		// We can't have TABLE_x.json_extract(soup, ...) or table_alias.json_extract(soup, ...) in the sql query
-        // Instead we should have json_extract(TABLE_x.soup, ...)
-		sqlStr = sqlStr.replaceAll("([^ ]+)\\.json_extract\\(soup", "json_extract($1.soup");
+        // Instead we should have json_extract(TABLE_x.soup, ...) - which still matches the expression index on json_extract(soup, ...)
+        // NB: only the qualifier is moved so that references inside parentheses or next to operators are left intact
+		sqlStr = QUALIFIED_JSON_EXTRACT_PATTERN.matcher(sqlStr).replaceAll("json_extract($1.soup");
 
 		// Done
 		return sqlStr;
 	}
 	
+	private String getColumnNameForPathForSmartSql(SQLiteDatabase db, String soupName, String path, int position, boolean cacheOnly) {
+		SQLiteDatabase shardDb = getSoupShardDatabase(soupName);
+		if (shardDb != null) {
+			// Shards are only attached to the writable connection
+			if (cacheOnly) {
+				throw new NotCachedException();
+			}
+			synchronized (shardDb) {
+				return getColumnNameForPathForSmartSql(shardDb, soupName, path, position);
+			}
+		}
+		if (cacheOnly && DBHelper.getInstance(db).getCachedIndexSpecs(soupName) == null) {
+			throw new NotCachedException();
+		}
+		return getColumnNameForPathForSmartSql(db, soupName, path, position);
+	}
+
 	private String getColumnNameForPathForSmartSql(SQLiteDatabase db, String soupName, String path, int position) {
 		String columnName = null;
 		try {
@@ -161,18 +348,74 @@ public class SmartSqlHelper  {
 		return columnName;
 	}
 
-	private String getSoupTableNameForSmartSql(SQLiteDatabase db, String soupName, int position) {
-		String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+	private String getSoupTableNameForSmartSql(SQLiteDatabase db, String soupName, int position, boolean cacheOnly) {
+		SQLiteDatabase shardDb = getSoupShardDatabase(soupName);
+		if (shardDb != null && cacheOnly) {
+			throw new NotCachedException();
+		}
+		String soupTableName;
+		if (shardDb != null) {
+			synchronized (shardDb) {
+				soupTableName = DBHelper.getInstance(shardDb).getSoupTableName(shardDb, soupName);
+			}
+		} else {
+			soupTableName = cacheOnly
+					? DBHelper.getInstance(db).getCachedTableName(soupName)
+					: DBHelper.getInstance(db).getSoupTableName(db, soupName);
+		}
 		if (soupTableName == null) {
+			if (cacheOnly) {
+				throw new NotCachedException();
+			}
 			reportSmartSqlError("Unknown soup " + soupName, position);
 		}
 		return soupTableName;
 	}
+
+	private List<String> getFeaturesForSmartSql(SQLiteDatabase db, String soupName, boolean cacheOnly) {
+		SQLiteDatabase shardDb = getSoupShardDatabase(soupName);
+		if (shardDb != null) {
+			if (cacheOnly) {
+				throw new NotCachedException();
+			}
+			synchronized (shardDb) {
+				return DBHelper.getInstance(shardDb).getFeatures(shardDb, soupName);
+			}
+		}
+		List<String> features = cacheOnly
+				? DBHelper.getInstance(db).getCachedFeatures(soupName)
+				: DBHelper.getInstance(db).getFeatures(db, soupName);
+		if (features == null && cacheOnly) {
+			throw new NotCachedException();
+		}
+		return features;
+	}
 	
 	private void reportSmartSqlError(String message, int position) {
 		throw new SmartSqlException(message + " at character " + position);
 	}
     
+    /**
+     * Converted sql along with the names of the soups it references
+     */
+    private static class ConvertedSql {
+		final String sql;
+		final Set<String> soupNames;
+
+		ConvertedSql(String sql, Set<String> soupNames) {
+			this.sql = sql;
+			this.soupNames = soupNames;
+		}
+	}
+
+    /**
+     * Thrown internally when converting from cache only and soup meta data is not cached
+     */
+    private static class NotCachedException extends RuntimeException {
+
+		private static final long serialVersionUID = 3276215637104525489L;
+	}
+
     /**
      * Exception thrown when smart sql failed to be parsed
      */
@@ -39,17 +39,34 @@ import com.salesforce.androidsdk.util.JSONObjectHelper;
 
 import net.sqlcipher.database.SQLiteDatabase;
 import net.sqlcipher.database.SQLiteOpenHelper;
+import net.sqlcipher.database.SQLiteStatement;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
 
 /**
  * Smart store
@@ -65,6 +82,14 @@ public class SmartStore  {
     public static final int DEFAULT_PAGE_SIZE = 10;
 	private static final String TAG = "SmartStore";
 
+	// Max number of values in the IN (...) queries used to look up external ids (sqlite allows up to 999 variables)
+	private static final int MAX_LOOKUP_BATCH_SIZE = 500;
+
+	// Page size of query streaming soup elements to export (all pages are read)
+	private static final int EXPORT_PAGE_SIZE = 1000;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
 	/**
 	 * Table to keep track of soup names.
 	 *
@@ -81,6 +106,9 @@ public class SmartStore  {
 	// Table to keep track of soup's index specs
     protected static final String SOUP_INDEX_MAP_TABLE = "soup_index_map";
 
+    // Table to keep track of soup's compound index specs
+    protected static final String SOUP_COMPOUND_INDEX_MAP_TABLE = "soup_compound_index_map";
+
     // Table to keep track of status of long operations in flight
     protected static final String LONG_OPERATIONS_STATUS_TABLE = "long_operations_status";
 
@@ -90,6 +118,9 @@ public class SmartStore  {
     protected static final String COLUMN_NAME_COL = "columnName";
     protected static final String COLUMN_TYPE_COL = "columnType";
 
+    // Column of the soup compound index map table
+    protected static final String SPEC_COL = "spec";
+
     // Columns of a soup table
     protected static final String ID_COL = "id";
     protected static final String CREATED_COL = "created";
@@ -125,6 +156,11 @@ public class SmartStore  {
 	// background executor
 	private final ExecutorService threadPool = Executors.newFixedThreadPool(1);
 
+	// Chunking of long operations (copy / re-index of soup elements)
+	private volatile int longOperationChunkSize = AlterSoupLongOperation.DEFAULT_CHUNK_SIZE;
+	private volatile long longOperationPauseMs = AlterSoupLongOperation.DEFAULT_PAUSE_MS;
+	private volatile AlterSoupLongOperation.ProgressListener longOperationProgressListener;
+
 	/**
      * Changes the encryption key on the smartstore.
      *
@@ -181,6 +217,25 @@ public class SmartStore  {
 
 	        // Create alter_soup_status table
 	        createLongOperationsStatusTable(db);
+
+	        // Create soup_compound_index_map table
+	        createCompoundIndexMapTable(db);
+    	}
+    }
+
+    /**
+     * Create soup_compound_index_map table
+     * @param db
+     */
+    public static void createCompoundIndexMapTable(SQLiteDatabase db) {
+    	synchronized(db) {
+    		StringBuilder sb = new StringBuilder();
+	    	sb.append("CREATE TABLE IF NOT EXISTS ").append(SOUP_COMPOUND_INDEX_MAP_TABLE).append(" (")
+	        .append(SOUP_NAME_COL).append(" TEXT")
+	        .append(",").append(SPEC_COL).append(" TEXT")
+	        .append(")");
+	        db.execSQL(sb.toString());
+	        db.execSQL(String.format("CREATE INDEX IF NOT EXISTS %s on %s ( %s )", SOUP_COMPOUND_INDEX_MAP_TABLE + "_0", SOUP_COMPOUND_INDEX_MAP_TABLE, SOUP_NAME_COL));
     	}
     }
 
@@ -249,30 +304,252 @@ public class SmartStore  {
 		return DBHelper.getInstance(getDatabase()).getLastExplainQueryPlan();
 	}
 
+	/**
+	 * Enable write-behind mode with default thresholds and full durability
+	 * @return write-behind queue to queue mutations through
+	 */
+	public WriteBehindQueue enableWriteBehind() {
+		return enableWriteBehind(WriteBehindQueue.DEFAULT_MAX_PENDING_WRITES, WriteBehindQueue.DEFAULT_MAX_DELAY_MS, WriteBehindQueue.Durability.FULL);
+	}
+
+	/**
+	 * Enable write-behind mode: mutations queued through the returned queue are applied in a single transaction
+	 * once maxPendingWrites are queued or maxDelayMs after the first one was queued
+	 * Queued mutations of a soup are applied before any read or synchronous write of that soup (by any store on the same database)
+	 * NB: call disableWriteBehind before closing the database, otherwise mutations still queued are lost
+	 * @param maxPendingWrites
+	 * @param maxDelayMs
+	 * @param durability
+	 * @return write-behind queue to queue mutations through
+	 */
+	public WriteBehindQueue enableWriteBehind(int maxPendingWrites, long maxDelayMs, WriteBehindQueue.Durability durability) {
+		return WriteBehindQueue.enable(this, maxPendingWrites, maxDelayMs, durability);
+	}
+
+	/**
+	 * Apply queued mutations and disable write-behind mode
+	 */
+	public void disableWriteBehind() {
+		WriteBehindQueue queue = getWriteBehindQueue();
+		if (queue != null) {
+			queue.disable();
+		}
+	}
+
+	/**
+	 * @return write-behind queue if write-behind mode is enabled, null otherwise
+	 */
+	public WriteBehindQueue getWriteBehindQueue() {
+		return WriteBehindQueue.getInstance(getDatabase());
+	}
+
+	/**
+	 * Register listener to be notified of changes made to a soup
+	 * Changes are reported once per committed transaction, changes of transactions that roll back are never reported
+	 * NB: only transactions started through SmartStore (see #beginTransaction) are observed
+	 * @param soupName
+	 * @param listener
+	 */
+	public void registerSoupChangeListener(String soupName, SoupChangeListener listener) {
+		SoupChangeNotifier.getInstance(getDatabase()).addListener(soupName, listener);
+	}
+
+	/**
+	 * Unregister listener registered with registerSoupChangeListener
+	 * @param soupName
+	 * @param listener
+	 */
+	public void unregisterSoupChangeListener(String soupName, SoupChangeListener listener) {
+		SoupChangeNotifier.getInstance(getDatabase()).removeListener(soupName, listener);
+	}
+
+	/**
+	 * Configure how alterSoup, reIndexSoup and resumeLongOperations go through soup elements:
+	 * elements are processed chunkSize at a time, each chunk in its own transaction (checkpointed for alter soup)
+	 * with a pause of pauseMs between chunks during which other users of the database can get in
+	 * @param chunkSize number of soup elements per chunk
+	 * @param pauseMs pause between chunks in milliseconds (0 for no pause)
+	 */
+	public void setLongOperationChunking(int chunkSize, long pauseMs) {
+		if (chunkSize <= 0) throw new SmartStoreException("Invalid chunk size: " + chunkSize);
+		if (pauseMs < 0) throw new SmartStoreException("Invalid pause: " + pauseMs);
+		this.longOperationChunkSize = chunkSize;
+		this.longOperationPauseMs = pauseMs;
+	}
+
+	/**
+	 * @return number of soup elements processed per chunk by long operations
+	 */
+	public int getLongOperationChunkSize() {
+		return longOperationChunkSize;
+	}
+
+	/**
+	 * @return pause between chunks of long operations in milliseconds
+	 */
+	public long getLongOperationPauseMs() {
+		return longOperationPauseMs;
+	}
+
+	/**
+	 * Set listener to be notified after every chunk processed by alterSoup or resumeLongOperations
+	 * NB: listener is called on the thread running the operation, outside of any transaction
+	 * @param listener or null
+	 */
+	public void setLongOperationProgressListener(AlterSoupLongOperation.ProgressListener listener) {
+		this.longOperationProgressListener = listener;
+	}
+
+	/**
+	 * @return listener set with setLongOperationProgressListener or null
+	 */
+	public AlterSoupLongOperation.ProgressListener getLongOperationProgressListener() {
+		return longOperationProgressListener;
+	}
+
+	/**
+	 * Pause between two chunks of a long operation
+	 */
+	void pauseBetweenChunks() {
+		long pauseMs = longOperationPauseMs;
+		if (pauseMs > 0) {
+			try {
+				Thread.sleep(pauseMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Wait for an alter soup running on another thread to be done copying the data of the soup (see AlterSoupLongOperation#copyTable)
+	 * @param soupName or null for queries not tied to a soup
+	 */
+	private void waitForSoupCopy(String soupName) {
+		if (soupName != null) {
+			SQLiteDatabase db = getDatabase();
+			DBHelper.getInstance(db).waitForSoupCopy(db, Collections.singletonList(soupName));
+		}
+	}
+
+	/**
+	 * Apply mutations queued in write-behind mode for the given soup
+	 * @param soupName or null for any soup
+	 */
+	private void flushPendingWrites(String soupName) {
+		WriteBehindQueue queue = WriteBehindQueue.getInstance(getDatabase());
+		if (queue != null) {
+			queue.flushIfPending(soupName);
+		}
+	}
+
 	/**
      * Get database size
      */
     public int getDatabaseSize() {
-    	int size =  (int) (new File(getDatabase().getPath()).length()); // XXX That cast will be trouble if the file is more than 2GB
+    	long size = new File(getDatabase().getPath()).length();
     	if (dbOpenHelper instanceof DBOpenHelper) {
-    		size += ((DBOpenHelper) dbOpenHelper).getSizeOfDir(null);
+    		size += ((DBOpenHelper) dbOpenHelper).getSizeOfDirAsLong(null);
     	}
-    	return size;
+    	return (int) Math.min(Integer.MAX_VALUE, size); // sizes above 2GB are reported as Integer.MAX_VALUE
     }
 
+	/**
+	 * @return page usage of the database (free pages can be reclaimed by compaction)
+	 */
+	public StoreCompactor.Stats getCompactionStats() {
+		return StoreCompactor.getStats(getDatabase());
+	}
+
+	/**
+	 * @return compression ratio and time spent compressing / decompressing soup elements (for all stores of the process, see SoupCompressor)
+	 */
+	public SoupCompressor.Stats getCompressionStats() {
+		return SoupCompressor.getStats();
+	}
+
+	/**
+	 * Hand free pages of the database back to the file system now
+	 * NB: only stores using auto_vacuum=INCREMENTAL can be compacted (see DBOpenHelper#migrateToIncrementalVacuum)
+	 * @return number of pages reclaimed
+	 */
+	public long compact() {
+		return StoreCompactor.compact(getDatabase(), StoreCompactor.DEFAULT_PAGES_PER_STEP);
+	}
+
+	/**
+	 * Enable automatic compaction with default settings
+	 * @return compactor
+	 */
+	public StoreCompactor enableAutoCompaction() {
+		return enableAutoCompaction(StoreCompactor.DEFAULT_IDLE_DELAY_MS, StoreCompactor.DEFAULT_PAGES_PER_STEP, StoreCompactor.DEFAULT_MIN_FREE_PAGES);
+	}
+
+	/**
+	 * Enable automatic compaction: once no transaction was started for idleDelayMs and at least minFreePages pages are free,
+	 * free pages are handed back to the file system pagesPerStep pages at a time (stopping as soon as the store is used again)
+	 * NB: call disableAutoCompaction before closing the database
+	 * @param idleDelayMs
+	 * @param pagesPerStep
+	 * @param minFreePages
+	 * @return compactor
+	 */
+	public StoreCompactor enableAutoCompaction(long idleDelayMs, int pagesPerStep, int minFreePages) {
+		return StoreCompactor.enable(getDatabase(), idleDelayMs, pagesPerStep, minFreePages);
+	}
+
+	/**
+	 * Disable automatic compaction
+	 */
+	public void disableAutoCompaction() {
+		StoreCompactor compactor = StoreCompactor.getInstance(getDatabase());
+		if (compactor != null) {
+			compactor.disable();
+		}
+	}
+
     /**
      * Start transaction
 	 * NB: to avoid deadlock, caller should have synchronized(store.getDatabase()) around the whole transaction
+	 *     reads done by that thread until the transaction ends go to the writable database (so they see uncommitted changes)
      */
     public void beginTransaction() {
-    	getDatabase().beginTransaction();
+    	beginTransaction(getDatabase());
+    }
+
+    /**
+     * Start transaction on database of store
+     * Soup changes made in the transaction are reported to soup change listeners if it commits (see SoupChangeNotifier)
+     * @param db
+     */
+    static void beginTransaction(SQLiteDatabase db) {
+    	StoreCompactor.onTransaction(db);
+    	db.beginTransactionWithListener(SoupChangeNotifier.getInstance(db));
     }
 
     /**
      * End transaction (commit or rollback)
      */
     public void endTransaction() {
-    	getDatabase().endTransaction();
+    	endTransaction(getDatabase());
+    }
+
+    /**
+     * End transaction started with beginTransaction(SQLiteDatabase)
+     * Soup changes made in the transaction are handed to listeners only once the COMMIT went through
+     * @param db
+     */
+    static void endTransaction(SQLiteDatabase db) {
+    	boolean ended = false;
+    	try {
+    		db.endTransaction();
+    		ended = true;
+    	} finally {
+    		// Nested transactions end with the outermost one
+    		if (!db.inTransaction()) {
+    			SoupChangeNotifier.getInstance(db).onTransactionEnded(ended);
+    		}
+    	}
     }
 
     /**
@@ -313,6 +590,10 @@ public class SmartStore  {
 				throw new SmartStoreException("No indexSpecs specified for soup: " + soupName);
 			if (IndexSpec.hasJSON1(indexSpecs) && soupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE))
 				throw new SmartStoreException("Can't have JSON1 index specs in externally stored soup:" + soupName);
+			if (IndexSpec.hasJSON1(indexSpecs) && soupSpec.getFeatures().contains(SoupSpec.FEATURE_BINARY_ENCODING))
+				throw new SmartStoreException("Can't have JSON1 index specs in binary encoded soup:" + soupName);
+			if (IndexSpec.hasJSON1(indexSpecs) && soupSpec.getFeatures().contains(SoupSpec.FEATURE_COMPRESSION))
+				throw new SmartStoreException("Can't have JSON1 index specs in compressed soup:" + soupName);
 			if (hasSoup(soupName)) return; // soup already exist - do nothing
 
 			// First get a table name
@@ -326,7 +607,7 @@ public class SmartStore  {
 			}
 
 			try {
-				db.beginTransaction();
+				beginTransaction(db);
 				long soupId = DBHelper.getInstance(db).insert(db, SOUP_ATTRS_TABLE, soupMapValues);
 				soupTableName = getSoupTableName(soupId);
 
@@ -335,7 +616,7 @@ public class SmartStore  {
 
 				db.setTransactionSuccessful();
 			} finally {
-				db.endTransaction();
+				endTransaction(db);
 			}
 			if (SalesforceSDKManager.getInstance().getIsTestRun()) {
 				logRegisterSoupEvent(soupSpec, indexSpecs);
@@ -366,6 +647,12 @@ public class SmartStore  {
 		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
 			features.put("ExternalStorage");
 		}
+		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_BINARY_ENCODING)) {
+			features.put("BinaryEncoding");
+		}
+		if (soupSpec.getFeatures().contains(SoupSpec.FEATURE_COMPRESSION)) {
+			features.put("Compression");
+		}
 		final JSONObject attributes = new JSONObject();
 		try {
 			attributes.put("features", features);
@@ -388,6 +675,7 @@ public class SmartStore  {
 		StringBuilder createFtsStmt = new StringBuilder();            // to create fts table
         List<String> createIndexStmts = new ArrayList<String>();      // to create indices on new soup table
         List<ContentValues> soupIndexMapInserts = new ArrayList<ContentValues>();  // to be inserted in soup index map table
+        List<ContentValues> compoundIndexMapInserts = new ArrayList<ContentValues>();  // to be inserted in soup compound index map table
         IndexSpec[] indexSpecsToCache = new IndexSpec[indexSpecs.length];
         List<String> columnsForFts = new ArrayList<String>();
 
@@ -398,7 +686,7 @@ public class SmartStore  {
 
         if (!usesExternalStorage(soupName)) {
 	        // If external storage is used, do not add column for soup in the db since it will be empty.
-	        createTableStmt.append(", ").append(SOUP_COL).append(" TEXT");
+	        createTableStmt.append(", ").append(SOUP_COL).append(usesBinaryEncoding(soupName) ? " BLOB" : " TEXT");
         }
 
         createTableStmt.append(", ").append(CREATED_COL).append(" INTEGER")
@@ -415,7 +703,8 @@ public class SmartStore  {
             // Column name or expression the db index is on
             String columnName = soupTableName + "_" + i;
             if (TypeGroup.value_indexed_with_json_extract.isMember(indexSpec.type)) {
-                columnName = "json_extract(" + SOUP_COL + ", '$." + indexSpec.path + "')";
+                // Same expression as the one smart sql references to the path are converted to, so that the db index is used
+                columnName = "json_extract(" + SOUP_COL + ", '$." + indexSpec.path.replace("'", "''") + "')";
             }
 
             // for create table
@@ -447,6 +736,33 @@ public class SmartStore  {
         }
         createTableStmt.append(")");
 
+        // Compound / partial indexes
+        CompoundIndexSpec[] compoundIndexSpecs = soupSpec.getCompoundIndexSpecs();
+        Map<String, IndexSpec> mapIndexSpecs = IndexSpec.mapForIndexSpecs(indexSpecsToCache);
+        for (int k = 0; k < compoundIndexSpecs.length; k++) {
+            CompoundIndexSpec compoundIndexSpec = compoundIndexSpecs[k];
+            if (compoundIndexSpec.paths == null || compoundIndexSpec.paths.length == 0)
+                throw new SmartStoreException("No paths specified for compound index of soup: " + soupName);
+            List<String> columnNames = new ArrayList<String>();
+            for (String path : compoundIndexSpec.paths) {
+                columnNames.add(getCompoundIndexColumnName(soupName, mapIndexSpecs, path));
+            }
+            StringBuilder createIndexStmt = new StringBuilder(String.format(createIndexFormat, soupTableName, "c" + k, soupTableName, TextUtils.join(", ", columnNames)));
+            if (compoundIndexSpec.predicate != null) {
+                createIndexStmt.append(" WHERE ").append(resolveCompoundIndexPredicate(soupName, mapIndexSpecs, compoundIndexSpec.predicate));
+            }
+            createIndexStmts.add(createIndexStmt.toString());
+
+            ContentValues values = new ContentValues();
+            values.put(SOUP_NAME_COL, soupName);
+            try {
+                values.put(SPEC_COL, compoundIndexSpec.toJSON().toString());
+            } catch (JSONException e) {
+                throw new SmartStoreException("Invalid compound index for soup: " + soupName, e);
+            }
+            compoundIndexMapInserts.add(values);
+        }
+
 		// fts
 		if (columnsForFts.size() > 0) {
 			createFtsStmt.append(String.format("CREATE VIRTUAL TABLE %s%s USING %s(%s)", soupTableName, FTS_SUFFIX, ftsExtension, TextUtils.join(",", columnsForFts)));
@@ -465,10 +781,13 @@ public class SmartStore  {
         }
 
         try {
-            db.beginTransaction();
+            beginTransaction(db);
             for (ContentValues values : soupIndexMapInserts) {
                 DBHelper.getInstance(db).insert(db, SOUP_INDEX_MAP_TABLE, values);
             }
+            for (ContentValues values : compoundIndexMapInserts) {
+                DBHelper.getInstance(db).insert(db, SOUP_COMPOUND_INDEX_MAP_TABLE, values);
+            }
 
             if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
                 ((DBOpenHelper) dbOpenHelper).createExternalBlobsDirectory(soupTableName);
@@ -481,23 +800,57 @@ public class SmartStore  {
 
             // Add to soupNameToIndexSpecsMap
             DBHelper.getInstance(db).cacheIndexSpecs(soupName, indexSpecsToCache);
+
+            // Add to soupNameToCompoundIndexSpecsMap
+            DBHelper.getInstance(db).cacheCompoundIndexSpecs(soupName, compoundIndexSpecs);
+
+            // Converted smart sql referencing a previous incarnation of the soup is no longer valid
+            SmartSqlHelper.getInstance(db).removeFromCache(soupName);
         } finally {
-            db.endTransaction();
+            endTransaction(db);
         }
     }
 
+	/**
+	 * @param soupName
+	 * @param mapIndexSpecs map of path to index spec (with column names)
+	 * @param path
+	 * @return column name (or json_extract expression) to use for path in a compound index
+	 */
+	private String getCompoundIndexColumnName(String soupName, Map<String, IndexSpec> mapIndexSpecs, String path) {
+		IndexSpec indexSpec = mapIndexSpecs.get(path);
+		if (indexSpec == null)
+			throw new SmartStoreException("Compound index path " + path + " is not indexed in soup: " + soupName);
+		return indexSpec.columnName;
+	}
+
+	/**
+	 * @param soupName
+	 * @param mapIndexSpecs map of path to index spec (with column names)
+	 * @param predicate predicate referencing indexed paths as {path}
+	 * @return predicate referencing columns
+	 */
+	private String resolveCompoundIndexPredicate(String soupName, Map<String, IndexSpec> mapIndexSpecs, String predicate) {
+		StringBuffer resolved = new StringBuffer();
+		Matcher matcher = SmartSqlHelper.SOUP_PATH_PATTERN.matcher(predicate);
+		while (matcher.find()) {
+			matcher.appendReplacement(resolved, Matcher.quoteReplacement(getCompoundIndexColumnName(soupName, mapIndexSpecs, matcher.group(1))));
+		}
+		matcher.appendTail(resolved);
+		return resolved.toString();
+	}
+
 	/**
 	 * Finish long operations that were interrupted
+	 * Alter soup operations pick up from the last chunk checkpointed
+	 * NB: the database lock is released between chunks (see setLongOperationChunking)
 	 */
 	public void resumeLongOperations() {
-		final SQLiteDatabase db = getDatabase();
-		synchronized(db) {
-			for (LongOperation longOperation :  getLongOperations()) {
-				try {
-					longOperation.run();
-				} catch (Exception e) {
-					SmartStoreLogger.e(TAG, "Unexpected error", e);
-				}
+		for (LongOperation longOperation :  getLongOperations()) {
+			try {
+				longOperation.run();
+			} catch (Exception e) {
+				SmartStoreLogger.e(TAG, "Unexpected error", e);
 			}
 		}
 	}
@@ -561,96 +914,153 @@ public class SmartStore  {
 	 */
 	public void alterSoup(String soupName, SoupSpec soupSpec, IndexSpec[] indexSpecs,
 			boolean reIndexData) throws JSONException {
+		waitForSoupCopy(soupName);
+		flushPendingWrites(soupName);
 		AlterSoupLongOperation operation = new AlterSoupLongOperation(this, soupName, soupSpec, indexSpecs, reIndexData);
 		operation.run();
+		DBHelper.getInstance(getDatabase()).clearEntryCache(soupName);
 	}
 
 	/**
 	 * Re-index all soup elements for passed indexPaths
 	 * NB: only indexPath that have IndexSpec on them will be indexed
+	 * When handleTx is true, elements are re-indexed in chunks, each in its own transaction (see setLongOperationChunking)
+	 * When handleTx is false, all elements are re-indexed within the caller's transaction
 	 *
 	 * @param soupName
 	 * @param indexPaths
 	 * @param handleTx
 	 */
 	public void reIndexSoup(String soupName, String[] indexPaths, boolean handleTx) {
+		waitForSoupCopy(soupName);
+		flushPendingWrites(soupName);
 		final SQLiteDatabase db = getDatabase();
+		IndexSpec[] indexSpecs;
+		String soupTableName;
 		synchronized(db) {
-	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+	        soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
-
-	        // Getting index specs from indexPaths skipping json1 index specs
-			Map<String, IndexSpec> mapAllSpecs = IndexSpec.mapForIndexSpecs(getSoupIndexSpecs(soupName));
-			List<IndexSpec> indexSpecsList = new ArrayList<IndexSpec>();
-			for (String indexPath : indexPaths) {
-				if (mapAllSpecs.containsKey(indexPath)) {
-					IndexSpec indexSpec = mapAllSpecs.get(indexPath);
-					if (TypeGroup.value_extracted_to_column.isMember(indexSpec.type)) {
-						indexSpecsList.add(indexSpec);
-					}
-				}
-				else {
-                    SmartStoreLogger.w(TAG, "Can not re-index " + indexPath + " - it does not have an index");
-				}
-			}
-			IndexSpec[] indexSpecs = indexSpecsList.toArray(new IndexSpec[0]);
+			indexSpecs = getReIndexSpecs(soupName, indexPaths);
 			if (indexSpecs.length == 0) {
 				// Nothing to do
 				return;
 			}
-
-			boolean hasFts = IndexSpec.hasFTS(indexSpecs);
-
-			if (handleTx) {
-				db.beginTransaction();
+			if (!handleTx) {
+				reIndexSoupChunk(soupName, soupTableName, indexSpecs, Long.MIN_VALUE, 0);
+				return;
 			}
-			Cursor cursor = null;
-			try {
-			    String[] projection;
-			    if (usesExternalStorage(soupName)) {
-			        projection = new String[] {ID_COL};
-			    } else {
-			        projection = new String[] {ID_COL, SOUP_COL};
-			    }
-			    cursor = DBHelper.getInstance(db).query(db, soupTableName, projection, null, null, null);
-			    if (cursor.moveToFirst()) {
-			        do {
-			        	String soupEntryId = cursor.getString(0);
-			        	try {
-			                JSONObject soupElt;
-			                if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-			                	soupElt = ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, Long.parseLong(soupEntryId), passcode);
-			                } else {
-			                	String soupRaw = cursor.getString(1);
-			                	soupElt = new JSONObject(soupRaw);
-			                }
-			                ContentValues contentValues = new ContentValues();
-			                projectIndexedPaths(soupElt, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
-			                DBHelper.getInstance(db).update(db, soupTableName, contentValues, ID_PREDICATE, soupEntryId + "");
-
-							// Fts
-							if (hasFts) {
-								String soupTableNameFts = soupTableName + FTS_SUFFIX;
-								ContentValues contentValuesFts = new ContentValues();
-								projectIndexedPaths(soupElt, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
-								DBHelper.getInstance(db).update(db, soupTableNameFts, contentValuesFts, ROWID_PREDICATE, soupEntryId + "");
-							}
-			        	}
-			        	catch (JSONException e) {
-                            SmartStoreLogger.w(TAG, "Could not parse soup element " + soupEntryId, e);
-			        		// Should not have happen - just keep going
-			        	}
-			        }
-			        while (cursor.moveToNext());
-			    }
-			} finally {
-				if (handleTx) {
+		}
+
+		Long lastId = Long.MIN_VALUE;
+		while (true) {
+			synchronized(db) {
+				beginTransaction(db);
+				try {
+					lastId = reIndexSoupChunk(soupName, soupTableName, indexSpecs, lastId, longOperationChunkSize);
 					db.setTransactionSuccessful();
-					db.endTransaction();
+				} finally {
+					endTransaction(db);
 				}
-			    safeClose(cursor);
 			}
+			if (lastId == null) {
+				break;
+			}
+			pauseBetweenChunks();
+		}
+	}
+
+	/**
+	 * Return index specs to re-index for passed indexPaths
+	 * Index paths without index spec and json1 index specs are skipped
+	 *
+	 * @param soupName
+	 * @param indexPaths
+	 * @return
+	 */
+	IndexSpec[] getReIndexSpecs(String soupName, String[] indexPaths) {
+		Map<String, IndexSpec> mapAllSpecs = IndexSpec.mapForIndexSpecs(getSoupIndexSpecs(soupName));
+		List<IndexSpec> indexSpecsList = new ArrayList<IndexSpec>();
+		for (String indexPath : indexPaths) {
+			if (mapAllSpecs.containsKey(indexPath)) {
+				IndexSpec indexSpec = mapAllSpecs.get(indexPath);
+				if (TypeGroup.value_extracted_to_column.isMember(indexSpec.type)) {
+					indexSpecsList.add(indexSpec);
+				}
+			}
+			else {
+                SmartStoreLogger.w(TAG, "Can not re-index " + indexPath + " - it does not have an index");
+			}
+		}
+		return indexSpecsList.toArray(new IndexSpec[0]);
+	}
+
+	/**
+	 * Re-index soup elements with an id greater than afterId in id order
+	 * NB: caller must hold the database lock and handle the transaction
+	 *
+	 * @param soupName
+	 * @param soupTableName
+	 * @param indexSpecs index specs to re-index (see getReIndexSpecs)
+	 * @param afterId
+	 * @param chunkSize maximum number of elements to re-index (0 for all of them)
+	 * @return id of last element re-indexed or null if there was none left
+	 */
+	Long reIndexSoupChunk(String soupName, String soupTableName, IndexSpec[] indexSpecs, long afterId, int chunkSize) {
+		final SQLiteDatabase db = getDatabase();
+		boolean hasFts = IndexSpec.hasFTS(indexSpecs);
+		PathProjector.Batch indexProjector = IndexSpec.compileProjector(indexSpecs);
+		List<String> topLevelFields = new ArrayList<>();
+		for (IndexSpec indexSpec : indexSpecs) {
+			topLevelFields.add(PathProjector.split(indexSpec.path)[0]);
+		}
+
+		Long lastId = null;
+		Cursor cursor = null;
+		try {
+		    String[] projection;
+		    if (usesExternalStorage(soupName)) {
+		        projection = new String[] {ID_COL};
+		    } else {
+		        projection = new String[] {ID_COL, SOUP_COL};
+		    }
+		    cursor = DBHelper.getInstance(db).query(db, soupTableName, projection, ID_COL + " ASC",
+		    		chunkSize > 0 ? chunkSize + "" : null, ID_COL + " > ?", afterId + "");
+		    if (cursor.moveToFirst()) {
+		        do {
+		        	String soupEntryId = cursor.getString(0);
+		        	lastId = cursor.getLong(0);
+		        	try {
+		                JSONObject soupElt;
+		                if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
+		                	soupElt = ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, lastId, passcode);
+		                } else {
+		                	// Binary encoded elements only need the fields being indexed to be decoded
+		                	soupElt = getSoupElt(cursor, 1, topLevelFields);
+		                }
+		                Object[] indexValues = indexProjector.project(soupElt);
+		                ContentValues contentValues = new ContentValues();
+		                projectIndexedPaths(indexValues, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
+		                DBHelper.getInstance(db).update(db, soupTableName, contentValues, ID_PREDICATE, soupEntryId + "");
+
+						// Fts
+						if (hasFts) {
+							String soupTableNameFts = soupTableName + FTS_SUFFIX;
+							ContentValues contentValuesFts = new ContentValues();
+							projectIndexedPaths(indexValues, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+							DBHelper.getInstance(db).update(db, soupTableNameFts, contentValuesFts, ROWID_PREDICATE, soupEntryId + "");
+						}
+		        	}
+		        	catch (JSONException e) {
+                        SmartStoreLogger.w(TAG, "Could not parse soup element " + soupEntryId, e);
+		        		// Should not have happen - just keep going
+		        	}
+		        }
+		        while (cursor.moveToNext());
+		    }
+		} finally {
+		    safeClose(cursor);
 		}
+		return lastId;
 	}
 
 	/**
@@ -673,22 +1083,26 @@ public class SmartStore  {
 	 * @param soupName
 	 */
 	public void clearSoup(String soupName) {
+		waitForSoupCopy(soupName);
+		flushPendingWrites(soupName);
 		final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
-			db.beginTransaction();
+			beginTransaction(db);
 			try {
 				DBHelper.getInstance(db).delete(db, soupTableName, null);
+				DBHelper.getInstance(db).clearEntryCache(soupName);
 				if (hasFTS(soupName)) {
 					DBHelper.getInstance(db).delete(db, soupTableName + FTS_SUFFIX, null);
 				}
+				SoupChangeNotifier.getInstance(db).recordCleared(soupName);
 				if (dbOpenHelper instanceof DBOpenHelper) {
 					((DBOpenHelper) dbOpenHelper).removeExternalBlobsDirectory(soupTableName);
 				}
 			} finally {
 				db.setTransactionSuccessful();
-				db.endTransaction();
+				endTransaction(db);
 			}
     	}
 	}
@@ -714,6 +1128,8 @@ public class SmartStore  {
      * @param soupName
      */
     public void dropSoup(String soupName) {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
@@ -724,18 +1140,20 @@ public class SmartStore  {
 				}
 
 	            try {
-	                db.beginTransaction();
+	                beginTransaction(db);
 	                DBHelper.getInstance(db).delete(db, SOUP_ATTRS_TABLE, SOUP_NAME_PREDICATE, soupName);
 	                DBHelper.getInstance(db).delete(db, SOUP_INDEX_MAP_TABLE, SOUP_NAME_PREDICATE, soupName);
+	                DBHelper.getInstance(db).delete(db, SOUP_COMPOUND_INDEX_MAP_TABLE, SOUP_NAME_PREDICATE, soupName);
 	                if (dbOpenHelper instanceof DBOpenHelper) {
 						((DBOpenHelper) dbOpenHelper).removeExternalBlobsDirectory(soupTableName);
 	                }
+	                SoupChangeNotifier.getInstance(db).recordCleared(soupName);
 	                db.setTransactionSuccessful();
 
 	                // Remove from cache
 	                DBHelper.getInstance(db).removeFromCache(soupName);
 	            } finally {
-	                db.endTransaction();
+	                endTransaction(db);
 	            }
 	        }
     	}
@@ -786,105 +1204,348 @@ public class SmartStore  {
 	public SoupSpec getSoupSpec(String soupName) {
 		final SQLiteDatabase db = getDatabase();
 		List<String> features = DBHelper.getInstance(db).getFeatures(db, soupName);
-		return new SoupSpec(soupName, features.toArray(new String[features.size()]));
+		CompoundIndexSpec[] compoundIndexSpecs = DBHelper.getInstance(db).getCompoundIndexSpecs(db, soupName);
+		return new SoupSpec(soupName, compoundIndexSpecs, features.toArray(new String[features.size()]));
 	}
 
     /**
 	 * Run a query given by its query Spec, only returned results from selected page
+	 * NB: when possible the query runs on a read-only connection and does not wait for on-going write transactions
+	 * Soup elements of soups using external storage are loaded in parallel once the database lock has been released
 	 * @param querySpec
 	 * @param pageIndex
      * @throws JSONException
 	 */
 	public JSONArray query(QuerySpec querySpec, int pageIndex) throws JSONException {
-		final SQLiteDatabase db = getDatabase();
-    	synchronized(db) {
-			QueryType qt = querySpec.queryType;
-	    	String sql = convertSmartSql(querySpec.smartSql);
-
-	        // Page
-	        int offsetRows = querySpec.pageSize * pageIndex;
-	        int numberRows = querySpec.pageSize;
-	        String limit = offsetRows + "," + numberRows;
-	    	Cursor cursor = null;
-	    	try {
-	    		cursor = DBHelper.getInstance(db).limitRawQuery(db, sql, limit, querySpec.getArgs());
-	            JSONArray results = new JSONArray();
-	            if (cursor.moveToFirst()) {
-	                do {
-	                	// Smart queries
-	                	if (qt == QueryType.smart || querySpec.selectPaths != null) {
-	                		results.put(getDataFromRow(cursor));
-	                	}
-	            		// Exact/like/range queries
-	                	else {
-	                		if (cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE) >= 0) {
-								// Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
-								String soupTableName = cursor.getString(cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE));
-								Long soupEntryId = cursor.getLong(cursor.getColumnIndex(SmartStore.SOUP_ENTRY_ID));
-								results.put(((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, soupEntryId, passcode));
-	                		} else {
-								results.put(new JSONObject(cursor.getString(0)));
-	                		}
-	                	}
-	                } while (cursor.moveToNext());
-	            }
-	            return results;
-	    	} finally {
-	    		safeClose(cursor);
-	    	}
-    	}
+		JSONArray results = new JSONArray();
+		queryPage(querySpec, pageIndex, 0, results);
+		return results;
 	}
 
-
 	/**
-	 * Return JSONArray for one row of data from cursor
-	 * @param cursor
-	 * @return
+	 * Run a query given by its query Spec and add results from selected page to results
+	 * Same as query(QuerySpec, int) but also returns up to lookAheadRows rows past the selected page and, for keyset query specs,
+	 * the query spec for the next page (see queryEach(QuerySpec, int, int, QueryRowHandler))
+	 * @param querySpec
+	 * @param pageIndex
+	 * @param lookAheadRows
+	 * @param results
+	 * @return query spec positioned after the last row of the page, or null if there are no more rows or querySpec is not a keyset query spec
 	 * @throws JSONException
 	 */
-	private JSONArray getDataFromRow(Cursor cursor) throws JSONException {
-		JSONArray row = new JSONArray();
-		int columnCount = cursor.getColumnCount();
-		for (int i=0; i<columnCount; i++) {
-            int valueType = cursor.getType(i);
-            if (valueType == Cursor.FIELD_TYPE_NULL) {
-                row.put(null);
-            }
-            else if (valueType == Cursor.FIELD_TYPE_STRING) {
-                String raw = cursor.getString(i);
-                if (cursor.getColumnName(i).equals(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
-                    // Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
-                    String soupTableName = cursor.getString(i);
-                    Long soupEntryId = cursor.getLong(i + 1);
-                    row.put(((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, soupEntryId, passcode));
-                    i++; // skip next column (_soupEntryId)
-                } else if (cursor.getColumnName(i).endsWith(SOUP_COL)) {
-                    row.put(new JSONObject(raw));
-                    // Note: we could end up returning a string if you aliased the column
-                }
-                else {
-                    row.put(raw);
-                }
-            }
-            else if (valueType == Cursor.FIELD_TYPE_INTEGER) {
-                row.put(cursor.getLong(i));
-            }
-            else if (valueType == Cursor.FIELD_TYPE_FLOAT) {
-                row.put(cursor.getDouble(i));
-            }
+	QuerySpec queryPage(QuerySpec querySpec, int pageIndex, int lookAheadRows, JSONArray results) throws JSONException {
+		waitForSoupCopy(querySpec.soupName);
+		flushPendingWrites(querySpec.soupName);
+		final SQLiteDatabase db = getDatabase();
+		final String limit = getLimit(querySpec, pageIndex, lookAheadRows);
+		final boolean lookAhead = lookAheadRows > 0;
+		final ExternalBlobLoader blobLoader = getExternalBlobLoader();
+		try {
+			final JSONArray rows = new JSONArray();
+			QueryRowHandler handler = new QueryRowHandler() {
+				@Override
+				public boolean onRow(Object row) {
+					rows.put(row);
+					return true;
+				}
+			};
+			QuerySpec nextQuerySpec = null;
+			boolean done = false;
+			if (canUseReadConnection(db)) {
+				String sql = SmartSqlHelper.getInstance(db).convertSmartSqlFromCache(db, querySpec.smartSql);
+				SQLiteDatabase readDb = (sql == null ? null : acquireReadConnection());
+				if (readDb != null) {
+					try {
+						nextQuerySpec = queryEach(db, readDb, sql, querySpec, limit, lookAhead, blobLoader, handler);
+						done = true;
+					} finally {
+						releaseReadConnection(readDb);
+					}
+				}
+			}
+			if (!done) {
+				synchronized (db) {
+					nextQuerySpec = queryEach(db, db, convertSmartSql(querySpec.smartSql), querySpec, limit, lookAhead, blobLoader, handler);
+				}
+			}
+			JSONArray resolved = (blobLoader != null ? blobLoader.resolve(rows) : rows);
+			for (int i = 0; i < resolved.length(); i++) {
+				results.put(resolved.get(i));
+			}
+			return nextQuerySpec;
+		} finally {
+			if (blobLoader != null) {
+				blobLoader.done();
+			}
 		}
-		return row;
 	}
 
 	/**
+	 * Run a query given by its query Spec and hand results to handler one row at a time
+	 * Rows are read from the underlying cursor as they are consumed, so results of any size can be processed in constant memory
+	 * NB: all results are returned, the page size of the query spec is ignored
 	 * @param querySpec
-	 * @return count of results for a query
+	 * @param handler
+	 * @throws JSONException
+	 */
+	public void queryEach(QuerySpec querySpec, QueryRowHandler handler) throws JSONException {
+		queryEach(querySpec, null, false, handler);
+	}
+
+	/**
+	 * Run a query given by its query Spec and hand results from selected page to handler one row at a time
+	 * For keyset query specs (see QuerySpec#withKeysetPaging), pages are counted from the position of the query spec
+	 * and the query spec for the next page is returned: passing it back with page index 0 reads the next page without
+	 * going through the rows before it again
+	 * @param querySpec
+	 * @param pageIndex
+	 * @param handler
+	 * @return query spec positioned after the last row handed to handler, or null if there are no more rows or querySpec is not a keyset query spec
+	 * @throws JSONException
+	 */
+	public QuerySpec queryEach(QuerySpec querySpec, int pageIndex, QueryRowHandler handler) throws JSONException {
+		return queryEach(querySpec, pageIndex, 0, handler);
+	}
+
+	/**
+	 * Same as queryEach(QuerySpec, int, QueryRowHandler) but also hands to handler up to lookAheadRows rows past the selected page
+	 * Reading one row past the page tells whether there are more results, which is much cheaper than counting them
+	 * @param querySpec
+	 * @param pageIndex
+	 * @param lookAheadRows
+	 * @param handler
+	 * @return query spec positioned after the last row of the page (not after the look-ahead rows), or null if there are no more rows or querySpec is not a keyset query spec
+	 * @throws JSONException
+	 */
+	public QuerySpec queryEach(QuerySpec querySpec, int pageIndex, int lookAheadRows, QueryRowHandler handler) throws JSONException {
+		return queryEach(querySpec, getLimit(querySpec, pageIndex, lookAheadRows), lookAheadRows > 0, handler);
+	}
+
+	private QuerySpec queryEach(QuerySpec querySpec, String limit, boolean lookAhead, QueryRowHandler handler) throws JSONException {
+		waitForSoupCopy(querySpec.soupName);
+		flushPendingWrites(querySpec.soupName);
+		final SQLiteDatabase db = getDatabase();
+		if (canUseReadConnection(db)) {
+			String sql = SmartSqlHelper.getInstance(db).convertSmartSqlFromCache(db, querySpec.smartSql);
+			SQLiteDatabase readDb = (sql == null ? null : acquireReadConnection());
+			if (readDb != null) {
+				try {
+					return queryEach(db, readDb, sql, querySpec, limit, lookAhead, null, handler);
+				} finally {
+					releaseReadConnection(readDb);
+				}
+			}
+		}
+		synchronized(db) {
+			return queryEach(db, db, convertSmartSql(querySpec.smartSql), querySpec, limit, lookAhead, null, handler);
+		}
+	}
+
+	/**
+	 * Run query on the given connection and hand results to handler one row at a time
+	 * @param db writable database (used to get to DBHelper)
+	 * @param queryDb database to run the query against (either db or a read-only connection)
+	 * @param sql
+	 * @param querySpec
+	 * @param limit limit clause or null to get all results
+	 * @param lookAhead true if limit includes look-ahead rows past the page
+	 * @param blobLoader loader to defer loading of external soup elements to or null to load them inline
+	 * @param handler
+	 * @return query spec positioned after the last row handed to handler (keyset query specs only)
+	 * @throws JSONException
+	 */
+	private QuerySpec queryEach(SQLiteDatabase db, SQLiteDatabase queryDb, String sql, QuerySpec querySpec, String limit, boolean lookAhead, ExternalBlobLoader blobLoader, QueryRowHandler handler) throws JSONException {
+		Cursor cursor = null;
+		try {
+			cursor = (limit == null
+					? DBHelper.getInstance(db).rawQuery(queryDb, sql, querySpec.getBindArgs())
+					: DBHelper.getInstance(db).limitRawQuery(queryDb, sql, limit, querySpec.getBindArgs()));
+			boolean stopped = false;
+			while (!stopped && cursor.moveToNext()) {
+				stopped = !handler.onRow(getRow(cursor, querySpec, blobLoader));
+			}
+			boolean more;
+			if (limit != null && cursor.getCount() > querySpec.pageSize) {
+				// Look-ahead rows were read: next page starts right after the last row of the page
+				more = true;
+				if (cursor.getPosition() >= querySpec.pageSize) {
+					cursor.moveToPosition(querySpec.pageSize - 1);
+				}
+			}
+			else {
+				// Full page read (or handler stopped early): there might be more rows
+				more = stopped || (limit != null && !lookAhead && cursor.getCount() > 0 && cursor.getCount() == querySpec.pageSize);
+			}
+			return (querySpec.keyset && more ? getNextQuerySpec(cursor, querySpec) : null);
+		} finally {
+			safeClose(cursor);
+		}
+	}
+
+	/**
+	 * Return keyset query spec positioned after the current row of cursor
+	 * @param cursor
+	 * @param querySpec keyset query spec - rows end with the order path value (if any) and the soup entry id
+	 * @return
+	 */
+	private QuerySpec getNextQuerySpec(Cursor cursor, QuerySpec querySpec) {
+		if (cursor.isAfterLast()) {
+			cursor.moveToLast();
+		}
+		int idIndex = cursor.getColumnCount() - 1;
+		Object orderKey = null;
+		if (querySpec.getKeysetColumnCount() > 1) {
+			int orderKeyIndex = idIndex - 1;
+			switch (cursor.getType(orderKeyIndex)) {
+				case Cursor.FIELD_TYPE_INTEGER: orderKey = cursor.getLong(orderKeyIndex); break;
+				case Cursor.FIELD_TYPE_FLOAT: orderKey = cursor.getDouble(orderKeyIndex); break;
+				case Cursor.FIELD_TYPE_NULL: orderKey = null; break;
+				default: orderKey = cursor.getString(orderKeyIndex); break;
+			}
+		}
+		return querySpec.after(orderKey, cursor.getLong(idIndex));
+	}
+
+	/**
+	 * @param querySpec
+	 * @param pageIndex
+	 * @param lookAheadRows number of rows to read past the selected page
+	 * @return limit clause to get selected page
+	 */
+	private String getLimit(QuerySpec querySpec, int pageIndex, int lookAheadRows) {
+		int offsetRows = querySpec.pageSize * pageIndex;
+		int numberRows = querySpec.pageSize + lookAheadRows;
+		return offsetRows + "," + numberRows;
+	}
+
+	/**
+	 * Return result for current row of cursor
+	 * @param cursor
+	 * @param querySpec
+	 * @param blobLoader loader to defer loading of external soup elements to or null to load them inline
+	 * @return JSONArray for smart queries or queries with select paths, JSONObject otherwise (or placeholder from blobLoader)
+	 * @throws JSONException
+	 */
+	private Object getRow(Cursor cursor, QuerySpec querySpec, ExternalBlobLoader blobLoader) throws JSONException {
+		// Smart queries
+		if (querySpec.queryType == QueryType.smart || querySpec.selectPaths != null) {
+			return getDataFromRow(cursor, cursor.getColumnCount() - querySpec.getKeysetColumnCount(), blobLoader);
+		}
+		// Exact/like/range queries
+		else {
+			if (cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE) >= 0) {
+				// Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
+				String soupTableName = cursor.getString(cursor.getColumnIndex(SoupSpec.FEATURE_EXTERNAL_STORAGE));
+				Long soupEntryId = cursor.getLong(cursor.getColumnIndex(SmartStore.SOUP_ENTRY_ID));
+				return (blobLoader != null
+						? blobLoader.defer(soupTableName, soupEntryId)
+						: ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, soupEntryId, passcode));
+			} else {
+				return getSoupElt(cursor, 0, null);
+			}
+		}
+	}
+
+	/**
+	 * @return loader for soup elements of soups using external storage or null if external storage is not available
+	 */
+	private ExternalBlobLoader getExternalBlobLoader() {
+		return (dbOpenHelper instanceof DBOpenHelper ? new ExternalBlobLoader(getDatabase(), (DBOpenHelper) dbOpenHelper, passcode) : null);
+	}
+
+	/**
+	 * Read-only connections only see committed data, so they can't be used by a thread
+	 * that holds the database lock or is in the middle of a transaction
+	 * @param db
+	 * @return true if a read-only connection can be used to serve a read
+	 */
+	private boolean canUseReadConnection(SQLiteDatabase db) {
+		return dbLocal == null && dbOpenHelper instanceof DBOpenHelper
+				&& !Thread.holdsLock(db) && !db.inTransaction();
+	}
+
+	/**
+	 * @return read-only connection or null if none is available
+	 */
+	private SQLiteDatabase acquireReadConnection() {
+		return ((DBOpenHelper) dbOpenHelper).acquireReadConnection(passcode);
+	}
+
+	/**
+	 * @param readDb connection obtained from acquireReadConnection
+	 */
+	private void releaseReadConnection(SQLiteDatabase readDb) {
+		((DBOpenHelper) dbOpenHelper).releaseReadConnection(readDb);
+	}
+
+	/**
+	 * Return JSONArray for one row of data from cursor
+	 * @param cursor
+	 * @param columnCount number of columns to read
+	 * @param blobLoader loader to defer loading of external soup elements to or null to load them inline
+	 * @return
+	 * @throws JSONException
+	 */
+	private JSONArray getDataFromRow(Cursor cursor, int columnCount, ExternalBlobLoader blobLoader) throws JSONException {
+		JSONArray row = new JSONArray();
+		for (int i=0; i<columnCount; i++) {
+            int valueType = cursor.getType(i);
+            if (valueType == Cursor.FIELD_TYPE_NULL) {
+                row.put(null);
+            }
+            else if (valueType == Cursor.FIELD_TYPE_STRING) {
+                String raw = cursor.getString(i);
+                if (cursor.getColumnName(i).equals(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
+                    // Presence of external storage column implies we must fetch from storage. Soup name and entry id values can be extracted
+                    String soupTableName = cursor.getString(i);
+                    Long soupEntryId = cursor.getLong(i + 1);
+                    row.put(blobLoader != null
+                            ? blobLoader.defer(soupTableName, soupEntryId)
+                            : ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, soupEntryId, passcode));
+                    i++; // skip next column (_soupEntryId)
+                } else if (cursor.getColumnName(i).endsWith(SOUP_COL)) {
+                    row.put(new JSONObject(raw));
+                    // Note: we could end up returning a string if you aliased the column
+                }
+                else {
+                    row.put(raw);
+                }
+            }
+            else if (valueType == Cursor.FIELD_TYPE_INTEGER) {
+                row.put(cursor.getLong(i));
+            }
+            else if (valueType == Cursor.FIELD_TYPE_FLOAT) {
+                row.put(cursor.getDouble(i));
+            }
+            else if (valueType == Cursor.FIELD_TYPE_BLOB && cursor.getColumnName(i).endsWith(SOUP_COL)) {
+                row.put(decodeSoupElt(cursor.getBlob(i), null));
+            }
+		}
+		return row;
+	}
+
+	/**
+	 * @param querySpec
+	 * @return count of results for a query
 	 */
 	public int countQuery(QuerySpec querySpec) {
+		waitForSoupCopy(querySpec.soupName);
+		flushPendingWrites(querySpec.soupName);
 		final SQLiteDatabase db = getDatabase();
+		if (canUseReadConnection(db)) {
+			String countSql = SmartSqlHelper.getInstance(db).convertSmartSqlFromCache(db, querySpec.countSmartSql);
+			SQLiteDatabase readDb = (countSql == null ? null : acquireReadConnection());
+			if (readDb != null) {
+				try {
+					return DBHelper.getInstance(db).countRawCountQueryUncached(readDb, countSql, querySpec.getBindArgs());
+				} finally {
+					releaseReadConnection(readDb);
+				}
+			}
+		}
     	synchronized(db) {
 			String countSql = convertSmartSql(querySpec.countSmartSql);
-			return DBHelper.getInstance(db).countRawCountQuery(db, countSql, querySpec.getArgs());
+			return DBHelper.getInstance(db).countRawCountQuery(db, countSql, querySpec.getBindArgs());
     	}
 	}
 
@@ -924,15 +1585,18 @@ public class SmartStore  {
      * @throws JSONException
      */
     public JSONObject create(String soupName, JSONObject soupElt, boolean handleTx) throws JSONException {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
 	        IndexSpec[] indexSpecs = DBHelper.getInstance(db).getIndexSpecs(db, soupName);
+	        PathProjector.Batch indexProjector = DBHelper.getInstance(db).getIndexProjector(db, soupName);
 
 	        try {
 	            if (handleTx) {
-	                db.beginTransaction();
+	                beginTransaction(db);
 	            }
 	            long now = System.currentTimeMillis();
 	            long soupEntryId = DBHelper.getInstance(db).getNextId(db, soupTableName);
@@ -945,9 +1609,10 @@ public class SmartStore  {
 	            contentValues.put(CREATED_COL, now);
 	            contentValues.put(LAST_MODIFIED_COL, now);
 	            if (!usesExternalStorage(soupName)) {
-	                contentValues.put(SOUP_COL, soupElt.toString());
+	                putSoupElt(contentValues, soupElt, usesBinaryEncoding(soupName), usesCompression(soupName));
 	            }
-	            projectIndexedPaths(soupElt, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
+	            Object[] indexValues = indexProjector.project(soupElt);
+	            projectIndexedPaths(indexValues, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
 
 	            // Inserting into database
 	            boolean success = DBHelper.getInstance(db).insert(db, soupTableName, contentValues) == soupEntryId;
@@ -957,18 +1622,19 @@ public class SmartStore  {
 					String soupTableNameFts = soupTableName + FTS_SUFFIX;
 					ContentValues contentValuesFts = new ContentValues();
 					contentValuesFts.put(ROWID_COL, soupEntryId);
-					projectIndexedPaths(soupElt, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+					projectIndexedPaths(indexValues, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
 					// InsertHelper not working against virtual fts table
 					db.insert(soupTableNameFts, null, contentValuesFts);
 				}
 
 	            // Add to external storage if applicable
 	            if (success && usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-					success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode);
+					success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode, usesCompression(soupName));
 	            }
 
 	            // Commit if successful
 	            if (success) {
+	                SoupChangeNotifier.getInstance(db).recordInserted(soupName, soupEntryId);
 	                if (handleTx) {
 	                    db.setTransactionSuccessful();
 	                }
@@ -979,7 +1645,7 @@ public class SmartStore  {
 	        }
 			finally {
 	            if (handleTx) {
-	                db.endTransaction();
+	                endTransaction(db);
 	            }
 	        }
     	}
@@ -997,27 +1663,86 @@ public class SmartStore  {
 	}
 
 	/**
-	 * Populate content values by projecting index specs that have a type in typeGroup
-	 * @param soupElt
+	 * Populate content values with the values of index specs that have a type in typeGroup
+	 * @param indexValues values projected for indexSpecs (see IndexSpec#compileProjector)
 	 * @param contentValues
 	 * @param indexSpecs
 	 * @param typeGroup
 	 */
-	private void projectIndexedPaths(JSONObject soupElt, ContentValues contentValues, IndexSpec[] indexSpecs, TypeGroup typeGroup) {
-		for (IndexSpec indexSpec : indexSpecs) {
-			if (typeGroup.isMember(indexSpec.type)) {
-				projectIndexedPath(soupElt, contentValues, indexSpec);
+	private void projectIndexedPaths(Object[] indexValues, ContentValues contentValues, IndexSpec[] indexSpecs, TypeGroup typeGroup) {
+		for (int i = 0; i < indexSpecs.length; i++) {
+			if (typeGroup.isMember(indexSpecs[i].type)) {
+				projectIndexedPath(indexValues[i], contentValues, indexSpecs[i]);
 			}
 		}
 	}
 
     /**
+     * Put soup element in contentValues as JSON text or binary encoded
+     * Large elements are compressed when usesCompression is true (see SoupCompressor)
+     * @param contentValues
      * @param soupElt
+     * @param usesBinaryEncoding
+     * @param usesCompression
+     * @throws JSONException
+     */
+    private void putSoupElt(ContentValues contentValues, JSONObject soupElt, boolean usesBinaryEncoding, boolean usesCompression) throws JSONException {
+        if (usesBinaryEncoding) {
+            byte[] bytes = BinarySoupCodec.encode(soupElt);
+            byte[] compressed = usesCompression ? SoupCompressor.compress(bytes, true) : null;
+            contentValues.put(SOUP_COL, compressed != null ? compressed : bytes);
+        } else if (usesCompression) {
+            String soupEltStr = soupElt.toString();
+            byte[] compressed = SoupCompressor.compress(soupEltStr.getBytes(UTF8), false);
+            if (compressed != null) {
+                contentValues.put(SOUP_COL, compressed);
+            } else {
+                contentValues.put(SOUP_COL, soupEltStr);
+            }
+        } else {
+            contentValues.put(SOUP_COL, soupElt.toString());
+        }
+    }
+
+    /**
+     * Decode soup element stored as a blob (binary encoded and/or compressed)
+     * @param bytes
+     * @param fields top level fields to decode from binary encoded element or null for all fields
+     * @return
+     * @throws JSONException
+     */
+    static JSONObject decodeSoupElt(byte[] bytes, Collection<String> fields) throws JSONException {
+        if (SoupCompressor.isCompressed(bytes)) {
+            byte[] content = SoupCompressor.decompress(bytes);
+            return SoupCompressor.isBinary(bytes)
+                    ? BinarySoupCodec.decode(content, fields)
+                    : new JSONObject(new String(content, UTF8));
+        }
+        return BinarySoupCodec.decode(bytes, fields);
+    }
+
+    /**
+     * Read soup element from soup column of cursor (JSON text, binary encoded or compressed)
+     * @param cursor
+     * @param columnIndex
+     * @param fields top level fields to decode from binary encoded element or null for all fields
+     * @return
+     * @throws JSONException
+     */
+    private JSONObject getSoupElt(Cursor cursor, int columnIndex, List<String> fields) throws JSONException {
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
+            return decodeSoupElt(cursor.getBlob(columnIndex), fields);
+        } else {
+            return new JSONObject(cursor.getString(columnIndex));
+        }
+    }
+
+    /**
+     * @param value value at path of index spec
      * @param contentValues
      * @param indexSpec
      */
-    private void projectIndexedPath(JSONObject soupElt, ContentValues contentValues, IndexSpec indexSpec) {
-        Object value = project(soupElt, indexSpec.path);
+    private void projectIndexedPath(Object value, ContentValues contentValues, IndexSpec indexSpec) {
         switch (indexSpec.type) {
         case integer:
             Long longValToUse = null;
@@ -1054,37 +1779,157 @@ public class SmartStore  {
      * @throws JSONException
      */
     public JSONArray retrieve(String soupName, Long... soupEntryIds) throws JSONException {
+    	return retrieve(soupName, toLongArray(soupEntryIds));
+    }
+
+    /**
+     * Retrieve
+     * Ids are looked up in bounded chunks, so any number of ids can be passed
+     * @param soupName
+     * @param soupEntryIds
+     * @return JSONArray of JSONObject's with the given soupEntryIds
+     * @throws JSONException
+     */
+    public JSONArray retrieve(String soupName, long[] soupEntryIds) throws JSONException {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
+    	SoupEntryCache entryCache = getEntryCache(soupName);
+    	if (entryCache != null) {
+    		return retrieveCached(soupName, entryCache, soupEntryIds);
+    	}
+    	if (canUseReadConnection(db)) {
+    		String soupTableName = DBHelper.getInstance(db).getCachedTableName(soupName);
+    		List<String> features = DBHelper.getInstance(db).getCachedFeatures(soupName);
+    		if (soupTableName != null && features != null && features.contains(SoupSpec.FEATURE_EXTERNAL_STORAGE)) {
+    			// No need for the database
+    			return retrieveExternal(soupTableName, soupEntryIds);
+    		}
+    		SQLiteDatabase readDb = (soupTableName == null || features == null ? null : acquireReadConnection());
+    		if (readDb != null) {
+    			try {
+    				return retrieve(readDb, soupTableName, soupEntryIds);
+    			} finally {
+    				releaseReadConnection(readDb);
+    			}
+    		}
+    	}
+    	String soupTableName;
     	synchronized(db) {
-	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+	        soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
-
-	        JSONArray result = new JSONArray();
-	        if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-		        for (long soupEntryId : soupEntryIds) {
-			        JSONObject raw = ((DBOpenHelper) dbOpenHelper).loadSoupBlob(soupTableName, soupEntryId, passcode);
-			        if (raw != null) {
-				        result.put(raw);
-			        }
-		        }
-	        } else {
-		        Cursor cursor = null;
-		        try {
-			        cursor = DBHelper.getInstance(db).query(db, soupTableName, new String[] { SOUP_COL }, null, null, getSoupEntryIdsPredicate(soupEntryIds), (String[]) null);
-			        if (!cursor.moveToFirst()) {
-				        return result;
-			        }
-			        do {
-				        String raw = cursor.getString(cursor.getColumnIndex(SOUP_COL));
-				        result.put(new JSONObject(raw));
-			        }
-			        while (cursor.moveToNext());
-		        } finally {
-			        safeClose(cursor);
-		        }
+	        if (!usesExternalStorage(soupName) || !(dbOpenHelper instanceof DBOpenHelper)) {
+		        return retrieve(db, soupTableName, soupEntryIds);
 	        }
-	        return result;
     	}
+    	// Loading external soup elements outside of the database lock
+    	return retrieveExternal(soupTableName, soupEntryIds);
+    }
+
+    /**
+     * Retrieve soup elements of soup using the entry cache feature
+     * Soup elements found in the cache are returned without going to the database
+     * @param soupName
+     * @param entryCache
+     * @param soupEntryIds
+     * @return JSONArray of JSONObject's with the given soupEntryIds (in ascending soupEntryId order)
+     * @throws JSONException
+     */
+    private JSONArray retrieveCached(String soupName, SoupEntryCache entryCache, long[] soupEntryIds) throws JSONException {
+    	SortedMap<Long, JSONObject> soupElts = new TreeMap<>();
+    	long[] sortedIds = soupEntryIds.clone();
+    	Arrays.sort(sortedIds);
+    	long[] missingIds = new long[sortedIds.length];
+    	int missingCount = 0;
+    	for (int i = 0; i < sortedIds.length; i++) {
+    		long soupEntryId = sortedIds[i];
+    		if (i > 0 && soupEntryId == sortedIds[i - 1]) {
+    			continue;
+    		}
+    		JSONObject soupElt = entryCache.get(soupEntryId);
+    		if (soupElt != null) {
+    			soupElts.put(soupEntryId, soupElt);
+    		} else {
+    			missingIds[missingCount++] = soupEntryId;
+    		}
+    	}
+    	if (missingCount > 0) {
+    		final SQLiteDatabase db = getDatabase();
+    		// Loading and caching under the database lock so that concurrent writes can't leave stale entries in the cache
+    		synchronized(db) {
+    			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+    			if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+    			long[] ids = Arrays.copyOf(missingIds, missingCount);
+    			JSONArray loaded = usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper
+    					? retrieveExternal(soupTableName, ids)
+    					: retrieve(db, soupTableName, ids);
+    			// Uncommitted changes could still be rolled back
+    			boolean cacheable = !db.inTransaction();
+    			for (int i = 0; i < loaded.length(); i++) {
+    				JSONObject soupElt = loaded.getJSONObject(i);
+    				long soupEntryId = soupElt.getLong(SOUP_ENTRY_ID);
+    				if (cacheable) {
+    					entryCache.put(soupEntryId, soupElt);
+    				}
+    				soupElts.put(soupEntryId, soupElt);
+    			}
+    		}
+    	}
+    	return new JSONArray(soupElts.values());
+    }
+
+    /**
+     * Retrieve soup elements of soup using external storage (loaded in parallel)
+     * @param soupTableName
+     * @param soupEntryIds
+     * @return JSONArray of JSONObject's with the given soupEntryIds
+     */
+    private JSONArray retrieveExternal(String soupTableName, long[] soupEntryIds) {
+        JSONArray result = new JSONArray();
+        for (JSONObject soupElt : getExternalBlobLoader().load(soupTableName, soupEntryIds)) {
+	        if (soupElt != null) {
+		        result.put(soupElt);
+	        }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve from the given connection (soups using internal storage only)
+     * @param queryDb database to run the query against (either the writable database or a read-only connection)
+     * @param soupTableName
+     * @param soupEntryIds
+     * @return JSONArray of JSONObject's with the given soupEntryIds (in ascending soupEntryId order)
+     * @throws JSONException
+     */
+    private JSONArray retrieve(SQLiteDatabase queryDb, String soupTableName, long[] soupEntryIds) throws JSONException {
+        JSONArray result = new JSONArray();
+        // Sorted so that chunks come back in soupEntryId order
+        long[] sortedIds = soupEntryIds.clone();
+        Arrays.sort(sortedIds);
+        // Each chunk is padded (like in DBHelper.deleteByIds) so that only a handful of distinct queries get compiled
+        String[] args = null;
+        for (int start = 0; start < sortedIds.length; start += DBHelper.MAX_IDS_PER_STATEMENT) {
+            int count = Math.min(DBHelper.MAX_IDS_PER_STATEMENT, sortedIds.length - start);
+            int placeholders = DBHelper.getPaddedIdCount(count);
+            if (args == null || args.length != placeholders) {
+                args = new String[placeholders];
+            }
+            for (int i = 0; i < placeholders; i++) {
+                args[i] = Long.toString(sortedIds[start + Math.min(i, count - 1)]);
+            }
+            Cursor cursor = null;
+            try {
+                cursor = queryDb.query(soupTableName, new String[] { SOUP_COL }, DBHelper.getIdsInPredicate(ID_COL, placeholders), args, null, null, null);
+                int soupColIndex = cursor.getColumnIndex(SOUP_COL);
+                while (cursor.moveToNext()) {
+                    result.put(getSoupElt(cursor, soupColIndex, null));
+                }
+            } finally {
+                safeClose(cursor);
+            }
+        }
+        return result;
     }
 
 
@@ -1115,16 +1960,19 @@ public class SmartStore  {
      * @throws JSONException
      */
     public JSONObject update(String soupName, JSONObject soupElt, long soupEntryId, boolean handleTx) throws JSONException {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 			try {
 				if (handleTx) {
-					db.beginTransaction();
+					beginTransaction(db);
 				}
 
 				String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 				if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
 				IndexSpec[] indexSpecs = DBHelper.getInstance(db).getIndexSpecs(db, soupName);
+				PathProjector.Batch indexProjector = DBHelper.getInstance(db).getIndexProjector(db, soupName);
 
 				long now = System.currentTimeMillis();
 
@@ -1136,28 +1984,31 @@ public class SmartStore  {
 				// Preparing data for row
 				ContentValues contentValues = new ContentValues();
 				contentValues.put(LAST_MODIFIED_COL, now);
-				projectIndexedPaths(soupElt, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
+				Object[] indexValues = indexProjector.project(soupElt);
+				projectIndexedPaths(indexValues, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
 				if (!usesExternalStorage(soupName)) {
-					contentValues.put(SOUP_COL, soupElt.toString());
+					putSoupElt(contentValues, soupElt, usesBinaryEncoding(soupName), usesCompression(soupName));
 				}
 
 				// Updating database
 				boolean success = DBHelper.getInstance(db).update(db, soupTableName, contentValues, ID_PREDICATE, soupEntryId + "") == 1;
+				DBHelper.getInstance(db).removeFromEntryCache(soupName, soupEntryId);
 
 				// Fts
 				if (success && hasFTS(soupName)) {
 					String soupTableNameFts = soupTableName + FTS_SUFFIX;
 					ContentValues contentValuesFts = new ContentValues();
-					projectIndexedPaths(soupElt, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+					projectIndexedPaths(indexValues, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
 					success = DBHelper.getInstance(db).update(db, soupTableNameFts, contentValuesFts, ROWID_PREDICATE, soupEntryId + "") == 1;
 				}
 
 				// Add to external storage if applicable
 				if (success && usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-					success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode);
+					success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode, usesCompression(soupName));
 				}
 
 				if (success) {
+					SoupChangeNotifier.getInstance(db).recordUpdated(soupName, soupEntryId);
 					if (handleTx) {
 						db.setTransactionSuccessful();
 					}
@@ -1167,7 +2018,7 @@ public class SmartStore  {
 				}
 			} finally {
 				if (handleTx) {
-					db.endTransaction();
+					endTransaction(db);
 				}
 			}
     	}
@@ -1212,6 +2063,8 @@ public class SmartStore  {
      * @throws JSONException
      */
     public JSONObject upsert(String soupName, JSONObject soupElt, String externalIdPath, boolean handleTx) throws JSONException {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 	        long entryId = -1;
@@ -1235,6 +2088,259 @@ public class SmartStore  {
     	}
     }
 
+    /**
+     * Upsert several soup elements (and commits)
+     * Note: Passed soupElts are modified (last modified date and soup entry id fields)
+     * @param soupName
+     * @param soupElts
+     * @param externalIdPath
+     * @return soupElts upserted
+     * @throws JSONException
+     * @throws SmartStoreException if a soup element could not be saved (nothing is committed then)
+     */
+    public JSONArray upsertAll(String soupName, JSONArray soupElts, String externalIdPath) throws JSONException {
+    	final SQLiteDatabase db = getDatabase();
+    	synchronized(db) {
+    		return upsertAll(soupName, soupElts, externalIdPath, true);
+    	}
+    }
+
+    /**
+     * Upsert several soup elements
+     * Soup meta data is resolved once, external ids are looked up in batches
+     * and the compiled insert/update statements are reused across elements
+     * Note: Passed soupElts are modified (last modified date and soup entry id fields)
+     * @param soupName
+     * @param soupElts
+     * @param externalIdPath
+     * @param handleTx
+     * @return soupElts upserted
+     * @throws JSONException
+     * @throws SmartStoreException if a soup element could not be saved (nothing is committed then if handleTx is true,
+     *         the caller's transaction should be rolled back otherwise)
+     */
+    public JSONArray upsertAll(String soupName, JSONArray soupElts, String externalIdPath, boolean handleTx) throws JSONException {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
+    	final SQLiteDatabase db = getDatabase();
+    	synchronized(db) {
+	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+	        IndexSpec[] indexSpecs = DBHelper.getInstance(db).getIndexSpecs(db, soupName);
+	        PathProjector.Batch indexProjector = DBHelper.getInstance(db).getIndexProjector(db, soupName);
+	        boolean usesExternalStorage = usesExternalStorage(soupName);
+	        boolean usesBinaryEncoding = usesBinaryEncoding(soupName);
+	        boolean usesCompression = usesCompression(soupName);
+	        boolean hasFTS = hasFTS(soupName);
+
+	        // Columns written on update (in statement binding order)
+	        List<String> columns = new ArrayList<>();
+	        columns.add(LAST_MODIFIED_COL);
+	        List<String> ftsColumns = new ArrayList<>();
+	        for (IndexSpec indexSpec : indexSpecs) {
+	            if (TypeGroup.value_extracted_to_column.isMember(indexSpec.type)) {
+	                columns.add(indexSpec.columnName);
+	            }
+	            if (TypeGroup.value_extracted_to_fts_column.isMember(indexSpec.type)) {
+	                ftsColumns.add(indexSpec.columnName);
+	            }
+	        }
+	        if (!usesExternalStorage) {
+	            columns.add(SOUP_COL);
+	        }
+
+	        SQLiteStatement updateStatement = null;
+	        SQLiteStatement ftsInsertStatement = null;
+	        SQLiteStatement ftsUpdateStatement = null;
+	        try {
+	            if (handleTx) {
+	                beginTransaction(db);
+	            }
+
+	            // Looking up existing entries
+	            Map<String, Long> externalIdToEntryId = externalIdPath.equals(SOUP_ENTRY_ID)
+	                    ? null
+	                    : lookupSoupEntryIds(db, soupName, soupTableName, soupElts, externalIdPath);
+
+	            updateStatement = db.compileStatement("UPDATE " + soupTableName + " SET " + TextUtils.join(" = ?, ", columns) + " = ? WHERE " + ID_PREDICATE);
+	            if (hasFTS) {
+	                String soupTableNameFts = soupTableName + FTS_SUFFIX;
+	                ftsInsertStatement = db.compileStatement("INSERT INTO " + soupTableNameFts + " (" + ROWID_COL + ", " + TextUtils.join(", ", ftsColumns) + ") VALUES (?" + TextUtils.join("", Collections.nCopies(ftsColumns.size(), ", ?")) + ")");
+	                ftsUpdateStatement = db.compileStatement("UPDATE " + soupTableNameFts + " SET " + TextUtils.join(" = ?, ", ftsColumns) + " = ? WHERE " + ROWID_PREDICATE);
+	            }
+
+	            for (int i = 0; i < soupElts.length(); i++) {
+	                JSONObject soupElt = soupElts.getJSONObject(i);
+	                long now = System.currentTimeMillis();
+
+	                // Finding entry id
+	                long soupEntryId = -1;
+	                String externalId = null;
+	                if (externalIdToEntryId == null) {
+	                    if (soupElt.has(SOUP_ENTRY_ID)) {
+	                        soupEntryId = soupElt.getLong(SOUP_ENTRY_ID);
+	                    }
+	                } else {
+	                    Object externalIdObj = project(soupElt, externalIdPath);
+	                    if (externalIdObj != null) {
+	                        externalId = externalIdObj + "";
+	                        Long entryId = externalIdToEntryId.get(externalId);
+	                        soupEntryId = (entryId != null ? entryId : -1);
+	                    }
+	                }
+	                boolean isCreate = (soupEntryId == -1);
+
+	                // Adding fields to soup element
+	                if (isCreate) {
+	                    soupEntryId = DBHelper.getInstance(db).getNextId(db, soupTableName);
+	                }
+	                soupElt.put(SOUP_ENTRY_ID, soupEntryId);
+	                soupElt.put(SOUP_LAST_MODIFIED_DATE, now);
+	                ContentValues contentValues = new ContentValues();
+	                contentValues.put(LAST_MODIFIED_COL, now);
+	                Object[] indexValues = indexProjector.project(soupElt);
+	                projectIndexedPaths(indexValues, contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
+	                if (!usesExternalStorage) {
+	                    putSoupElt(contentValues, soupElt, usesBinaryEncoding, usesCompression);
+	                }
+
+	                // Writing row
+	                boolean success;
+	                if (isCreate) {
+	                    contentValues.put(ID_COL, soupEntryId);
+	                    contentValues.put(CREATED_COL, now);
+	                    success = DBHelper.getInstance(db).insert(db, soupTableName, contentValues) == soupEntryId;
+	                    if (success && externalId != null) {
+	                        // Later elements with the same external id will update this entry
+	                        externalIdToEntryId.put(externalId, soupEntryId);
+	                    }
+	                } else {
+	                    bindContentValues(updateStatement, columns, contentValues);
+	                    updateStatement.bindLong(columns.size() + 1, soupEntryId);
+	                    success = updateStatement.executeUpdateDelete() == 1;
+	                    DBHelper.getInstance(db).removeFromEntryCache(soupName, soupEntryId);
+	                }
+
+	                // Fts
+	                if (success && hasFTS) {
+	                    ContentValues contentValuesFts = new ContentValues();
+	                    projectIndexedPaths(indexValues, contentValuesFts, indexSpecs, TypeGroup.value_extracted_to_fts_column);
+	                    if (isCreate) {
+	                        ftsInsertStatement.bindLong(1, soupEntryId);
+	                        bindContentValues(ftsInsertStatement, ftsColumns, contentValuesFts, 1);
+	                        ftsInsertStatement.executeInsert();
+	                    } else {
+	                        bindContentValues(ftsUpdateStatement, ftsColumns, contentValuesFts);
+	                        ftsUpdateStatement.bindLong(ftsColumns.size() + 1, soupEntryId);
+	                        success = ftsUpdateStatement.executeUpdateDelete() == 1;
+	                    }
+	                }
+
+	                // Add to external storage if applicable
+	                if (success && usesExternalStorage && dbOpenHelper instanceof DBOpenHelper) {
+	                    success = ((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode, usesCompression);
+	                }
+
+	                if (!success) {
+	                    throw new SmartStoreException("Could not upsert soup element " + i + " of " + soupElts.length() + " in soup: " + soupName);
+	                }
+	                if (isCreate) {
+	                    SoupChangeNotifier.getInstance(db).recordInserted(soupName, soupEntryId);
+	                } else {
+	                    SoupChangeNotifier.getInstance(db).recordUpdated(soupName, soupEntryId);
+	                }
+	            }
+
+	            if (handleTx) {
+	                db.setTransactionSuccessful();
+	            }
+	            return soupElts;
+	        } finally {
+	            safeClose(updateStatement);
+	            safeClose(ftsInsertStatement);
+	            safeClose(ftsUpdateStatement);
+	            if (handleTx) {
+	                endTransaction(db);
+	            }
+	        }
+    	}
+    }
+
+    /**
+     * Look up soup entry ids of soup elements by external id, using IN (...) queries
+     * @param db
+     * @param soupName
+     * @param soupTableName
+     * @param soupElts
+     * @param externalIdPath
+     * @return map from external id to soup entry id for the soup elements already in the soup
+     * @throws JSONException
+     */
+    private Map<String, Long> lookupSoupEntryIds(SQLiteDatabase db, String soupName, String soupTableName, JSONArray soupElts, String externalIdPath) throws JSONException {
+        String columnName = DBHelper.getInstance(db).getColumnNameForPath(db, soupName, externalIdPath);
+        Map<String, Long> externalIdToEntryId = new HashMap<>();
+        Set<String> uniqueExternalIds = new LinkedHashSet<>();
+        for (int i = 0; i < soupElts.length(); i++) {
+            Object externalIdObj = project(soupElts.getJSONObject(i), externalIdPath);
+            if (externalIdObj == null) {
+                continue;
+            }
+            if (externalIdObj instanceof Double || externalIdObj instanceof Float) {
+                // Text form of floating values might differ between java and sqlite
+                long entryId = lookupSoupEntryId(soupName, externalIdPath, externalIdObj + "");
+                if (entryId != -1) {
+                    externalIdToEntryId.put(externalIdObj + "", entryId);
+                }
+            } else {
+                uniqueExternalIds.add(externalIdObj + "");
+            }
+        }
+
+        List<String> externalIds = new ArrayList<>(uniqueExternalIds);
+
+        for (int start = 0; start < externalIds.size(); start += MAX_LOOKUP_BATCH_SIZE) {
+            List<String> batch = externalIds.subList(start, Math.min(externalIds.size(), start + MAX_LOOKUP_BATCH_SIZE));
+            String placeholders = TextUtils.join(", ", Collections.nCopies(batch.size(), "?"));
+            Cursor cursor = null;
+            try {
+                cursor = db.query(soupTableName, new String[] {ID_COL, columnName}, columnName + " IN (" + placeholders + ")",
+                        batch.toArray(new String[batch.size()]), null, null, null);
+                while (cursor.moveToNext()) {
+                    String externalId = cursor.getString(1);
+                    if (externalIdToEntryId.put(externalId, cursor.getLong(0)) != null) {
+                        throw new SmartStoreException(String.format("There are more than one soup elements where %s is %s", externalIdPath, externalId));
+                    }
+                }
+            } finally {
+                safeClose(cursor);
+            }
+        }
+        return externalIdToEntryId;
+    }
+
+    /**
+     * Bind values from contentValues to statement
+     * @param statement
+     * @param columns columns in binding order
+     * @param contentValues
+     */
+    private void bindContentValues(SQLiteStatement statement, List<String> columns, ContentValues contentValues) {
+        bindContentValues(statement, columns, contentValues, 0);
+    }
+
+    /**
+     * Bind values from contentValues to statement
+     * @param statement
+     * @param columns columns in binding order
+     * @param contentValues
+     * @param offset number of arguments of statement bound before the first column
+     */
+    private void bindContentValues(SQLiteStatement statement, List<String> columns, ContentValues contentValues, int offset) {
+        for (int i = 0; i < columns.size(); i++) {
+            DBHelper.bindValue(statement, offset + i + 1, contentValues.get(columns.get(i)));
+        }
+    }
+
     /**
      * Look for a soup element where fieldPath's value is fieldValue
      * Return its soupEntryId
@@ -1247,6 +2353,8 @@ public class SmartStore  {
      * @param fieldValue
      */
     public long lookupSoupEntryId(String soupName, String fieldPath, String fieldValue) {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
@@ -1276,6 +2384,16 @@ public class SmartStore  {
      * @param soupEntryIds
      */
     public void delete(String soupName, Long... soupEntryIds) {
+    	delete(soupName, toLongArray(soupEntryIds));
+    }
+
+    /**
+     * Delete soup elements given by their ids (and commits)
+     * Ids are deleted in bounded chunks, so any number of ids can be passed
+     * @param soupName
+     * @param soupEntryIds
+     */
+    public void delete(String soupName, long[] soupEntryIds) {
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
     		delete(soupName, soupEntryIds, true);
@@ -1289,18 +2407,32 @@ public class SmartStore  {
      * @param handleTx
      */
     public void delete(String soupName, Long[] soupEntryIds, boolean handleTx) {
+    	delete(soupName, toLongArray(soupEntryIds), handleTx);
+    }
+
+    /**
+     * Delete soup elements given by their ids
+     * @param soupName
+     * @param soupEntryIds
+     * @param handleTx
+     */
+    public void delete(String soupName, long[] soupEntryIds, boolean handleTx) {
+    	waitForSoupCopy(soupName);
+    	flushPendingWrites(soupName);
     	final SQLiteDatabase db = getDatabase();
     	synchronized(db) {
 	        String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 	        if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
 	        if (handleTx) {
-	            db.beginTransaction();
+	            beginTransaction(db);
 	        }
 	        try {
-	            db.delete(soupTableName, getSoupEntryIdsPredicate(soupEntryIds), (String []) null);
+	            DBHelper.getInstance(db).deleteByIds(db, soupTableName, ID_COL, soupEntryIds);
+	            DBHelper.getInstance(db).removeFromEntryCache(soupName, soupEntryIds);
+	            SoupChangeNotifier.getInstance(db).recordDeleted(soupName, soupEntryIds);
 
 				if (hasFTS(soupName)) {
-					db.delete(soupTableName + FTS_SUFFIX, getRowIdsPredicate(soupEntryIds), (String[]) null);
+					DBHelper.getInstance(db).deleteByIds(db, soupTableName + FTS_SUFFIX, ROWID_COL, soupEntryIds);
 				}
 
 				if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
@@ -1312,7 +2444,7 @@ public class SmartStore  {
 	            }
 	        } finally {
 	            if (handleTx) {
-	                db.endTransaction();
+	                endTransaction(db);
 	            }
 	        }
     	}
@@ -1337,38 +2469,47 @@ public class SmartStore  {
 	 * @param handleTx
 	 */
 	public void deleteByQuery(String soupName, QuerySpec querySpec, boolean handleTx) {
+		waitForSoupCopy(soupName);
+		flushPendingWrites(soupName);
 		final SQLiteDatabase db = getDatabase();
 		synchronized(db) {
 			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
 			if (soupTableName == null) throw new SmartStoreException("Soup: " + soupName + " does not exist");
 			if (handleTx) {
-				db.beginTransaction();
+				beginTransaction(db);
 			}
 			try {
                 String subQuerySql = String.format("SELECT %s FROM (%s) LIMIT %d", ID_COL, convertSmartSql(querySpec.idsSmartSql), querySpec.pageSize);
                 String[] args = querySpec.getArgs();
 
-                if (usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper) {
-					// Query list of ids and remove them from external storage
+                boolean removeBlobs = usesExternalStorage(soupName) && dbOpenHelper instanceof DBOpenHelper;
+                SoupChangeNotifier notifier = SoupChangeNotifier.getInstance(db);
+                long[] ids = null;
+                if (removeBlobs || notifier.hasListeners(soupName)) {
+					// Query list of ids (to remove them from external storage and / or report them to listeners)
 					Cursor c = null;
 					try {
 						c = db.query(soupTableName, new String[] { ID_COL }, buildInStatement(ID_COL, subQuerySql), args, null, null, null);
-						if (c.moveToFirst()) {
-							Long[] ids = new Long[c.getCount()];
-							int counter = 0;
-							do {
-								ids[counter++] = c.getLong(0);
-							} while (c.moveToNext());
-							((DBOpenHelper) dbOpenHelper).removeSoupBlob(soupTableName, ids);
+						ids = new long[c.getCount()];
+						int counter = 0;
+						while (c.moveToNext()) {
+							ids[counter++] = c.getLong(0);
 						}
 					} finally {
 						if (c != null) {
 							c.close();
 						}
 					}
+					if (removeBlobs && ids.length > 0) {
+						((DBOpenHelper) dbOpenHelper).removeSoupBlob(soupTableName, ids);
+					}
                 }
 
                 db.delete(soupTableName, buildInStatement(ID_COL, subQuerySql), args);
+                DBHelper.getInstance(db).clearEntryCache(soupName);
+                if (ids != null) {
+                    notifier.recordDeleted(soupName, ids);
+                }
 
 				if (hasFTS(soupName)) {
                     db.delete(soupTableName + FTS_SUFFIX, buildInStatement(ROWID_COL, subQuerySql), args);
@@ -1379,27 +2520,206 @@ public class SmartStore  {
 				}
 			} finally {
 				if (handleTx) {
-					db.endTransaction();
+					endTransaction(db);
 				}
 			}
 		}
 	}
 
-    /**
-     * @return predicate to match soup entries by id
-     */
-    private String getSoupEntryIdsPredicate(Long[] soupEntryIds) {
-        return buildInStatement(ID_COL, TextUtils.join(",", soupEntryIds));
-    }
+	/**
+	 * Export soup spec, index specs and soup elements of a soup as newline-delimited JSON (see SoupArchive)
+	 * Soup elements are exported with their created date (_soupCreatedDate), which importSoup restores
+	 * Soup elements are streamed one at a time, so soups of any size can be exported in constant memory
+	 * @param soupName
+	 * @param out stream to write the archive to - closed on return
+	 * @param compressed true to gzip the archive
+	 * @param encryptionKey Base64 encoded 256 bit key to encrypt the archive with or null
+	 * @return number of soup elements exported
+	 * @throws JSONException
+	 */
+	public int exportSoup(final String soupName, OutputStream out, boolean compressed, String encryptionKey) throws JSONException {
+		if (!hasSoup(soupName)) throw new SmartStoreException("Soup: " + soupName + " does not exist");
+		final int[] count = new int[1];
+		try (final Writer writer = SoupArchive.openWriter(out, compressed, encryptionKey)) {
+			SoupArchive.writeLine(writer, SoupArchive.buildHeader(getSoupSpec(soupName), getSoupIndexSpecs(soupName)));
+			queryEach(QuerySpec.buildAllQuerySpec(soupName, new String[] {SmartSqlHelper.SOUP, SOUP_CREATED_DATE}, null, null, EXPORT_PAGE_SIZE), new QueryRowHandler() {
+				@Override
+				public boolean onRow(Object row) {
+					try {
+						JSONArray values = (JSONArray) row;
+						JSONObject soupElt = values.optJSONObject(0);
+						if (soupElt == null) {
+							return true; // external blob deleted while exporting
+						}
+						soupElt.put(SOUP_CREATED_DATE, values.getLong(1));
+						SoupArchive.writeLine(writer, soupElt);
+					} catch (IOException | JSONException e) {
+						throw new SmartStoreException("Could not export soup: " + soupName, e);
+					}
+					count[0]++;
+					return true;
+				}
+			});
+		} catch (IOException | GeneralSecurityException e) {
+			throw new SmartStoreException("Could not export soup: " + soupName, e);
+		}
+		return count[0];
+	}
 
+	/**
+	 * Import soup archive produced by exportSoup (see SoupArchive)
+	 * The soup is registered with the archived specs if it does not exist, soup elements are added to the soup with new soup entry ids
+	 * (keeping their archived created date when there is one)
+	 * Runs holding the database lock with SoupArchive.DEFAULT_ENTRIES_PER_TRANSACTION soup elements per transaction
+	 * @param in stream to read the archive from - closed on return
+	 * @param compressed true if the archive is gzipped
+	 * @param encryptionKey Base64 encoded 256 bit key the archive was encrypted with or null
+	 * @return number of soup elements imported
+	 * @throws JSONException
+	 */
+	public int importSoup(InputStream in, boolean compressed, String encryptionKey) throws JSONException {
+		return importSoup(in, compressed, encryptionKey, SoupArchive.DEFAULT_ENTRIES_PER_TRANSACTION);
+	}
+
+	/**
+	 * Import soup archive produced by exportSoup (see SoupArchive)
+	 * Indexes of the soup table are dropped during the load and re-created at the end (along with full-text search rows),
+	 * soup meta data is looked up once and soup elements are inserted with a single compiled statement
+	 * If the import is interrupted, indexes are restored the next time the database is opened (see ImportSoupLongOperation)
+	 * @param in stream to read the archive from - closed on return
+	 * @param compressed true if the archive is gzipped
+	 * @param encryptionKey Base64 encoded 256 bit key the archive was encrypted with or null
+	 * @param entriesPerTransaction number of soup elements inserted per transaction
+	 * @return number of soup elements imported
+	 * @throws JSONException
+	 */
+	public int importSoup(InputStream in, boolean compressed, String encryptionKey, int entriesPerTransaction) throws JSONException {
+		if (entriesPerTransaction <= 0) throw new SmartStoreException("Invalid number of entries per transaction: " + entriesPerTransaction);
+		try (BufferedReader reader = SoupArchive.openReader(in, compressed, encryptionKey)) {
+			JSONObject header = SoupArchive.readHeader(reader);
+			SoupSpec soupSpec = SoupSpec.fromJSON(header.getJSONObject(SoupArchive.SOUP_SPEC));
+			IndexSpec[] indexSpecs = IndexSpec.fromJSON(header.getJSONArray(SoupArchive.INDEX_SPECS));
+			return importSoup(soupSpec, indexSpecs, reader, entriesPerTransaction);
+		} catch (IOException | GeneralSecurityException e) {
+			throw new SmartStoreException("Could not import soup", e);
+		}
+	}
 
 	/**
-	 * @return predicate to match entries by rowid
+	 * Import soup elements (one per line) read from reader
+	 * @param soupSpec
+	 * @param indexSpecs index specs to register the soup with if it does not exist
+	 * @param reader
+	 * @param entriesPerTransaction
+	 * @return number of soup elements imported
+	 * @throws JSONException
+	 * @throws IOException
 	 */
-	private String getRowIdsPredicate(Long[] rowids) {
-        return buildInStatement(ROWID_COL, TextUtils.join(",", rowids));
+	int importSoup(SoupSpec soupSpec, IndexSpec[] indexSpecs, BufferedReader reader, int entriesPerTransaction) throws JSONException, IOException {
+		final String soupName = soupSpec.getSoupName();
+		waitForSoupCopy(soupName);
+		flushPendingWrites(soupName);
+		registerSoupWithSpec(soupSpec, indexSpecs);
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			String soupTableName = DBHelper.getInstance(db).getSoupTableName(db, soupName);
+			indexSpecs = DBHelper.getInstance(db).getIndexSpecs(db, soupName);
+			PathProjector.Batch indexProjector = DBHelper.getInstance(db).getIndexProjector(db, soupName);
+			boolean usesExternalStorage = usesExternalStorage(soupName);
+			boolean usesBinaryEncoding = usesBinaryEncoding(soupName);
+			boolean usesCompression = usesCompression(soupName);
+
+			// Columns written (in statement binding order)
+			List<String> columns = new ArrayList<>();
+			columns.add(ID_COL);
+			columns.add(CREATED_COL);
+			columns.add(LAST_MODIFIED_COL);
+			if (!usesExternalStorage) {
+				columns.add(SOUP_COL);
+			}
+			for (IndexSpec indexSpec : indexSpecs) {
+				if (TypeGroup.value_extracted_to_column.isMember(indexSpec.type)) {
+					columns.add(indexSpec.columnName);
+				}
+			}
+
+			ImportSoupLongOperation operation = new ImportSoupLongOperation(this, soupName, soupTableName,
+					DBHelper.getInstance(db).getNextId(db, soupTableName) - 1);
+			beginTransaction(db);
+			try {
+				operation.start();
+				db.setTransactionSuccessful();
+			} finally {
+				endTransaction(db);
+			}
+
+			int count = 0;
+			SQLiteStatement insertStatement = null;
+			try {
+				insertStatement = db.compileStatement("INSERT INTO " + soupTableName + " (" + TextUtils.join(", ", columns) + ") VALUES (?"
+						+ TextUtils.join("", Collections.nCopies(columns.size() - 1, ", ?")) + ")");
+				String line = reader.readLine();
+				while (line != null) {
+					beginTransaction(db);
+					try {
+						long soupEntryId = DBHelper.getInstance(db).getNextId(db, soupTableName);
+						int inTransaction = 0;
+						for (; line != null && inTransaction < entriesPerTransaction; line = reader.readLine()) {
+							if (line.isEmpty()) {
+								continue;
+							}
+							JSONObject soupElt = new JSONObject(line);
+							long now = System.currentTimeMillis();
+							long created = soupElt.optLong(SOUP_CREATED_DATE, now);
+							long lastModified = soupElt.optLong(SOUP_LAST_MODIFIED_DATE, now);
+							soupElt.remove(SOUP_CREATED_DATE);
+							soupElt.put(SOUP_ENTRY_ID, soupEntryId);
+							soupElt.put(SOUP_LAST_MODIFIED_DATE, lastModified);
+							ContentValues contentValues = new ContentValues();
+							contentValues.put(ID_COL, soupEntryId);
+							contentValues.put(CREATED_COL, created);
+							contentValues.put(LAST_MODIFIED_COL, lastModified);
+							if (!usesExternalStorage) {
+								putSoupElt(contentValues, soupElt, usesBinaryEncoding, usesCompression);
+							}
+							projectIndexedPaths(indexProjector.project(soupElt), contentValues, indexSpecs, TypeGroup.value_extracted_to_column);
+							bindContentValues(insertStatement, columns, contentValues);
+							insertStatement.executeInsert();
+							if (usesExternalStorage && dbOpenHelper instanceof DBOpenHelper
+									&& !((DBOpenHelper) dbOpenHelper).saveSoupBlob(soupTableName, soupEntryId, soupElt, passcode, usesCompression)) {
+								throw new SmartStoreException("Could not save soup element " + soupEntryId + " of soup: " + soupName);
+							}
+							SoupChangeNotifier.getInstance(db).recordInserted(soupName, soupEntryId);
+							soupEntryId++;
+							inTransaction++;
+						}
+						db.setTransactionSuccessful();
+						count += inTransaction;
+					} finally {
+						endTransaction(db);
+					}
+				}
+			} finally {
+				safeClose(insertStatement);
+				operation.run();
+			}
+			return count;
+		}
 	}
 
+    /**
+     * @param soupEntryIds
+     * @return unboxed soup entry ids
+     */
+    private static long[] toLongArray(Long[] soupEntryIds) {
+        long[] ids = new long[soupEntryIds.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = soupEntryIds[i];
+        }
+        return ids;
+    }
+
+
     /**
      * @param col
      * @param inPredicate
@@ -1442,6 +2762,15 @@ public class SmartStore  {
         }
     }
 
+    /**
+     * @param statement
+     */
+    private void safeClose(SQLiteStatement statement) {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+
     /**
      * @param soup
      * @param path
@@ -1464,43 +2793,9 @@ public class SmartStore  {
         if (path == null || path.equals("")) {
             return soup;
         }
-        String[] pathElements = path.split("[.]");
-		return project(soup, pathElements, 0);
+        return PathProjector.compile(path).project(soup);
     }
 
-	private static Object project(Object jsonObj, String[] pathElements, int index) {
-		Object result = null;
-		if (index == pathElements.length) {
-			return jsonObj;
-		}
-
-		if (null != jsonObj) {
-			String pathElement = pathElements[index];
-
-			if (jsonObj instanceof JSONObject) {
-				JSONObject jsonDict = (JSONObject) jsonObj;
-				Object dictVal = JSONObjectHelper.opt(jsonDict, pathElement);
-				result = project(dictVal, pathElements, index+1);
-			}
-			else if (jsonObj instanceof JSONArray) {
-				JSONArray jsonArr = (JSONArray) jsonObj;
-				result = new JSONArray();
-				for (int i=0; i<jsonArr.length(); i++) {
-					Object arrayElt = JSONObjectHelper.opt(jsonArr, i);
-					Object resultPart = project(arrayElt, pathElements, index);
-					if (resultPart != null) {
-						((JSONArray) result).put(resultPart);
-					}
-				}
-				if (((JSONArray) result).length() == 0) {
-					result = null;
-				}
-			}
-		}
-
-		return result;
-	}
-
     /**
      * Enum for column type
      */
@@ -1548,6 +2843,34 @@ public class SmartStore  {
         public abstract boolean isMember(Type type);
     }
 
+	/**
+	 * Listener notified of changes made to a soup (see SmartStore#registerSoupChangeListener)
+	 */
+	public interface SoupChangeListener {
+
+		/**
+		 * Called on a background thread once the transaction that made the changes has committed
+		 * @param change
+		 */
+		void onSoupChanged(SoupChange change);
+	}
+
+	/**
+	 * Handler used to consume query results one row at a time
+	 * NB: the query holds a read-only connection while rows are handed to the handler, queries run from the handler
+	 * can't wait for another one (see DBOpenHelper#acquireReadConnection) and go through the writable connection instead,
+	 * so they queue behind on-going writes
+	 */
+	public interface QueryRowHandler {
+
+		/**
+		 * @param row JSONObject for exact/like/range/match queries without select paths, JSONArray otherwise
+		 * @return true to keep reading results, false to stop
+		 * @throws JSONException
+		 */
+		boolean onRow(Object row) throws JSONException;
+	}
+
 	/**
 	 * Enum for fts extensions
 	 */
@@ -1566,6 +2889,10 @@ public class SmartStore  {
             super(message);
         }
 
+        public SmartStoreException(String message, Throwable cause) {
+            super(message, cause);
+        }
+
         private static final long serialVersionUID = -6369452803270075464L;
 
     }
@@ -1608,4 +2935,50 @@ public class SmartStore  {
 			return DBHelper.getInstance(db).getFeatures(db, soupName).contains(SoupSpec.FEATURE_EXTERNAL_STORAGE);
 		}
 	}
+
+	/**
+	 * Return entry cache of the given soup (to size it or look at its hit rate)
+	 *
+	 * @param soupName
+	 * @return entry cache or null if the soup does not use the entry cache feature
+	 */
+	public SoupEntryCache getEntryCache(String soupName) {
+		final SQLiteDatabase db = getDatabase();
+		DBHelper dbHelper = DBHelper.getInstance(db);
+		List<String> features = dbHelper.getCachedFeatures(soupName);
+		if (features == null) {
+			synchronized (db) {
+				features = dbHelper.getFeatures(db, soupName);
+			}
+		}
+		return features != null && features.contains(SoupSpec.FEATURE_ENTRY_CACHE) ? dbHelper.getEntryCache(soupName) : null;
+	}
+
+	/**
+	 * Determines if the given soup stores its elements with the binary encoding.
+	 *
+	 * @param soupName Name of the soup to determine binary encoding enablement.
+	 *
+	 * @return  True if soup uses binary encoding; false otherwise.
+	 */
+	public boolean usesBinaryEncoding(String soupName) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			return DBHelper.getInstance(db).getFeatures(db, soupName).contains(SoupSpec.FEATURE_BINARY_ENCODING);
+		}
+	}
+
+	/**
+	 * Determines if the given soup compresses its large elements.
+	 *
+	 * @param soupName Name of the soup to determine compression enablement.
+	 *
+	 * @return  True if soup uses compression; false otherwise.
+	 */
+	public boolean usesCompression(String soupName) {
+		final SQLiteDatabase db = getDatabase();
+		synchronized (db) {
+			return DBHelper.getInstance(db).getFeatures(db, soupName).contains(SoupSpec.FEATURE_COMPRESSION);
+		}
+	}
 }
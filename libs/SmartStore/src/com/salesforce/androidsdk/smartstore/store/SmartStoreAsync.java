@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade for SmartStore
+ *
+ * Reads (query, countQuery, retrieve) and writes (upsert, upsertAll, delete, deleteByQuery) are scheduled on separate executors:
+ * - reads run concurrently (on read-only connections when available) and never queue behind writes
+ * - writes run one at a time in the order they were submitted
+ * NB: a read submitted after a write might run before that write completes, use the write's callback or future to chain them
+ *
+ * Every call returns a Future that can be used to wait for the result or to cancel the operation.
+ * When a callback is given, it is invoked on the executor thread once the operation completes (it is not invoked if the operation is cancelled).
+ */
+public class SmartStoreAsync {
+
+	private final SmartStore store;
+	private final ExecutorService readExecutor;
+	private final ExecutorService writeExecutor;
+	private final boolean ownsExecutors;
+
+	/**
+	 * Callback for asynchronous operations
+	 * @param <T> type of result
+	 */
+	public interface Callback<T> {
+		/**
+		 * Called when the operation succeeded
+		 * @param result
+		 */
+		void onResult(T result);
+
+		/**
+		 * Called when the operation failed
+		 * @param error
+		 */
+		void onError(Throwable error);
+	}
+
+	/**
+	 * Constructor using default executors
+	 * One read thread per read-only connection (see DBOpenHelper#DEFAULT_MAX_READ_CONNECTIONS) and a single write thread
+	 * They are shut down by shutdown()
+	 * @param store
+	 */
+	public SmartStoreAsync(SmartStore store) {
+		this(store,
+				Executors.newFixedThreadPool(DBOpenHelper.DEFAULT_MAX_READ_CONNECTIONS, new NamedThreadFactory("SmartStoreAsync-read")),
+				Executors.newSingleThreadExecutor(new NamedThreadFactory("SmartStoreAsync-write")),
+				true);
+	}
+
+	/**
+	 * Constructor using the given executors
+	 * They are not shut down by shutdown()
+	 * NB: writeExecutor should run one task at a time for writes to be applied in the order they were submitted
+	 * @param store
+	 * @param readExecutor
+	 * @param writeExecutor
+	 */
+	public SmartStoreAsync(SmartStore store, ExecutorService readExecutor, ExecutorService writeExecutor) {
+		this(store, readExecutor, writeExecutor, false);
+	}
+
+	private SmartStoreAsync(SmartStore store, ExecutorService readExecutor, ExecutorService writeExecutor, boolean ownsExecutors) {
+		this.store = store;
+		this.readExecutor = readExecutor;
+		this.writeExecutor = writeExecutor;
+		this.ownsExecutors = ownsExecutors;
+	}
+
+	/**
+	 * @return underlying store
+	 */
+	public SmartStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Run a query given by its query Spec, only returned results from selected page (see SmartStore#query)
+	 * @param querySpec
+	 * @param pageIndex
+	 * @param callback or null
+	 * @return future for the results
+	 */
+	public Future<JSONArray> query(final QuerySpec querySpec, final int pageIndex, Callback<JSONArray> callback) {
+		return submit(readExecutor, new Callable<JSONArray>() {
+			@Override
+			public JSONArray call() throws Exception {
+				return store.query(querySpec, pageIndex);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Count results of a query (see SmartStore#countQuery)
+	 * @param querySpec
+	 * @param callback or null
+	 * @return future for the count
+	 */
+	public Future<Integer> countQuery(final QuerySpec querySpec, Callback<Integer> callback) {
+		return submit(readExecutor, new Callable<Integer>() {
+			@Override
+			public Integer call() {
+				return store.countQuery(querySpec);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Retrieve soup elements (see SmartStore#retrieve)
+	 * @param soupName
+	 * @param soupEntryIds
+	 * @param callback or null
+	 * @return future for the soup elements
+	 */
+	public Future<JSONArray> retrieve(final String soupName, final Long[] soupEntryIds, Callback<JSONArray> callback) {
+		return submit(readExecutor, new Callable<JSONArray>() {
+			@Override
+			public JSONArray call() throws Exception {
+				return store.retrieve(soupName, soupEntryIds);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Upsert soup element (see SmartStore#upsert)
+	 * @param soupName
+	 * @param soupElt
+	 * @param externalIdPath or null to use _soupEntryId
+	 * @param callback or null
+	 * @return future for the upserted soup element
+	 */
+	public Future<JSONObject> upsert(final String soupName, final JSONObject soupElt, final String externalIdPath, Callback<JSONObject> callback) {
+		return submit(writeExecutor, new Callable<JSONObject>() {
+			@Override
+			public JSONObject call() throws Exception {
+				return (externalIdPath == null ? store.upsert(soupName, soupElt) : store.upsert(soupName, soupElt, externalIdPath));
+			}
+		}, callback);
+	}
+
+	/**
+	 * Upsert soup elements in one transaction (see SmartStore#upsertAll)
+	 * @param soupName
+	 * @param soupElts
+	 * @param externalIdPath or null to use _soupEntryId
+	 * @param callback or null
+	 * @return future for the upserted soup elements
+	 */
+	public Future<JSONArray> upsertAll(final String soupName, final JSONArray soupElts, final String externalIdPath, Callback<JSONArray> callback) {
+		return submit(writeExecutor, new Callable<JSONArray>() {
+			@Override
+			public JSONArray call() throws Exception {
+				return store.upsertAll(soupName, soupElts, externalIdPath);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Delete soup elements (see SmartStore#delete)
+	 * @param soupName
+	 * @param soupEntryIds
+	 * @param callback or null
+	 * @return future completing once the soup elements are deleted
+	 */
+	public Future<Void> delete(final String soupName, final Long[] soupEntryIds, Callback<Void> callback) {
+		return submit(writeExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				store.delete(soupName, soupEntryIds);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Delete soup elements returned by a query (see SmartStore#deleteByQuery)
+	 * @param soupName
+	 * @param querySpec
+	 * @param callback or null
+	 * @return future completing once the soup elements are deleted
+	 */
+	public Future<Void> deleteByQuery(final String soupName, final QuerySpec querySpec, Callback<Void> callback) {
+		return submit(writeExecutor, new Callable<Void>() {
+			@Override
+			public Void call() {
+				store.deleteByQuery(soupName, querySpec);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Stop accepting new operations
+	 * Operations already submitted still run
+	 * NB: executors passed to the constructor are left alone
+	 */
+	public void shutdown() {
+		if (ownsExecutors) {
+			readExecutor.shutdown();
+			writeExecutor.shutdown();
+		}
+	}
+
+	private static <T> Future<T> submit(ExecutorService executor, Callable<T> callable, final Callback<T> callback) {
+		FutureTask<T> task = new FutureTask<T>(callable) {
+			@Override
+			protected void done() {
+				if (callback == null || isCancelled()) {
+					return;
+				}
+				T result;
+				try {
+					result = get();
+				} catch (ExecutionException e) {
+					callback.onError(e.getCause());
+					return;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				callback.onResult(result);
+			}
+		};
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Thread factory giving recognizable names to threads
+	 */
+	private static class NamedThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable, prefix + "-" + count.incrementAndGet());
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.analytics.security.Encryptor;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.GeneralSecurityException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Format of soup archives (see SmartStore#exportSoup and SmartStore#importSoup)
+ *
+ * A soup archive is newline-delimited JSON: a header line {"version":1, "soupSpec":{...}, "indexSpecs":[...]}
+ * followed by one line per soup element (including its _soupCreatedDate)
+ * The archive can be gzip compressed and/or encrypted with Encryptor (compressed first, then encrypted)
+ */
+public class SoupArchive {
+
+	public static final int VERSION = 1;
+
+	// Fields of header line
+	public static final String VERSION_FIELD = "version";
+	public static final String SOUP_SPEC = "soupSpec";
+	public static final String INDEX_SPECS = "indexSpecs";
+
+	// Default number of soup elements imported per transaction
+	public static final int DEFAULT_ENTRIES_PER_TRANSACTION = 10000;
+
+	private static final String UTF8 = "UTF-8";
+	private static final int STREAM_BUFFER_SIZE = 65536;
+
+	/**
+	 * @param soupSpec
+	 * @param indexSpecs
+	 * @return header line of archive
+	 * @throws JSONException
+	 */
+	static JSONObject buildHeader(SoupSpec soupSpec, IndexSpec[] indexSpecs) throws JSONException {
+		JSONObject header = new JSONObject();
+		header.put(VERSION_FIELD, VERSION);
+		header.put(SOUP_SPEC, soupSpec.toJSON());
+		// Column names are specific to the exporting store
+		IndexSpec[] archivedIndexSpecs = new IndexSpec[indexSpecs.length];
+		for (int i = 0; i < indexSpecs.length; i++) {
+			archivedIndexSpecs[i] = new IndexSpec(indexSpecs[i].path, indexSpecs[i].type);
+		}
+		header.put(INDEX_SPECS, IndexSpec.toJSON(archivedIndexSpecs));
+		return header;
+	}
+
+	/**
+	 * Read header line of archive
+	 * @param reader
+	 * @return header
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	static JSONObject readHeader(BufferedReader reader) throws IOException, JSONException {
+		String line = reader.readLine();
+		if (line == null) {
+			throw new SmartStoreException("Empty soup archive");
+		}
+		JSONObject header = new JSONObject(line);
+		if (header.optInt(VERSION_FIELD) != VERSION) {
+			throw new SmartStoreException("Unsupported soup archive version: " + header.opt(VERSION_FIELD));
+		}
+		return header;
+	}
+
+	/**
+	 * Write one line of archive
+	 * @param writer
+	 * @param json
+	 * @throws IOException
+	 */
+	static void writeLine(Writer writer, Object json) throws IOException {
+		writer.write(json.toString());
+		writer.write('\n');
+	}
+
+	/**
+	 * @param out
+	 * @param compressed
+	 * @param encryptionKey Base64 encoded 256 bit key to encrypt with or null
+	 * @return writer for archive - closing it closes out
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 */
+	static Writer openWriter(OutputStream out, boolean compressed, String encryptionKey) throws IOException, GeneralSecurityException {
+		OutputStream stream = Encryptor.getEncryptingOutputStream(new BufferedOutputStream(out, STREAM_BUFFER_SIZE), encryptionKey);
+		if (compressed) {
+			stream = new GZIPOutputStream(stream, STREAM_BUFFER_SIZE);
+		}
+		return new BufferedWriter(new OutputStreamWriter(stream, UTF8), STREAM_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param in
+	 * @param compressed
+	 * @param encryptionKey Base64 encoded 256 bit key to decrypt with or null
+	 * @return reader for archive - closing it closes in
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 */
+	static BufferedReader openReader(InputStream in, boolean compressed, String encryptionKey) throws IOException, GeneralSecurityException {
+		InputStream stream = Encryptor.getDecryptingInputStream(new BufferedInputStream(in, STREAM_BUFFER_SIZE), encryptionKey);
+		if (compressed) {
+			stream = new GZIPInputStream(stream, STREAM_BUFFER_SIZE);
+		}
+		return new BufferedReader(new InputStreamReader(stream, UTF8), STREAM_BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Changes made to a soup by one committed transaction (see SmartStore#registerSoupChangeListener)
+ *
+ * Changes are coalesced: a soup element created then updated is only reported as inserted,
+ * a soup element created then deleted is not reported at all
+ */
+public class SoupChange {
+
+	private final String soupName;
+	private final Set<Long> insertedIds = new LinkedHashSet<>();
+	private final Set<Long> updatedIds = new LinkedHashSet<>();
+	private final Set<Long> deletedIds = new LinkedHashSet<>();
+	private boolean cleared;
+
+	SoupChange(String soupName) {
+		this.soupName = soupName;
+	}
+
+	/**
+	 * @return name of changed soup
+	 */
+	public String getSoupName() {
+		return soupName;
+	}
+
+	/**
+	 * @return soup entry ids of created soup elements
+	 */
+	public Set<Long> getInsertedIds() {
+		return Collections.unmodifiableSet(insertedIds);
+	}
+
+	/**
+	 * @return soup entry ids of updated soup elements
+	 */
+	public Set<Long> getUpdatedIds() {
+		return Collections.unmodifiableSet(updatedIds);
+	}
+
+	/**
+	 * @return soup entry ids of deleted soup elements
+	 */
+	public Set<Long> getDeletedIds() {
+		return Collections.unmodifiableSet(deletedIds);
+	}
+
+	/**
+	 * @return true if all soup elements that existed before the transaction were deleted (soup cleared or dropped)
+	 * NB: inserted ids are the ones inserted after that
+	 */
+	public boolean isCleared() {
+		return cleared;
+	}
+
+	void inserted(long soupEntryId) {
+		if (deletedIds.remove(soupEntryId)) {
+			updatedIds.add(soupEntryId);
+		} else {
+			insertedIds.add(soupEntryId);
+		}
+	}
+
+	void updated(long soupEntryId) {
+		if (!insertedIds.contains(soupEntryId)) {
+			updatedIds.add(soupEntryId);
+		}
+	}
+
+	void deleted(long soupEntryId) {
+		if (!insertedIds.remove(soupEntryId)) {
+			updatedIds.remove(soupEntryId);
+			deletedIds.add(soupEntryId);
+		}
+	}
+
+	void clear() {
+		insertedIds.clear();
+		updatedIds.clear();
+		deletedIds.clear();
+		cleared = true;
+	}
+
+	@Override
+	public String toString() {
+		return "SoupChange{soupName=" + soupName + ", inserted=" + insertedIds + ", updated=" + updatedIds
+				+ ", deleted=" + deletedIds + ", cleared=" + cleared + "}";
+	}
+}
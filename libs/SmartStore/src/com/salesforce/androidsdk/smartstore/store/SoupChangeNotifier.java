@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SoupChangeListener;
+import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteTransactionListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Collects changes made to soups with listeners and hands them to the listeners once committed
+ *
+ * Changes made in a transaction are kept until the transaction ends: they are delivered if it commits and dropped if it rolls back
+ * That requires the transaction to be started with the notifier as listener (see SmartStore#beginTransaction(SQLiteDatabase))
+ * and ended with SmartStore#endTransaction(SQLiteDatabase), changes made in other transactions are not reported
+ * NB: onCommit is called before the COMMIT is executed, changes are only staged then and delivered once the COMMIT went through
+ * Listeners are called on a notifier thread, in commit order
+ */
+class SoupChangeNotifier implements SQLiteTransactionListener {
+
+	private static final String TAG = "SoupChangeNotifier";
+
+	private static final Map<SQLiteDatabase, SoupChangeNotifier> INSTANCES = new ConcurrentHashMap<>();
+
+	/**
+	 * @param db
+	 * @return notifier for the database
+	 */
+	static SoupChangeNotifier getInstance(SQLiteDatabase db) {
+		SoupChangeNotifier notifier = INSTANCES.get(db);
+		if (notifier == null) {
+			synchronized (INSTANCES) {
+				notifier = INSTANCES.get(db);
+				if (notifier == null) {
+					notifier = new SoupChangeNotifier(db);
+					INSTANCES.put(db, notifier);
+				}
+			}
+		}
+		return notifier;
+	}
+
+	private final SQLiteDatabase db;
+	private final Map<String, List<SoupChangeListener>> soupNameToListeners = new ConcurrentHashMap<>();
+	private ExecutorService executor;
+
+	// Guarded by this
+	private final Map<String, SoupChange> pendingChanges = new LinkedHashMap<>();
+	private final List<SoupChange> stagedChanges = new ArrayList<>();
+	private boolean inObservedTransaction;
+
+	private SoupChangeNotifier(SQLiteDatabase db) {
+		this.db = db;
+	}
+
+	/**
+	 * @param soupName
+	 * @param listener
+	 */
+	void addListener(String soupName, SoupChangeListener listener) {
+		synchronized (soupNameToListeners) {
+			List<SoupChangeListener> listeners = soupNameToListeners.get(soupName);
+			if (listeners == null) {
+				listeners = new CopyOnWriteArrayList<>();
+				soupNameToListeners.put(soupName, listeners);
+			}
+			listeners.add(listener);
+		}
+	}
+
+	/**
+	 * @param soupName
+	 * @param listener
+	 */
+	void removeListener(String soupName, SoupChangeListener listener) {
+		synchronized (soupNameToListeners) {
+			List<SoupChangeListener> listeners = soupNameToListeners.get(soupName);
+			if (listeners != null) {
+				listeners.remove(listener);
+				if (listeners.isEmpty()) {
+					soupNameToListeners.remove(soupName);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param soupName
+	 * @return true if changes of the soup are being listened to
+	 */
+	boolean hasListeners(String soupName) {
+		return soupNameToListeners.containsKey(soupName);
+	}
+
+	synchronized void recordInserted(String soupName, long soupEntryId) {
+		SoupChange change = getPendingChange(soupName);
+		if (change != null) {
+			change.inserted(soupEntryId);
+			deliverIfCommitted();
+		}
+	}
+
+	synchronized void recordUpdated(String soupName, long soupEntryId) {
+		SoupChange change = getPendingChange(soupName);
+		if (change != null) {
+			change.updated(soupEntryId);
+			deliverIfCommitted();
+		}
+	}
+
+	synchronized void recordDeleted(String soupName, long... soupEntryIds) {
+		SoupChange change = getPendingChange(soupName);
+		if (change != null) {
+			for (long soupEntryId : soupEntryIds) {
+				change.deleted(soupEntryId);
+			}
+			deliverIfCommitted();
+		}
+	}
+
+	synchronized void recordCleared(String soupName) {
+		SoupChange change = getPendingChange(soupName);
+		if (change != null) {
+			change.clear();
+			deliverIfCommitted();
+		}
+	}
+
+	/**
+	 * @param soupName
+	 * @return pending change to record soup changes into or null if they should not be recorded
+	 */
+	private synchronized SoupChange getPendingChange(String soupName) {
+		if (!hasListeners(soupName)) {
+			return null;
+		}
+		if (db.inTransaction() && !inObservedTransaction) {
+			SmartStoreLogger.w(TAG, "Changes to soup " + soupName + " made in a transaction not started through SmartStore are not reported");
+			return null;
+		}
+		SoupChange change = pendingChanges.get(soupName);
+		if (change == null) {
+			change = new SoupChange(soupName);
+			pendingChanges.put(soupName, change);
+		}
+		return change;
+	}
+
+	/**
+	 * Deliver changes right away if they were not made in a transaction
+	 */
+	private void deliverIfCommitted() {
+		if (!db.inTransaction()) {
+			List<SoupChange> changes = new ArrayList<>(pendingChanges.values());
+			pendingChanges.clear();
+			deliver(changes);
+		}
+	}
+
+	@Override
+	public synchronized void onBegin() {
+		inObservedTransaction = true;
+		pendingChanges.clear();
+		stagedChanges.clear();
+	}
+
+	@Override
+	public synchronized void onCommit() {
+		// COMMIT has not been executed yet
+		inObservedTransaction = false;
+		stagedChanges.addAll(pendingChanges.values());
+		pendingChanges.clear();
+	}
+
+	@Override
+	public synchronized void onRollback() {
+		inObservedTransaction = false;
+		pendingChanges.clear();
+		stagedChanges.clear();
+	}
+
+	/**
+	 * Called once the outermost transaction has ended (see SmartStore#endTransaction(SQLiteDatabase))
+	 * @param ended true if the transaction ended normally, false if ending it failed (e.g. COMMIT failed)
+	 */
+	void onTransactionEnded(boolean ended) {
+		final List<SoupChange> changes;
+		synchronized (this) {
+			changes = new ArrayList<>(stagedChanges);
+			stagedChanges.clear();
+		}
+		if (ended) {
+			deliver(changes);
+		}
+	}
+
+	private void deliver(final List<SoupChange> changes) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				for (SoupChange change : changes) {
+					List<SoupChangeListener> listeners = soupNameToListeners.get(change.getSoupName());
+					if (listeners == null) {
+						continue;
+					}
+					for (SoupChangeListener listener : listeners) {
+						try {
+							listener.onSoupChanged(change);
+						} catch (RuntimeException e) {
+							SmartStoreLogger.e(TAG, "Soup change listener failed", e);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, TAG);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
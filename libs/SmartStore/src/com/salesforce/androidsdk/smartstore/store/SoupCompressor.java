@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of large soup elements for soups with the compression feature (see SoupSpec#FEATURE_COMPRESSION)
+ *
+ * Format: a marker byte, a content byte (JSON text or binary encoding, see BinarySoupCodec) followed by the deflated content (zlib format)
+ * The marker can't start JSON text or the binary encoding, so compressed and uncompressed elements can live side by side
+ * Only elements of at least getThreshold() bytes that actually shrink are compressed, the others are stored as is
+ * Stats are kept for the whole process (see getStats)
+ */
+public class SoupCompressor {
+
+	public static final int DEFAULT_THRESHOLD = 16 * 1024;
+
+	// Marker
+	static final byte MARKER = (byte) 0xDF;
+
+	// Content
+	private static final byte JSON_TEXT = 0;
+	private static final byte BINARY = 1;
+
+	private static final int HEADER_LENGTH = 2;
+	private static final int BUFFER_SIZE = 8192;
+
+	private static volatile int threshold = DEFAULT_THRESHOLD;
+
+	private static final AtomicLong entriesCompressed = new AtomicLong();
+	private static final AtomicLong bytesBeforeCompression = new AtomicLong();
+	private static final AtomicLong bytesAfterCompression = new AtomicLong();
+	private static final AtomicLong compressionNanos = new AtomicLong();
+	private static final AtomicLong entriesDecompressed = new AtomicLong();
+	private static final AtomicLong decompressionNanos = new AtomicLong();
+
+	/**
+	 * Compression stats (snapshot)
+	 */
+	public static class Stats {
+		public final long entriesCompressed;
+		public final long bytesBeforeCompression;
+		public final long bytesAfterCompression;
+		public final long compressionNanos;
+		public final long entriesDecompressed;
+		public final long decompressionNanos;
+
+		Stats(long entriesCompressed, long bytesBeforeCompression, long bytesAfterCompression, long compressionNanos,
+			  long entriesDecompressed, long decompressionNanos) {
+			this.entriesCompressed = entriesCompressed;
+			this.bytesBeforeCompression = bytesBeforeCompression;
+			this.bytesAfterCompression = bytesAfterCompression;
+			this.compressionNanos = compressionNanos;
+			this.entriesDecompressed = entriesDecompressed;
+			this.decompressionNanos = decompressionNanos;
+		}
+
+		/**
+		 * @return compressed size over original size of the compressed elements (1 if nothing was compressed)
+		 */
+		public double getCompressionRatio() {
+			return bytesBeforeCompression == 0 ? 1 : (double) bytesAfterCompression / bytesBeforeCompression;
+		}
+
+		/**
+		 * @return stats as json
+		 * @throws JSONException
+		 */
+		public JSONObject toJSON() throws JSONException {
+			JSONObject json = new JSONObject();
+			json.put("entriesCompressed", entriesCompressed);
+			json.put("bytesBeforeCompression", bytesBeforeCompression);
+			json.put("bytesAfterCompression", bytesAfterCompression);
+			json.put("compressionRatio", getCompressionRatio());
+			json.put("compressionNanos", compressionNanos);
+			json.put("entriesDecompressed", entriesDecompressed);
+			json.put("decompressionNanos", decompressionNanos);
+			return json;
+		}
+	}
+
+	/**
+	 * @return size in bytes from which soup elements get compressed
+	 */
+	public static int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Set size in bytes from which soup elements get compressed (only affects elements written afterwards)
+	 * @param thresholdBytes
+	 */
+	public static void setThreshold(int thresholdBytes) {
+		if (thresholdBytes < 0) throw new SmartStoreException("Invalid compression threshold: " + thresholdBytes);
+		threshold = thresholdBytes;
+	}
+
+	/**
+	 * @return compression stats since start or last call to resetStats
+	 */
+	public static Stats getStats() {
+		return new Stats(entriesCompressed.get(), bytesBeforeCompression.get(), bytesAfterCompression.get(), compressionNanos.get(),
+				entriesDecompressed.get(), decompressionNanos.get());
+	}
+
+	/**
+	 * Reset compression stats
+	 */
+	public static void resetStats() {
+		entriesCompressed.set(0);
+		bytesBeforeCompression.set(0);
+		bytesAfterCompression.set(0);
+		compressionNanos.set(0);
+		entriesDecompressed.set(0);
+		decompressionNanos.set(0);
+	}
+
+	/**
+	 * Compress soup element content if it is large enough
+	 * @param content JSON text (utf-8) or binary encoded soup element
+	 * @param binary true if content is binary encoded
+	 * @return compressed bytes or null if content is under the threshold or does not shrink
+	 */
+	public static byte[] compress(byte[] content, boolean binary) {
+		if (content.length < threshold) {
+			return null;
+		}
+		long start = System.nanoTime();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + HEADER_LENGTH);
+			out.write(MARKER);
+			out.write(binary ? BINARY : JSON_TEXT);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+				if (out.size() >= content.length) {
+					return null; // not worth it
+				}
+			}
+			byte[] compressed = out.toByteArray();
+			entriesCompressed.incrementAndGet();
+			bytesBeforeCompression.addAndGet(content.length);
+			bytesAfterCompression.addAndGet(compressed.length);
+			return compressed;
+		} finally {
+			deflater.end();
+			compressionNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @param bytes
+	 * @return true if bytes were produced by compress
+	 */
+	public static boolean isCompressed(byte[] bytes) {
+		return bytes.length >= HEADER_LENGTH && bytes[0] == MARKER;
+	}
+
+	/**
+	 * @param compressed bytes produced by compress
+	 * @return true if the compressed content is binary encoded
+	 */
+	public static boolean isBinary(byte[] compressed) {
+		return compressed[1] == BINARY;
+	}
+
+	/**
+	 * Decompress bytes produced by compress
+	 * Anything following the zlib stream (e.g. padding left by encryption) is ignored
+	 * @param compressed
+	 * @return original content
+	 */
+	public static byte[] decompress(byte[] compressed) {
+		long start = System.nanoTime();
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (!inflater.finished()) {
+				int inflated = inflater.inflate(buffer);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new SmartStoreException("Truncated compressed soup element");
+				}
+				out.write(buffer, 0, inflated);
+			}
+			entriesDecompressed.incrementAndGet();
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			throw new SmartStoreException("Could not decompress soup element", e);
+		} finally {
+			inflater.end();
+			decompressionNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache of decoded soup elements keyed by soup entry id
+ * Used by soups with the entry cache feature (see SoupSpec#FEATURE_ENTRY_CACHE)
+ *
+ * Soup elements are copied in and out of the cache, so callers can change the soup elements they get back
+ */
+public class SoupEntryCache {
+
+	public static final int DEFAULT_MAX_SIZE = 500;
+
+	private final LinkedHashMap<Long, JSONObject> entries = new LinkedHashMap<>(16, 0.75f, true /* access order */);
+	private int maxSize;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	SoupEntryCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param soupEntryId
+	 * @return copy of cached soup element or null
+	 * @throws JSONException
+	 */
+	synchronized JSONObject get(long soupEntryId) throws JSONException {
+		JSONObject soupElt = entries.get(soupEntryId);
+		if (soupElt == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return (JSONObject) copy(soupElt);
+	}
+
+	/**
+	 * @param soupEntryId
+	 * @param soupElt (copied)
+	 * @throws JSONException
+	 */
+	synchronized void put(long soupEntryId, JSONObject soupElt) throws JSONException {
+		if (maxSize == 0) {
+			return;
+		}
+		entries.put(soupEntryId, (JSONObject) copy(soupElt));
+		trim();
+	}
+
+	/**
+	 * @param soupEntryIds
+	 */
+	synchronized void remove(long... soupEntryIds) {
+		for (long soupEntryId : soupEntryIds) {
+			entries.remove(soupEntryId);
+		}
+	}
+
+	/**
+	 * Remove all soup elements
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Set maximum number of soup elements kept (least recently used soup elements beyond that are evicted)
+	 * @param maxSize (0 to stop caching)
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new SmartStoreException("Invalid entry cache size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		trim();
+	}
+
+	/**
+	 * @return maximum number of soup elements kept
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return number of soup elements currently cached
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return number of lookups that found the soup element in the cache
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return number of lookups that had to go to the database
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return number of soup elements evicted because the cache was full
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return hits / lookups (0 if there was no lookup)
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hitCount + missCount;
+		return lookups == 0 ? 0 : (double) hitCount / lookups;
+	}
+
+	private void trim() {
+		Iterator<Map.Entry<Long, JSONObject>> iterator = entries.entrySet().iterator();
+		while (entries.size() > maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Deep copy (cheaper than serializing and parsing)
+	 */
+	private static Object copy(Object value) throws JSONException {
+		if (value instanceof JSONObject) {
+			JSONObject obj = (JSONObject) value;
+			JSONObject copy = new JSONObject();
+			Iterator<String> keys = obj.keys();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				copy.put(key, copy(obj.get(key)));
+			}
+			return copy;
+		} else if (value instanceof JSONArray) {
+			JSONArray arr = (JSONArray) value;
+			JSONArray copy = new JSONArray();
+			for (int i = 0; i < arr.length(); i++) {
+				copy.put(copy(arr.get(i)));
+			}
+			return copy;
+		}
+		return value;
+	}
+}
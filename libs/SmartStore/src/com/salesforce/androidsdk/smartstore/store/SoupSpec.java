@@ -40,15 +40,23 @@ import org.json.JSONObject;
 public class SoupSpec {
     /** Soup features **/
     public static final String FEATURE_EXTERNAL_STORAGE = "externalStorage";
+    /** Soup elements stored in the database in a compact binary encoding (see BinarySoupCodec) instead of JSON text **/
+    public static final String FEATURE_BINARY_ENCODING = "binaryEncoding";
+    /** Recently retrieved soup elements kept decoded in memory (see SoupEntryCache) **/
+    public static final String FEATURE_ENTRY_CACHE = "entryCache";
+    /** Large soup elements compressed when stored in the database or on file storage (see SoupCompressor) **/
+    public static final String FEATURE_COMPRESSION = "compression";
 
     /** List of all possible features for building soup_attrs table **/
-    public static final String[] ALL_FEATURES = { FEATURE_EXTERNAL_STORAGE };
+    public static final String[] ALL_FEATURES = { FEATURE_EXTERNAL_STORAGE, FEATURE_BINARY_ENCODING, FEATURE_ENTRY_CACHE, FEATURE_COMPRESSION };
 
     private String soupName;
     private List<String> features;
+    private CompoundIndexSpec[] compoundIndexSpecs;
 
     private static final String NAME = "name";
     private static final String FEATURES = "features";
+    private static final String COMPOUND_INDEX_SPECS = "compoundIndexSpecs";
 
     /**
      * Creates a soup spec without any features.
@@ -58,6 +66,7 @@ public class SoupSpec {
     public SoupSpec(String soupName) {
         this.soupName = soupName;
         this.features = Collections.emptyList();
+        this.compoundIndexSpecs = new CompoundIndexSpec[0];
     }
 
     /**
@@ -73,6 +82,21 @@ public class SoupSpec {
         } else {
             this.features = Collections.emptyList();
         }
+        this.compoundIndexSpecs = new CompoundIndexSpec[0];
+    }
+
+    /**
+     * Creates a soup spec with the given compound / partial indexes and features.
+     *
+     * @param soupName Name of the soup that will be used to store data.
+     * @param compoundIndexSpecs Indexes on one or more indexed paths (every path must have an index spec).
+     * @param features List of features that this soup should implement.
+     */
+    public SoupSpec(String soupName, CompoundIndexSpec[] compoundIndexSpecs, String... features) {
+        this(soupName, features);
+        if (compoundIndexSpecs != null) {
+            this.compoundIndexSpecs = compoundIndexSpecs.clone();
+        }
     }
 
     /**
@@ -93,6 +117,15 @@ public class SoupSpec {
         return features;
     }
 
+    /**
+     * Returns the compound / partial indexes of the soup represented in this soup spec.
+     *
+     * @return Compound index specs (empty if the soup has none).
+     */
+    public CompoundIndexSpec[] getCompoundIndexSpecs() {
+        return compoundIndexSpecs.clone();
+    }
+
     /**
      * @return The JSON representation of this soup spec.
      * @throws JSONException
@@ -101,6 +134,9 @@ public class SoupSpec {
         JSONObject result = new JSONObject();
         result.put(NAME, soupName);
         result.put(FEATURES, new JSONArray(features));
+        if (compoundIndexSpecs.length > 0) {
+            result.put(COMPOUND_INDEX_SPECS, CompoundIndexSpec.toJSON(compoundIndexSpecs));
+        }
         return result;
     }
 
@@ -112,6 +148,8 @@ public class SoupSpec {
      * @throws JSONException
      */
     public static SoupSpec fromJSON(JSONObject json) throws JSONException {
+        JSONArray compoundIndexSpecsJson = json.optJSONArray(COMPOUND_INDEX_SPECS);
+        CompoundIndexSpec[] compoundIndexSpecs = compoundIndexSpecsJson == null ? null : CompoundIndexSpec.fromJSON(compoundIndexSpecsJson);
         JSONArray jsonArray = json.optJSONArray(FEATURES);
         if (jsonArray != null) {
             String[] featureArray = new String[jsonArray.length()];
@@ -119,9 +157,9 @@ public class SoupSpec {
                 featureArray[i] = (String) jsonArray.get(i);
             }
 
-            return new SoupSpec(json.getString(NAME), featureArray);
+            return new SoupSpec(json.getString(NAME), compoundIndexSpecs, featureArray);
         } else {
-            return new SoupSpec(json.getString(NAME));
+            return new SoupSpec(json.getString(NAME), compoundIndexSpecs);
         }
     }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import android.database.Cursor;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compaction of the store database (see SmartStore#enableAutoCompaction)
+ *
+ * Stores are created with auto_vacuum=INCREMENTAL: pages freed by deletes go to the freelist and
+ * are handed back to the file system a few at a time by PRAGMA incremental_vacuum
+ * Once enabled, the compactor checks the freelist every idleDelayMs and, if no transaction was started
+ * since the previous check, runs incremental_vacuum in steps of pagesPerStep pages, releasing the database lock between steps
+ * Stores created before auto_vacuum was turned on must be migrated once (see DBOpenHelper#migrateToIncrementalVacuum)
+ */
+public class StoreCompactor {
+
+	private static final String TAG = "StoreCompactor";
+
+	public static final long DEFAULT_IDLE_DELAY_MS = 30000;
+	public static final int DEFAULT_PAGES_PER_STEP = 64;
+	public static final int DEFAULT_MIN_FREE_PAGES = 256;
+
+	/**
+	 * Values of PRAGMA auto_vacuum (in order)
+	 */
+	public enum AutoVacuum {
+		NONE,
+		FULL,
+		INCREMENTAL
+	}
+
+	/**
+	 * Page usage of a store database
+	 */
+	public static class Stats {
+		public final long pageSize;
+		public final long pageCount;
+		public final long freelistCount;
+		public final AutoVacuum autoVacuum;
+
+		Stats(long pageSize, long pageCount, long freelistCount, AutoVacuum autoVacuum) {
+			this.pageSize = pageSize;
+			this.pageCount = pageCount;
+			this.freelistCount = freelistCount;
+			this.autoVacuum = autoVacuum;
+		}
+
+		/**
+		 * @return bytes taken by free pages (reclaimable by compaction)
+		 */
+		public long getFreeBytes() {
+			return freelistCount * pageSize;
+		}
+
+		/**
+		 * @return fraction of the pages of the database file that are free (between 0 and 1)
+		 */
+		public double getFragmentation() {
+			return pageCount == 0 ? 0 : (double) freelistCount / pageCount;
+		}
+
+		/**
+		 * @return stats as json
+		 * @throws JSONException
+		 */
+		public JSONObject toJSON() throws JSONException {
+			JSONObject json = new JSONObject();
+			json.put("pageSize", pageSize);
+			json.put("pageCount", pageCount);
+			json.put("freelistCount", freelistCount);
+			json.put("freeBytes", getFreeBytes());
+			json.put("fragmentation", getFragmentation());
+			json.put("autoVacuum", autoVacuum.name());
+			return json;
+		}
+	}
+
+	private static final Map<SQLiteDatabase, StoreCompactor> INSTANCES = new ConcurrentHashMap<>();
+
+	/**
+	 * @param db
+	 * @return compactor enabled on the database or null
+	 */
+	static StoreCompactor getInstance(SQLiteDatabase db) {
+		return INSTANCES.get(db);
+	}
+
+	/**
+	 * Enable compactor on the database (replacing any compactor already enabled on it)
+	 * @param db
+	 * @param idleDelayMs
+	 * @param pagesPerStep
+	 * @param minFreePages
+	 * @return
+	 */
+	static StoreCompactor enable(SQLiteDatabase db, long idleDelayMs, int pagesPerStep, int minFreePages) {
+		if (idleDelayMs <= 0 || pagesPerStep <= 0 || minFreePages < 0) {
+			throw new SmartStoreException("Invalid compaction settings: " + idleDelayMs + " ms / " + pagesPerStep + " pages per step / " + minFreePages + " free pages");
+		}
+		synchronized (db) {
+			StoreCompactor previous = INSTANCES.get(db);
+			if (previous != null) {
+				previous.disable();
+			}
+			StoreCompactor compactor = new StoreCompactor(db, idleDelayMs, pagesPerStep, minFreePages);
+			INSTANCES.put(db, compactor);
+			compactor.start();
+			return compactor;
+		}
+	}
+
+	/**
+	 * Record activity on the database (compaction waits for the database to be idle)
+	 * @param db
+	 */
+	static void onTransaction(SQLiteDatabase db) {
+		StoreCompactor compactor = INSTANCES.get(db);
+		if (compactor != null) {
+			compactor.lastActivity = System.nanoTime();
+		}
+	}
+
+	/**
+	 * @param db
+	 * @return page usage of the database
+	 */
+	static Stats getStats(SQLiteDatabase db) {
+		synchronized (db) {
+			return new Stats(getPragma(db, "page_size"), getPragma(db, "page_count"), getPragma(db, "freelist_count"), getAutoVacuum(db));
+		}
+	}
+
+	/**
+	 * @param db
+	 * @return auto_vacuum mode of the database
+	 */
+	static AutoVacuum getAutoVacuum(SQLiteDatabase db) {
+		return AutoVacuum.values()[(int) getPragma(db, "auto_vacuum")];
+	}
+
+	/**
+	 * Hand free pages back to the file system, pagesPerStep pages at a time, releasing the database lock between steps
+	 * Does nothing unless the database uses auto_vacuum=INCREMENTAL
+	 * @param db
+	 * @param pagesPerStep
+	 * @return number of pages reclaimed
+	 */
+	static long compact(SQLiteDatabase db, int pagesPerStep) {
+		long reclaimed = 0;
+		while (true) {
+			synchronized (db) {
+				long freed = incrementalVacuumStep(db, pagesPerStep);
+				reclaimed += freed;
+				if (freed < pagesPerStep) {
+					checkpoint(db);
+					return reclaimed;
+				}
+			}
+		}
+	}
+
+	private final SQLiteDatabase db;
+	private final long idleDelayMs;
+	private final int pagesPerStep;
+	private final int minFreePages;
+	private final ScheduledExecutorService scheduler;
+
+	// Time (System.nanoTime) of the last transaction started
+	private volatile long lastActivity;
+
+	private StoreCompactor(SQLiteDatabase db, long idleDelayMs, int pagesPerStep, int minFreePages) {
+		this.db = db;
+		this.idleDelayMs = idleDelayMs;
+		this.pagesPerStep = pagesPerStep;
+		this.minFreePages = minFreePages;
+		this.lastActivity = System.nanoTime();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Stop compacting the database
+	 */
+	public void disable() {
+		scheduler.shutdownNow();
+		INSTANCES.remove(db, this);
+	}
+
+	/**
+	 * Schedule idle checks
+	 */
+	private void start() {
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					compactIfIdle();
+				} catch (Exception e) {
+					SmartStoreLogger.e(TAG, "Compaction failed", e);
+				}
+			}
+		}, idleDelayMs, idleDelayMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Run incremental vacuum if the database has been idle for idleDelayMs and has at least minFreePages free pages
+	 * Stops as soon as a transaction is started by another thread
+	 */
+	private void compactIfIdle() {
+		final long activity = lastActivity;
+		if (System.nanoTime() - activity < TimeUnit.MILLISECONDS.toNanos(idleDelayMs)) {
+			return;
+		}
+		synchronized (db) {
+			if (!db.isOpen() || getPragma(db, "freelist_count") < Math.max(minFreePages, 1) || getAutoVacuum(db) != AutoVacuum.INCREMENTAL) {
+				return;
+			}
+		}
+		long reclaimed = 0;
+		while (!Thread.currentThread().isInterrupted()) {
+			synchronized (db) {
+				if (lastActivity != activity || !db.isOpen()) {
+					break;
+				}
+				long freed = incrementalVacuumStep(db, pagesPerStep);
+				reclaimed += freed;
+				if (freed < pagesPerStep) {
+					checkpoint(db);
+					break;
+				}
+			}
+		}
+		SmartStoreLogger.d(TAG, "Reclaimed " + reclaimed + " pages");
+	}
+
+	/**
+	 * Free up to pages pages
+	 * @param db
+	 * @param pages
+	 * @return number of pages freed
+	 */
+	private static long incrementalVacuumStep(SQLiteDatabase db, int pages) {
+		long before = getPragma(db, "freelist_count");
+		if (before == 0) {
+			return 0;
+		}
+		Cursor cursor = null;
+		try {
+			// One row is returned per page freed, reading them all runs the pragma to completion
+			cursor = db.rawQuery("PRAGMA incremental_vacuum(" + pages + ")", null);
+			cursor.getCount();
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		return before - getPragma(db, "freelist_count");
+	}
+
+	/**
+	 * Checkpoint write-ahead log (file only shrinks once truncated pages are checkpointed)
+	 * @param db
+	 */
+	private static void checkpoint(SQLiteDatabase db) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+			cursor.moveToFirst();
+		} catch (Exception e) {
+			SmartStoreLogger.w(TAG, "Could not checkpoint write-ahead log", e);
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * @param db
+	 * @param pragma
+	 * @return integer value of pragma
+	 */
+	private static long getPragma(SQLiteDatabase db, String pragma) {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA " + pragma, null);
+			return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+}
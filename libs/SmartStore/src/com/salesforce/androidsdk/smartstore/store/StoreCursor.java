@@ -26,12 +26,27 @@
  */
 package com.salesforce.androidsdk.smartstore.store;
 
+import com.salesforce.androidsdk.smartstore.store.QuerySpec.QueryType;
+import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
+
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 /**
  * Store Cursor 
  * We don't actually keep a cursor opened, instead, we wrap the query spec and page index
+ *
+ * With lazy count, the first page is returned without counting the results first:
+ * pages are read with one look-ahead row (see HAS_MORE) and the count is computed in the background
+ * (TOTAL_ENTRIES and TOTAL_PAGES are only part of the data once it is known)
  */
 public class StoreCursor {
 
@@ -42,18 +57,34 @@ public class StoreCursor {
 	public static final String CURRENT_PAGE_INDEX = "currentPageIndex";
 	public static final String CURRENT_PAGE_ORDERED_ENTRIES = "currentPageOrderedEntries";
 	public static final String CURSOR_ID = "cursorId";
+	public static final String HAS_MORE = "hasMore";
+
+	private static final String TAG = "StoreCursor";
 
+	// Executor used to count results of cursors with lazy count (shared by all cursors, daemon thread)
+	private static ExecutorService executor;
 	
 	private static int LAST_ID = 0;
 	
-	// Id / soup / query / totalPages immutable
+	// Id / soup / query immutable
 	public  final int cursorId;
 	private final QuerySpec querySpec;
-	private final int totalPages;
-	private final int totalEntries;
+	private final boolean lazyCount;
+
+	// Total entries (-1 until known) - only changes for cursors with lazy count
+	private int totalEntries = -1;
+	private Future<Integer> countFuture;
+
+	// Whether there are entries after the current page (cursors with lazy count only)
+	private boolean hasMore;
 	
 	// Current page can change - by calling moveToPageIndex
 	private int currentPageIndex;
+
+	// Keyset query spec positioned at the start of page nextPageIndex (null if unknown)
+	// Used to read pages in sequence without going through the rows of the previous pages
+	private QuerySpec nextPageQuerySpec;
+	private int nextPageIndex;
 	
 	/**
 	 * @param smartStore
@@ -61,22 +92,79 @@ public class StoreCursor {
 	 * @throws JSONException 
 	 */
 	public StoreCursor(SmartStore smartStore, QuerySpec querySpec) {
-		int countRows = smartStore.countQuery(querySpec);
-		
+		this(smartStore, querySpec, false);
+	}
+
+	/**
+	 * @param smartStore
+	 * @param querySpec
+	 * @param lazyCount true to return the first page without counting the results first
+	 */
+	public StoreCursor(SmartStore smartStore, QuerySpec querySpec, boolean lazyCount) {
 		this.cursorId = LAST_ID++;
 		this.querySpec = querySpec;
-		this.totalEntries = countRows;
-		this.totalPages = (int) Math.ceil( (double) countRows / querySpec.pageSize);
+		this.lazyCount = lazyCount;
+		if (!lazyCount) {
+			this.totalEntries = smartStore.countQuery(querySpec);
+		}
 		this.currentPageIndex = 0;
 	}
 	
 	/**
 	 * @param newPageIndex
 	 */
-	public void moveToPageIndex(int newPageIndex) {
+	public synchronized void moveToPageIndex(int newPageIndex) {
+		int totalEntries = getKnownTotalEntries();
+		if (totalEntries < 0) {
+			// Unknown count: page past the end is just empty
+			this.currentPageIndex = Math.max(0, newPageIndex);
+			return;
+		}
+		int totalPages = getTotalPages(totalEntries);
 		// Always between 0 and totalPages-1
 		this.currentPageIndex = (newPageIndex < 0 ? 0 : newPageIndex >= totalPages ? totalPages - 1 : newPageIndex);
 	}
+
+	/**
+	 * Return total number of entries (counting them if not known yet)
+	 * @param smartStore
+	 * @return
+	 */
+	public int getTotalEntries(SmartStore smartStore) {
+		Future<Integer> future;
+		synchronized (this) {
+			if (totalEntries >= 0) {
+				return totalEntries;
+			}
+			future = countFuture;
+		}
+		int count = -1;
+		if (future != null) {
+			try {
+				count = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				SmartStoreLogger.e(TAG, "Background count failed", e.getCause());
+			}
+		}
+		if (count < 0) {
+			count = smartStore.countQuery(querySpec);
+		}
+		synchronized (this) {
+			totalEntries = count;
+		}
+		return count;
+	}
+
+	/**
+	 * Return total number of pages (counting entries if not known yet)
+	 * @param smartStore
+	 * @return
+	 */
+	public int getTotalPages(SmartStore smartStore) {
+		return getTotalPages(getTotalEntries(smartStore));
+	}
 	
 	/**
 	 * @param smartStore
@@ -84,14 +172,116 @@ public class StoreCursor {
 	 * Note: query is run to build json
 	 * @throws JSONException 
 	 */
-	public JSONObject getData(SmartStore smartStore) throws JSONException {
+	public synchronized JSONObject getData(SmartStore smartStore) throws JSONException {
+		JSONArray entries = getCurrentPageEntries(smartStore);
 		JSONObject json = new JSONObject();
 		json.put(CURSOR_ID, cursorId);
 		json.put(CURRENT_PAGE_INDEX, currentPageIndex);
 		json.put(PAGE_SIZE, querySpec.pageSize);
-		json.put(TOTAL_ENTRIES, totalEntries);
-		json.put(TOTAL_PAGES, totalPages);
-		json.put(CURRENT_PAGE_ORDERED_ENTRIES, smartStore.query(querySpec, currentPageIndex));
+		int totalEntries = getKnownTotalEntries();
+		if (totalEntries >= 0) {
+			json.put(TOTAL_ENTRIES, totalEntries);
+			json.put(TOTAL_PAGES, getTotalPages(totalEntries));
+		}
+		else {
+			startCount(smartStore);
+		}
+		if (lazyCount) {
+			json.put(HAS_MORE, hasMore);
+		}
+		json.put(CURRENT_PAGE_ORDERED_ENTRIES, entries);
 		return json;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return total entries or -1 if not known yet (does not wait for the background count)
+	 */
+	private synchronized int getKnownTotalEntries() {
+		if (totalEntries < 0 && countFuture != null && countFuture.isDone()) {
+			try {
+				totalEntries = countFuture.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				SmartStoreLogger.e(TAG, "Background count failed", e.getCause());
+				countFuture = null;
+			}
+		}
+		return totalEntries;
+	}
+
+	private int getTotalPages(int totalEntries) {
+		return (int) Math.ceil( (double) totalEntries / querySpec.pageSize);
+	}
+
+	/**
+	 * Count entries in the background (cursors with lazy count only)
+	 * @param smartStore
+	 */
+	private synchronized void startCount(final SmartStore smartStore) {
+		if (countFuture == null) {
+			countFuture = getExecutor().submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return smartStore.countQuery(querySpec);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @param smartStore
+	 * @return entries in current page
+	 * @throws JSONException
+	 */
+	private JSONArray getCurrentPageEntries(SmartStore smartStore) throws JSONException {
+		final int lookAheadRows = lazyCount ? 1 : 0;
+		final JSONArray results = new JSONArray();
+		if (nextPageQuerySpec != null && nextPageIndex == currentPageIndex) {
+			nextPageQuerySpec = smartStore.queryPage(nextPageQuerySpec, 0, lookAheadRows, results);
+		}
+		else {
+			nextPageQuerySpec = smartStore.queryPage(getPageQuerySpec(), currentPageIndex, lookAheadRows, results);
+		}
+		nextPageIndex = currentPageIndex + 1;
+
+		final JSONArray entries = new JSONArray();
+		for (int i = 0; i < results.length() && i < querySpec.pageSize; i++) {
+			entries.put(results.get(i));
+		}
+		hasMore = results.length() > querySpec.pageSize;
+
+		// Reached the end: no need to count
+		if (lazyCount && !hasMore && totalEntries < 0 && (entries.length() > 0 || currentPageIndex == 0)) {
+			totalEntries = currentPageIndex * querySpec.pageSize + entries.length();
+		}
+		return entries;
+	}
+
+	/**
+	 * Keyset paging is used when the query spec asks for it (see QuerySpec#withKeysetPaging) or when results are ordered by soup entry id,
+	 * since keyset paging breaks ties by soup entry id and would otherwise change the order of the results
+	 * @return query spec to read the current page with
+	 */
+	private QuerySpec getPageQuerySpec() {
+		if (querySpec.queryType != QueryType.smart && !querySpec.keyset
+				&& SmartStore.SOUP_ENTRY_ID.equals(querySpec.orderPath) && querySpec.order != null) {
+			return querySpec.withKeysetPaging();
+		}
+		return querySpec;
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, TAG);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.smartstore.store;
+
+import android.database.Cursor;
+
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+import com.salesforce.androidsdk.smartstore.util.SmartStoreLogger;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for SmartStore mutations (see SmartStore#enableWriteBehind)
+ *
+ * Mutations are queued and acknowledged with futures, then applied in a single transaction (group commit)
+ * once maxPendingWrites mutations are queued (on the caller thread) or maxDelayMs after the first queued mutation
+ * (on the queue thread), whichever comes first
+ * Reads and synchronous writes of a soup go through its queued mutations first
+ *
+ * If a mutation of a batch fails, the batch is rolled back and its mutations are applied again one transaction each,
+ * so that only the failing mutations complete with an error
+ */
+public class WriteBehindQueue {
+
+	private static final String TAG = "WriteBehindQueue";
+
+	public static final int DEFAULT_MAX_PENDING_WRITES = 100;
+	public static final long DEFAULT_MAX_DELAY_MS = 100;
+
+	/**
+	 * Durability of flushed mutations (sets PRAGMA synchronous while the queue is enabled)
+	 */
+	public enum Durability {
+		// Committed mutations survive power loss
+		FULL,
+		// Most recently committed mutations can be lost on power loss (the database can not be corrupted)
+		NORMAL
+	}
+
+	private static final Map<SQLiteDatabase, WriteBehindQueue> INSTANCES = new ConcurrentHashMap<>();
+
+	/**
+	 * @param db
+	 * @return write-behind queue enabled on the database or null
+	 */
+	static WriteBehindQueue getInstance(SQLiteDatabase db) {
+		return INSTANCES.get(db);
+	}
+
+	/**
+	 * Enable write-behind queue on the database of the store (replacing any queue already enabled on it)
+	 * @param store
+	 * @param maxPendingWrites
+	 * @param maxDelayMs
+	 * @param durability
+	 * @return
+	 */
+	static WriteBehindQueue enable(SmartStore store, int maxPendingWrites, long maxDelayMs, Durability durability) {
+		if (maxPendingWrites <= 0 || maxDelayMs < 0) {
+			throw new SmartStoreException("Invalid write-behind thresholds: " + maxPendingWrites + " writes / " + maxDelayMs + " ms");
+		}
+		final SQLiteDatabase db = store.getDatabase();
+		synchronized (db) {
+			WriteBehindQueue previous = INSTANCES.get(db);
+			if (previous != null) {
+				previous.disable();
+			}
+			WriteBehindQueue queue = new WriteBehindQueue(store, db, maxPendingWrites, maxDelayMs, durability);
+			INSTANCES.put(db, queue);
+			return queue;
+		}
+	}
+
+	private final SmartStore store;
+	private final SQLiteDatabase db;
+	private final int maxPendingWrites;
+	private final long maxDelayMs;
+	private final String previousSynchronous;
+	private final ScheduledExecutorService scheduler;
+
+	// Guarded by this
+	private final List<PendingWrite<?>> pendingWrites = new ArrayList<>();
+	private final Set<String> pendingSoupNames = new HashSet<>();
+	private ScheduledFuture<?> scheduledFlush;
+	private boolean disabled;
+
+	// Thread applying a batch (reads and writes it does must not wait for queued mutations)
+	private volatile Thread flushingThread;
+
+	private WriteBehindQueue(SmartStore store, SQLiteDatabase db, int maxPendingWrites, long maxDelayMs, Durability durability) {
+		this.store = store;
+		this.db = db;
+		this.maxPendingWrites = maxPendingWrites;
+		this.maxDelayMs = maxDelayMs;
+		this.previousSynchronous = getSynchronous();
+		db.execSQL("PRAGMA synchronous = " + durability);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Queue creation of soup element
+	 * @param soupName
+	 * @param soupElt (copied when queued)
+	 * @return future for created soup element
+	 * @throws JSONException
+	 */
+	public Future<JSONObject> create(String soupName, JSONObject soupElt) throws JSONException {
+		return enqueue(new PendingWrite<JSONObject>(soupName, soupElt) {
+			@Override
+			JSONObject apply() throws JSONException {
+				return store.create(soupName, getSoupElt(), false);
+			}
+		});
+	}
+
+	/**
+	 * Queue update of soup element
+	 * @param soupName
+	 * @param soupElt (copied when queued)
+	 * @param soupEntryId
+	 * @return future for updated soup element
+	 * @throws JSONException
+	 */
+	public Future<JSONObject> update(String soupName, JSONObject soupElt, final long soupEntryId) throws JSONException {
+		return enqueue(new PendingWrite<JSONObject>(soupName, soupElt) {
+			@Override
+			JSONObject apply() throws JSONException {
+				return store.update(soupName, getSoupElt(), soupEntryId, false);
+			}
+		});
+	}
+
+	/**
+	 * Queue upsert of soup element
+	 * @param soupName
+	 * @param soupElt (copied when queued)
+	 * @param externalIdPath
+	 * @return future for upserted soup element
+	 * @throws JSONException
+	 */
+	public Future<JSONObject> upsert(String soupName, JSONObject soupElt, final String externalIdPath) throws JSONException {
+		return enqueue(new PendingWrite<JSONObject>(soupName, soupElt) {
+			@Override
+			JSONObject apply() throws JSONException {
+				return store.upsert(soupName, getSoupElt(), externalIdPath, false);
+			}
+		});
+	}
+
+	/**
+	 * Queue deletion of soup elements
+	 * @param soupName
+	 * @param soupEntryIds
+	 * @return future completed once soup elements are deleted
+	 * @throws JSONException
+	 */
+	public Future<Void> delete(String soupName, Long... soupEntryIds) throws JSONException {
+		final Long[] ids = soupEntryIds.clone();
+		return enqueue(new PendingWrite<Void>(soupName, null) {
+			@Override
+			Void apply() {
+				store.delete(soupName, ids, false);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Apply all queued mutations (and wait for them to be committed)
+	 */
+	public void flush() {
+		List<PendingWrite<?>> batch = null;
+		RuntimeException failure = null;
+		try {
+			synchronized (db) {
+				// Queued mutations can't be applied to soups whose data is being copied by an alter soup
+				Set<String> soupNames;
+				do {
+					synchronized (this) {
+						soupNames = new HashSet<>(pendingSoupNames);
+					}
+				} while (DBHelper.getInstance(db).waitForSoupCopy(db, soupNames));
+				synchronized (this) {
+					batch = new ArrayList<>(pendingWrites);
+					pendingWrites.clear();
+					pendingSoupNames.clear();
+					if (scheduledFlush != null) {
+						scheduledFlush.cancel(false);
+						scheduledFlush = null;
+					}
+				}
+				if (batch.isEmpty()) {
+					return;
+				}
+				flushingThread = Thread.currentThread();
+				try {
+					applyBatch(batch);
+				} finally {
+					flushingThread = null;
+				}
+			}
+		} catch (RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			// Callers waiting on the futures must hear back even if the batch could not be applied
+			if (batch != null) {
+				for (PendingWrite<?> pendingWrite : batch) {
+					if (!pendingWrite.applied && pendingWrite.error == null) {
+						pendingWrite.error = new SmartStoreException("Could not apply queued write to soup: " + pendingWrite.soupName, failure);
+					}
+					pendingWrite.complete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of queued mutations
+	 */
+	public synchronized int getPendingWritesCount() {
+		return pendingWrites.size();
+	}
+
+	/**
+	 * Apply queued mutations, stop the queue and restore the durability of the database
+	 * Mutations can no longer be queued afterwards
+	 */
+	public void disable() {
+		synchronized (db) {
+			synchronized (this) {
+				disabled = true;
+			}
+			flush();
+			scheduler.shutdown();
+			INSTANCES.remove(db);
+			if (previousSynchronous != null) {
+				db.execSQL("PRAGMA synchronous = " + previousSynchronous);
+			}
+		}
+	}
+
+	/**
+	 * Apply queued mutations if any of them is for the given soup
+	 * Does nothing when called while a batch is being applied
+	 * @param soupName or null for any soup
+	 */
+	void flushIfPending(String soupName) {
+		if (Thread.currentThread() == flushingThread) {
+			return;
+		}
+		synchronized (this) {
+			if (soupName == null ? pendingWrites.isEmpty() : !pendingSoupNames.contains(soupName)) {
+				return;
+			}
+		}
+		flush();
+	}
+
+	private <T> Future<T> enqueue(PendingWrite<T> pendingWrite) {
+		boolean flushNow;
+		synchronized (this) {
+			if (disabled) {
+				throw new SmartStoreException("Write-behind queue is disabled");
+			}
+			pendingWrites.add(pendingWrite);
+			pendingSoupNames.add(pendingWrite.soupName);
+			flushNow = pendingWrites.size() >= maxPendingWrites;
+			if (!flushNow && scheduledFlush == null) {
+				scheduledFlush = scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							flush();
+						} catch (Exception e) {
+							SmartStoreLogger.e(TAG, "Failed to flush queued writes", e);
+						}
+					}
+				}, maxDelayMs, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (flushNow) {
+			flush();
+		}
+		return pendingWrite.future;
+	}
+
+	private void applyBatch(List<PendingWrite<?>> batch) {
+		boolean committed = false;
+		SmartStore.beginTransaction(db);
+		try {
+			for (PendingWrite<?> pendingWrite : batch) {
+				pendingWrite.run();
+			}
+			db.setTransactionSuccessful();
+			committed = true;
+		} catch (Exception e) {
+			SmartStoreLogger.w(TAG, "Queued write failed, applying batch of " + batch.size() + " writes one at a time", e);
+		} finally {
+			SmartStore.endTransaction(db);
+		}
+		if (committed) {
+			for (PendingWrite<?> pendingWrite : batch) {
+				pendingWrite.applied = true;
+			}
+			return;
+		}
+
+		// Rolled back - each write in its own transaction
+		for (PendingWrite<?> pendingWrite : batch) {
+			SmartStore.beginTransaction(db);
+			try {
+				pendingWrite.run();
+				db.setTransactionSuccessful();
+			} catch (Exception e) {
+				pendingWrite.error = e;
+			} finally {
+				SmartStore.endTransaction(db);
+			}
+			pendingWrite.applied = (pendingWrite.error == null);
+		}
+	}
+
+	private String getSynchronous() {
+		Cursor cursor = null;
+		try {
+			cursor = db.rawQuery("PRAGMA synchronous", null);
+			return cursor.moveToFirst() ? cursor.getString(0) : null;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * Queued mutation
+	 */
+	private static abstract class PendingWrite<T> {
+		final String soupName;
+		private final String soupEltStr;
+		private T result;
+		private Exception error;
+		// True once committed
+		private boolean applied;
+
+		final FutureTask<T> future = new FutureTask<>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				if (error != null) {
+					throw error;
+				}
+				return result;
+			}
+		});
+
+		PendingWrite(String soupName, JSONObject soupElt) {
+			this.soupName = soupName;
+			// Copying soup element: caller can change it and the mutation might be applied twice
+			this.soupEltStr = soupElt == null ? null : soupElt.toString();
+		}
+
+		JSONObject getSoupElt() throws JSONException {
+			return new JSONObject(soupEltStr);
+		}
+
+		abstract T apply() throws JSONException;
+
+		void run() throws JSONException {
+			result = apply();
+		}
+
+		void complete() {
+			future.run();
+		}
+	}
+}
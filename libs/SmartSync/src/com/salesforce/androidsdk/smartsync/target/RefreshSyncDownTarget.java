@@ -31,6 +31,7 @@ import android.text.TextUtils;
 import com.salesforce.androidsdk.rest.RestRequest;
 import com.salesforce.androidsdk.rest.RestResponse;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartsync.manager.SyncManager;
 import com.salesforce.androidsdk.smartsync.util.Constants;
 import com.salesforce.androidsdk.smartsync.util.SOQLBuilder;
@@ -69,6 +70,8 @@ public class RefreshSyncDownTarget extends SyncDownTarget {
     // page will change during a run as we call start/continueFetch
     private boolean isResync = false;
     private int page = 0;
+    // keyset query spec positioned at the start of page (null when fetch is starting)
+    private QuerySpec nextPageQuerySpec = null;
 
 
     /**
@@ -144,6 +147,7 @@ public class RefreshSyncDownTarget extends SyncDownTarget {
 
     private JSONArray getIdsFromSmartStoreAndFetchFromServer(SyncManager syncManager) throws IOException, JSONException {
         // Read from smartstore
+        // Pages are read with keyset query specs, so reading a page doesn't go through the rows of the previous pages
         final QuerySpec querySpec;
         final List<String> idsInSmartStore = new ArrayList<>();
         final long maxTimeStamp;
@@ -151,29 +155,35 @@ public class RefreshSyncDownTarget extends SyncDownTarget {
         if (isResync) {
             // Getting full records from SmartStore to compute maxTimeStamp
             // So doing more db work in the hope of doing less server work
-            querySpec = QuerySpec.buildAllQuerySpec(soupName, getIdFieldName(), QuerySpec.Order.ascending, getCountIdsPerSoql());
-            JSONArray recordsFromSmartStore = syncManager.getSmartStore().query(querySpec, page);
+            // Records are streamed, only ids and modification dates are kept around
+            querySpec = getPageQuerySpec(QuerySpec.buildAllQuerySpec(soupName, getIdFieldName(), QuerySpec.Order.ascending, getCountIdsPerSoql()));
+            final JSONArray modificationDates = new JSONArray();
+            final String[] modificationDateFieldNames = new String[] { getModificationDateFieldName() };
+            nextPageQuerySpec = syncManager.getSmartStore().queryEach(querySpec, getPageIndex(querySpec), new SmartStore.QueryRowHandler() {
+                @Override
+                public boolean onRow(Object row) throws JSONException {
+                    JSONObject record = (JSONObject) row;
+                    idsInSmartStore.add(record.getString(getIdFieldName()));
+                    modificationDates.put(new JSONObject(record, modificationDateFieldNames));
+                    return true;
+                }
+            });
 
             // Compute max time stamp
-            maxTimeStamp = getLatestModificationTimeStamp(recordsFromSmartStore);
-
-            // Get ids
-            for (int i = 0; i < recordsFromSmartStore.length(); i++) {
-                idsInSmartStore.add(recordsFromSmartStore.getJSONObject(i).getString(getIdFieldName()));
-            }
+            maxTimeStamp = getLatestModificationTimeStamp(modificationDates);
         }
         else {
-            querySpec = QuerySpec.buildSmartQuerySpec("SELECT {" + soupName + ":" + getIdFieldName()
-                    + "} FROM {" + soupName + "} ORDER BY {" + soupName + ":" + getIdFieldName() + "} ASC", getCountIdsPerSoql());
-            JSONArray result = syncManager.getSmartStore().query(querySpec, page);
+            querySpec = getPageQuerySpec(QuerySpec.buildAllQuerySpec(soupName, new String[] { getIdFieldName() }, getIdFieldName(), QuerySpec.Order.ascending, getCountIdsPerSoql()));
+            nextPageQuerySpec = syncManager.getSmartStore().queryEach(querySpec, getPageIndex(querySpec), new SmartStore.QueryRowHandler() {
+                @Override
+                public boolean onRow(Object row) throws JSONException {
+                    idsInSmartStore.add(((JSONArray) row).getString(0));
+                    return true;
+                }
+            });
 
             // Not a resync
             maxTimeStamp = 0;
-
-            // Get ids
-            for (int i = 0; i < result.length(); i++) {
-                idsInSmartStore.add(result.getJSONArray(i).getString(0));
-            }
         }
 
         // If fetch is starting, figuring out totalSize
@@ -199,6 +209,22 @@ public class RefreshSyncDownTarget extends SyncDownTarget {
         }
     }
 
+    /**
+     * @param querySpec query spec for all the records to refresh
+     * @return keyset query spec positioned at the start of the current page if known, keyset query spec for querySpec otherwise
+     */
+    private QuerySpec getPageQuerySpec(QuerySpec querySpec) {
+        return (page > 0 && nextPageQuerySpec != null ? nextPageQuerySpec : querySpec.withKeysetPaging());
+    }
+
+    /**
+     * @param pageQuerySpec query spec returned by getPageQuerySpec
+     * @return page index to pass along with pageQuerySpec
+     */
+    private int getPageIndex(QuerySpec pageQuerySpec) {
+        return (pageQuerySpec == nextPageQuerySpec ? 0 : page);
+    }
+
     private JSONArray fetchFromServer(SyncManager syncManager, List<String> ids, List<String> fieldlist, long maxTimeStamp) throws IOException, JSONException {
         final String whereClause = ""
                 + getIdFieldName() + " IN ('" + TextUtils.join("', '", ids) + "')"
@@ -142,13 +142,13 @@ public abstract class SyncTarget {
     protected SortedSet<String> getIdsWithQuery(SyncManager syncManager, String idsSql) throws JSONException {
         final SortedSet<String> ids = new TreeSet<String>();
         final QuerySpec smartQuerySpec = QuerySpec.buildSmartQuerySpec(idsSql, PAGE_SIZE);
-        boolean hasMore = true;
-        for (int pageIndex = 0; hasMore; pageIndex++) {
-            JSONArray results = syncManager.getSmartStore().query(smartQuerySpec, pageIndex);
-            hasMore = (results.length() == PAGE_SIZE);
-            ids.addAll(toSortedSet(results));
-        }
-
+        syncManager.getSmartStore().queryEach(smartQuerySpec, new SmartStore.QueryRowHandler() {
+            @Override
+            public boolean onRow(Object row) throws JSONException {
+                ids.add(((JSONArray) row).getString(0));
+                return true;
+            }
+        });
         return ids;
     }
 
@@ -193,13 +193,27 @@ public abstract class SyncTarget {
      */
     public void saveRecordsToLocalStore(SyncManager syncManager, String soupName, JSONArray records) throws JSONException {
         SmartStore smartStore = syncManager.getSmartStore();
+        // Subclasses customizing how records are saved get every record handed to them
+        boolean upsertInBulk = !overridesCleanAndSaveInSmartStore();
         synchronized(smartStore.getDatabase()) {
             try {
                 smartStore.beginTransaction();
+
+                // Consecutive records from the server are upserted in bulk, records that came from smartstore are updated
+                JSONArray recordsToUpsert = new JSONArray();
                 for (int i = 0; i < records.length(); i++) {
-                    JSONObject record = new JSONObject(records.getJSONObject(i).toString());
-                    cleanAndSaveInSmartStore(syncManager.getSmartStore(), soupName, record, getIdFieldName(), false);
+                    // Shallow copy: only top level fields are changed when saving
+                    JSONObject record = JSONObjectHelper.shallowCopy(records.getJSONObject(i));
+                    if (upsertInBulk && !record.has(SmartStore.SOUP_ENTRY_ID)) {
+                        cleanRecord(record);
+                        recordsToUpsert.put(record);
+                    }
+                    else {
+                        recordsToUpsert = upsertRecords(smartStore, soupName, recordsToUpsert);
+                        cleanAndSaveInSmartStore(smartStore, soupName, record, getIdFieldName(), false);
+                    }
                 }
+                upsertRecords(smartStore, soupName, recordsToUpsert);
                 smartStore.setTransactionSuccessful();
             }
             finally {
@@ -208,6 +222,37 @@ public abstract class SyncTarget {
         }
     }
 
+    /**
+     * Upsert records (within the caller's transaction)
+     * @param smartStore
+     * @param soupName
+     * @param records
+     * @return empty array to collect the next records to upsert in
+     * @throws JSONException
+     */
+    private JSONArray upsertRecords(SmartStore smartStore, String soupName, JSONArray records) throws JSONException {
+        if (records.length() == 0) {
+            return records;
+        }
+        smartStore.upsertAll(soupName, records, getIdFieldName(), false);
+        return new JSONArray();
+    }
+
+    /**
+     * @return true if a subclass overrides cleanAndSaveInSmartStore
+     */
+    private boolean overridesCleanAndSaveInSmartStore() {
+        for (Class<?> c = getClass(); c != SyncTarget.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("cleanAndSaveInSmartStore", SmartStore.class, String.class, JSONObject.class, String.class, boolean.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not overridden at that level
+            }
+        }
+        return false;
+    }
+
     /**
      * Delete the records with the given ids
      * @param syncManager
@@ -226,14 +271,6 @@ public abstract class SyncTarget {
         }
     }
 
-    private SortedSet<String> toSortedSet(JSONArray jsonArray) throws JSONException {
-        SortedSet<String> set = new TreeSet<String>();
-        for (int i=0; i<jsonArray.length(); i++) {
-            set.add(jsonArray.getJSONArray(i).getString(0));
-        }
-        return set;
-    }
-
     /**
      * Given a record, return true if it was locally created
      * @param record
@@ -29,6 +29,12 @@ package com.salesforce.androidsdk.analytics.security;
 import android.content.Context;
 import android.test.InstrumentationTestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * Tests for Encryptor.
  *
@@ -140,6 +146,34 @@ public class EncryptorTest extends InstrumentationTestCase {
 		}
 	}
 
+	/**
+	 * Test to ensure streaming encryption and decryption are compatible with encrypt and decrypt.
+	 */
+	public void testEncryptDecryptWithStreams() throws Exception {
+		for (String key : TEST_KEYS) {
+			for (String data : TEST_DATA) {
+				ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+				OutputStream out = Encryptor.getEncryptingOutputStream(encrypted, key);
+				out.write(data.getBytes("UTF-8"));
+				out.close();
+				assertEquals("Decrypt should restore original", data, Encryptor.decrypt(encrypted.toByteArray(), key));
+				assertEquals("Decrypting stream should restore original", data, readFully(Encryptor.getDecryptingInputStream(new ByteArrayInputStream(encrypted.toByteArray()), key)));
+				assertEquals("Decrypting stream should restore original", data, readFully(Encryptor.getDecryptingInputStream(new ByteArrayInputStream(Encryptor.encryptBytes(data, key)), key)));
+			}
+		}
+	}
+
+	private static String readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toString("UTF-8");
+	}
+
 	private static String makeKey(String passcode) {
         return Encryptor.hash(passcode, "hashing-key");
 	}
@@ -100,4 +100,12 @@ public class JSONObjectHelperTest extends TestCase {
         assertTrue("Should be 4", 4 == plucked.get(3));
     }
 
-}
\ No newline at end of file
+    public void testShallowCopy() throws JSONException {
+        JSONObject obj = new JSONObject("{'a':1, 'b':null, 'c':{'d':2}}");
+        JSONObject copy = JSONObjectHelper.shallowCopy(obj);
+        copy.put("a", 3);
+        assertEquals("Original should be unchanged", 1, obj.getInt("a"));
+        assertTrue("Should have null for 'b'", copy.isNull("b"));
+        assertSame("Nested object should be shared", obj.getJSONObject("c"), copy.getJSONObject("c"));
+    }
+}
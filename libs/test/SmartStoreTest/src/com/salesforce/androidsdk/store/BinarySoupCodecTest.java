@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.BinarySoupCodec;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import junit.framework.TestCase;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Tests for BinarySoupCodec
+ */
+public class BinarySoupCodecTest extends TestCase {
+
+    public void testRoundTrip() throws JSONException {
+        JSONObject soupElt = new JSONObject("{'a':'va', 'b':2, 'c':[0,1.5,'two',null,true], 'd':{'d1':'vd1', 'd2':{'e':false}}, 'f':null, 'g':'\u00e9t\u00e9'}");
+        JSONTestHelper.assertSameJSON("Wrong decoded soup element", soupElt, BinarySoupCodec.decode(BinarySoupCodec.encode(soupElt)));
+        JSONTestHelper.assertSameJSON("Wrong decoded soup element", soupElt, new JSONObject(BinarySoupCodec.decodeToString(BinarySoupCodec.encode(soupElt.toString()))));
+    }
+
+    public void testNumberTypes() throws JSONException {
+        JSONObject soupElt = new JSONObject();
+        soupElt.put("int", Integer.MIN_VALUE);
+        soupElt.put("long", Long.MAX_VALUE);
+        soupElt.put("negativeLong", Long.MIN_VALUE);
+        soupElt.put("double", Math.PI);
+        JSONObject decoded = BinarySoupCodec.decode(BinarySoupCodec.encode(soupElt));
+        assertEquals("Wrong integer", Integer.valueOf(Integer.MIN_VALUE), decoded.get("int"));
+        assertEquals("Wrong long", Long.valueOf(Long.MAX_VALUE), decoded.get("long"));
+        assertEquals("Wrong negative long", Long.valueOf(Long.MIN_VALUE), decoded.get("negativeLong"));
+        assertEquals("Wrong double", Double.valueOf(Math.PI), decoded.get("double"));
+    }
+
+    public void testDecodeFields() throws JSONException {
+        JSONObject soupElt = new JSONObject("{'a':'va', 'b':[1,2,{'x':'y'}], 'c':{'c1':'vc1'}, 'd':3.5, 'e':'ve'}");
+        JSONObject decoded = BinarySoupCodec.decode(BinarySoupCodec.encode(soupElt), Arrays.asList("c", "e"));
+        JSONTestHelper.assertSameJSON("Wrong partially decoded soup element", new JSONObject("{'c':{'c1':'vc1'}, 'e':'ve'}"), decoded);
+    }
+}
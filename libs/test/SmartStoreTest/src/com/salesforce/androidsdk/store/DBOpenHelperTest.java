@@ -27,16 +27,28 @@
 package com.salesforce.androidsdk.store;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.salesforce.androidsdk.accounts.UserAccount;
 import com.salesforce.androidsdk.analytics.EventBuilderHelper;
 import com.salesforce.androidsdk.analytics.security.Encryptor;
+import com.salesforce.androidsdk.smartstore.store.DBHelper;
 import com.salesforce.androidsdk.smartstore.store.DBOpenHelper;
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
 
 import net.sqlcipher.database.SQLiteDatabase;
 
@@ -58,7 +70,9 @@ public class DBOpenHelperTest extends InstrumentationTestCase {
 	private static final String TEST_SOUP = "test_soup";
 	private static final String TEST_SOUP_2 = "test_soup_2";
 	private static final String TEST_DB = "test_db";
+	private static final String PREBUILT_DB = "prebuilt_db";
 	private static final String PASSCODE = Encryptor.hash("test_key", "hashing-key");
+	private static final String PREBUILT_KEY = Encryptor.hash("prebuilt_key", "hashing-key");
 
 	@Override
 	protected void setUp() throws Exception {
@@ -430,7 +444,7 @@ public class DBOpenHelperTest extends InstrumentationTestCase {
 		helper.saveSoupBlob(TEST_SOUP, soupEntryId, soupElt, PASSCODE);
 
 		// Verify file was created
-		File blobFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "soupelt_" + soupEntryId);
+		File blobFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP) + DBOpenHelper.getShardName(soupEntryId), "soupelt_" + soupEntryId);
 		assertTrue("File for blob not found on storage", blobFile.exists());
 
 		// Clean up
@@ -457,9 +471,61 @@ public class DBOpenHelperTest extends InstrumentationTestCase {
 		assertEquals("Retrieved soup does not have expected values.", soupEntryId, result.getLong("testKey"));
 
 		// Clean up
-		File blobFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "soupelt_" + soupEntryId);
+		File blobFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP) + DBOpenHelper.getShardName(soupEntryId), "soupelt_" + soupEntryId);
 		blobFile.delete();
 	}
+	/**
+	 * Ensures large soup with nested values survives a save / load round trip
+	 */
+	public void testSaveAndLoadLargeSoupBlob() throws JSONException {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		long soupEntryId = System.currentTimeMillis();
+		JSONObject soupElt = new JSONObject("{'int':1, 'long':" + Long.MAX_VALUE + ", 'double':1.5, 'bool':true, 'null':null, 'nested':{'array':[1,'two',{'three':3}]}}");
+		JSONArray records = new JSONArray();
+		for (int i = 0; i < 1000; i++) {
+			records.put(new JSONObject("{'name':'record " + i + "', 'description':'\\u00e9\\u00e8 \\\\ \\\"" + i + "\\\"'}"));
+		}
+		soupElt.put("records", records);
+
+		// Act
+		assertTrue("Save should have succeeded", helper.saveSoupBlob(TEST_SOUP, soupEntryId, soupElt, PASSCODE));
+		JSONObject result = helper.loadSoupBlob(TEST_SOUP, soupEntryId, PASSCODE);
+
+		// Verify
+		JSONTestHelper.assertSameJSON("Retrieved soup is not the one saved", soupElt, result);
+		JSONTestHelper.assertSameJSON("Retrieved soup is not the one saved", soupElt, new JSONObject(helper.loadSoupBlobAsString(TEST_SOUP, soupEntryId, PASSCODE)));
+		assertEquals("Wrong type for int", Integer.class, result.get("int").getClass());
+		assertEquals("Wrong type for long", Long.class, result.get("long").getClass());
+
+		// Clean up
+		helper.getSoupBlobFile(TEST_SOUP, soupEntryId).delete();
+	}
+
+	/**
+	 * Ensures soup blob written with Encryptor.encryptBytes (as done by earlier versions) can still be read
+	 */
+	public void testLoadSoupBlobEncryptedInMemory() throws Exception {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		long soupEntryId = System.currentTimeMillis();
+		JSONObject soupElt = new JSONObject("{testKey:" + soupEntryId + "}");
+		File blobFile = helper.getSoupBlobFile(TEST_SOUP, soupEntryId);
+		FileOutputStream out = new FileOutputStream(blobFile);
+		out.write(Encryptor.encryptBytes(soupElt.toString(), PASSCODE));
+		out.close();
+
+		// Act
+		JSONObject result = helper.loadSoupBlob(TEST_SOUP, soupEntryId, PASSCODE);
+
+		// Verify
+		JSONTestHelper.assertSameJSON("Retrieved soup is not the one saved", soupElt, result);
+		assertEquals("Retrieved soup string is not the one saved", soupElt.toString(), helper.loadSoupBlobAsString(TEST_SOUP, soupEntryId, PASSCODE));
+
+		// Clean up
+		blobFile.delete();
+	}
+
 	/**
 	 * Ensures soup was successfully removed from file system
 	 */
@@ -476,10 +542,132 @@ public class DBOpenHelperTest extends InstrumentationTestCase {
 		helper.removeSoupBlob(TEST_SOUP, new Long[] { soupEntryId });
 
 		// Verify
-		File blobFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "soupelt_" + soupEntryId);
+		File blobFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP) + DBOpenHelper.getShardName(soupEntryId), "soupelt_" + soupEntryId);
 		assertFalse("File containing blob was not removed from file storage.", blobFile.exists());
 	}
 
+	/**
+	 * Ensures blobs stored directly in the soup folder (before sharding) are moved to their shard
+	 */
+	public void testMigrateBlobsToShards() throws Exception {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		long soupEntryId = System.currentTimeMillis();
+		JSONObject soupElt = new JSONObject("{testKey:" + soupEntryId + "}");
+		File flatFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "soupelt_" + soupEntryId);
+		FileOutputStream out = new FileOutputStream(flatFile);
+		out.write(Encryptor.encryptBytes(soupElt.toString(), PASSCODE));
+		out.close();
+		long size = flatFile.length();
+
+		// Act
+		JSONObject result = helper.loadSoupBlob(TEST_SOUP, soupEntryId, PASSCODE);
+
+		// Verify
+		JSONTestHelper.assertSameJSON("Retrieved soup is not the one saved", soupElt, result);
+		assertFalse("Blob should have been moved", flatFile.exists());
+		assertTrue("Blob should be in its shard", helper.getSoupBlobFile(TEST_SOUP, soupEntryId).exists());
+		assertEquals("Wrong size", size, helper.getSizeOfDir(null) - getSizeOfOtherSoups(helper));
+	}
+
+	/**
+	 * Ensures the manifest built when upgrading blobs stored before sharding matches the bytes on disk
+	 */
+	public void testMigrateBlobsToShardsManifestSize() throws Exception {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		long firstId = System.currentTimeMillis();
+		for (long soupEntryId = firstId; soupEntryId < firstId + 10; soupEntryId++) {
+			JSONObject soupElt = new JSONObject("{testKey:" + soupEntryId + ", padding:'" + soupEntryId + soupEntryId + "'}");
+			FileOutputStream out = new FileOutputStream(new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "soupelt_" + soupEntryId));
+			out.write(Encryptor.encryptBytes(soupElt.toString(), PASSCODE));
+			out.close();
+		}
+		File soupDir = new File(helper.getExternalSoupBlobsPath(TEST_SOUP));
+		int bytesOnDisk = helper.getSizeOfDir(soupDir);
+		assertTrue("Blobs expected on disk", bytesOnDisk > 0);
+
+		// Act (first access builds the manifest)
+		int reportedSize = helper.getSizeOfDir(null) - getSizeOfOtherSoups(helper);
+
+		// Verify
+		assertEquals("Manifest size should match bytes on disk", bytesOnDisk, reportedSize);
+		assertEquals("Manifest size should match bytes on disk after migration", helper.getSizeOfDir(soupDir) - getManifestSize(helper), reportedSize);
+	}
+
+	/**
+	 * Ensures size of external blobs is kept up to date as blobs are saved and removed
+	 */
+	public void testGetSizeOfDirAfterSaveAndRemove() throws JSONException {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		int sizeOfOtherSoups = getSizeOfOtherSoups(helper);
+		Long[] ids = new Long[200];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = (long) i;
+			helper.saveSoupBlob(TEST_SOUP, ids[i], new JSONObject("{size:" + i + "}"), PASSCODE);
+		}
+		assertEquals("Wrong size after save", helper.getSizeOfDir(new File(helper.getExternalSoupBlobsPath(TEST_SOUP))) - getManifestSize(helper),
+				helper.getSizeOfDir(null) - sizeOfOtherSoups);
+
+		// Overwriting with larger blobs
+		for (int i = 0; i < 50; i++) {
+			helper.saveSoupBlob(TEST_SOUP, ids[i], new JSONObject("{size:" + i + ", more:'some more data'}"), PASSCODE);
+		}
+		assertEquals("Wrong size after update", helper.getSizeOfDir(new File(helper.getExternalSoupBlobsPath(TEST_SOUP))) - getManifestSize(helper),
+				helper.getSizeOfDir(null) - sizeOfOtherSoups);
+
+		// Removing all
+		helper.removeSoupBlob(TEST_SOUP, ids);
+		assertEquals("Wrong size after remove", 0, helper.getSizeOfDir(null) - sizeOfOtherSoups);
+	}
+
+	/**
+	 * Ensures the manifest file is not left stale while changes have not been written back (process could die before they are)
+	 */
+	public void testManifestRemovedWhileChangesNotWrittenBack() throws JSONException {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		File manifestFile = new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "blobs_manifest");
+		helper.getSizeOfDir(null);
+		assertTrue("Manifest should have been written", manifestFile.exists());
+
+		helper.saveSoupBlob(TEST_SOUP, 1, new JSONObject("{size:1}"), PASSCODE);
+		assertFalse("Stale manifest should have been removed", manifestFile.exists());
+
+		helper.close();
+		assertTrue("Manifest should have been written back", manifestFile.exists());
+		assertEquals("Wrong size after close", helper.getSizeOfDir(new File(helper.getExternalSoupBlobsPath(TEST_SOUP))) - getManifestSize(helper),
+				helper.getSizeOfDir(null) - getSizeOfOtherSoups(helper));
+	}
+
+	/**
+	 * Ensures sizes above 2GB don't overflow
+	 */
+	public void testGetSizeOfDirAbove2GB() throws IOException {
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		helper.createExternalBlobsDirectory(TEST_SOUP);
+		try {
+			long bigSize = 3L * 1024 * 1024 * 1024;
+			try (FileWriter writer = new FileWriter(new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "blobs_manifest"))) {
+				writer.write(bigSize + " 1");
+			}
+			assertEquals("Wrong size", bigSize, helper.getSizeOfDirAsLong(null) - getSizeOfOtherSoups(helper));
+			assertEquals("Size should be capped", Integer.MAX_VALUE, helper.getSizeOfDir(null));
+		} finally {
+			helper.removeExternalBlobsDirectory(TEST_SOUP);
+		}
+	}
+
+	private int getSizeOfOtherSoups(DBOpenHelper helper) {
+		File otherSoupDir = new File(helper.getExternalSoupBlobsPath(TEST_SOUP_2));
+		return otherSoupDir.exists() ? helper.getSizeOfDir(otherSoupDir) - (int) new File(otherSoupDir, "blobs_manifest").length() : 0;
+	}
+
+	private int getManifestSize(DBOpenHelper helper) {
+		return (int) new File(helper.getExternalSoupBlobsPath(TEST_SOUP), "blobs_manifest").length();
+	}
+
 	/**
 	 * Ensures expected folder was created
 	 */
@@ -492,7 +680,86 @@ public class DBOpenHelperTest extends InstrumentationTestCase {
 
 		// Verify
 		assertTrue("Soup blob file does not have expected path.",
-					 soupBlobFile.getAbsolutePath().endsWith("com.salesforce.androidsdk.smartstore.tests/databases/" + TEST_DB + ".db_external_soup_blobs/" + TEST_SOUP + "/soupelt_" + soupEntryId));
+					 soupBlobFile.getAbsolutePath().endsWith("com.salesforce.androidsdk.smartstore.tests/databases/" + TEST_DB + ".db_external_soup_blobs/" + TEST_SOUP + "/" + DBOpenHelper.getShardName(soupEntryId) + "/soupelt_" + soupEntryId));
+	}
+
+	/**
+	 * Ensures a prebuilt database can be adopted and is rekeyed to the passcode
+	 */
+	public void testAdoptPrebuiltDatabase() throws Exception {
+		File prebuiltFile = buildPrebuiltDatabase(DBOpenHelper.DB_VERSION);
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		try {
+			helper.adoptPrebuiltDatabase(targetContext, new FileInputStream(prebuiltFile), PREBUILT_KEY, PASSCODE);
+			SmartStore store = new SmartStore(helper, PASSCODE);
+			assertTrue("Soup should have been adopted", store.hasSoup(TEST_SOUP));
+			JSONArray results = store.query(QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "prebuilt", null, null, 10), 0);
+			assertEquals("Wrong number of results", 1, results.length());
+			assertFalse("Adopted copy should have been moved", databaseExists(targetContext, TEST_DB + ".db.adopted"));
+		} finally {
+			DBOpenHelper.deleteDatabase(targetContext, PREBUILT_DB, null, null);
+			DBOpenHelper.deleteDatabase(targetContext, TEST_DB, null, null);
+		}
+	}
+
+	/**
+	 * Ensures the helpers of the database replaced by a prebuilt database are released
+	 */
+	public void testAdoptPrebuiltDatabaseReleasesHelpers() throws Exception {
+		File prebuiltFile = buildPrebuiltDatabase(DBOpenHelper.DB_VERSION);
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		try {
+			SmartStore store = new SmartStore(helper, PASSCODE);
+			store.registerSoup(TEST_SOUP_2, new IndexSpec[] { new IndexSpec("key", Type.string) });
+			SQLiteDatabase replacedDb = store.getDatabase();
+			DBHelper replacedDbHelper = DBHelper.getInstance(replacedDb);
+			helper.adoptPrebuiltDatabase(targetContext, new FileInputStream(prebuiltFile), PREBUILT_KEY, PASSCODE);
+			assertNotSame("Helper of replaced database should have been released", replacedDbHelper, DBHelper.getInstance(replacedDb));
+			assertTrue("Soup should have been adopted", new SmartStore(helper, PASSCODE).hasSoup(TEST_SOUP));
+		} finally {
+			DBOpenHelper.deleteDatabase(targetContext, PREBUILT_DB, null, null);
+			DBOpenHelper.deleteDatabase(targetContext, TEST_DB, null, null);
+		}
+	}
+
+	/**
+	 * Ensures a prebuilt database with the wrong schema version is rejected and the current database is left alone
+	 */
+	public void testAdoptPrebuiltDatabaseWithWrongVersion() throws Exception {
+		File prebuiltFile = buildPrebuiltDatabase(DBOpenHelper.DB_VERSION - 1);
+		DBOpenHelper helper = DBOpenHelper.getOpenHelper(targetContext, TEST_DB, null, null);
+		try {
+			SmartStore store = new SmartStore(helper, PASSCODE);
+			store.registerSoup(TEST_SOUP_2, new IndexSpec[] { new IndexSpec("key", Type.string) });
+			try {
+				helper.adoptPrebuiltDatabase(targetContext, new FileInputStream(prebuiltFile), PREBUILT_KEY, PASSCODE);
+				fail("Adopting database with wrong version should have failed");
+			} catch (SmartStoreException e) {
+				// Expected
+			}
+			assertTrue("Current database should be unchanged", store.hasSoup(TEST_SOUP_2));
+			assertFalse("Current database should be unchanged", store.hasSoup(TEST_SOUP));
+			assertFalse("Adopted copy should have been deleted", databaseExists(targetContext, TEST_DB + ".db.adopted"));
+		} finally {
+			DBOpenHelper.deleteDatabase(targetContext, PREBUILT_DB, null, null);
+			DBOpenHelper.deleteDatabase(targetContext, TEST_DB, null, null);
+		}
+	}
+
+	/**
+	 * Build database with one soup encrypted with PREBUILT_KEY
+	 *
+	 * @param version Schema version to record in the database.
+	 * @return Database file.
+	 */
+	private File buildPrebuiltDatabase(int version) throws JSONException {
+		DBOpenHelper prebuiltHelper = DBOpenHelper.getOpenHelper(targetContext, PREBUILT_DB, null, null);
+		SmartStore prebuiltStore = new SmartStore(prebuiltHelper, PREBUILT_KEY);
+		prebuiltStore.registerSoup(TEST_SOUP, new IndexSpec[] { new IndexSpec("key", Type.string) });
+		prebuiltStore.create(TEST_SOUP, new JSONObject("{key:'prebuilt'}"));
+		prebuiltStore.getDatabase().setVersion(version);
+		prebuiltHelper.close();
+		return targetContext.getDatabasePath(PREBUILT_DB + ".db");
 	}
 
 	/**
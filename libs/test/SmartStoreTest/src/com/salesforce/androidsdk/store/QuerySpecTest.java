@@ -26,7 +26,10 @@
  */
 package com.salesforce.androidsdk.store;
 
+import android.text.TextUtils;
+
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
 
 import junit.framework.TestCase;
 
@@ -141,6 +144,34 @@ public class QuerySpecTest extends TestCase {
         assertEquals("Wrong ids smart sql", "SELECT id FROM (select {employees:salary} from {employees} where {employees:lastName} = 'Haas')", querySpec.idsSmartSql);
     }
 
+    public void testKeysetQuerySmartSql() {
+        QuerySpec querySpec = QuerySpec.buildRangeQuerySpec("employees", new String[] {"firstName"}, "lastName", "Bond", null, "lastName", QuerySpec.Order.ascending, 1).withKeysetPaging();
+        assertEquals("Wrong smart sql for keyset query spec", "SELECT {employees:firstName}, {employees:lastName}, {employees:_soupEntryId} FROM {employees} WHERE {employees:lastName} >= ? ORDER BY {employees:lastName} ASC, {employees:_soupEntryId} ASC ", querySpec.smartSql);
+        assertEquals("Wrong args for keyset query spec", 1, querySpec.getArgs().length);
+    }
+
+    public void testKeysetQuerySmartSqlAfterEntry() {
+        QuerySpec querySpec = QuerySpec.buildRangeQuerySpec("employees", "lastName", "Bond", null, "lastName", QuerySpec.Order.ascending, 1).after("Haas", 5L);
+        assertEquals("Wrong smart sql for keyset query spec", "SELECT {employees:_soup}, {employees:lastName}, {employees:_soupEntryId} FROM {employees} WHERE {employees:lastName} >= ? AND ({employees:lastName} > ? OR ({employees:lastName} = ? AND {employees:_soupEntryId} > ?)) ORDER BY {employees:lastName} ASC, {employees:_soupEntryId} ASC ", querySpec.smartSql);
+        assertEquals("Wrong count smart sql for keyset query spec", "SELECT count(*) FROM {employees} WHERE {employees:lastName} >= ? AND ({employees:lastName} > ? OR ({employees:lastName} = ? AND {employees:_soupEntryId} > ?)) ", querySpec.countSmartSql);
+        assertEquals("Wrong args for keyset query spec", "Bond,Haas,Haas,5", TextUtils.join(",", querySpec.getArgs()));
+    }
+
+    public void testKeysetQuerySmartSqlAfterEntryDescending() {
+        QuerySpec querySpec = QuerySpec.buildAllQuerySpec("employees", "salary", QuerySpec.Order.descending, 1).after(1000L, 5L);
+        assertEquals("Wrong smart sql for keyset query spec", "SELECT {employees:_soup}, {employees:salary}, {employees:_soupEntryId} FROM {employees} WHERE ({employees:salary} < CAST(? AS NUMERIC) OR ({employees:salary} = CAST(? AS NUMERIC) AND {employees:_soupEntryId} > ?) OR {employees:salary} IS NULL) ORDER BY {employees:salary} DESC, {employees:_soupEntryId} ASC ", querySpec.smartSql);
+        assertEquals("Wrong args for keyset query spec", "1000,1000,5", TextUtils.join(",", querySpec.getArgs()));
+    }
+
+    public void testKeysetQueryNotSupportedForSmartQuery() {
+        try {
+            QuerySpec.buildSmartQuerySpec("select {employees:salary} from {employees}", 1).withKeysetPaging();
+            fail("Keyset paging should not be supported for smart queries");
+        } catch (SmartStore.SmartStoreException e) {
+            // Expected
+        }
+    }
+
     public void testQualifyMatchKey() {
         assertEquals("Wrong qualified match query", "abc", QuerySpec.qualifyMatchKey(null, "abc"));
         assertEquals("Wrong qualified match query", "{soup:path}:abc", QuerySpec.qualifyMatchKey("{soup:path}", "abc"));
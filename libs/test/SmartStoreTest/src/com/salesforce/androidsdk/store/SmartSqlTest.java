@@ -32,6 +32,7 @@ import org.json.JSONObject;
 
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartSqlHelper;
 import com.salesforce.androidsdk.smartstore.store.SmartSqlHelper.SmartSqlException;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
 import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
@@ -94,6 +95,25 @@ public class SmartSqlTest extends SmartStoreTestCase {
 	
 	}
 
+	/**
+	 * Testing that converted smart sql is served from cache and invalidated when the soup is altered
+	 */
+	public void testConvertSmartSqlCache() throws JSONException {
+		SmartSqlHelper smartSqlHelper = SmartSqlHelper.getInstance(store.getDatabase());
+		String smartSql = "select {employees:lastName} from {employees}";
+		assertEquals("select TABLE_1_1 from TABLE_1", store.convertSmartSql(smartSql));
+		long hitCount = smartSqlHelper.getCacheHitCount();
+		long missCount = smartSqlHelper.getCacheMissCount();
+		assertEquals("select TABLE_1_1 from TABLE_1", store.convertSmartSql(smartSql));
+		assertEquals("Wrong cache hit count", hitCount + 1, smartSqlHelper.getCacheHitCount());
+		assertEquals("Wrong cache miss count", missCount, smartSqlHelper.getCacheMissCount());
+
+		// Altering soup changes the column lastName is stored in
+		store.alterSoup(EMPLOYEES_SOUP, new IndexSpec[] { new IndexSpec(LAST_NAME, Type.string) }, false);
+		assertEquals("select TABLE_1_0 from TABLE_1", store.convertSmartSql(smartSql));
+		assertEquals("Wrong cache miss count", missCount + 1, smartSqlHelper.getCacheMissCount());
+	}
+
 	/**
 	 * Testing smart sql to sql conversion when there is a join
 	 */
@@ -177,6 +197,27 @@ public class SmartSqlTest extends SmartStoreTestCase {
 		// XXX join query with json1 will only run if all the json1 columns are qualified by table or alias
 	}
 
+	public void testConvertSmartSqlWithJSON1QualifiedInExpressions() {
+		assertEquals("select TABLE_1_1 from TABLE_1 as e where (json_extract(e.soup, '$.education') = 'MIT') and json_extract(e.soup, '$.education')!=e.TABLE_1_1",
+				store.convertSmartSql("select {employees:lastName} from {employees} as e where (e.{employees:education} = 'MIT') and e.{employees:education}!=e.{employees:lastName}"));
+	}
+
+	/**
+	 * Test that filters on json1 paths use the expression index of the path
+	 * @throws JSONException
+	 */
+	public void testQueryWithJSON1UsesExpressionIndex() throws JSONException {
+		loadData();
+		store.setCaptureExplainQueryPlan(true);
+		try {
+			String smartSql = "select {employees:lastName} from {employees} where ({employees}.{employees:education} = 'MIT')";
+			store.query(QuerySpec.buildSmartQuerySpec(smartSql, 10), 0);
+			checkExplainQueryPlan(EMPLOYEES_SOUP, 6, false, "SEARCH");
+		} finally {
+			store.setCaptureExplainQueryPlan(false);
+		}
+	}
+
 	/**
 	 * Test running smart query that does a select count
 	 * @throws JSONException 
@@ -29,6 +29,7 @@ package com.salesforce.androidsdk.store;
 import android.database.Cursor;
 
 import com.salesforce.androidsdk.smartstore.store.AlterSoupLongOperation;
+import com.salesforce.androidsdk.smartstore.store.CompoundIndexSpec;
 import com.salesforce.androidsdk.smartstore.store.DBHelper;
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
 import com.salesforce.androidsdk.smartstore.store.LongOperation;
@@ -604,6 +605,31 @@ public class SmartStoreAlterTest extends SmartStoreTestCase {
         }
     }
 
+    /**
+     * Test alterSoup replacing compound and partial indexes
+     * @throws JSONException
+     */
+    public void testAlterSoupWithCompoundIndexes() throws JSONException {
+        IndexSpec[] indexSpecs = new IndexSpec[] {new IndexSpec(CITY, SmartStore.Type.string), new IndexSpec(COUNTRY, SmartStore.Type.string)};
+        store.registerSoupWithSpec(new SoupSpec(TEST_SOUP, new CompoundIndexSpec[] { new CompoundIndexSpec(COUNTRY, CITY) }), indexSpecs);
+        store.create(TEST_SOUP, new JSONObject("{'city':'San Francisco', 'country':'United States'}"));
+
+        // Alter soup - index city only for one country
+        CompoundIndexSpec[] compoundIndexSpecsNew = new CompoundIndexSpec[] { new CompoundIndexSpec(new String[] { CITY }, "{country} = 'France'") };
+        store.alterSoup(TEST_SOUP, new SoupSpec(TEST_SOUP, compoundIndexSpecsNew), indexSpecs, false);
+
+        // Check db indexes
+        checkDatabaseIndexes(TEST_SOUP_TABLE_NAME, Arrays.asList(new String[]{
+                "CREATE INDEX " + TEST_SOUP_TABLE_NAME + "_0_idx on " + TEST_SOUP_TABLE_NAME + " ( " + CITY_COL + " )",
+                "CREATE INDEX " + TEST_SOUP_TABLE_NAME + "_1_idx on " + TEST_SOUP_TABLE_NAME + " ( " + COUNTRY_COL + " )",
+                "CREATE INDEX " + TEST_SOUP_TABLE_NAME + "_c0_idx on " + TEST_SOUP_TABLE_NAME + " ( " + CITY_COL + " ) WHERE " + COUNTRY_COL + " = 'France'",
+                "CREATE INDEX " + TEST_SOUP_TABLE_NAME + "_created_idx on " + TEST_SOUP_TABLE_NAME + " ( created )",
+                "CREATE INDEX " + TEST_SOUP_TABLE_NAME + "_lastModified_idx on " + TEST_SOUP_TABLE_NAME + " ( lastModified )"
+        }));
+        assertEquals("Wrong compound index specs", Arrays.asList(compoundIndexSpecsNew), Arrays.asList(store.getSoupSpec(TEST_SOUP).getCompoundIndexSpecs()));
+        assertRowCount(1, CITY, SAN_FRANCISCO);
+    }
+
     /**
      * Test reIndexSoup
      * @throws JSONException
@@ -667,6 +693,170 @@ public class SmartStoreAlterTest extends SmartStoreTestCase {
         assertEquals("Should have found " + expectedCount + " rows", expectedCount, actualCount);
     }
 
+    /**
+     * Test alter soup copying and re-indexing in chunks and reporting progress after every chunk
+     * @throws JSONException
+     */
+    public void testAlterSoupInChunksWithProgress() throws JSONException {
+        populateChunkedSoup(5);
+        store.setLongOperationChunking(2, 0);
+        final List<String> progress = new ArrayList<>();
+        store.setLongOperationProgressListener(new AlterSoupLongOperation.ProgressListener() {
+            @Override
+            public void onProgress(String soupName, AlterSoupLongOperation.AlterSoupStep step, int processed, int total) {
+                progress.add(soupName + ":" + step + ":" + processed + "/" + total);
+            }
+        });
+        try {
+            IndexSpec[] indexSpecsNew = new IndexSpec[] {new IndexSpec("lastName", SmartStore.Type.string), new IndexSpec("address.city", SmartStore.Type.string)};
+            store.alterSoup(TEST_SOUP, indexSpecsNew, true);
+        } finally {
+            store.setLongOperationProgressListener(null);
+        }
+
+        assertEquals("Wrong progress reported", Arrays.asList(
+                TEST_SOUP + ":COPY_TABLE:2/5", TEST_SOUP + ":COPY_TABLE:4/5", TEST_SOUP + ":COPY_TABLE:5/5",
+                TEST_SOUP + ":RE_INDEX_SOUP:2/5", TEST_SOUP + ":RE_INDEX_SOUP:4/5", TEST_SOUP + ":RE_INDEX_SOUP:5/5"), progress);
+        assertEquals("Wrong number of long operations found", 0, store.getLongOperations().length);
+        assertEquals("Wrong number of entries", 5, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+        for (int i = 0; i < 5; i++) {
+            assertRowCount(1, "address.city", "City" + i);
+        }
+    }
+
+    /**
+     * Test alter soup interrupted in the middle of the copy and resumed from the last chunk checkpointed
+     * @throws JSONException
+     */
+    public void testAlterSoupResumeFromCheckpoint() throws JSONException {
+        JSONObject[] entries = populateChunkedSoup(5);
+        store.setLongOperationChunking(2, 0);
+        final List<Integer> processedCounts = new ArrayList<>();
+        store.setLongOperationProgressListener(new AlterSoupLongOperation.ProgressListener() {
+            @Override
+            public void onProgress(String soupName, AlterSoupLongOperation.AlterSoupStep step, int processed, int total) {
+                processedCounts.add(processed);
+                if (step == AlterSoupLongOperation.AlterSoupStep.COPY_TABLE && processed == 2) {
+                    throw new RuntimeException("Simulated crash");
+                }
+            }
+        });
+        IndexSpec[] indexSpecsNew = new IndexSpec[] {new IndexSpec("lastName", SmartStore.Type.string), new IndexSpec("address.city", SmartStore.Type.string)};
+        AlterSoupLongOperation operation = new AlterSoupLongOperation(store, TEST_SOUP, new SoupSpec(TEST_SOUP), indexSpecsNew, true);
+        try {
+            operation.run();
+            fail("Expected simulated crash");
+        } catch (RuntimeException e) {
+            // as expected
+        }
+
+        // Checkpoint should be after second entry
+        LongOperation[] operations = store.getLongOperations();
+        assertEquals("Wrong number of long operations found", 1, operations.length);
+        assertEquals("Wrong step", AlterSoupLongOperation.AlterSoupStep.REGISTER_SOUP_USING_TABLE_NAME, ((AlterSoupLongOperation) operations[0]).getLastStepCompleted());
+        assertEquals("Wrong checkpoint", idOf(entries[1]), operations[0].getDetails().getLong("checkpointId"));
+
+        // Simulate restart (clear cache and call resumeLongOperations)
+        processedCounts.clear();
+        final SQLiteDatabase db = dbOpenHelper.getWritableDatabase(getPasscode());
+        DBHelper.getInstance(db).clearMemoryCache();
+        store.resumeLongOperations();
+        store.setLongOperationProgressListener(null);
+
+        // Copy should have picked up from the checkpoint
+        assertEquals("Wrong progress reported", Arrays.asList(4, 5, 2, 4, 5), processedCounts);
+        assertEquals("Wrong number of long operations found", 0, store.getLongOperations().length);
+        assertEquals("Wrong number of entries", 5, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+        for (int i = 0; i < 5; i++) {
+            JSONTestHelper.assertSameJSON("Wrong entry", entries[i], store.retrieve(TEST_SOUP, idOf(entries[i])).getJSONObject(0));
+            assertRowCount(1, "address.city", "City" + i);
+        }
+
+        // New entries should not reuse ids
+        JSONObject created = store.create(TEST_SOUP, new JSONObject("{'lastName':'New', 'address':{'city':'New City'}}"));
+        assertTrue("Id should not be reused", idOf(created) > idOf(entries[4]));
+    }
+
+    /**
+     * Test deleting and upserting from another thread between chunks of the copy: writes should wait until the copy is done
+     * @throws Exception
+     */
+    public void testAlterSoupWritesBetweenChunks() throws Exception {
+        final JSONObject[] entries = populateChunkedSoup(5);
+        store.setLongOperationChunking(2, 100);
+        final boolean[] copyDone = new boolean[1];
+        final boolean[] copyDoneBeforeWrites = new boolean[1];
+        final int[] countSeen = new int[1];
+        final Exception[] writerException = new Exception[1];
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Not copied yet when the thread starts
+                    store.delete(TEST_SOUP, idOf(entries[4]));
+                    synchronized (copyDone) {
+                        copyDoneBeforeWrites[0] = copyDone[0];
+                    }
+                    store.upsert(TEST_SOUP, new JSONObject("{'lastName':'Name3', 'address':{'city':'Updated City'}}"), "lastName");
+                    countSeen[0] = store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10));
+                } catch (Exception e) {
+                    writerException[0] = e;
+                }
+            }
+        });
+        store.setLongOperationProgressListener(new AlterSoupLongOperation.ProgressListener() {
+            @Override
+            public void onProgress(String soupName, AlterSoupLongOperation.AlterSoupStep step, int processed, int total) {
+                if (step == AlterSoupLongOperation.AlterSoupStep.COPY_TABLE) {
+                    if (processed == 2) {
+                        writer.start();
+                    } else if (processed == total) {
+                        synchronized (copyDone) {
+                            copyDone[0] = true;
+                        }
+                    }
+                }
+            }
+        });
+        try {
+            IndexSpec[] indexSpecsNew = new IndexSpec[] {new IndexSpec("lastName", SmartStore.Type.string), new IndexSpec("address.city", SmartStore.Type.string)};
+            store.alterSoup(TEST_SOUP, indexSpecsNew, true);
+        } finally {
+            store.setLongOperationProgressListener(null);
+        }
+        writer.join(10000);
+        assertFalse("Writer should be done", writer.isAlive());
+        assertNull("Writes should not have failed", writerException[0]);
+        assertTrue("Writes should have waited for the copy", copyDoneBeforeWrites[0]);
+        assertEquals("Writer should have seen the whole soup", 4, countSeen[0]);
+
+        // Deleted entry should stay deleted
+        assertEquals("Wrong number of entries", 4, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+        assertEquals("Deleted entry should not be found", 0, store.retrieve(TEST_SOUP, idOf(entries[4])).length());
+
+        // Upsert should have updated the existing entry
+        assertEquals("Upserted entry should have kept its id", idOf(entries[3]), store.lookupSoupEntryId(TEST_SOUP, "lastName", "Name3"));
+        assertRowCount(1, "address.city", "Updated City");
+        assertRowCount(0, "address.city", "City3");
+        store.upsert(TEST_SOUP, new JSONObject("{'lastName':'Name3', 'address':{'city':'Other City'}}"), "lastName");
+        assertRowCount(1, "address.city", "Other City");
+    }
+
+    /**
+     * Helper for chunked alter soup tests: register soup and create entries
+     * @param count
+     * @return created entries
+     * @throws JSONException
+     */
+    private JSONObject[] populateChunkedSoup(int count) throws JSONException {
+        store.registerSoup(TEST_SOUP, new IndexSpec[] {new IndexSpec("lastName", SmartStore.Type.string)});
+        JSONObject[] entries = new JSONObject[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = store.create(TEST_SOUP, new JSONObject("{'lastName':'Name" + i + "', 'address':{'city':'City" + i + "'}}"));
+        }
+        return entries;
+    }
+
     /**
      * Test alter soup interrupted and resumed after step RENAME_OLD_SOUP_TABLE
      * @throws JSONException
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import android.database.Cursor;
+import android.util.Base64;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.SecureRandom;
+
+/**
+ * Tests for soup export / import
+ */
+public class SmartStoreArchiveTest extends SmartStoreTestCase {
+
+	private static final String TEST_SOUP = "test_soup";
+	private static final IndexSpec[] INDEX_SPECS = new IndexSpec[] { new IndexSpec("key", Type.string), new IndexSpec("name", Type.full_text) };
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		store.registerSoupWithSpec(new SoupSpec(TEST_SOUP), INDEX_SPECS);
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Export soup then import it in a fresh store
+	 */
+	public void testExportImportRoundTrip() throws Exception {
+		populateSoup(5);
+		int indexCount = countIndexes(getSoupTableName(TEST_SOUP));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals("Wrong number exported", 5, store.exportSoup(TEST_SOUP, out, true, null));
+
+		store.dropSoup(TEST_SOUP);
+		assertEquals("Wrong number imported", 5, store.importSoup(new ByteArrayInputStream(out.toByteArray()), true, null));
+
+		assertTrue("Soup should have been registered", store.hasSoup(TEST_SOUP));
+		String soupTableName = getSoupTableName(TEST_SOUP);
+		checkIndexSpecs(TEST_SOUP, new IndexSpec[] { new IndexSpec("key", Type.string, soupTableName + "_0"), new IndexSpec("name", Type.full_text, soupTableName + "_1") });
+		assertEquals("Indexes should have been re-created", indexCount, countIndexes(soupTableName));
+		assertEquals("No long operation expected", 0, store.getLongOperations().length);
+		checkImported(5);
+	}
+
+	/**
+	 * Created dates are exported and restored on import
+	 */
+	public void testCreatedDatesKept() throws Exception {
+		populateSoup(3);
+		QuerySpec querySpec = QuerySpec.buildSmartQuerySpec("select {test_soup:key}, {test_soup:_soupCreatedDate} from {test_soup} order by {test_soup:key}", 10);
+		JSONArray createdDates = store.query(querySpec, 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.exportSoup(TEST_SOUP, out, false, null);
+
+		Thread.sleep(10);
+		store.dropSoup(TEST_SOUP);
+		store.importSoup(new ByteArrayInputStream(out.toByteArray()), false, null);
+		JSONTestHelper.assertSameJSONArray("Wrong created dates", createdDates, store.query(querySpec, 0));
+		JSONObject soupElt = store.query(QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "k0", null, null, 10), 0).getJSONObject(0);
+		assertFalse("Created date should not be stored in soup element", soupElt.has("_soupCreatedDate"));
+	}
+
+	/**
+	 * Import soup elements into existing soup using several transactions
+	 */
+	public void testImportIntoExistingSoup() throws Exception {
+		populateSoup(5);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.exportSoup(TEST_SOUP, out, false, null);
+
+		assertEquals("Wrong number imported", 5, store.importSoup(new ByteArrayInputStream(out.toByteArray()), false, null, 2));
+		assertEquals("Wrong count", 10, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		JSONArray results = store.query(QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "k3", null, null, 10), 0);
+		assertEquals("Wrong number of results", 2, results.length());
+		assertTrue("Imported element should get a new id", idOf(results.getJSONObject(0)) != idOf(results.getJSONObject(1)));
+		assertEquals("Wrong number of full-text matches", 2, store.query(QuerySpec.buildMatchQuerySpec(TEST_SOUP, "name", "name3", null, null, 10), 0).length());
+	}
+
+	/**
+	 * Export to encrypted archive then import it
+	 */
+	public void testEncryptedArchive() throws Exception {
+		populateSoup(3);
+		byte[] keyBytes = new byte[32];
+		new SecureRandom().nextBytes(keyBytes);
+		String key = Base64.encodeToString(keyBytes, Base64.NO_WRAP);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.exportSoup(TEST_SOUP, out, true, key);
+		assertFalse("Archive should be encrypted", new String(out.toByteArray(), "UTF-8").contains(TEST_SOUP));
+
+		store.clearSoup(TEST_SOUP);
+		assertEquals("Wrong number imported", 3, store.importSoup(new ByteArrayInputStream(out.toByteArray()), true, key));
+		checkImported(3);
+	}
+
+	/**
+	 * Helper method: create soup elements with key k0...kn and name name0...namen
+	 */
+	private void populateSoup(int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			store.create(TEST_SOUP, new JSONObject().put("key", "k" + i).put("name", "name" + i).put("data", new JSONObject().put("i", i)));
+		}
+	}
+
+	/**
+	 * Helper method: check imported soup elements can be found through both indexes
+	 */
+	private void checkImported(int count) throws Exception {
+		assertEquals("Wrong count", count, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		for (int i = 0; i < count; i++) {
+			JSONArray results = store.query(QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "k" + i, null, null, 10), 0);
+			assertEquals("Wrong number of results", 1, results.length());
+			JSONObject soupElt = results.getJSONObject(0);
+			JSONTestHelper.assertSameJSON("Wrong data", new JSONObject().put("i", i), soupElt.getJSONObject("data"));
+			JSONArray matches = store.query(QuerySpec.buildMatchQuerySpec(TEST_SOUP, "name", "name" + i, null, null, 10), 0);
+			assertEquals("Wrong number of full-text matches", 1, matches.length());
+			assertEquals("Wrong soup entry id", idOf(soupElt), idOf(matches.getJSONObject(0)));
+		}
+	}
+
+	/**
+	 * Helper method: count indexes of table
+	 */
+	private int countIndexes(String tableName) {
+		final SQLiteDatabase db = dbOpenHelper.getWritableDatabase(getPasscode());
+		Cursor c = null;
+		try {
+			c = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = ?", new String[] { tableName });
+			return c.getCount();
+		} finally {
+			safeClose(c);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SmartStoreAsync;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for SmartStoreAsync
+ */
+public class SmartStoreAsyncTest extends SmartStoreTestCase {
+
+	private static final String TEST_SOUP = "test_soup";
+	private static final int TIMEOUT_SECONDS = 10;
+
+	private SmartStoreAsync asyncStore;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		store.registerSoup(TEST_SOUP, new IndexSpec[] { new IndexSpec("key", Type.string) });
+		asyncStore = new SmartStoreAsync(store);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		asyncStore.shutdown();
+		super.tearDown();
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Writes are applied in submission order and their results can be read back
+	 */
+	public void testUpsertThenQuery() throws Exception {
+		Future<JSONObject> first = asyncStore.upsert(TEST_SOUP, new JSONObject("{'key':'k1', 'value':'v1'}"), null, null);
+		Future<JSONObject> second = asyncStore.upsert(TEST_SOUP, new JSONObject("{'key':'k1', 'value':'v2'}"), "key", null);
+		JSONObject upserted = second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertEquals("Same entry should have been updated", idOf(first.get()), idOf(upserted));
+
+		JSONArray result = asyncStore.query(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10), 0, null).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertEquals("One result expected", 1, result.length());
+		JSONTestHelper.assertSameJSON("Wrong result for query", upserted, result.getJSONObject(0));
+		assertEquals("Wrong count", Integer.valueOf(1), asyncStore.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10), null).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		asyncStore.delete(TEST_SOUP, new Long[] { idOf(upserted) }, null).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertEquals("Soup should be empty", 0, asyncStore.retrieve(TEST_SOUP, new Long[] { idOf(upserted) }, null).get(TIMEOUT_SECONDS, TimeUnit.SECONDS).length());
+	}
+
+	/**
+	 * Callbacks get results and errors
+	 */
+	public void testCallbacks() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(2);
+		final AtomicReference<JSONArray> resultRef = new AtomicReference<>();
+		final AtomicReference<Throwable> errorRef = new AtomicReference<>();
+		asyncStore.upsertAll(TEST_SOUP, new JSONArray("[{'key':'k1'}, {'key':'k2'}]"), "key", new SmartStoreAsync.Callback<JSONArray>() {
+			@Override
+			public void onResult(JSONArray result) {
+				resultRef.set(result);
+				latch.countDown();
+			}
+
+			@Override
+			public void onError(Throwable error) {
+				latch.countDown();
+			}
+		});
+		asyncStore.query(QuerySpec.buildAllQuerySpec("missing_soup", null, null, 10), 0, new SmartStoreAsync.Callback<JSONArray>() {
+			@Override
+			public void onResult(JSONArray result) {
+				latch.countDown();
+			}
+
+			@Override
+			public void onError(Throwable error) {
+				errorRef.set(error);
+				latch.countDown();
+			}
+		});
+		assertTrue("Callbacks not invoked", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals("Wrong number of upserted entries", 2, resultRef.get().length());
+		assertTrue("Wrong error", errorRef.get() instanceof SmartStore.SmartStoreException);
+	}
+
+	/**
+	 * Cancelled operations don't run and don't invoke their callback
+	 */
+	public void testCancel() throws Exception {
+		final CountDownLatch blocker = new CountDownLatch(1);
+		// Keeping the write thread busy
+		asyncStore.upsert(TEST_SOUP, new JSONObject("{'key':'k0'}"), null, new SmartStoreAsync.Callback<JSONObject>() {
+			@Override
+			public void onResult(JSONObject result) {
+				try {
+					blocker.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// Ignore
+				}
+			}
+
+			@Override
+			public void onError(Throwable error) {
+			}
+		});
+		final AtomicReference<Boolean> called = new AtomicReference<>(false);
+		Future<JSONObject> cancelled = asyncStore.upsert(TEST_SOUP, new JSONObject("{'key':'k1'}"), null, new SmartStoreAsync.Callback<JSONObject>() {
+			@Override
+			public void onResult(JSONObject result) {
+				called.set(true);
+			}
+
+			@Override
+			public void onError(Throwable error) {
+				called.set(true);
+			}
+		});
+		assertTrue("Cancel should have succeeded", cancelled.cancel(false));
+		blocker.countDown();
+
+		// Waiting for operations submitted before to be done
+		asyncStore.upsert(TEST_SOUP, new JSONObject("{'key':'k2'}"), null, null).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertFalse("Callback should not have been called", called.get());
+		assertEquals("Cancelled entry should not have been upserted", 2, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		try {
+			cancelled.get();
+			fail("Get should have thrown");
+		} catch (CancellationException e) {
+			// Expected
+		} catch (ExecutionException e) {
+			fail("Wrong exception");
+		}
+	}
+}
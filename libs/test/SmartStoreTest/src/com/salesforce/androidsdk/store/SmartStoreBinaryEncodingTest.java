@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import android.database.Cursor;
+
+import com.salesforce.androidsdk.smartstore.store.BinarySoupCodec;
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Tests for smart store with binary encoded soup elements
+ */
+public class SmartStoreBinaryEncodingTest extends SmartStoreTest {
+
+	@Override
+	protected void registerSoup(SmartStore store, String soupName, IndexSpec[] indexSpecs) {
+		store.registerSoupWithSpec(new SoupSpec(soupName, SoupSpec.FEATURE_BINARY_ENCODING), indexSpecs);
+	}
+
+	@Override
+	protected void assertSameSoupAsDB(JSONObject soup, Cursor c, String soupTableName, Long id) throws JSONException {
+		assertEquals("Soup column should be a blob", Cursor.FIELD_TYPE_BLOB, c.getType(c.getColumnIndex("soup")));
+		JSONTestHelper.assertSameJSON("Wrong value in soup column", soup, BinarySoupCodec.decode(c.getBlob(c.getColumnIndex("soup"))));
+	}
+
+	/**
+	 * Ensure that a soup cannot be using binary encoding and JSON1
+	 */
+	public void testRegisterSoupWithBinaryEncodingAndJSON1() {
+		assertFalse("Soup other_test_soup should not exist", store.hasSoup(OTHER_TEST_SOUP));
+		try {
+			registerSoup(store, OTHER_TEST_SOUP, new IndexSpec[]{new IndexSpec("lastName", Type.json1), new IndexSpec("address.city", Type.string)});
+			fail("Registering soup with binary encoding and json1 should have thrown an exception");
+		}
+		catch (SmartStore.SmartStoreException e) {
+			assertEquals("Wrong exception", "Can't have JSON1 index specs in binary encoded soup:" + OTHER_TEST_SOUP, e.getMessage());
+		}
+		assertFalse("Register soup call should have failed", store.hasSoup(OTHER_TEST_SOUP));
+	}
+
+	/**
+	 * Ensure soup elements survive switching encoding back and forth
+	 */
+	public void testAlterSoupEncoding() throws JSONException {
+		assertTrue("Soup should use binary encoding", store.usesBinaryEncoding(TEST_SOUP));
+		JSONObject soupElt = store.create(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1', 'nested':{'n':[1,2.5,'three']}}"));
+
+		store.alterSoup(TEST_SOUP, new SoupSpec(TEST_SOUP), new IndexSpec[]{new IndexSpec("key", Type.string)}, true);
+		assertFalse("Soup should not use binary encoding", store.usesBinaryEncoding(TEST_SOUP));
+		JSONTestHelper.assertSameJSON("Wrong soup element", soupElt, store.retrieve(TEST_SOUP, idOf(soupElt)).getJSONObject(0));
+
+		store.alterSoup(TEST_SOUP, new SoupSpec(TEST_SOUP, SoupSpec.FEATURE_BINARY_ENCODING), new IndexSpec[]{new IndexSpec("value", Type.string)}, true);
+		assertTrue("Soup should use binary encoding", store.usesBinaryEncoding(TEST_SOUP));
+		JSONTestHelper.assertSameJSON("Wrong soup element", soupElt, store.retrieve(TEST_SOUP, idOf(soupElt)).getJSONObject(0));
+	}
+
+	@Override
+	public void testAggregateQueryOnJSON1IndexedField() throws JSONException {
+		// json1 is not compatible with binary encoding.
+	}
+
+	@Override
+	public void testCountQueryWithGroupByUsingJSON1Indexes() throws JSONException {
+		// json1 is not compatible with binary encoding.
+	}
+
+	@Override
+	public void testUpsertWithNullInJSON1IndexedField() throws JSONException {
+		// json1 is not compatible with binary encoding.
+	}
+
+	@Override
+	public void testSelectWithNullInJSON1IndexedField() throws JSONException {
+		// json1 is not compatible with binary encoding.
+	}
+}
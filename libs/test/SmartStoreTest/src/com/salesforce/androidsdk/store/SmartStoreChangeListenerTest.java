@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SoupChangeListener;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupChange;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for soup change listeners
+ */
+public class SmartStoreChangeListenerTest extends SmartStoreTestCase {
+
+	private static final String TEST_SOUP = "test_soup";
+	private static final String OTHER_TEST_SOUP = "other_test_soup";
+	private static final int TIMEOUT_SECONDS = 5;
+
+	private final BlockingQueue<SoupChange> changes = new LinkedBlockingQueue<>();
+	private final SoupChangeListener listener = new SoupChangeListener() {
+		@Override
+		public void onSoupChanged(SoupChange change) {
+			changes.add(change);
+		}
+	};
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		IndexSpec[] indexSpecs = new IndexSpec[] { new IndexSpec("key", Type.string) };
+		store.registerSoup(TEST_SOUP, indexSpecs);
+		store.registerSoup(OTHER_TEST_SOUP, indexSpecs);
+		store.registerSoupChangeListener(TEST_SOUP, listener);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		store.unregisterSoupChangeListener(TEST_SOUP, listener);
+		super.tearDown();
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Each committed write is reported
+	 */
+	public void testWritesReported() throws Exception {
+		JSONObject created = store.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+		long id = idOf(created);
+		checkChange(nextChange(), new Long[] { id }, new Long[0], new Long[0], false);
+
+		store.update(TEST_SOUP, created.put("value", "v1"), id);
+		checkChange(nextChange(), new Long[0], new Long[] { id }, new Long[0], false);
+
+		store.delete(TEST_SOUP, id);
+		checkChange(nextChange(), new Long[0], new Long[0], new Long[] { id }, false);
+
+		store.create(TEST_SOUP, new JSONObject("{'key':'k2'}"));
+		nextChange();
+		store.clearSoup(TEST_SOUP);
+		checkChange(nextChange(), new Long[0], new Long[0], new Long[0], true);
+	}
+
+	/**
+	 * Writes of a transaction are reported together once committed, coalesced
+	 */
+	public void testTransactionCoalesced() throws Exception {
+		long id1 = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k1'}")));
+		long id2 = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k2'}")));
+		nextChange();
+		nextChange();
+
+		long id3, id4;
+		store.beginTransaction();
+		try {
+			id3 = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k3'}"), false));
+			id4 = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k4'}"), false));
+			store.update(TEST_SOUP, new JSONObject("{'key':'k3u'}"), id3, false);  // created then updated: inserted
+			store.update(TEST_SOUP, new JSONObject("{'key':'k1u'}"), id1, false);
+			store.delete(TEST_SOUP, new Long[] { id4 }, false);  // created then deleted: not reported
+			store.upsert(TEST_SOUP, new JSONObject("{'key':'k2u', '_soupEntryId':" + id2 + "}"), "_soupEntryId", false);
+			store.delete(TEST_SOUP, new Long[] { id2 }, false);  // updated then deleted: deleted
+			assertNull("Nothing should be reported before commit", changes.poll(100, TimeUnit.MILLISECONDS));
+			store.setTransactionSuccessful();
+		} finally {
+			store.endTransaction();
+		}
+		checkChange(nextChange(), new Long[] { id3 }, new Long[] { id1 }, new Long[] { id2 }, false);
+		assertNull("Only one change expected", changes.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Writes of a transaction that rolls back are never reported
+	 */
+	public void testRollbackNotReported() throws Exception {
+		store.beginTransaction();
+		try {
+			store.create(TEST_SOUP, new JSONObject("{'key':'k1'}"), false);
+		} finally {
+			store.endTransaction();
+		}
+		assertNull("Nothing should be reported", changes.poll(500, TimeUnit.MILLISECONDS));
+		assertEquals("Soup should be empty", 0, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+	}
+
+	/**
+	 * Writes of a transaction whose COMMIT fails are never reported
+	 */
+	public void testFailedCommitNotReported() throws Exception {
+		SQLiteDatabase db = store.getDatabase();
+		db.execSQL("CREATE TABLE fk_parent (id INTEGER PRIMARY KEY)");
+		db.execSQL("CREATE TABLE fk_child (parent_id INTEGER REFERENCES fk_parent(id) DEFERRABLE INITIALLY DEFERRED)");
+		db.execSQL("PRAGMA foreign_keys = ON");
+		try {
+			synchronized (db) {
+				store.beginTransaction();
+				store.create(TEST_SOUP, new JSONObject("{'key':'k1'}"), false);
+				// Deferred foreign key violation: only detected by the COMMIT
+				db.execSQL("INSERT INTO fk_child VALUES (42)");
+				store.setTransactionSuccessful();
+				try {
+					store.endTransaction();
+					fail("Commit should have failed");
+				} catch (SQLiteException e) {
+					// Expected
+				}
+				// SQLite keeps the transaction open when the COMMIT fails
+				try {
+					db.execSQL("ROLLBACK");
+				} catch (SQLiteException e) {
+					// Already rolled back
+				}
+			}
+			assertNull("Nothing should be reported", changes.poll(500, TimeUnit.MILLISECONDS));
+			assertEquals("Soup should be empty", 0, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		} finally {
+			db.execSQL("PRAGMA foreign_keys = OFF");
+			db.execSQL("DROP TABLE fk_child");
+			db.execSQL("DROP TABLE fk_parent");
+		}
+
+		// Next commit is reported on its own
+		long id = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k2'}")));
+		checkChange(nextChange(), new Long[] { id }, new Long[0], new Long[0], false);
+	}
+
+	/**
+	 * Upsert all and delete by query are reported
+	 */
+	public void testUpsertAllAndDeleteByQueryReported() throws Exception {
+		JSONArray upserted = store.upsertAll(TEST_SOUP, new JSONArray("[{'key':'k1'}, {'key':'k2'}, {'key':'k3'}]"), "key", true);
+		long id1 = idOf(upserted.getJSONObject(0));
+		long id2 = idOf(upserted.getJSONObject(1));
+		long id3 = idOf(upserted.getJSONObject(2));
+		checkChange(nextChange(), new Long[] { id1, id2, id3 }, new Long[0], new Long[0], false);
+
+		store.deleteByQuery(TEST_SOUP, QuerySpec.buildRangeQuerySpec(TEST_SOUP, "key", "k2", "k3", "key", QuerySpec.Order.ascending, 10));
+		checkChange(nextChange(), new Long[0], new Long[0], new Long[] { id2, id3 }, false);
+	}
+
+	/**
+	 * Listeners only hear about the soup they registered for
+	 */
+	public void testOtherSoupNotReported() throws Exception {
+		store.create(OTHER_TEST_SOUP, new JSONObject("{'key':'k1'}"));
+		assertNull("Nothing should be reported", changes.poll(500, TimeUnit.MILLISECONDS));
+
+		store.unregisterSoupChangeListener(TEST_SOUP, listener);
+		store.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+		assertNull("Nothing should be reported", changes.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Listeners are called off the writer thread
+	 */
+	public void testReportedOnOtherThread() throws Exception {
+		final BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+		SoupChangeListener threadListener = new SoupChangeListener() {
+			@Override
+			public void onSoupChanged(SoupChange change) {
+				threads.add(Thread.currentThread());
+			}
+		};
+		store.registerSoupChangeListener(TEST_SOUP, threadListener);
+		try {
+			store.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+			Thread thread = threads.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			assertNotNull("Listener not called", thread);
+			assertNotSame("Listener called on writer thread", Thread.currentThread(), thread);
+		} finally {
+			store.unregisterSoupChangeListener(TEST_SOUP, threadListener);
+		}
+	}
+
+	private SoupChange nextChange() throws InterruptedException {
+		SoupChange change = changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertNotNull("Change not reported", change);
+		assertEquals("Wrong soup", TEST_SOUP, change.getSoupName());
+		return change;
+	}
+
+	private void checkChange(SoupChange change, Long[] inserted, Long[] updated, Long[] deleted, boolean cleared) {
+		assertEquals("Wrong inserted ids", new HashSet<>(Arrays.asList(inserted)), change.getInsertedIds());
+		assertEquals("Wrong updated ids", new HashSet<>(Arrays.asList(updated)), change.getUpdatedIds());
+		assertEquals("Wrong deleted ids", new HashSet<>(Arrays.asList(deleted)), change.getDeletedIds());
+		assertEquals("Wrong cleared", cleared, change.isCleared());
+	}
+}
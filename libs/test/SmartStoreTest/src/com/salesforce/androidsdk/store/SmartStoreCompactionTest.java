@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.DBOpenHelper;
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.StoreCompactor;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONObject;
+
+/**
+ * Tests for store compaction
+ */
+public class SmartStoreCompactionTest extends SmartStoreTestCase {
+
+	private static final String TEST_SOUP = "test_soup";
+	private static final int TIMEOUT_MS = 10000;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		store.registerSoup(TEST_SOUP, new IndexSpec[] { new IndexSpec("key", Type.string) });
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		store.disableAutoCompaction();
+		super.tearDown();
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * New stores use incremental auto vacuum
+	 */
+	public void testNewStoreUsesIncrementalVacuum() {
+		assertEquals("Wrong auto vacuum", StoreCompactor.AutoVacuum.INCREMENTAL, store.getCompactionStats().autoVacuum);
+		assertFalse("No migration expected", ((DBOpenHelper) dbOpenHelper).migrateToIncrementalVacuum(getPasscode()));
+	}
+
+	/**
+	 * Compact hands pages freed by clearSoup back to the file system
+	 */
+	public void testCompact() throws Exception {
+		fillAndClearSoup();
+		StoreCompactor.Stats before = store.getCompactionStats();
+		assertTrue("Expected free pages", before.freelistCount > 0);
+		assertTrue("Wrong fragmentation", before.getFragmentation() > 0 && before.getFragmentation() <= 1);
+
+		long reclaimed = store.compact();
+		StoreCompactor.Stats after = store.getCompactionStats();
+		assertEquals("Wrong number of pages reclaimed", before.freelistCount, reclaimed);
+		assertEquals("Expected no free pages", 0, after.freelistCount);
+		assertEquals("Wrong page count", before.pageCount - reclaimed, after.pageCount);
+	}
+
+	/**
+	 * Automatic compaction runs once the store is idle
+	 */
+	public void testAutoCompactionWhenIdle() throws Exception {
+		fillAndClearSoup();
+		assertTrue("Expected free pages", store.getCompactionStats().freelistCount > 0);
+		store.enableAutoCompaction(50, 8, 1);
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		while (store.getCompactionStats().freelistCount > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals("Expected no free pages", 0, store.getCompactionStats().freelistCount);
+	}
+
+	/**
+	 * Stores created without auto vacuum can be migrated once
+	 */
+	public void testMigrateToIncrementalVacuum() throws Exception {
+		final SQLiteDatabase db = dbOpenHelper.getWritableDatabase(getPasscode());
+		db.execSQL("PRAGMA auto_vacuum = NONE");
+		db.execSQL("VACUUM");
+		assertEquals("Wrong auto vacuum", StoreCompactor.AutoVacuum.NONE, store.getCompactionStats().autoVacuum);
+		fillAndClearSoup();
+		assertEquals("Compact should do nothing without auto vacuum", 0, store.compact());
+
+		assertTrue("Migration expected", ((DBOpenHelper) dbOpenHelper).migrateToIncrementalVacuum(getPasscode()));
+		StoreCompactor.Stats stats = store.getCompactionStats();
+		assertEquals("Wrong auto vacuum", StoreCompactor.AutoVacuum.INCREMENTAL, stats.autoVacuum);
+		assertEquals("Expected no free pages", 0, stats.freelistCount);
+		assertFalse("No migration expected", ((DBOpenHelper) dbOpenHelper).migrateToIncrementalVacuum(getPasscode()));
+	}
+
+	/**
+	 * Helper method: create large entries then clear soup
+	 */
+	private void fillAndClearSoup() throws Exception {
+		StringBuilder payload = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			payload.append("xxxxxxxxxx");
+		}
+		for (int i = 0; i < 200; i++) {
+			JSONObject soupElt = new JSONObject();
+			soupElt.put("key", "k" + i);
+			soupElt.put("payload", payload.toString());
+			store.create(TEST_SOUP, soupElt);
+		}
+		store.clearSoup(TEST_SOUP);
+	}
+}
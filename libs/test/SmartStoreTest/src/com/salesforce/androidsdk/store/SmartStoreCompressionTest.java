@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import android.database.Cursor;
+
+import com.salesforce.androidsdk.smartstore.store.DBHelper;
+import com.salesforce.androidsdk.smartstore.store.DBOpenHelper;
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupCompressor;
+import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Tests for soups using the compression feature
+ */
+public class SmartStoreCompressionTest extends SmartStoreTestCase {
+
+	private static final String COMPRESSED_SOUP = "compressed_soup";
+	private static final String BINARY_COMPRESSED_SOUP = "binary_compressed_soup";
+	private static final String EXTERNAL_COMPRESSED_SOUP = "external_compressed_soup";
+	private static final String OTHER_SOUP = "other_soup";
+	private static final IndexSpec[] INDEX_SPECS = new IndexSpec[] { new IndexSpec("key", Type.string) };
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		store.registerSoupWithSpec(new SoupSpec(COMPRESSED_SOUP, SoupSpec.FEATURE_COMPRESSION), INDEX_SPECS);
+		store.registerSoupWithSpec(new SoupSpec(BINARY_COMPRESSED_SOUP, SoupSpec.FEATURE_BINARY_ENCODING, SoupSpec.FEATURE_COMPRESSION), INDEX_SPECS);
+		store.registerSoupWithSpec(new SoupSpec(EXTERNAL_COMPRESSED_SOUP, SoupSpec.FEATURE_EXTERNAL_STORAGE, SoupSpec.FEATURE_COMPRESSION), INDEX_SPECS);
+		store.registerSoup(OTHER_SOUP, INDEX_SPECS);
+		SoupCompressor.resetStats();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SoupCompressor.setThreshold(SoupCompressor.DEFAULT_THRESHOLD);
+		super.tearDown();
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Large soup elements are stored compressed, small ones as JSON text
+	 */
+	public void testCompressLargeSoupElement() throws Exception {
+		JSONObject large = store.create(COMPRESSED_SOUP, buildSoupElt("k1", 2 * SoupCompressor.DEFAULT_THRESHOLD));
+		JSONObject small = store.create(COMPRESSED_SOUP, buildSoupElt("k2", 100));
+		assertStoredCompressed(COMPRESSED_SOUP, idOf(large), true);
+		assertStoredCompressed(COMPRESSED_SOUP, idOf(small), false);
+
+		JSONTestHelper.assertSameJSON("Wrong soup element", large, store.retrieve(COMPRESSED_SOUP, idOf(large)).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Wrong soup element", small, store.retrieve(COMPRESSED_SOUP, idOf(small)).getJSONObject(0));
+		JSONArray result = store.query(QuerySpec.buildExactQuerySpec(COMPRESSED_SOUP, "key", "k1", null, null, 10), 0);
+		JSONTestHelper.assertSameJSON("Wrong query result", new JSONArray().put(large), result);
+	}
+
+	/**
+	 * Compressed binary encoded soup elements are returned by smart sql queries
+	 */
+	public void testCompressBinaryEncodedSoupElement() throws Exception {
+		JSONObject large = store.create(BINARY_COMPRESSED_SOUP, buildSoupElt("k1", 2 * SoupCompressor.DEFAULT_THRESHOLD));
+		assertStoredCompressed(BINARY_COMPRESSED_SOUP, idOf(large), true);
+
+		JSONTestHelper.assertSameJSON("Wrong soup element", large, store.retrieve(BINARY_COMPRESSED_SOUP, idOf(large)).getJSONObject(0));
+		JSONArray result = store.query(QuerySpec.buildSmartQuerySpec("select {" + BINARY_COMPRESSED_SOUP + ":_soup} from {" + BINARY_COMPRESSED_SOUP + "}", 10), 0);
+		JSONTestHelper.assertSameJSON("Wrong smart sql result", new JSONArray().put(new JSONArray().put(large)), result);
+	}
+
+	/**
+	 * Large soup elements of externally stored soups are compressed on file storage
+	 */
+	public void testCompressExternalSoupElement() throws Exception {
+		JSONObject large = store.create(EXTERNAL_COMPRESSED_SOUP, buildSoupElt("k1", 2 * SoupCompressor.DEFAULT_THRESHOLD));
+		long blobSize = ((DBOpenHelper) dbOpenHelper).getSoupBlobFile(getSoupTableName(EXTERNAL_COMPRESSED_SOUP), idOf(large)).length();
+		assertTrue("Soup blob should be compressed", blobSize < SoupCompressor.DEFAULT_THRESHOLD);
+
+		JSONTestHelper.assertSameJSON("Wrong soup element", large, store.retrieve(EXTERNAL_COMPRESSED_SOUP, idOf(large)).getJSONObject(0));
+		JSONArray result = store.query(QuerySpec.buildExactQuerySpec(EXTERNAL_COMPRESSED_SOUP, "key", "k1", null, null, 10), 0);
+		JSONTestHelper.assertSameJSON("Wrong query result", new JSONArray().put(large), result);
+	}
+
+	/**
+	 * Stats track compressed and decompressed soup elements
+	 */
+	public void testCompressionStats() throws Exception {
+		SoupCompressor.setThreshold(1000);
+		JSONObject soupElt = store.create(COMPRESSED_SOUP, buildSoupElt("k1", 2000));
+		store.create(COMPRESSED_SOUP, buildSoupElt("k2", 500));
+		store.retrieve(COMPRESSED_SOUP, idOf(soupElt));
+
+		SoupCompressor.Stats stats = store.getCompressionStats();
+		assertEquals("Wrong number of compressed soup elements", 1, stats.entriesCompressed);
+		assertEquals("Wrong number of decompressed soup elements", 1, stats.entriesDecompressed);
+		assertTrue("Compressed size should be smaller", stats.bytesAfterCompression < stats.bytesBeforeCompression);
+		assertTrue("Wrong compression ratio", stats.getCompressionRatio() > 0 && stats.getCompressionRatio() < 1);
+		assertTrue("Time spent compressing expected", stats.compressionNanos > 0);
+
+		SoupCompressor.resetStats();
+		assertEquals("Stats should be reset", 0, store.getCompressionStats().entriesCompressed);
+	}
+
+	/**
+	 * Ensure soup elements survive turning compression on and off
+	 */
+	public void testAlterSoupCompression() throws Exception {
+		JSONObject large = store.create(OTHER_SOUP, buildSoupElt("k1", 2 * SoupCompressor.DEFAULT_THRESHOLD));
+		assertStoredCompressed(OTHER_SOUP, idOf(large), false);
+
+		store.alterSoup(OTHER_SOUP, new SoupSpec(OTHER_SOUP, SoupSpec.FEATURE_COMPRESSION), INDEX_SPECS, false);
+		assertTrue("Soup should use compression", store.usesCompression(OTHER_SOUP));
+		assertStoredCompressed(OTHER_SOUP, idOf(large), true);
+		JSONTestHelper.assertSameJSON("Wrong soup element", large, store.retrieve(OTHER_SOUP, idOf(large)).getJSONObject(0));
+
+		store.alterSoup(OTHER_SOUP, new SoupSpec(OTHER_SOUP), INDEX_SPECS, false);
+		assertFalse("Soup should not use compression", store.usesCompression(OTHER_SOUP));
+		assertStoredCompressed(OTHER_SOUP, idOf(large), false);
+		JSONTestHelper.assertSameJSON("Wrong soup element", large, store.retrieve(OTHER_SOUP, idOf(large)).getJSONObject(0));
+	}
+
+	/**
+	 * Ensure that a soup cannot be using compression and JSON1
+	 */
+	public void testRegisterSoupWithCompressionAndJSON1() {
+		try {
+			store.registerSoupWithSpec(new SoupSpec("json1_soup", SoupSpec.FEATURE_COMPRESSION), new IndexSpec[] { new IndexSpec("key", Type.json1) });
+			fail("Registering soup with compression and json1 should have thrown an exception");
+		} catch (SmartStore.SmartStoreException e) {
+			assertEquals("Wrong exception", "Can't have JSON1 index specs in compressed soup:json1_soup", e.getMessage());
+		}
+		assertFalse("Register soup call should have failed", store.hasSoup("json1_soup"));
+	}
+
+	/**
+	 * Helper method: build soup element of about the given size
+	 */
+	private JSONObject buildSoupElt(String key, int size) throws Exception {
+		JSONObject soupElt = new JSONObject();
+		soupElt.put("key", key);
+		JSONArray items = new JSONArray();
+		for (int i = 0; i * 40 < size; i++) {
+			items.put(new JSONObject().put("name", "item" + i).put("status", "active"));
+		}
+		soupElt.put("items", items);
+		return soupElt;
+	}
+
+	/**
+	 * Helper method: check whether soup element is stored compressed in the soup table
+	 */
+	private void assertStoredCompressed(String soupName, long id, boolean compressed) {
+		Cursor c = null;
+		try {
+			final SQLiteDatabase db = dbOpenHelper.getWritableDatabase(getPasscode());
+			c = DBHelper.getInstance(db).query(db, getSoupTableName(soupName), new String[] { "soup" }, null, null, "id = ?", id + "");
+			assertTrue("Expected a soup element", c.moveToFirst());
+			boolean isCompressed = c.getType(0) == Cursor.FIELD_TYPE_BLOB && SoupCompressor.isCompressed(c.getBlob(0));
+			assertEquals("Wrong storage for soup element " + id, compressed, isCompressed);
+		} finally {
+			safeClose(c);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupEntryCache;
+import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Tests for soups using the entry cache feature
+ */
+public class SmartStoreEntryCacheTest extends SmartStoreTestCase {
+
+	private static final String CACHED_SOUP = "cached_soup";
+	private static final String OTHER_SOUP = "other_soup";
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		IndexSpec[] indexSpecs = new IndexSpec[] { new IndexSpec("key", Type.string) };
+		store.registerSoupWithSpec(new SoupSpec(CACHED_SOUP, SoupSpec.FEATURE_ENTRY_CACHE), indexSpecs);
+		store.registerSoup(OTHER_SOUP, indexSpecs);
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Only soups with the entry cache feature get an entry cache
+	 */
+	public void testGetEntryCache() throws Exception {
+		assertNotNull("Entry cache expected", store.getEntryCache(CACHED_SOUP));
+		assertNull("No entry cache expected", store.getEntryCache(OTHER_SOUP));
+		assertNull("No entry cache expected", store.getEntryCache("missing_soup"));
+		assertTrue("Feature missing from soup spec", store.getSoupSpec(CACHED_SOUP).getFeatures().contains(SoupSpec.FEATURE_ENTRY_CACHE));
+	}
+
+	/**
+	 * Second retrieve is served from the cache
+	 */
+	public void testRetrieveHitsAndMisses() throws Exception {
+		JSONObject created = store.create(CACHED_SOUP, new JSONObject("{'key':'k1'}"));
+		long id = idOf(created);
+		SoupEntryCache entryCache = store.getEntryCache(CACHED_SOUP);
+
+		JSONArray first = store.retrieve(CACHED_SOUP, id);
+		JSONTestHelper.assertSameJSON("Wrong soup element", created, first.getJSONObject(0));
+		assertEquals("Wrong miss count", 1, entryCache.getMissCount());
+		assertEquals("Wrong hit count", 0, entryCache.getHitCount());
+
+		JSONArray second = store.retrieve(CACHED_SOUP, id);
+		JSONTestHelper.assertSameJSON("Wrong soup element", created, second.getJSONObject(0));
+		assertEquals("Wrong miss count", 1, entryCache.getMissCount());
+		assertEquals("Wrong hit count", 1, entryCache.getHitCount());
+		assertEquals("Wrong hit rate", 0.5, entryCache.getHitRate());
+	}
+
+	/**
+	 * Retrieve of cached and non-cached soup elements together
+	 */
+	public void testRetrieveMixed() throws Exception {
+		long id1 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k1'}")));
+		long id2 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k2'}")));
+		long id3 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k3'}")));
+		store.retrieve(CACHED_SOUP, id2);
+
+		JSONArray result = store.retrieve(CACHED_SOUP, id3, id2, id1, id2, -1L);
+		assertEquals("Wrong number of soup elements", 3, result.length());
+		assertEquals("Wrong soup element", "k1", result.getJSONObject(0).getString("key"));
+		assertEquals("Wrong soup element", "k2", result.getJSONObject(1).getString("key"));
+		assertEquals("Wrong soup element", "k3", result.getJSONObject(2).getString("key"));
+		assertEquals("Wrong cache size", 3, store.getEntryCache(CACHED_SOUP).size());
+	}
+
+	/**
+	 * Changing a retrieved soup element does not change the cached one
+	 */
+	public void testCachedSoupElementIsCopied() throws Exception {
+		long id = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k1', 'nested':{'a':1}}")));
+		JSONObject retrieved = store.retrieve(CACHED_SOUP, id).getJSONObject(0);
+		retrieved.put("key", "changed");
+		retrieved.getJSONObject("nested").put("a", 2);
+
+		JSONObject again = store.retrieve(CACHED_SOUP, id).getJSONObject(0);
+		assertEquals("Cached soup element changed", "k1", again.getString("key"));
+		assertEquals("Cached soup element changed", 1, again.getJSONObject("nested").getInt("a"));
+	}
+
+	/**
+	 * Updates and upserts invalidate the cached soup element
+	 */
+	public void testInvalidationOnUpdateAndUpsert() throws Exception {
+		JSONObject created = store.create(CACHED_SOUP, new JSONObject("{'key':'k1', 'value':'v1'}"));
+		long id = idOf(created);
+		store.retrieve(CACHED_SOUP, id);
+
+		created.put("value", "v2");
+		store.update(CACHED_SOUP, created, id);
+		assertEquals("Stale soup element", "v2", store.retrieve(CACHED_SOUP, id).getJSONObject(0).getString("value"));
+
+		store.upsert(CACHED_SOUP, new JSONObject("{'key':'k1', 'value':'v3'}"), "key");
+		assertEquals("Stale soup element", "v3", store.retrieve(CACHED_SOUP, id).getJSONObject(0).getString("value"));
+	}
+
+	/**
+	 * Deletes invalidate the cached soup elements
+	 */
+	public void testInvalidationOnDelete() throws Exception {
+		long id1 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k1'}")));
+		long id2 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k2'}")));
+		store.retrieve(CACHED_SOUP, id1, id2);
+
+		store.delete(CACHED_SOUP, id1);
+		assertEquals("Deleted soup element returned", 1, store.retrieve(CACHED_SOUP, id1, id2).length());
+
+		store.deleteByQuery(CACHED_SOUP, QuerySpec.buildExactQuerySpec(CACHED_SOUP, "key", "k2", null, null, 10));
+		assertEquals("Deleted soup element returned", 0, store.retrieve(CACHED_SOUP, id1, id2).length());
+
+		long id3 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k3'}")));
+		store.retrieve(CACHED_SOUP, id3);
+		store.clearSoup(CACHED_SOUP);
+		assertEquals("Cache should be empty", 0, store.getEntryCache(CACHED_SOUP).size());
+		assertEquals("Cleared soup element returned", 0, store.retrieve(CACHED_SOUP, id3).length());
+	}
+
+	/**
+	 * Soup elements retrieved inside a transaction are not cached (they could be rolled back)
+	 */
+	public void testNoCachingInTransaction() throws Exception {
+		long id = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k1'}")));
+		store.beginTransaction();
+		try {
+			store.retrieve(CACHED_SOUP, id);
+		} finally {
+			store.endTransaction();
+		}
+		assertEquals("Cache should be empty", 0, store.getEntryCache(CACHED_SOUP).size());
+	}
+
+	/**
+	 * Least recently used soup elements are evicted
+	 */
+	public void testEviction() throws Exception {
+		SoupEntryCache entryCache = store.getEntryCache(CACHED_SOUP);
+		entryCache.setMaxSize(2);
+		long id1 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k1'}")));
+		long id2 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k2'}")));
+		long id3 = idOf(store.create(CACHED_SOUP, new JSONObject("{'key':'k3'}")));
+		store.retrieve(CACHED_SOUP, id1);
+		store.retrieve(CACHED_SOUP, id2);
+		store.retrieve(CACHED_SOUP, id1);
+		store.retrieve(CACHED_SOUP, id3);
+		assertEquals("Wrong cache size", 2, entryCache.size());
+		assertEquals("Wrong eviction count", 1, entryCache.getEvictionCount());
+
+		long hits = entryCache.getHitCount();
+		store.retrieve(CACHED_SOUP, id1);
+		assertEquals("Soup element should still be cached", hits + 1, entryCache.getHitCount());
+		store.retrieve(CACHED_SOUP, id2);
+		assertEquals("Soup element should have been evicted", hits + 1, entryCache.getHitCount());
+	}
+}
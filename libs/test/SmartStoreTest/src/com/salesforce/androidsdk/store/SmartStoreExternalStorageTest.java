@@ -48,6 +48,8 @@ import org.json.JSONObject;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Tests for encrypted smart store with external storage
@@ -84,6 +86,95 @@ public class SmartStoreExternalStorageTest extends SmartStoreTest {
 		assertFalse("Register soup call should have failed", store.hasSoup(OTHER_TEST_SOUP));
 	}
 
+	/**
+	 * Ensure soup elements loaded in parallel come back in the order of the query / of the ids
+	 */
+	public void testQueryAndRetrieveManyEntries() throws JSONException {
+		int count = 100;
+		List<JSONObject> soupEltsCreated = new ArrayList<>();
+		Long[] ids = new Long[count];
+		for (int i = 0; i < count; i++) {
+			JSONObject soupElt = new JSONObject("{'key':'k" + String.format("%03d", i) + "', 'value':'v" + i + "'}");
+			soupEltsCreated.add(store.create(TEST_SOUP, soupElt));
+			ids[count - 1 - i] = idOf(soupEltsCreated.get(i));
+		}
+
+		// Query
+		JSONArray result = store.query(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, count), 0);
+		assertEquals("Wrong number of results", count, result.length());
+		for (int i = 0; i < count; i++) {
+			JSONTestHelper.assertSameJSON("Wrong result for query", soupEltsCreated.get(i), result.getJSONObject(i));
+		}
+
+		// Smart query
+		result = store.query(QuerySpec.buildSmartQuerySpec("SELECT {test_soup:key}, {test_soup:_soup} FROM {test_soup} ORDER BY {test_soup:key} DESC", count), 0);
+		assertEquals("Wrong number of results", count, result.length());
+		for (int i = 0; i < count; i++) {
+			JSONObject expected = soupEltsCreated.get(count - 1 - i);
+			assertEquals("Wrong key in smart query result", expected.getString("key"), result.getJSONArray(i).getString(0));
+			JSONTestHelper.assertSameJSON("Wrong soup in smart query result", expected, result.getJSONArray(i).getJSONObject(1));
+		}
+
+		// Retrieve
+		result = store.retrieve(TEST_SOUP, ids);
+		assertEquals("Wrong number of results", count, result.length());
+		for (int i = 0; i < count; i++) {
+			JSONTestHelper.assertSameJSON("Wrong result for retrieve", soupEltsCreated.get(count - 1 - i), result.getJSONObject(i));
+		}
+	}
+
+	/**
+	 * Ensure queries running while entries are updated and deleted never return partially written or missing soup elements
+	 */
+	public void testQueryWhileUpdatingAndDeleting() throws Exception {
+		final int count = 40;
+		final long[] ids = new long[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k" + String.format("%03d", i) + "', 'value':'v0'}")));
+		}
+		final AtomicBoolean stop = new AtomicBoolean();
+		final AtomicReference<Exception> writerError = new AtomicReference<>();
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int round = 1; !stop.get(); round++) {
+						for (int i = 0; i < count && !stop.get(); i++) {
+							JSONObject soupElt = new JSONObject("{'key':'k" + String.format("%03d", i) + "', 'value':'v" + round + "'}");
+							if (i % 4 == 0) {
+								// Deleted and created again
+								store.delete(TEST_SOUP, ids[i]);
+								ids[i] = idOf(store.create(TEST_SOUP, soupElt));
+							} else {
+								store.update(TEST_SOUP, soupElt, ids[i]);
+							}
+						}
+					}
+				} catch (Exception e) {
+					writerError.set(e);
+				}
+			}
+		});
+		writer.start();
+		try {
+			long deadline = System.currentTimeMillis() + 3000;
+			while (System.currentTimeMillis() < deadline) {
+				JSONArray result = store.query(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, count), 0);
+				assertTrue("Too many results", result.length() <= count);
+				for (int i = 0; i < result.length(); i++) {
+					assertFalse("Null row returned", result.isNull(i));
+					JSONObject soupElt = result.getJSONObject(i);
+					assertTrue("Wrong key", soupElt.getString("key").startsWith("k"));
+					assertTrue("Wrong value", soupElt.getString("value").startsWith("v"));
+				}
+			}
+		} finally {
+			stop.set(true);
+			writer.join(10000);
+		}
+		assertNull("Writer failed", writerError.get());
+	}
+
 	/**
 	 * Ensure data is still accessible after changing key
 	 */
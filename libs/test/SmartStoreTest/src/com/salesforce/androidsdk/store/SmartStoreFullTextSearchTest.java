@@ -688,6 +688,25 @@ public class SmartStoreFullTextSearchTest extends SmartStoreTestCase {
         }
     }
 
+    /**
+     * Test bulk upsert with fts5: fts rows should be inserted and updated along with the soup rows
+     */
+    public void testUpsertAllWithFts5() throws JSONException {
+        setupSoup(SmartStore.FtsExtension.fts5);
+        JSONArray employees = new JSONArray("[{'" + FIRST_NAME + "':'Christine', '" + LAST_NAME + "':'Haas', '" + EMPLOYEE_ID + "':'00010'},"
+                + "{'" + FIRST_NAME + "':'Michael', '" + LAST_NAME + "':'Thompson', '" + EMPLOYEE_ID + "':'00020'}]");
+        store.upsertAll(EMPLOYEES_SOUP, employees, EMPLOYEE_ID);
+        long christineId = idOf(employees.getJSONObject(0));
+        long michaelId = idOf(employees.getJSONObject(1));
+        trySearch(new long[] {christineId}, LAST_NAME, "Haas", null);
+
+        JSONArray updatedEmployees = new JSONArray("[{'" + FIRST_NAME + "':'Christine', '" + LAST_NAME + "':'Thompson', '" + EMPLOYEE_ID + "':'00010'}]");
+        store.upsertAll(EMPLOYEES_SOUP, updatedEmployees, EMPLOYEE_ID);
+        assertEquals("Entry should have been updated", christineId, idOf(updatedEmployees.getJSONObject(0)));
+        trySearch(new long[] {}, LAST_NAME, "Haas", null);
+        trySearch(new long[] {christineId, michaelId}, LAST_NAME, "Thompson", SmartStore.SOUP_ENTRY_ID);
+    }
+
     private void loadData(SmartStore.FtsExtension ftsExtension) throws JSONException {
         setupSoup(ftsExtension);
 
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.DBHelper;
+import com.salesforce.androidsdk.smartstore.store.DBOpenHelper;
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.ShardedSmartStore;
+import com.salesforce.androidsdk.smartstore.store.SmartStore;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.SoupSpec;
+import com.salesforce.androidsdk.smartstore.store.StoreCompactor;
+import com.salesforce.androidsdk.util.test.JSONTestHelper;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for soups placed in separate database files
+ */
+public class SmartStoreShardingTest extends SmartStoreTestCase {
+
+	private static final String ACCOUNTS_SOUP = "accounts";
+	private static final String SYNCS_SOUP = "syncs";
+	private static final String BLOBS_SOUP = "blobs";
+	private static final String SYNC_SHARD = "sync";
+	private static final int TIMEOUT_MS = 10000;
+
+	private ShardedSmartStore shardedStore;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		shardedStore = new ShardedSmartStore(targetContext, (DBOpenHelper) dbOpenHelper, getPasscode());
+		shardedStore.addShard(SYNC_SHARD, SYNCS_SOUP);
+		shardedStore.registerSoup(ACCOUNTS_SOUP, new IndexSpec[] { new IndexSpec("name", Type.string), new IndexSpec("syncId", Type.integer) });
+		shardedStore.registerSoup(SYNCS_SOUP, new IndexSpec[] { new IndexSpec("syncId", Type.integer), new IndexSpec("status", Type.string) });
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		shardedStore.dropAllSoups();
+		super.tearDown();
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Sharded soups live in their own database file with a table name not used by the main database
+	 */
+	public void testSoupsPlacement() {
+		SmartStore shard = shardedStore.getShardStore(SYNCS_SOUP);
+		assertNotNull("Expected shard", shard);
+		assertNull("Expected main database", shardedStore.getShardStore(ACCOUNTS_SOUP));
+		assertNotSame("Expected separate database", store.getDatabase(), shard.getDatabase());
+
+		assertTrue("Soup should be in main database", store.hasSoup(ACCOUNTS_SOUP));
+		assertFalse("Soup should not be in main database", store.hasSoup(SYNCS_SOUP));
+		assertTrue("Soup should be in shard", shard.hasSoup(SYNCS_SOUP));
+		assertTrue("Soup should be found through sharded store", shardedStore.hasSoup(SYNCS_SOUP));
+
+		List<String> soupNames = shardedStore.getAllSoupNames();
+		assertEquals("Wrong soup names " + soupNames, 2, soupNames.size());
+		assertTrue("Missing soup", soupNames.contains(ACCOUNTS_SOUP));
+		assertTrue("Missing soup", soupNames.contains(SYNCS_SOUP));
+
+		final SQLiteDatabase shardDb = shard.getDatabase();
+		String shardTableName = DBHelper.getInstance(shardDb).getSoupTableName(shardDb, SYNCS_SOUP);
+		assertFalse("Table name should not be used by main database", hasTable(shardTableName));
+	}
+
+	/**
+	 * Compaction stats and long operation settings cover the shards
+	 */
+	public void testMaintenanceCoversShards() {
+		SmartStore shard = shardedStore.getShardStore(SYNCS_SOUP);
+		StoreCompactor.Stats stats = shardedStore.getCompactionStats();
+		assertEquals("Wrong page count", store.getCompactionStats().pageCount + shard.getCompactionStats().pageCount, stats.pageCount);
+
+		shardedStore.setLongOperationChunking(7, 3);
+		assertEquals("Wrong chunk size", 7, shard.getLongOperationChunkSize());
+		assertEquals("Wrong pause", 3, shard.getLongOperationPauseMs());
+		shardedStore.addShard("other", "other_soup");
+		assertEquals("New shard should get chunk size", 7, shardedStore.getShardStore("other_soup").getLongOperationChunkSize());
+		assertEquals("No long operation expected", 0, shardedStore.getLongOperations().length);
+	}
+
+	/**
+	 * Database size covers the shards' database files and external blobs
+	 */
+	public void testDatabaseSizeIncludesShards() throws Exception {
+		shardedStore.addShard(SYNC_SHARD, BLOBS_SOUP);
+		shardedStore.registerSoupWithSpec(new SoupSpec(BLOBS_SOUP, SoupSpec.FEATURE_EXTERNAL_STORAGE), new IndexSpec[] { new IndexSpec("name", Type.string) });
+		SmartStore shard = shardedStore.getShardStore(BLOBS_SOUP);
+		int shardSizeBefore = shard.getDatabaseSize();
+		assertEquals("Wrong database size", store.getDatabaseSize() + shardSizeBefore, shardedStore.getDatabaseSize());
+
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			value.append('x');
+		}
+		shardedStore.create(BLOBS_SOUP, new JSONObject().put("name", "big").put("value", value.toString()));
+		int shardSizeAfter = shard.getDatabaseSize();
+		assertTrue("Shard size should include blob", shardSizeAfter >= shardSizeBefore + value.length());
+		assertEquals("Wrong database size", store.getDatabaseSize() + shardSizeAfter, shardedStore.getDatabaseSize());
+	}
+
+	/**
+	 * Writes and queries of a sharded soup go to its shard
+	 */
+	public void testCrudOnShard() throws Exception {
+		JSONObject sync = shardedStore.create(SYNCS_SOUP, new JSONObject("{'syncId':1, 'status':'RUNNING'}"));
+		long syncEntryId = idOf(sync);
+		sync.put("status", "DONE");
+		shardedStore.update(SYNCS_SOUP, sync, syncEntryId);
+
+		JSONArray results = shardedStore.query(QuerySpec.buildExactQuerySpec(SYNCS_SOUP, "syncId", "1", null, null, 10), 0);
+		assertEquals("Wrong number of results", 1, results.length());
+		assertEquals("Wrong status", "DONE", results.getJSONObject(0).getString("status"));
+		assertEquals("Wrong count", 1, shardedStore.countQuery(QuerySpec.buildAllQuerySpec(SYNCS_SOUP, null, null, 10)));
+		JSONTestHelper.assertSameJSON("Wrong soup element", sync, shardedStore.getShardStore(SYNCS_SOUP).retrieve(SYNCS_SOUP, syncEntryId).getJSONObject(0));
+
+		shardedStore.delete(SYNCS_SOUP, syncEntryId);
+		assertEquals("Wrong count", 0, shardedStore.countQuery(QuerySpec.buildAllQuerySpec(SYNCS_SOUP, null, null, 10)));
+	}
+
+	/**
+	 * Smart sql referencing soups of the main database and of a shard
+	 */
+	public void testSmartSqlAcrossShards() throws Exception {
+		shardedStore.create(ACCOUNTS_SOUP, new JSONObject("{'name':'Acme', 'syncId':1}"));
+		shardedStore.create(ACCOUNTS_SOUP, new JSONObject("{'name':'Globex', 'syncId':2}"));
+		shardedStore.create(SYNCS_SOUP, new JSONObject("{'syncId':1, 'status':'DONE'}"));
+		shardedStore.create(SYNCS_SOUP, new JSONObject("{'syncId':2, 'status':'FAILED'}"));
+
+		String smartSql = "select {accounts:name}, {syncs:status} from {accounts}, {syncs} where {accounts:syncId} = {syncs:syncId} order by {accounts:name}";
+		JSONArray results = shardedStore.query(QuerySpec.buildSmartQuerySpec(smartSql, 10), 0);
+		JSONTestHelper.assertSameJSONArray("Wrong results", new JSONArray("[['Acme','DONE'],['Globex','FAILED']]"), results);
+	}
+
+	/**
+	 * Writes to a sharded soup don't wait for the main database lock
+	 */
+	public void testWriteToShardWhileMainDatabaseLocked() throws Exception {
+		final AtomicReference<Exception> error = new AtomicReference<>();
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					shardedStore.upsert(SYNCS_SOUP, new JSONObject("{'syncId':1, 'status':'DONE'}"));
+				} catch (Exception e) {
+					error.set(e);
+				}
+			}
+		});
+		synchronized (store.getDatabase()) {
+			store.beginTransaction();
+			try {
+				store.create(ACCOUNTS_SOUP, new JSONObject("{'name':'Acme', 'syncId':1}"), false);
+				writer.start();
+				writer.join(TIMEOUT_MS);
+				assertFalse("Write to shard should not be blocked", writer.isAlive());
+				store.setTransactionSuccessful();
+			} finally {
+				store.endTransaction();
+			}
+		}
+		assertNull("Write to shard failed", error.get());
+		assertEquals("Wrong count", 1, shardedStore.countQuery(QuerySpec.buildAllQuerySpec(SYNCS_SOUP, null, null, 10)));
+		assertEquals("Wrong count", 1, shardedStore.countQuery(QuerySpec.buildAllQuerySpec(ACCOUNTS_SOUP, null, null, 10)));
+	}
+}
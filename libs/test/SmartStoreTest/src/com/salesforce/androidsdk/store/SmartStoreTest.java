@@ -29,8 +29,10 @@ package com.salesforce.androidsdk.store;
 import android.database.Cursor;
 import android.os.SystemClock;
 
+import com.salesforce.androidsdk.smartstore.store.CompoundIndexSpec;
 import com.salesforce.androidsdk.smartstore.store.DBHelper;
 import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.PathProjector;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec;
 import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
 import com.salesforce.androidsdk.smartstore.store.SmartStore;
@@ -46,7 +48,10 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main test suite for SmartStore
@@ -159,6 +164,32 @@ public class SmartStoreTest extends SmartStoreTestCase {
 	}
 
 
+	/**
+	 * Testing batch projection: values for all paths in one walk, same as projecting each path
+	 * @throws JSONException
+	 */
+	public void testProjectBatch() throws JSONException {
+		JSONObject json = new JSONObject("{\"a\":\"a1\", \"b\":2, \"c\":[{\"cc\":\"cc1\"}, {\"cc\":2}, {\"cc\":[1,2,3]}, {}, {\"cc\":{\"cc5\":5}}], \"d\":[{\"dd\":[{\"ddd\":\"ddd11\"},{\"ddd\":\"ddd12\"}]}, {\"dd\":[{\"ddd\":\"ddd21\"}]}, {\"dd\":[{\"ddd\":\"ddd31\"},{\"ddd3\":\"ddd32\"}]}]}");
+		String[] paths = new String[] {"a", "b", "c", "c.cc", "c.cc.cc5", "d", "d.dd", "d.dd.ddd", "d.dd.ddd3", "e", "e.f", null, "a"};
+		Object[] values = PathProjector.compile(paths).project(json);
+		assertEquals("Wrong number of values", paths.length, values.length);
+		for (int i = 0; i < paths.length; i++) {
+			if (paths[i] == null) {
+				assertNull("Null path should not be projected", values[i]);
+			} else {
+				Object expected = SmartStore.project(json, paths[i]);
+				if (expected == null) {
+					assertNull("Wrong value for key " + paths[i], values[i]);
+				} else if (expected instanceof JSONArray) {
+					JSONTestHelper.assertSameJSON("Wrong value for key " + paths[i], expected, values[i]);
+				} else {
+					assertEquals("Wrong value for key " + paths[i], expected, values[i]);
+				}
+			}
+		}
+		assertNull("Null object should have null values", PathProjector.compile(paths).project(null)[0]);
+	}
+
 	/**
 	 * Check that the meta data table (soup index map) has been created
 	 */
@@ -485,6 +516,29 @@ public class SmartStoreTest extends SmartStoreTestCase {
 	}
 	
 	
+	/**
+	 * Testing upsertAll with external id: existing entries are updated, new ones created, repeated external ids only create one entry
+	 * @throws JSONException
+	 */
+	public void testUpsertAllWithExternalId() throws JSONException {
+		JSONObject soupElt1Upserted = store.upsert(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"), "key");
+		JSONObject soupElt2Upserted = store.upsert(TEST_SOUP, new JSONObject("{'key':'ka2', 'value':'va2'}"), "key");
+
+		JSONArray soupElts = new JSONArray("[{'key':'ka2', 'value':'va2u'}, {'key':'ka3', 'value':'va3'}, {'key':'ka3', 'value':'va3u'}, {'value':'va4'}]");
+		JSONArray soupEltsUpserted = store.upsertAll(TEST_SOUP, soupElts, "key");
+		assertNotNull("Upsert should have succeeded", soupEltsUpserted);
+		assertEquals("Wrong number of elements", 4, soupEltsUpserted.length());
+		assertEquals("Wrong id for updated element", idOf(soupElt2Upserted), idOf(soupEltsUpserted.getJSONObject(0)));
+		assertEquals("Repeated external id should map to the same element", idOf(soupEltsUpserted.getJSONObject(1)), idOf(soupEltsUpserted.getJSONObject(2)));
+
+		assertEquals("Wrong number of elements in soup", 4, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", soupElt1Upserted, store.retrieve(TEST_SOUP, idOf(soupElt1Upserted)).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", soupEltsUpserted.getJSONObject(0), store.retrieve(TEST_SOUP, idOf(soupElt2Upserted)).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", soupEltsUpserted.getJSONObject(2), store.retrieve(TEST_SOUP, idOf(soupEltsUpserted.getJSONObject(2))).getJSONObject(0));
+		JSONTestHelper.assertSameJSON("Retrieve mismatch", soupEltsUpserted.getJSONObject(3), store.retrieve(TEST_SOUP, idOf(soupEltsUpserted.getJSONObject(3))).getJSONObject(0));
+		assertEquals("Wrong value", "va3u", store.query(QuerySpec.buildExactQuerySpec(TEST_SOUP, "key", "ka3", null, null, 10), 0).getJSONObject(0).getString("value"));
+	}
+
 	/**
 	 * Testing upsert passing a non-indexed path for the external id (should fail)
 	 * @throws JSONException
@@ -745,6 +799,124 @@ public class SmartStoreTest extends SmartStoreTestCase {
                 0, type != Type.json1, "SCAN", new JSONArray("['ka1']"),  new JSONArray("['ka2']"),  new JSONArray("['ka3']"));
 	}
 	
+	/**
+	 * Test queryEach: results are streamed across all pages and reading can be stopped early
+	 * @throws JSONException
+	 */
+	public void testQueryEach() throws JSONException {
+		for (int i=0; i<25; i++) {
+			store.create(TEST_SOUP, new JSONObject("{'key':'k" + (100 + i) + "', 'value':'v" + i + "'}"));
+		}
+		QuerySpec querySpec = QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10);
+
+		// All results regardless of page size
+		final List<String> keys = new ArrayList<>();
+		store.queryEach(querySpec, new SmartStore.QueryRowHandler() {
+			@Override
+			public boolean onRow(Object row) throws JSONException {
+				keys.add(((JSONObject) row).getString("key"));
+				return true;
+			}
+		});
+		assertEquals("Wrong number of rows", 25, keys.size());
+		assertEquals("Wrong first row", "k100", keys.get(0));
+		assertEquals("Wrong last row", "k124", keys.get(24));
+
+		// Single page
+		keys.clear();
+		store.queryEach(querySpec, 2, new SmartStore.QueryRowHandler() {
+			@Override
+			public boolean onRow(Object row) throws JSONException {
+				keys.add(((JSONObject) row).getString("key"));
+				return true;
+			}
+		});
+		assertEquals("Wrong number of rows in last page", 5, keys.size());
+		assertEquals("Wrong first row in last page", "k120", keys.get(0));
+
+		// Stopping early
+		keys.clear();
+		store.queryEach(QuerySpec.buildSmartQuerySpec("select {test_soup:key} from {test_soup} order by {test_soup:key}", 10), new SmartStore.QueryRowHandler() {
+			@Override
+			public boolean onRow(Object row) throws JSONException {
+				keys.add(((JSONArray) row).getString(0));
+				return keys.size() < 3;
+			}
+		});
+		assertEquals("Reading should have stopped", 3, keys.size());
+	}
+
+	/**
+	 * Test reading pages in sequence with a keyset query spec, with duplicate values for the order path
+	 * @throws JSONException
+	 */
+	public void testQueryEachWithKeysetPaging() throws JSONException {
+		for (int i=0; i<25; i++) {
+			store.create(TEST_SOUP, new JSONObject("{'key':'k" + (100 + i / 2) + "', 'value':'v" + i + "'}"));
+		}
+		final List<String> values = new ArrayList<>();
+		SmartStore.QueryRowHandler handler = new SmartStore.QueryRowHandler() {
+			@Override
+			public boolean onRow(Object row) throws JSONException {
+				values.add(((JSONArray) row).getString(0));
+				return true;
+			}
+		};
+
+		QuerySpec querySpec = QuerySpec.buildAllQuerySpec(TEST_SOUP, new String[] {"value"}, "key", Order.descending, 10).withKeysetPaging();
+		int countPages = 0;
+		while (querySpec != null) {
+			querySpec = store.queryEach(querySpec, 0, handler);
+			countPages++;
+		}
+		assertEquals("Wrong number of pages", 3, countPages);
+		assertEquals("Wrong number of rows", 25, values.size());
+		assertEquals("Wrong first row", "v24", values.get(0));
+		assertEquals("Wrong second row", "v22", values.get(1));
+		assertEquals("Wrong last row", "v1", values.get(24));
+		assertEquals("Rows should only be read once", 25, new HashSet<>(values).size());
+
+		// Starting from a page index
+		values.clear();
+		querySpec = store.queryEach(QuerySpec.buildAllQuerySpec(TEST_SOUP, new String[] {"value"}, "key", Order.descending, 10).withKeysetPaging(), 1, handler);
+		assertEquals("Wrong number of rows", 10, values.size());
+		assertEquals("Wrong first row of second page", "v15", values.get(0));
+		values.clear();
+		assertNull("There should be no more rows", store.queryEach(querySpec, 0, handler));
+		assertEquals("Wrong number of rows in last page", 5, values.size());
+		assertEquals("Wrong first row of last page", "v5", values.get(0));
+	}
+
+	/**
+	 * Test keyset paging on a floating index with values that don't survive a round trip through decimal text
+	 * @throws JSONException
+	 */
+	public void testQueryEachWithKeysetPagingOnFloatingValues() throws JSONException {
+		registerSoup(store, FOURTH_TEST_SOUP, new IndexSpec[] { new IndexSpec("amount", Type.floating) });
+		double[] amounts = new double[] { 0.1 + 0.2, 0.3, 1.0000000000000002, 1.0, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MIN_VALUE, 0.0 };
+		for (double amount : amounts) {
+			store.create(FOURTH_TEST_SOUP, new JSONObject().put("amount", amount));
+		}
+		final List<Double> values = new ArrayList<>();
+		SmartStore.QueryRowHandler handler = new SmartStore.QueryRowHandler() {
+			@Override
+			public boolean onRow(Object row) throws JSONException {
+				values.add(((JSONArray) row).getDouble(0));
+				return true;
+			}
+		};
+		QuerySpec querySpec = QuerySpec.buildAllQuerySpec(FOURTH_TEST_SOUP, new String[] {"amount"}, "amount", Order.ascending, 1).withKeysetPaging();
+		while (querySpec != null) {
+			querySpec = store.queryEach(querySpec, 0, handler);
+		}
+		double[] expected = amounts.clone();
+		Arrays.sort(expected);
+		assertEquals("Wrong number of rows", expected.length, values.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("Wrong row " + i, expected[i], values.get(i));
+		}
+	}
+
 	/**
 	 * Test query when looking for a specific element with a string index
 	 * @throws JSONException 
@@ -1428,4 +1600,224 @@ public class SmartStoreTest extends SmartStoreTestCase {
 		assertEquals("Soup name in json of soup spec is incorrect", SOUP_SPEC_TEST, result.toJSON().getString("name"));
 		assertEquals("Feature set in json of soup spec is incorrect", SoupSpec.FEATURE_EXTERNAL_STORAGE, result.toJSON().getJSONArray("features").get(0));
 	}
+
+	/**
+	 * Ensure queries don't wait for a write transaction in flight on another thread and only see committed data
+	 */
+	public void testQueryDuringWriteTransaction() throws Exception {
+		store.create(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"));
+		final CountDownLatch insertedLatch = new CountDownLatch(1);
+		final CountDownLatch commitLatch = new CountDownLatch(1);
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final SQLiteDatabase db = store.getDatabase();
+				synchronized (db) {
+					store.beginTransaction();
+					try {
+						store.create(TEST_SOUP, new JSONObject("{'key':'ka2', 'value':'va2'}"), false);
+						store.setTransactionSuccessful();
+						insertedLatch.countDown();
+						commitLatch.await();
+					} catch (Exception e) {
+						fail("Writer failed with error:" + e.getMessage());
+					} finally {
+						store.endTransaction();
+					}
+				}
+			}
+		});
+		writer.start();
+		assertTrue("Writer never inserted", insertedLatch.await(10, TimeUnit.SECONDS));
+
+		// Writer holds the database lock and has not committed yet
+		QuerySpec querySpec = QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10);
+		assertEquals("Uncommitted entry should not be visible", 1, store.query(querySpec, 0).length());
+		assertEquals("Uncommitted entry should not be counted", 1, store.countQuery(querySpec));
+
+		commitLatch.countDown();
+		writer.join();
+		assertEquals("Committed entry should be visible", 2, store.query(querySpec, 0).length());
+		assertEquals("Committed entry should be counted", 2, store.countQuery(querySpec));
+	}
+
+	/**
+	 * Ensure concurrent queryEach calls running queries from their handler don't wait on each other for read connections
+	 */
+	public void testNestedQueriesInConcurrentQueryEach() throws Exception {
+		for (int i=0; i<3; i++) {
+			store.create(TEST_SOUP, new JSONObject("{'key':'k" + i + "', 'value':'v" + i + "'}"));
+		}
+		final QuerySpec querySpec = QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10);
+		final CountDownLatch insideLatch = new CountDownLatch(2);
+		final CountDownLatch doneLatch = new CountDownLatch(2);
+		for (int t=0; t<2; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						store.queryEach(querySpec, new SmartStore.QueryRowHandler() {
+							@Override
+							public boolean onRow(Object row) throws JSONException {
+								try {
+									// Both threads hold a read connection before running nested queries
+									insideLatch.countDown();
+									insideLatch.await(10, TimeUnit.SECONDS);
+								} catch (InterruptedException e) {
+									return false;
+								}
+								assertEquals("Wrong nested query result", 3, store.query(querySpec, 0).length());
+								return true;
+							}
+						});
+						doneLatch.countDown();
+					} catch (JSONException e) {
+						fail("Query failed with error:" + e.getMessage());
+					}
+				}
+			}).start();
+		}
+		assertTrue("Queries should not deadlock", doneLatch.await(30, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Ensure update and delete statements are compiled once and then found in the statements cache
+	 */
+	public void testStatementCacheReusesStatements() throws JSONException {
+		final DBHelper dbHelper = DBHelper.getInstance(store.getDatabase());
+		JSONObject soupElt1 = store.create(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"));
+		JSONObject soupElt2 = store.create(TEST_SOUP, new JSONObject("{'key':'ka2', 'value':'va2'}"));
+		JSONObject soupElt3 = store.create(TEST_SOUP, new JSONObject("{'key':'ka3', 'value':'va3'}"));
+		store.update(TEST_SOUP, soupElt1.put("value", "va1u"), idOf(soupElt1));
+		long missesBefore = dbHelper.getStatementCacheMisses();
+		long hitsBefore = dbHelper.getStatementCacheHits();
+		store.update(TEST_SOUP, soupElt2.put("value", "va2u"), idOf(soupElt2));
+		store.update(TEST_SOUP, soupElt3.put("value", "va3u"), idOf(soupElt3));
+		assertEquals("Update statement should have been reused", missesBefore, dbHelper.getStatementCacheMisses());
+		assertEquals("Wrong number of cache hits", hitsBefore + 2, dbHelper.getStatementCacheHits());
+
+		// Deleting one id then three ids (padded to four) then one id
+		store.delete(TEST_SOUP, idOf(soupElt1));
+		missesBefore = dbHelper.getStatementCacheMisses();
+		store.delete(TEST_SOUP, idOf(soupElt2), idOf(soupElt3), idOf(soupElt3) + 1);
+		store.delete(TEST_SOUP, idOf(soupElt3));
+		assertEquals("Only the four ids delete statement should have been compiled", missesBefore + 1, dbHelper.getStatementCacheMisses());
+		assertEquals("All entries should have been deleted", 0, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10)));
+	}
+
+	/**
+	 * Ensure statements cache stays within its maximum size
+	 */
+	public void testStatementCacheEviction() throws JSONException {
+		final DBHelper dbHelper = DBHelper.getInstance(store.getDatabase());
+		try {
+			dbHelper.setStatementCacheMaxSize(2);
+			assertTrue("Cache should have been trimmed", dbHelper.getStatementCacheSize() <= 2);
+			long evictionsBefore = dbHelper.getStatementCacheEvictions();
+			// Deleting 1, 2, 4, 8 and 16 ids uses 5 distinct statements
+			for (int i = 0; i < 5; i++) {
+				Long[] ids = new Long[1 << i];
+				for (int j = 0; j < ids.length; j++) {
+					ids[j] = 1000L + j;
+				}
+				store.delete(TEST_SOUP, ids);
+			}
+			assertEquals("Cache should be full", 2, dbHelper.getStatementCacheSize());
+			assertTrue("Statements should have been evicted", dbHelper.getStatementCacheEvictions() >= evictionsBefore + 3);
+
+			// Caching disabled
+			dbHelper.setStatementCacheMaxSize(0);
+			assertEquals("Cache should be empty", 0, dbHelper.getStatementCacheSize());
+			JSONObject soupElt = store.create(TEST_SOUP, new JSONObject("{'key':'ka1', 'value':'va1'}"));
+			store.update(TEST_SOUP, soupElt.put("value", "va1u"), idOf(soupElt));
+			assertEquals("va1u", store.retrieve(TEST_SOUP, idOf(soupElt)).getJSONObject(0).getString("value"));
+			assertEquals("Cache should still be empty", 0, dbHelper.getStatementCacheSize());
+		} finally {
+			dbHelper.setStatementCacheMaxSize(DBHelper.DEFAULT_STATEMENT_CACHE_SIZE);
+		}
+	}
+
+	/**
+	 * Test retrieve and delete with more ids than sqlite allows in a single statement
+	 * @throws JSONException
+	 */
+	public void testRetrieveAndDeleteManyIds() throws JSONException {
+		int count = 2500;
+		long[] ids = new long[count];
+		store.beginTransaction();
+		try {
+			for (int i = 0; i < count; i++) {
+				ids[i] = idOf(store.create(TEST_SOUP, new JSONObject("{'key':'k" + i + "'}"), false));
+			}
+			store.setTransactionSuccessful();
+		} finally {
+			store.endTransaction();
+		}
+
+		// Retrieve (in reverse order with a missing id)
+		long[] reversedIds = new long[count + 1];
+		for (int i = 0; i < count; i++) {
+			reversedIds[i] = ids[count - 1 - i];
+		}
+		reversedIds[count] = -1;
+		JSONArray retrieved = store.retrieve(TEST_SOUP, reversedIds);
+		assertEquals("Wrong number of soup elements", count, retrieved.length());
+		for (int i = 0; i < count; i++) {
+			assertEquals("Wrong soup element", ids[i], idOf(retrieved.getJSONObject(i)));
+		}
+
+		// Delete all but the last one
+		store.delete(TEST_SOUP, Arrays.copyOf(ids, count - 1));
+		assertEquals("Wrong number of soup elements", 1, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, null, null, 10)));
+		assertEquals("Wrong soup element left", ids[count - 1], idOf(store.retrieve(TEST_SOUP, ids).getJSONObject(0)));
+	}
+
+	/**
+	 * Test register soup with compound and partial indexes
+	 * @throws JSONException
+	 */
+	public void testRegisterSoupWithCompoundAndPartialIndexes() throws JSONException {
+		CompoundIndexSpec[] compoundIndexSpecs = new CompoundIndexSpec[] {
+				new CompoundIndexSpec("Name", "Id"),
+				new CompoundIndexSpec(new String[] { "Id" }, "{__local__} = 'true'")
+		};
+		store.registerSoupWithSpec(new SoupSpec(THIRD_TEST_SOUP, compoundIndexSpecs),
+				new IndexSpec[] { new IndexSpec("Id", Type.string), new IndexSpec("__local__", Type.string), new IndexSpec("Name", Type.string) });
+		String soupTableName = getSoupTableName(THIRD_TEST_SOUP);
+
+		// Check db indexes
+		checkDatabaseIndexes(soupTableName, Arrays.asList(new String[] {
+				"CREATE INDEX " + soupTableName + "_0_idx on " + soupTableName + " ( " + soupTableName + "_0 )",
+				"CREATE INDEX " + soupTableName + "_1_idx on " + soupTableName + " ( " + soupTableName + "_1 )",
+				"CREATE INDEX " + soupTableName + "_2_idx on " + soupTableName + " ( " + soupTableName + "_2 )",
+				"CREATE INDEX " + soupTableName + "_c0_idx on " + soupTableName + " ( " + soupTableName + "_2, " + soupTableName + "_0 )",
+				"CREATE INDEX " + soupTableName + "_c1_idx on " + soupTableName + " ( " + soupTableName + "_0 ) WHERE " + soupTableName + "_1 = 'true'",
+				"CREATE INDEX " + soupTableName + "_created_idx on " + soupTableName + " ( created )",
+				"CREATE INDEX " + soupTableName + "_lastModified_idx on " + soupTableName + " ( lastModified )"
+		}));
+
+		// Check soup spec
+		assertEquals("Wrong compound index specs", Arrays.asList(compoundIndexSpecs), Arrays.asList(store.getSoupSpec(THIRD_TEST_SOUP).getCompoundIndexSpecs()));
+
+		// Querying with the predicate of the partial index
+		store.create(THIRD_TEST_SOUP, new JSONObject("{'Id':'002', '__local__':'true', 'Name':'b'}"));
+		store.create(THIRD_TEST_SOUP, new JSONObject("{'Id':'001', '__local__':'false', 'Name':'a'}"));
+		store.create(THIRD_TEST_SOUP, new JSONObject("{'Id':'000', '__local__':'true', 'Name':'c'}"));
+		String smartSql = String.format("SELECT {%1$s:Id} FROM {%1$s} WHERE {%1$s:__local__} = 'true' ORDER BY {%1$s:Id} ASC", THIRD_TEST_SOUP);
+		JSONTestHelper.assertSameJSONArray("Wrong results", new JSONArray("[['000'],['002']]"), store.query(QuerySpec.buildSmartQuerySpec(smartSql, 10), 0));
+	}
+
+	/**
+	 * Test register soup with compound index on path that is not indexed
+	 */
+	public void testRegisterSoupWithCompoundIndexOnNonIndexedPath() {
+		try {
+			store.registerSoupWithSpec(new SoupSpec(THIRD_TEST_SOUP, new CompoundIndexSpec[] { new CompoundIndexSpec("key", "missing") }),
+					new IndexSpec[] { new IndexSpec("key", Type.string) });
+			fail("Exception was expected");
+		} catch (SmartStore.SmartStoreException e) {
+			assertTrue("Wrong exception", e.getMessage().contains("missing"));
+		}
+		assertFalse("Soup should not have been registered", store.hasSoup(THIRD_TEST_SOUP));
+	}
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.SmartStoreException;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.WriteBehindQueue;
+
+import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteException;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for write-behind mode
+ */
+public class SmartStoreWriteBehindTest extends SmartStoreTestCase {
+
+	private static final String TEST_SOUP = "test_soup";
+	private static final int TIMEOUT_SECONDS = 10;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		store.registerSoup(TEST_SOUP, new IndexSpec[] { new IndexSpec("key", Type.string) });
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		store.disableWriteBehind();
+		super.tearDown();
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Queued writes are applied before reads of their soup
+	 */
+	public void testReadsSeeQueuedWrites() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(1000, 60000, WriteBehindQueue.Durability.NORMAL);
+		List<Future<JSONObject>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(queue.upsert(TEST_SOUP, new JSONObject("{'key':'k" + i + "'}"), "key"));
+		}
+		assertEquals("Wrong number of queued writes", 10, queue.getPendingWritesCount());
+		assertFalse("Write should still be queued", futures.get(0).isDone());
+
+		assertEquals("Queued writes should be visible", 10, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10)));
+		assertEquals("No write should be queued", 0, queue.getPendingWritesCount());
+		for (Future<JSONObject> future : futures) {
+			assertTrue("Write should be done", future.isDone());
+			assertTrue("Missing soup entry id", future.get().has("_soupEntryId"));
+		}
+	}
+
+	/**
+	 * Queued writes are applied once the size threshold is reached
+	 */
+	public void testFlushOnSizeThreshold() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(5, 60000, WriteBehindQueue.Durability.FULL);
+		List<Future<JSONObject>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			futures.add(queue.create(TEST_SOUP, new JSONObject("{'key':'k" + i + "'}")));
+		}
+		for (Future<JSONObject> future : futures) {
+			assertTrue("Write should be done", future.isDone());
+		}
+	}
+
+	/**
+	 * Queued writes are applied once the time threshold is reached
+	 */
+	public void testFlushOnTimeThreshold() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(1000, 50, WriteBehindQueue.Durability.FULL);
+		Future<JSONObject> future = queue.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+		JSONObject created = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertEquals("Wrong key", "k1", created.getString("key"));
+		assertEquals("No write should be queued", 0, queue.getPendingWritesCount());
+	}
+
+	/**
+	 * Queued soup element is a copy of the one passed in
+	 */
+	public void testQueuedSoupElementIsCopied() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(1000, 60000, WriteBehindQueue.Durability.FULL);
+		JSONObject soupElt = new JSONObject("{'key':'k1'}");
+		Future<JSONObject> future = queue.create(TEST_SOUP, soupElt);
+		soupElt.put("key", "changed");
+		queue.flush();
+		assertEquals("Wrong key", "k1", future.get().getString("key"));
+		assertEquals("Wrong key", "k1", store.retrieve(TEST_SOUP, future.get().getLong("_soupEntryId")).getJSONObject(0).getString("key"));
+	}
+
+	/**
+	 * A failing write only fails its own future
+	 */
+	public void testFailingWriteDoesNotFailBatch() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(1000, 60000, WriteBehindQueue.Durability.FULL);
+		Future<JSONObject> first = queue.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+		Future<JSONObject> failing = queue.create("missing_soup", new JSONObject("{'key':'k2'}"));
+		Future<JSONObject> last = queue.create(TEST_SOUP, new JSONObject("{'key':'k3'}"));
+		queue.flush();
+
+		assertEquals("Wrong key", "k1", first.get().getString("key"));
+		assertEquals("Wrong key", "k3", last.get().getString("key"));
+		try {
+			failing.get();
+			fail("Write to missing soup should have failed");
+		} catch (ExecutionException e) {
+			assertTrue("Wrong cause", e.getCause() instanceof SmartStoreException);
+		}
+		assertEquals("Wrong number of entries", 2, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10)));
+	}
+
+	/**
+	 * Futures of a batch whose COMMIT fails complete with an error
+	 */
+	public void testFailedCommitCompletesFutures() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(1000, 60000, WriteBehindQueue.Durability.FULL);
+		SQLiteDatabase db = store.getDatabase();
+		db.execSQL("CREATE TABLE fk_parent (id INTEGER PRIMARY KEY)");
+		db.execSQL("CREATE TABLE fk_child (parent_id INTEGER REFERENCES fk_parent(id) DEFERRABLE INITIALLY DEFERRED)");
+		// Deferred foreign key violation for every insert: only detected by the COMMIT
+		db.execSQL("CREATE TRIGGER fk_violation AFTER INSERT ON " + getSoupTableName(TEST_SOUP) + " BEGIN INSERT INTO fk_child VALUES (42); END");
+		db.execSQL("PRAGMA foreign_keys = ON");
+		try {
+			Future<JSONObject> future = queue.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+			synchronized (db) {
+				try {
+					queue.flush();
+					fail("Commit should have failed");
+				} catch (SQLiteException e) {
+					// Expected
+				}
+				// SQLite keeps the transaction open when the COMMIT fails
+				try {
+					db.execSQL("ROLLBACK");
+				} catch (SQLiteException e) {
+					// Already rolled back
+				}
+			}
+			assertTrue("Write should be done", future.isDone());
+			try {
+				future.get();
+				fail("Write should have failed");
+			} catch (ExecutionException e) {
+				assertTrue("Wrong cause", e.getCause() instanceof SmartStoreException);
+			}
+		} finally {
+			db.execSQL("PRAGMA foreign_keys = OFF");
+			db.execSQL("DROP TRIGGER fk_violation");
+			db.execSQL("DROP TABLE fk_child");
+			db.execSQL("DROP TABLE fk_parent");
+		}
+		assertEquals("Soup should be empty", 0, store.countQuery(QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10)));
+	}
+
+	/**
+	 * Disabling write-behind mode applies queued writes
+	 */
+	public void testDisableFlushes() throws Exception {
+		WriteBehindQueue queue = store.enableWriteBehind(1000, 60000, WriteBehindQueue.Durability.FULL);
+		Future<JSONObject> future = queue.create(TEST_SOUP, new JSONObject("{'key':'k1'}"));
+		store.disableWriteBehind();
+		assertTrue("Write should be done", future.isDone());
+		assertNull("Write-behind mode should be disabled", store.getWriteBehindQueue());
+		try {
+			queue.create(TEST_SOUP, new JSONObject("{'key':'k2'}"));
+			fail("Queue should no longer accept writes");
+		} catch (SmartStoreException e) {
+			// as expected
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2026-present, salesforce.com, inc.
+ * All rights reserved.
+ * Redistribution and use of this software in source and binary forms, with or
+ * without modification, are permitted provided that the following conditions
+ * are met:
+ * - Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * - Neither the name of salesforce.com, inc. nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission of salesforce.com, inc.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.salesforce.androidsdk.store;
+
+import com.salesforce.androidsdk.smartstore.store.IndexSpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec;
+import com.salesforce.androidsdk.smartstore.store.QuerySpec.Order;
+import com.salesforce.androidsdk.smartstore.store.SmartStore.Type;
+import com.salesforce.androidsdk.smartstore.store.StoreCursor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Tests for StoreCursor
+ */
+public class StoreCursorTest extends SmartStoreTestCase {
+
+	private static final String TEST_SOUP = "test_soup";
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		store.registerSoup(TEST_SOUP, new IndexSpec[] { new IndexSpec("key", Type.string) });
+		store.beginTransaction();
+		try {
+			for (int i = 0; i < 25; i++) {
+				store.create(TEST_SOUP, new JSONObject(String.format("{'key':'k%02d'}", i)), false);
+			}
+			store.setTransactionSuccessful();
+		} finally {
+			store.endTransaction();
+		}
+	}
+
+	@Override
+	protected String getPasscode() {
+		return "";
+	}
+
+	/**
+	 * Cursor counting up front reports totals right away
+	 */
+	public void testCursorWithCount() throws JSONException {
+		StoreCursor cursor = new StoreCursor(store, QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10));
+		JSONObject data = cursor.getData(store);
+		assertEquals("Wrong total entries", 25, data.getInt(StoreCursor.TOTAL_ENTRIES));
+		assertEquals("Wrong total pages", 3, data.getInt(StoreCursor.TOTAL_PAGES));
+		assertFalse("No has more expected", data.has(StoreCursor.HAS_MORE));
+		checkPage(data, 0, 10);
+	}
+
+	/**
+	 * Cursor with lazy count reports whether there are more entries for each page
+	 */
+	public void testCursorWithLazyCount() throws JSONException {
+		StoreCursor cursor = new StoreCursor(store, QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10), true);
+		JSONObject data = cursor.getData(store);
+		assertTrue("Wrong has more", data.getBoolean(StoreCursor.HAS_MORE));
+		checkPage(data, 0, 10);
+
+		cursor.moveToPageIndex(1);
+		data = cursor.getData(store);
+		assertTrue("Wrong has more", data.getBoolean(StoreCursor.HAS_MORE));
+		checkPage(data, 10, 10);
+
+		cursor.moveToPageIndex(2);
+		data = cursor.getData(store);
+		assertFalse("Wrong has more", data.getBoolean(StoreCursor.HAS_MORE));
+		checkPage(data, 20, 5);
+
+		// Reading the last page gives the count away
+		assertEquals("Wrong total entries", 25, data.getInt(StoreCursor.TOTAL_ENTRIES));
+		assertEquals("Wrong total pages", 3, data.getInt(StoreCursor.TOTAL_PAGES));
+	}
+
+	/**
+	 * Cursor with lazy count for smart query
+	 */
+	public void testCursorWithLazyCountForSmartQuery() throws JSONException {
+		QuerySpec querySpec = QuerySpec.buildSmartQuerySpec("select {test_soup:key} from {test_soup} order by {test_soup:key}", 10);
+		StoreCursor cursor = new StoreCursor(store, querySpec, true);
+		JSONObject data = cursor.getData(store);
+		assertTrue("Wrong has more", data.getBoolean(StoreCursor.HAS_MORE));
+		JSONArray entries = data.getJSONArray(StoreCursor.CURRENT_PAGE_ORDERED_ENTRIES);
+		assertEquals("Wrong number of entries", 10, entries.length());
+		assertEquals("Wrong entry", "k00", entries.getJSONArray(0).getString(0));
+		assertEquals("Wrong total entries", 25, cursor.getTotalEntries(store));
+		assertEquals("Wrong total pages", 3, cursor.getTotalPages(store));
+	}
+
+	/**
+	 * Cursor with lazy count when all entries fit in the first page
+	 */
+	public void testCursorWithLazyCountSinglePage() throws JSONException {
+		StoreCursor cursor = new StoreCursor(store, QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 25), true);
+		JSONObject data = cursor.getData(store);
+		assertFalse("Wrong has more", data.getBoolean(StoreCursor.HAS_MORE));
+		assertEquals("Wrong total entries", 25, data.getInt(StoreCursor.TOTAL_ENTRIES));
+		checkPage(data, 0, 25);
+	}
+
+	/**
+	 * Cursor with a keyset query spec reads pages in sequence and still allows jumping to any page
+	 */
+	public void testCursorWithKeysetPaging() throws JSONException {
+		StoreCursor cursor = new StoreCursor(store, QuerySpec.buildAllQuerySpec(TEST_SOUP, "key", Order.ascending, 10).withKeysetPaging(), true);
+		checkPage(cursor.getData(store), 0, 10);
+		cursor.moveToPageIndex(1);
+		checkPage(cursor.getData(store), 10, 10);
+		cursor.moveToPageIndex(2);
+		JSONObject data = cursor.getData(store);
+		assertFalse("Wrong has more", data.getBoolean(StoreCursor.HAS_MORE));
+		checkPage(data, 20, 5);
+		cursor.moveToPageIndex(1);
+		checkPage(cursor.getData(store), 10, 10);
+	}
+
+	/**
+	 * Cursor ordered by soup entry id pages through all entries
+	 */
+	public void testCursorOrderedBySoupEntryId() throws JSONException {
+		StoreCursor cursor = new StoreCursor(store, QuerySpec.buildAllQuerySpec(TEST_SOUP, "_soupEntryId", Order.ascending, 10));
+		for (int i = 0; i < 3; i++) {
+			cursor.moveToPageIndex(i);
+			checkPage(cursor.getData(store), i * 10, Math.min(10, 25 - i * 10));
+		}
+	}
+
+	private void checkPage(JSONObject data, int firstKey, int count) throws JSONException {
+		JSONArray entries = data.getJSONArray(StoreCursor.CURRENT_PAGE_ORDERED_ENTRIES);
+		assertEquals("Wrong number of entries", count, entries.length());
+		for (int i = 0; i < count; i++) {
+			assertEquals("Wrong entry", String.format("k%02d", firstKey + i), entries.getJSONObject(i).getString("key"));
+		}
+	}
+}